@@ -0,0 +1,96 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch export: one ExportResult per job, in the order the jobs 
+ * were given, along with the aggregate throughput of the batch.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The results attribute is not null, and is not modifiable. <br>
+ * 
+ * @author Jesse Primiani
+ */
+public class BatchExportReport {
+  
+  /** The result of each job, in the order the jobs were given. */
+  private final List<ExportResult> results;
+  
+  /** The wall-clock time taken by the whole batch, in nanoseconds. */
+  private final long elapsedNanos;
+  
+  /**
+   * Creates a batch export report.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> results must not be null.
+   * <br>
+   * <b>Postconditions:</b> Creates a BatchExportReport with the given results and time.
+   * 
+   * @author Jesse Primiani
+   * @param results The result of each job, in the order the jobs were given.
+   * @param elapsedNanos The wall-clock time taken by the whole batch, in nanoseconds.
+   */
+  BatchExportReport(final List<ExportResult> results, final long elapsedNanos) {
+    this.results = Collections.unmodifiableList(results);
+    this.elapsedNanos = elapsedNanos;
+  }
+  
+  /**
+   * Gets the result of each job.
+   * 
+   * @author Jesse Primiani
+   * @return The result of each job, in the order the jobs were given.
+   */
+  public List<ExportResult> getResults() {
+    return results;
+  }
+  
+  /**
+   * Gets the number of jobs that were exported.
+   * 
+   * @author Jesse Primiani
+   * @return The number of successful jobs.
+   */
+  public int getSucceededCount() {
+    int count = 0;
+    for (ExportResult result : results) {
+      if (result.isSucceeded()) count++;
+    }
+    return count;
+  }
+  
+  /**
+   * Gets the number of jobs that failed.
+   * 
+   * @author Jesse Primiani
+   * @return The number of failed jobs.
+   */
+  public int getFailedCount() {
+    return results.size() - getSucceededCount();
+  }
+  
+  /**
+   * Gets the wall-clock time taken by the whole batch.
+   * 
+   * @author Jesse Primiani
+   * @return The batch's elapsed time, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+  
+  /**
+   * Gets the aggregate throughput of the batch, counting both successful and failed jobs.
+   * 
+   * @author Jesse Primiani
+   * @return The number of jobs completed per second, or 0 for an empty batch.
+   */
+  public double getJobsPerSecond() {
+    if (elapsedNanos <= 0) return 0;
+    return results.size() / (elapsedNanos / 1e9);
+  }
+
+}
@@ -0,0 +1,241 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the content of an InputAdapter to a binary diagram file, which InputBinaryDiagram reads
+ * back through a memory mapping, so that a diagram built in one process is rendered in another
+ * without rebuilding its object graph.
+ * <br>
+ * A file is a fixed-size header followed by one section per column of a SequenceDiagramModel, in
+ * the order of the section constants, each starting at a multiple of 8 bytes. Every value is big-endian:
+ * <br>
+ *     The header: MAGIC, VERSION, the actor, class block, activation block, lifeline, method,
+ *     constraint, loop and alternative counts, and the text count, as ints, then the text byte count
+ *     as a long, padded to HEADER_SIZE. <br>
+ *     The element columns: an int per element, either a virtual index or a text number, with -1 for
+ *     a null text, except lifelineActive, which is a long per 64 lifelines, lowest bit first. <br>
+ *     The string table: a long per text, where its UTF-8 bytes start in the last section, followed
+ *     by the end of the last text, then the bytes of every distinct text. <br>
+ * So the position of any value follows from the header alone, and the file's length is the end of
+ * its last section.
+ *
+ * @author Jesse Primiani
+ */
+public final class BinaryDiagramWriter {
+
+  /** The usual extension of a binary diagram file. */
+  public static final String EXTENSION = ".sdmb";
+
+  /** Identifies a binary diagram file ("SDMB"), and its format version. */
+  static final int MAGIC = 0x53444D42;
+  static final int VERSION = 1;
+
+  /** The size of the header, in bytes. */
+  static final int HEADER_SIZE = 56;
+
+  /** The sections of a file, in order. */
+  static final int ACTOR_NAMES = 0;
+  static final int INSTANCE_NAMES = 1;
+  static final int CLASS_NAMES = 2;
+  static final int LIFELINE_FROM = 3;
+  static final int LIFELINE_TO = 4;
+  static final int LIFELINE_ACTIVE = 5;
+  static final int METHOD_FROM = 6;
+  static final int METHOD_TO = 7;
+  static final int METHOD_TEXTS = 8;
+  static final int CONSTRAINT_TEXTS = 9;
+  static final int LOOP_TEXTS = 10;
+  static final int ALTERNATIVE_TEXTS = 11;
+  static final int ALTERNATIVE_TEXTS_ELSE = 12;
+  static final int TEXT_STARTS = 13;
+  static final int TEXT_BYTES = 14;
+  static final int SECTION_COUNT = 15;
+
+  /**
+   * This class only has static methods.
+   *
+   * @author Jesse Primiani
+   */
+  private BinaryDiagramWriter() {}
+
+  /**
+   * Writes a diagram to a binary diagram file, replacing the file in one step so that a reader
+   * never sees a partial file.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, and fileName must not be empty.
+   * <br>
+   * <b>Postconditions:</b> The file holds every value the diagram's getters return, with each
+   * distinct text stored once.
+   *
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to write.
+   * @param fileName The full name of the file to write, usually ending in EXTENSION.
+   * @throws SDMException on a null diagram or invalid file name.
+   * @throws IOException On a write error.
+   * @throws Exception on an input adapter error.
+   */
+  public static void write(final InputAdapter diagram, final String fileName) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: BinaryDiagramWriter 'write' method");
+    if (fileName == null || fileName.isEmpty()) throw new SDMException("Invalid 'fileName' parameter in: BinaryDiagramWriter 'write' method");
+
+    SequenceDiagramModel model = SequenceDiagramModel.of(diagram);
+    File file = new File(fileName);
+    File directory = file.getAbsoluteFile().getParentFile();
+    File stagedFile = File.createTempFile("." + file.getName() + "-", ".part", directory);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stagedFile), 1 << 16))) {
+        writeModel(out, model);
+      }
+      try {
+        Files.move(stagedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(stagedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(stagedFile.toPath());
+    }
+  }
+
+  /**
+   * Writes a model's header and sections.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write to, at the start of the file.
+   * @param model The model to write.
+   * @throws IOException On a write error.
+   */
+  private static void writeModel(final DataOutputStream out, final SequenceDiagramModel model) throws IOException {
+    int textCount = model.textStarts.length - 1;
+    int[] counts = {model.actorNames.length, model.instanceNames.length, model.activationBlockCount,
+        model.lifelineFrom.length, model.methodFrom.length, model.constraintTexts.length,
+        model.loopTexts.length, model.alternativeTexts.length, textCount};
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    for (int count : counts) {
+      out.writeInt(count);
+    }
+    out.writeLong(model.textBytes.length);
+    pad(out, 4 * (counts.length + 2) + 8);
+
+    writeInts(out, model.actorNames);
+    writeInts(out, model.instanceNames);
+    writeInts(out, model.classNames);
+    writeInts(out, model.lifelineFrom);
+    writeInts(out, model.lifelineTo);
+    long[] active = model.lifelineActive.toLongArray();
+    for (int word = 0, words = (model.lifelineFrom.length + 63) / 64; word < words; word++) {
+      out.writeLong((word < active.length) ? active[word] : 0);
+    }
+    writeInts(out, model.methodFrom);
+    writeInts(out, model.methodTo);
+    writeInts(out, model.methodTexts);
+    writeInts(out, model.constraintTexts);
+    writeInts(out, model.loopTexts);
+    writeInts(out, model.alternativeTexts);
+    writeInts(out, model.alternativeTextsElse);
+    for (int start : model.textStarts) {
+      out.writeLong(start);
+    }
+    out.write(model.textBytes);
+    pad(out, model.textBytes.length);
+  }
+
+  /**
+   * Gets where each section of a file starts, from the counts in its header.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No count is negative.
+   * <br>
+   * <b>Postconditions:</b> Returns SECTION_COUNT + 1 offsets: the start of each section, then the
+   * length of the file.
+   *
+   * @author Jesse Primiani
+   * @param actors The number of actors.
+   * @param classBlocks The number of class blocks.
+   * @param lifelines The number of lifelines.
+   * @param methods The number of methods.
+   * @param constraints The number of constraints.
+   * @param loops The number of loops.
+   * @param alternatives The number of alternatives.
+   * @param texts The number of distinct texts.
+   * @param textBytes The total size of the distinct texts, in bytes.
+   * @return The offset of each section, in bytes from the start of the file.
+   */
+  static long[] layout(final int actors, final int classBlocks, final int lifelines, final int methods,
+      final int constraints, final int loops, final int alternatives, final int texts, final long textBytes) {
+    long[] sizes = new long[SECTION_COUNT];
+    sizes[ACTOR_NAMES] = 4L * actors;
+    sizes[INSTANCE_NAMES] = 4L * classBlocks;
+    sizes[CLASS_NAMES] = 4L * classBlocks;
+    sizes[LIFELINE_FROM] = 4L * lifelines;
+    sizes[LIFELINE_TO] = 4L * lifelines;
+    sizes[LIFELINE_ACTIVE] = 8L * ((lifelines + 63L) / 64);
+    sizes[METHOD_FROM] = 4L * methods;
+    sizes[METHOD_TO] = 4L * methods;
+    sizes[METHOD_TEXTS] = 4L * methods;
+    sizes[CONSTRAINT_TEXTS] = 4L * constraints;
+    sizes[LOOP_TEXTS] = 4L * loops;
+    sizes[ALTERNATIVE_TEXTS] = 4L * alternatives;
+    sizes[ALTERNATIVE_TEXTS_ELSE] = 4L * alternatives;
+    sizes[TEXT_STARTS] = 8L * (texts + 1L);
+    sizes[TEXT_BYTES] = textBytes;
+
+    long[] offsets = new long[SECTION_COUNT + 1];
+    offsets[0] = HEADER_SIZE;
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      offsets[section + 1] = align(offsets[section] + sizes[section]);
+    }
+    return offsets;
+  }
+
+  /**
+   * Writes a column of ints, padded to a multiple of 8 bytes.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write to.
+   * @param values The column.
+   * @throws IOException On a write error.
+   */
+  private static void writeInts(final DataOutputStream out, final int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+    pad(out, 4L * values.length);
+  }
+
+  /**
+   * Pads a section with zeros to the next multiple of 8 bytes.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to pad, at the end of the section.
+   * @param size The size of the section, in bytes.
+   * @throws IOException On a write error.
+   */
+  private static void pad(final DataOutputStream out, final long size) throws IOException {
+    for (long padding = align(size) - size; padding > 0; padding--) {
+      out.writeByte(0);
+    }
+  }
+
+  /**
+   * Rounds an offset up to the next multiple of 8 bytes.
+   *
+   * @author Jesse Primiani
+   * @param offset The offset, in bytes.
+   * @return The aligned offset.
+   */
+  private static long align(final long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+}
@@ -0,0 +1,379 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A content-addressed, on-disk cache of exported files, used by SDMtoFile to skip exporting a
+ * diagram it has already exported.
+ * <br>
+ * Each entry is keyed by a SHA-256 hash of every element of the InputAdapter, the OutputType, and
+ * the OutputAdapter's class and settings, from its getCacheKeyParameters(), so a diagram exported
+ * again, under any name and with the same settings, is published from its entry without running the
+ * output adapter. A saved file is copied into the cache, and an entry is copied out to each file it is
+ * published as, so no output file ever shares its storage with an entry: changing an output file in
+ * place never changes the entry, or any other output file.
+ * <br>
+ * The entries' total size is kept under a bound by evicting the least recently used entries, which
+ * other processes see through the modification times of the cache's own copies. An
+ * entry is written to a hidden staging file, then moved under its name in one step, so that several
+ * threads or processes can share the cache directory, and none ever reads a partial entry. Each
+ * cache object enforces the bound over the entries it found when created and the entries it has used
+ * since; an entry evicted by another process while being published is treated as a miss.
+ * <br>
+ * The key does not cover files an output adapter reads, such as OutputAspose's stencil file; call
+ * clear() after changing one.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     totalBytes is the sum of the sizes in the entries map. <br>
+ *     All access to the entries map and totalBytes is synchronized on this object. <br>
+ *
+ * @author Jesse Primiani
+ */
+public final class ExportCache {
+
+  /** Hashed before each key, so that a change to what the key covers changes every key. */
+  private static final String KEY_VERSION = "SDM-export-cache-2";
+
+  /** The directory holding the entries. */
+  private final Path directory;
+
+  /** The most bytes the entries may take, in total. */
+  private final long maxBytes;
+
+  /** The size of each entry, keyed by its file name, least recently used first. */
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+  /** The total size of the entries. */
+  private long totalBytes;
+
+  /**
+   * Creates a cache in a directory, creating it if needed, and takes in any entries already there,
+   * oldest first.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The directory exists, and the cache's entries take no more than maxBytes.
+   *
+   * @author Jesse Primiani
+   * @param path The cache directory's path.
+   * @param maxBytes The most bytes the entries may take, in total.
+   * @throws SDMException If path is null, or maxBytes is negative.
+   * @throws IOException If the directory can not be created or listed.
+   */
+  public ExportCache(final String path, final long maxBytes) throws SDMException, IOException {
+    if (path == null) throw new SDMException("Null 'path' parameter in: ExportCache constructor");
+    if (maxBytes < 0) throw new SDMException("Negative 'maxBytes' parameter in: ExportCache constructor");
+
+    this.directory = new File(path.isEmpty() ? "." : path).toPath();
+    this.maxBytes = maxBytes;
+    Files.createDirectories(directory);
+
+    // Take in the entries left by earlier runs, least recently used first.
+    List<File> files = new ArrayList<File>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+      for (Path file : paths) {
+        if (!file.getFileName().toString().startsWith(".") && Files.isRegularFile(file)) files.add(file.toFile());
+      }
+    }
+    files.sort(Comparator.comparingLong(File::lastModified));
+    synchronized (this) {
+      for (File file : files) {
+        entries.put(file.getName(), file.length());
+        totalBytes += file.length();
+      }
+      evict();
+    }
+  }
+
+  /**
+   * Computes the key of an export: a SHA-256 hash of every element of a diagram, in the order
+   * SDMtoFile adds them, with the output type, and the adapter's class and settings.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, and the adapter's getCacheKeyParameters() does not return null.
+   * <br>
+   * <b>Postconditions:</b> Returns the key, which is the same for the same content in any process.
+   *
+   * @author Jesse Primiani
+   * @param diagram The diagram to export.
+   * @param type The output file's type.
+   * @param adapter The output adapter.
+   * @return The key, as lower-case hexadecimal.
+   * @throws Exception If the diagram can not be read.
+   */
+  String getKey(final InputAdapter diagram, final OutputType<?> type, final OutputAdapter adapter) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+
+    writeString(out, KEY_VERSION);
+    writeString(out, adapter.getClass().getName());
+    writeString(out, adapter.getCacheKeyParameters());
+    writeString(out, type.getClass().getName());
+    writeString(out, type.getExtension());
+    writeString(out, String.valueOf(type.getType()));
+
+    int count = diagram.getActorCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      writeString(out, diagram.getActorName(index));
+    }
+
+    count = diagram.getClassBlockCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      writeString(out, diagram.getClassBlockInstanceName(index));
+      writeString(out, diagram.getClassBlockClassName(index));
+    }
+
+    out.writeInt(diagram.getActivationBlockCount());
+
+    count = diagram.getLifelineCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      out.writeInt(diagram.getLifelineFromIndex(index));
+      out.writeInt(diagram.getLifelineToIndex(index));
+      out.writeBoolean(diagram.getLifelineActive(index));
+    }
+
+    count = diagram.getMethodCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      out.writeInt(diagram.getMethodFromIndex(index));
+      out.writeInt(diagram.getMethodToIndex(index));
+      writeString(out, diagram.getMethodText(index));
+    }
+
+    count = diagram.getConstraintCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      writeString(out, diagram.getConstraintText(index));
+    }
+
+    count = diagram.getLoopCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      writeString(out, diagram.getLoopText(index));
+    }
+
+    count = diagram.getAlternativeCount();
+    out.writeInt(count);
+    for (int index = 0; index < count; index++) {
+      writeString(out, diagram.getAlternativeText(index));
+      writeString(out, diagram.getAlternativeTextElse(index));
+    }
+
+    out.flush();
+    StringBuilder key = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Publishes the cached file for a key as an output file, if the cache has it.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null.
+   * <br>
+   * <b>Postconditions:</b> On a hit, the cached file is published as OutputFiles.publishFile would
+   * publish it, and becomes the most recently used entry. On a miss, nothing changes.
+   *
+   * @author Jesse Primiani
+   * @param key The export's key, from getKey().
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information.
+   * @param overwrite Whether an existing file may be overwritten.
+   * @return The full name of the published file, or null if the cache does not have the key.
+   * @throws SDMException If any parameter is null.
+   * @throws IOException On a file system error.
+   */
+  String publish(final String key, final String path, final String name, final OutputType<?> type,
+      final boolean overwrite) throws SDMException, IOException {
+    String entryName = key + type.getExtension();
+    synchronized (this) {
+      if (!entries.containsKey(entryName)) return null;
+    }
+    Path entry = directory.resolve(entryName);
+
+    // Copy the entry to a staging file next to the output file.
+    Path staged = OutputFiles.createStagingFile(path, name, type);
+    try {
+      Files.copy(entry, staged, StandardCopyOption.REPLACE_EXISTING);
+    } catch (NoSuchFileException ex) {
+      // The entry was evicted, possibly by another process.
+      Files.deleteIfExists(staged);
+      forget(entryName);
+      return null;
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(staged);
+      throw ex;
+    }
+
+    touch(entry, entryName);
+    return OutputFiles.publishFile(staged, path, name, type, overwrite);
+  }
+
+  /**
+   * Adds a saved output file to the cache under a key, evicting the least recently used entries
+   * if the cache is over its bound.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> savedFile is the complete output of the export with the key.
+   * <br>
+   * <b>Postconditions:</b> The cache has an entry for the key, unless the file alone is over the bound.
+   *
+   * @author Jesse Primiani
+   * @param key The export's key, from getKey().
+   * @param savedFile The full name of the saved output file.
+   * @param type An object containing the output file's type information.
+   * @throws IOException On a file system error.
+   */
+  void put(final String key, final String savedFile, final OutputType<?> type) throws IOException {
+    String entryName = key + type.getExtension();
+    Path entry = directory.resolve(entryName);
+    synchronized (this) {
+      if (entries.containsKey(entryName) && Files.isRegularFile(entry)) return;
+    }
+
+    // Stage the entry, then move it under its name in one step. A concurrent writer of the same key
+    // writes the same content, so whichever move is last leaves a complete entry.
+    Path staged = File.createTempFile("." + key + "-", ".part", directory.toFile()).toPath();
+    try {
+      Files.copy(new File(savedFile).toPath(), staged, StandardCopyOption.REPLACE_EXISTING);
+      try {
+        Files.move(staged, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(staged, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(staged);
+    }
+
+    synchronized (this) {
+      Long previous = entries.put(entryName, Files.size(entry));
+      totalBytes += entries.get(entryName) - (previous == null ? 0 : previous);
+      evict();
+    }
+  }
+
+  /**
+   * Removes every entry from the cache.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The cache directory has no entries known to this cache.
+   *
+   * @author Jesse Primiani
+   * @throws IOException On a file system error.
+   */
+  public synchronized void clear() throws IOException {
+    for (String entryName : entries.keySet()) {
+      Files.deleteIfExists(directory.resolve(entryName));
+    }
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * Gets the total size of the entries.
+   *
+   * @author Jesse Primiani
+   * @return The entries' total size, in bytes.
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @author Jesse Primiani
+   * @return The number of entries.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Evicts the least recently used entries until the cache is within its bound.
+   *
+   * @author Jesse Primiani
+   * @throws IOException On a file system error.
+   */
+  private void evict() throws IOException {
+    Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      Map.Entry<String, Long> entry = eldest.next();
+      Files.deleteIfExists(directory.resolve(entry.getKey()));
+      totalBytes -= entry.getValue();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Makes an entry the most recently used, here and, through its modification time, for other processes.
+   * The entry's file is the cache's own copy, so no output file's time changes.
+   *
+   * @author Jesse Primiani
+   * @param entry The entry's file.
+   * @param entryName The entry's file name.
+   */
+  private void touch(final Path entry, final String entryName) {
+    synchronized (this) {
+      entries.get(entryName);
+    }
+    entry.toFile().setLastModified(System.currentTimeMillis());
+  }
+
+  /**
+   * Forgets an entry whose file no longer exists.
+   *
+   * @author Jesse Primiani
+   * @param entryName The entry's file name.
+   */
+  private synchronized void forget(final String entryName) {
+    Long size = entries.remove(entryName);
+    if (size != null) totalBytes -= size;
+  }
+
+  /**
+   * Writes a string, or null, so that adjacent strings can not run together.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write.
+   * @param text The string to write.
+   * @throws IOException On a write error.
+   */
+  private static void writeString(final DataOutputStream out, final String text) throws IOException {
+    if (text == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(text.length());
+      out.writeChars(text);
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * A single diagram to export as part of a batch, pairing the diagram with the 
+ * path and file name it is saved to.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     No attributes are null, and name is not empty. <br>
+ * 
+ * @author Jesse Primiani
+ */
+public class ExportJob {
+  
+  /** The concrete object containing the diagram to save to a file. */
+  private final InputAdapter diagram;
+  
+  /** The path to the output file. */
+  private final String filePath;
+  
+  /** The name of the output file, without the extension. */
+  private final String fileName;
+  
+  /**
+   * Creates an export job.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an ExportJob with the given diagram, path and name.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @param path The path to the output file.
+   * @param name The name of the output file (without extension).
+   * @throws SDMException on a null diagram, invalid file path, or invalid file name.
+   */
+  public ExportJob(final InputAdapter diagram, final String path, final String name) throws SDMException {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: ExportJob constructor");
+    if (path == null) throw new SDMException("Invalid 'path' parameter in: ExportJob constructor");
+    if (name == null || name.isEmpty()) throw new SDMException("Invalid 'name' parameter in: ExportJob constructor");
+    this.diagram = diagram;
+    this.filePath = path;
+    this.fileName = name;
+  }
+  
+  /**
+   * Gets the diagram to export.
+   * 
+   * @author Jesse Primiani
+   * @return The concrete object containing the diagram to save to a file.
+   */
+  public InputAdapter getDiagram() {
+    return diagram;
+  }
+  
+  /**
+   * Gets the output file's path.
+   * 
+   * @author Jesse Primiani
+   * @return The path to the output file.
+   */
+  public String getPath() {
+    return filePath;
+  }
+  
+  /**
+   * Gets the output file's name.
+   * 
+   * @author Jesse Primiani
+   * @return The name of the output file (without extension).
+   */
+  public String getName() {
+    return fileName;
+  }
+
+}
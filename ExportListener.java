@@ -0,0 +1,48 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * Receives structured events from SDMtoFile while a diagram is exported, in the order 
+ * they happen. All methods do nothing by default, so a listener only overrides the 
+ * events it needs. SDMtoFile does no work for an event when no listener is attached.
+ * <br>
+ * <br>
+ * Element events give the element's index within its kind, and its text exactly as read 
+ * from the InputAdapter, which may be null. Each element event is sent as soon as the 
+ * output adapter has added that element, between the phaseStarted and phaseFinished events 
+ * of its kind. Activation blocks are added together, so they get one activationBlocksAdded 
+ * event once all of them have been added.
+ * <br>
+ * <br>
+ * An incremental export (SDMtoFile.exportFileIncremental) replaces each changed run of 
+ * elements in one step, which either succeeds or leaves the diagram unchanged. Its element 
+ * events are sent once the run has been replaced, for the replacing elements only.
+ * <br>
+ * <br>
+ * See PrintStreamExportListener for a listener that prints a readable export log.
+ * 
+ * @author Jesse Primiani
+ */
+public interface ExportListener {
+  
+  public default void exportStarted() {}
+  
+  public default void phaseStarted(ExportPhase phase, int count) {}
+  public default void phaseFinished(ExportPhase phase, int count) {}
+  
+  public default void actorAdded(int index, String actorName) {}
+  public default void classBlockAdded(int index, String instanceName, String className) {}
+  public default void activationBlocksAdded(int count) {}
+  
+  public default void lifelineAdded(int index, int fromIndex, int toIndex, boolean active) {}
+  public default void methodAdded(int index, int fromIndex, int toIndex, String text) {}
+  
+  public default void constraintAdded(int index, String text) {}
+  public default void loopAdded(int index, String text) {}
+  public default void alternativeAdded(int index, String text, String textElse) {}
+  
+  public default void diagramSaved(String fileName) {}
+  
+  public default void exportFinished() {}
+  public default void exportFailed(Exception failure) {}
+
+}
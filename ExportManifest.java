@@ -0,0 +1,392 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The sidecar manifest written next to a file saved by SDMtoFile.exportFileIncremental.
+ * <br>
+ * It records a 64-bit fingerprint of every element of the exported InputAdapter, the size and
+ * modification time of the file it describes, and the output adapter's own state, such as the
+ * ID of each element's shape. The next incremental export compares its input's fingerprints with
+ * these to find which elements changed, and reopens the file to update only their shapes.
+ * <br>
+ * Fingerprints are 64-bit FNV-1a hashes of each element's kind and content, including the
+ * virtual indices a lifeline or method connects.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Each fingerprint array holds one entry per element of its kind, in InputAdapter order. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class ExportManifest {
+
+  /** Identifies a manifest file, and its format version. */
+  private static final int MAGIC = 0x53444D4D;
+  private static final int VERSION = 1;
+
+  /** The 64-bit FNV-1a offset basis and prime. */
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** The fingerprints of each kind of element, in InputAdapter order. */
+  final long[] actors;
+  final long[] classBlocks;
+  final int activationBlockCount;
+  final long[] lifelines;
+  final long[] methods;
+  final long[] constraints;
+  final long[] loops;
+  final long[] alternatives;
+
+  /** The size and modification time of the file the manifest describes, when it was written. */
+  private long outputLength;
+  private long outputModified;
+
+  /** The output adapter's state for the file, or null if it has none yet. */
+  private byte[] adapterState;
+
+  /**
+   * Creates a manifest from its fingerprints.
+   *
+   * @author Jesse Primiani
+   */
+  private ExportManifest(final long[] actors, final long[] classBlocks, final int activationBlockCount,
+      final long[] lifelines, final long[] methods, final long[] constraints, final long[] loops,
+      final long[] alternatives) {
+    this.actors = actors;
+    this.classBlocks = classBlocks;
+    this.activationBlockCount = activationBlockCount;
+    this.lifelines = lifelines;
+    this.methods = methods;
+    this.constraints = constraints;
+    this.loops = loops;
+    this.alternatives = alternatives;
+  }
+
+  /**
+   * Fingerprints every element of a diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> diagram is not null.
+   * <br>
+   * <b>Postconditions:</b> Returns a manifest with the diagram's fingerprints, and no file or adapter state.
+   *
+   * @author Jesse Primiani
+   * @param diagram The diagram to fingerprint.
+   * @return The diagram's manifest.
+   * @throws Exception If the diagram can not be read.
+   */
+  static ExportManifest fingerprint(final InputAdapter diagram) throws Exception {
+    long[] actors = new long[diagram.getActorCount()];
+    for (int index = 0; index < actors.length; index++) {
+      actors[index] = hash(hash(FNV_OFFSET, 'A'), diagram.getActorName(index));
+    }
+
+    long[] classBlocks = new long[diagram.getClassBlockCount()];
+    for (int index = 0; index < classBlocks.length; index++) {
+      long print = hash(hash(FNV_OFFSET, 'C'), diagram.getClassBlockInstanceName(index));
+      classBlocks[index] = hash(print, diagram.getClassBlockClassName(index));
+    }
+
+    long[] lifelines = new long[diagram.getLifelineCount()];
+    for (int index = 0; index < lifelines.length; index++) {
+      long print = hash(hash(FNV_OFFSET, 'L'), diagram.getLifelineFromIndex(index));
+      print = hash(print, diagram.getLifelineToIndex(index));
+      lifelines[index] = hash(print, diagram.getLifelineActive(index) ? 1 : 0);
+    }
+
+    long[] methods = new long[diagram.getMethodCount()];
+    for (int index = 0; index < methods.length; index++) {
+      long print = hash(hash(FNV_OFFSET, 'M'), diagram.getMethodFromIndex(index));
+      print = hash(print, diagram.getMethodToIndex(index));
+      methods[index] = hash(print, diagram.getMethodText(index));
+    }
+
+    long[] constraints = new long[diagram.getConstraintCount()];
+    for (int index = 0; index < constraints.length; index++) {
+      constraints[index] = hash(hash(FNV_OFFSET, 'K'), diagram.getConstraintText(index));
+    }
+
+    long[] loops = new long[diagram.getLoopCount()];
+    for (int index = 0; index < loops.length; index++) {
+      loops[index] = hash(hash(FNV_OFFSET, 'O'), diagram.getLoopText(index));
+    }
+
+    long[] alternatives = new long[diagram.getAlternativeCount()];
+    for (int index = 0; index < alternatives.length; index++) {
+      long print = hash(hash(FNV_OFFSET, 'T'), diagram.getAlternativeText(index));
+      alternatives[index] = hash(print, diagram.getAlternativeTextElse(index));
+    }
+
+    return new ExportManifest(actors, classBlocks, diagram.getActivationBlockCount(), lifelines, methods,
+        constraints, loops, alternatives);
+  }
+
+  /**
+   * Checks whether another manifest has the same participants, activation blocks and lifelines, so
+   * that every virtual index refers to the same element in both, and only the methods, constraints,
+   * loops and alternatives may differ.
+   *
+   * @author Jesse Primiani
+   * @param other The manifest to compare with.
+   * @return True if the diagrams' participants, activation blocks and lifelines are the same.
+   */
+  boolean hasSameParticipants(final ExportManifest other) {
+    return java.util.Arrays.equals(actors, other.actors)
+        && java.util.Arrays.equals(classBlocks, other.classBlocks)
+        && activationBlockCount == other.activationBlockCount
+        && java.util.Arrays.equals(lifelines, other.lifelines);
+  }
+
+  /**
+   * Gets the number of leading fingerprints that two arrays have in common.
+   *
+   * @author Jesse Primiani
+   * @param previous The previous export's fingerprints.
+   * @param current The current export's fingerprints.
+   * @return The length of the common prefix.
+   */
+  static int commonPrefix(final long[] previous, final long[] current) {
+    int limit = Math.min(previous.length, current.length);
+    int prefix = 0;
+    while (prefix < limit && previous[prefix] == current[prefix]) prefix++;
+    return prefix;
+  }
+
+  /**
+   * Gets the number of trailing fingerprints that two arrays have in common, not overlapping their common prefix.
+   *
+   * @author Jesse Primiani
+   * @param previous The previous export's fingerprints.
+   * @param current The current export's fingerprints.
+   * @param prefix The length of their common prefix.
+   * @return The length of the common suffix.
+   */
+  static int commonSuffix(final long[] previous, final long[] current, final int prefix) {
+    int limit = Math.min(previous.length, current.length) - prefix;
+    int suffix = 0;
+    while (suffix < limit && previous[previous.length - 1 - suffix] == current[current.length - 1 - suffix]) suffix++;
+    return suffix;
+  }
+
+  /**
+   * Records the file this manifest describes, and the output adapter's state for it.
+   *
+   * @author Jesse Primiani
+   * @param outputFile The saved file.
+   * @param state The output adapter's state, as written by IncrementalOutputAdapter.saveState.
+   */
+  void setOutput(final File outputFile, final byte[] state) {
+    outputLength = outputFile.length();
+    outputModified = outputFile.lastModified();
+    adapterState = state;
+  }
+
+  /**
+   * Checks that the file this manifest describes has not changed since the manifest was written.
+   *
+   * @author Jesse Primiani
+   * @param outputFile The file the manifest describes.
+   * @return True if the file exists, with the size and modification time recorded in the manifest.
+   */
+  boolean describes(final File outputFile) {
+    return adapterState != null && outputFile.isFile()
+        && outputFile.length() == outputLength && outputFile.lastModified() == outputModified;
+  }
+
+  /**
+   * Gets the output adapter's state for the file this manifest describes.
+   *
+   * @author Jesse Primiani
+   * @return The adapter's state, or null if it has none.
+   */
+  byte[] getAdapterState() {
+    return adapterState;
+  }
+
+  /**
+   * Reads a manifest file.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns the manifest, or null if the file does not exist or is not a
+   * manifest of this version, in which case the next export is a full one.
+   *
+   * @author Jesse Primiani
+   * @param manifestFile The manifest file.
+   * @return The manifest, or null.
+   */
+  static ExportManifest read(final File manifestFile) {
+    if (!manifestFile.isFile()) return null;
+
+    // No length in a manifest can exceed the file's size, so a damaged length is caught before it is allocated.
+    long size = manifestFile.length();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+      long outputLength = in.readLong();
+      long outputModified = in.readLong();
+      long[] actors = readArray(in, size);
+      long[] classBlocks = readArray(in, size);
+      int activationBlockCount = in.readInt();
+      long[] lifelines = readArray(in, size);
+      long[] methods = readArray(in, size);
+      long[] constraints = readArray(in, size);
+      long[] loops = readArray(in, size);
+      long[] alternatives = readArray(in, size);
+      byte[] state = new byte[readLength(in, size, 1)];
+      in.readFully(state);
+
+      ExportManifest manifest = new ExportManifest(actors, classBlocks, activationBlockCount, lifelines,
+          methods, constraints, loops, alternatives);
+      manifest.outputLength = outputLength;
+      manifest.outputModified = outputModified;
+      manifest.adapterState = state;
+      return manifest;
+    } catch (IOException | RuntimeException ex) {
+      // A damaged manifest only costs a full export.
+      return null;
+    }
+  }
+
+  /**
+   * Writes the manifest file, replacing it in one step so that a reader never sees a partial manifest.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> setOutput() has been called.
+   * <br>
+   * <b>Postconditions:</b> The manifest file holds this manifest.
+   *
+   * @author Jesse Primiani
+   * @param manifestFile The manifest file.
+   * @throws IOException On a write error.
+   */
+  void write(final File manifestFile) throws IOException {
+    File directory = manifestFile.getAbsoluteFile().getParentFile();
+    File stagedFile = File.createTempFile("." + manifestFile.getName() + "-", ".part", directory);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stagedFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(outputLength);
+        out.writeLong(outputModified);
+        writeArray(out, actors);
+        writeArray(out, classBlocks);
+        out.writeInt(activationBlockCount);
+        writeArray(out, lifelines);
+        writeArray(out, methods);
+        writeArray(out, constraints);
+        writeArray(out, loops);
+        writeArray(out, alternatives);
+        out.writeInt(adapterState.length);
+        out.write(adapterState);
+      }
+      try {
+        Files.move(stagedFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(stagedFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(stagedFile.toPath());
+    }
+  }
+
+  /**
+   * Reads a length-prefixed array of fingerprints.
+   *
+   * @author Jesse Primiani
+   * @param in The stream to read.
+   * @param size The manifest file's size, in bytes.
+   * @return The fingerprints.
+   * @throws IOException On a read error, or a length that does not fit in the file.
+   */
+  private static long[] readArray(final DataInputStream in, final long size) throws IOException {
+    int length = readLength(in, size, Long.BYTES);
+    long[] array = new long[length];
+    for (int index = 0; index < length; index++) {
+      array[index] = in.readLong();
+    }
+    return array;
+  }
+
+  /**
+   * Reads the length of an array, checking that an array of that length fits in the manifest file.
+   *
+   * @author Jesse Primiani
+   * @param in The stream to read.
+   * @param size The manifest file's size, in bytes.
+   * @param elementSize The size of each of the array's elements, in bytes.
+   * @return The length.
+   * @throws IOException On a read error, or a negative length or one that does not fit in the file.
+   */
+  private static int readLength(final DataInputStream in, final long size, final int elementSize) throws IOException {
+    int length = in.readInt();
+    if (length < 0) throw new IOException("Negative array length in manifest");
+    if (length > size / elementSize) throw new IOException("Array length in manifest exceeds the file's size");
+    return length;
+  }
+
+  /**
+   * Writes a length-prefixed array of fingerprints.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write.
+   * @param array The fingerprints.
+   * @throws IOException On a write error.
+   */
+  private static void writeArray(final DataOutputStream out, final long[] array) throws IOException {
+    out.writeInt(array.length);
+    for (long print : array) {
+      out.writeLong(print);
+    }
+  }
+
+  /**
+   * Adds a string to an FNV-1a hash, followed by a separator so that adjacent strings can not run together.
+   *
+   * @author Jesse Primiani
+   * @param hash The hash so far.
+   * @param text The string to add; null is hashed as an empty string.
+   * @return The new hash.
+   */
+  private static long hash(long hash, final String text) {
+    if (text != null) {
+      for (int index = 0; index < text.length(); index++) {
+        char c = text.charAt(index);
+        hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+        hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+      }
+    }
+    // 0xFFFF is not a character, so it can not appear in the text.
+    hash = (hash ^ 0xff) * FNV_PRIME;
+    return (hash ^ 0xff) * FNV_PRIME;
+  }
+
+  /**
+   * Adds an int to an FNV-1a hash, one byte at a time.
+   *
+   * @author Jesse Primiani
+   * @param hash The hash so far.
+   * @param value The int to add.
+   * @return The new hash.
+   */
+  private static long hash(long hash, final int value) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+}
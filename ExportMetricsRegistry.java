@@ -0,0 +1,26 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * Receives the measurements of each export performed by an SDMtoFile object, 
+ * so that they can be aggregated across many exports, such as across a batch.
+ * <br>
+ * Implementations may be called from several export threads at once, so they must be thread-safe.
+ * 
+ * @author Jesse Primiani
+ */
+public interface ExportMetricsRegistry {
+  
+  /**
+   * Records the measurements of a completed export.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> stats is not null, and is not modified after this call.
+   * <br>
+   * <b>Postconditions:</b> The measurements are included in the registry's aggregates.
+   * 
+   * @author Jesse Primiani
+   * @param stats The measurements of one export.
+   */
+  public void recordExport(ExportStats stats);
+
+}
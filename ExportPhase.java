@@ -0,0 +1,26 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * The phases of an export performed by SDMtoFile, in the order they run. 
+ * READ copies the InputAdapter into a SequenceDiagramModel, and runs only for a 
+ * cached export, whose key and elements are read from that model. Each element 
+ * phase adds every element of one kind to the output adapter.
+ * 
+ * @author Jesse Primiani
+ */
+public enum ExportPhase {
+  
+  READ,
+  INITIALIZE,
+  ACTORS,
+  CLASS_BLOCKS,
+  ACTIVATION_BLOCKS,
+  LIFELINES,
+  METHODS,
+  CONSTRAINTS,
+  LOOPS,
+  ALTERNATIVES,
+  FINALIZE,
+  SAVE
+
+}
@@ -0,0 +1,101 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * The outcome of one ExportJob in a batch export: whether it succeeded, 
+ * the exception it failed with if not, how long it took, and the export's measurements.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The job attribute is not null. <br>
+ *     The failure attribute is null exactly when the job succeeded. <br>
+ *     The stats attribute is not null exactly when the job succeeded. <br>
+ * 
+ * @author Jesse Primiani
+ */
+public class ExportResult {
+  
+  /** The job this result is for. */
+  private final ExportJob job;
+  
+  /** The measurements of the export, or null if the export failed. */
+  private final ExportStats stats;
+  
+  /** The exception that stopped the export, or null if the export succeeded. */
+  private final Exception failure;
+  
+  /** The time taken to export the job, in nanoseconds. */
+  private final long elapsedNanos;
+  
+  /**
+   * Creates an export result.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> job must not be null.
+   * <br>
+   * <b>Postconditions:</b> Creates an ExportResult with the given attributes.
+   * 
+   * @author Jesse Primiani
+   * @param job The job this result is for.
+   * @param stats The measurements of the export, or null on failure.
+   * @param failure The exception that stopped the export, or null on success.
+   * @param elapsedNanos The time taken to export the job, in nanoseconds.
+   */
+  ExportResult(final ExportJob job, final ExportStats stats, final Exception failure, final long elapsedNanos) {
+    this.job = job;
+    this.stats = stats;
+    this.failure = failure;
+    this.elapsedNanos = elapsedNanos;
+  }
+  
+  /**
+   * Gets the job this result is for.
+   * 
+   * @author Jesse Primiani
+   * @return The job this result is for.
+   */
+  public ExportJob getJob() {
+    return job;
+  }
+  
+  /**
+   * Gets whether the job's file was exported.
+   * 
+   * @author Jesse Primiani
+   * @return True if the export succeeded.
+   */
+  public boolean isSucceeded() {
+    return failure == null;
+  }
+  
+  /**
+   * Gets the measurements of the export: the time and allocation of each phase, 
+   * the element counts, and the saved file's size.
+   * 
+   * @author Jesse Primiani
+   * @return The export's measurements, or null if it failed.
+   */
+  public ExportStats getStats() {
+    return stats;
+  }
+  
+  /**
+   * Gets the exception that stopped the export.
+   * 
+   * @author Jesse Primiani
+   * @return The exception that stopped the export, or null if it succeeded.
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+  
+  /**
+   * Gets the time taken to export the job.
+   * 
+   * @author Jesse Primiani
+   * @return The time taken to export the job, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+}
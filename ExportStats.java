@@ -0,0 +1,314 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The measurements taken during one export performed by SDMtoFile: the wall-clock time
+ * and heap allocation of each ExportPhase, the number of elements added in each phase,
+ * and the size of the saved file.
+ * <br>
+ * Allocation is measured per thread, using the HotSpot extension of ThreadMXBean. It is
+ * reported as -1 when the run-time can not measure it, such as on a virtual thread.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Each per-phase array has one entry per ExportPhase, indexed by ordinal. <br>
+ *     Once returned by SDMtoFile, an ExportStats object is not modified. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class ExportStats {
+
+  /** The HotSpot thread bean used to measure allocation, or null if allocation can not be measured. */
+  private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+  /** The wall-clock time of each phase, in nanoseconds. */
+  private final long[] phaseNanos = new long[ExportPhase.values().length];
+
+  /** The bytes allocated by each phase, or -1 where allocation could not be measured. */
+  private final long[] phaseAllocatedBytes = new long[ExportPhase.values().length];
+
+  /** The number of elements added in each phase. */
+  private final int[] elementCounts = new int[ExportPhase.values().length];
+
+  /** Whether each phase ran. A cache hit only runs the save phase, and an incremental update skips the participant phases. */
+  private final boolean[] phaseRan = new boolean[ExportPhase.values().length];
+
+  /** The total wall-clock time of the export, in nanoseconds. */
+  private long totalNanos;
+
+  /** The full name of the saved file, or null if the export was written to a stream or did not reach the save phase. */
+  private String fileName;
+
+  /** The size of the saved file, or the bytes written to a stream, or -1 if it is not known. */
+  private long outputBytes = -1;
+
+  /** Whether the saved file was published from an ExportCache, without running the output adapter. */
+  private boolean fromCache;
+
+  /** The error that kept the saved file out of the ExportCache, or null if it was added or there is no cache. */
+  private IOException cacheFailure;
+
+  /** The System.nanoTime() value when the export started. */
+  private long exportStartNanos;
+
+  /** The System.nanoTime() value when the running phase started. */
+  private long phaseStartNanos;
+
+  /** The thread's allocated byte count when the running phase started, or -1. */
+  private long phaseStartBytes;
+
+  /**
+   * Creates an empty set of measurements. Only SDMtoFile records into an ExportStats object.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an ExportStats object with every measurement at zero,
+   * and the output size unknown.
+   *
+   * @author Jesse Primiani
+   */
+  ExportStats() {}
+
+  /**
+   * Records the start of the export.
+   *
+   * @author Jesse Primiani
+   */
+  void exportStarted() {
+    exportStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Records the start of a phase, on the thread that runs it.
+   *
+   * @author Jesse Primiani
+   */
+  void phaseStarted() {
+    phaseStartBytes = currentThreadAllocatedBytes();
+    phaseStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Records the end of a phase, on the thread that started it.
+   *
+   * @author Jesse Primiani
+   * @param phase The phase that finished.
+   * @param count The number of elements added in the phase.
+   */
+  void phaseFinished(final ExportPhase phase, final int count) {
+    long endNanos = System.nanoTime();
+    long endBytes = currentThreadAllocatedBytes();
+
+    int index = phase.ordinal();
+    phaseNanos[index] = endNanos - phaseStartNanos;
+    phaseAllocatedBytes[index] = (phaseStartBytes < 0 || endBytes < 0) ? -1 : endBytes - phaseStartBytes;
+    elementCounts[index] = count;
+    phaseRan[index] = true;
+  }
+
+  /**
+   * Records the saved file, and the end of the export.
+   *
+   * @author Jesse Primiani
+   * @param savedFile The full name of the saved file.
+   */
+  void exportFinished(final String savedFile) {
+    totalNanos = System.nanoTime() - exportStartNanos;
+    fileName = savedFile;
+    if (savedFile != null) {
+      File file = new File(savedFile);
+      outputBytes = file.isFile() ? file.length() : -1;
+    }
+  }
+
+  /**
+   * Records the end of an export that was written to a stream rather than saved to a file.
+   *
+   * @author Jesse Primiani
+   * @param bytesWritten The number of bytes written to the stream.
+   */
+  void exportFinished(final long bytesWritten) {
+    totalNanos = System.nanoTime() - exportStartNanos;
+    outputBytes = bytesWritten;
+  }
+
+  /**
+   * Records that the saved file was published from an ExportCache.
+   *
+   * @author Jesse Primiani
+   */
+  void cacheHit() {
+    fromCache = true;
+  }
+
+  /**
+   * Records that the saved file could not be added to the ExportCache. The export itself succeeded.
+   *
+   * @author Jesse Primiani
+   * @param failure The error the cache threw.
+   */
+  void cacheFailed(final IOException failure) {
+    cacheFailure = failure;
+  }
+
+  /**
+   * Gets whether a phase ran during the export. The measurements of a phase that did not run are all 0.
+   *
+   * @author Jesse Primiani
+   * @param phase The phase to check.
+   * @return True if the phase ran.
+   */
+  public boolean hasPhaseRun(final ExportPhase phase) {
+    return phaseRan[phase.ordinal()];
+  }
+
+  /**
+   * Gets the wall-clock time of a phase.
+   *
+   * @author Jesse Primiani
+   * @param phase The phase to get the time of.
+   * @return The phase's time, in nanoseconds, or 0 if it did not run.
+   */
+  public long getPhaseNanos(final ExportPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * Gets the heap memory allocated by a phase, on the thread running the export.
+   *
+   * @author Jesse Primiani
+   * @param phase The phase to get the allocation of.
+   * @return The bytes allocated by the phase, or -1 if allocation could not be measured.
+   */
+  public long getPhaseAllocatedBytes(final ExportPhase phase) {
+    return phaseAllocatedBytes[phase.ordinal()];
+  }
+
+  /**
+   * Gets the number of elements added in a phase. This is 0 for the initialize, finalize and save phases.
+   *
+   * @author Jesse Primiani
+   * @param phase The phase to get the element count of.
+   * @return The number of elements added in the phase.
+   */
+  public int getElementCount(final ExportPhase phase) {
+    return elementCounts[phase.ordinal()];
+  }
+
+  /**
+   * Gets the number of elements added across every phase.
+   *
+   * @author Jesse Primiani
+   * @return The diagram's total element count.
+   */
+  public int getTotalElementCount() {
+    int total = 0;
+    for (int count : elementCounts) total += count;
+    return total;
+  }
+
+  /**
+   * Gets the total wall-clock time of the export, including the time between phases.
+   *
+   * @author Jesse Primiani
+   * @return The export's time, in nanoseconds.
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * Gets the heap memory allocated across every phase.
+   *
+   * @author Jesse Primiani
+   * @return The bytes allocated by the export, or -1 if allocation could not be measured.
+   */
+  public long getTotalAllocatedBytes() {
+    long total = 0;
+    for (long bytes : phaseAllocatedBytes) {
+      if (bytes < 0) return -1;
+      total += bytes;
+    }
+    return total;
+  }
+
+  /**
+   * Gets the full name of the saved file.
+   *
+   * @author Jesse Primiani
+   * @return The saved file's name, including its path and extension, or null if the export was written to a stream.
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Gets the size of the saved file.
+   *
+   * @author Jesse Primiani
+   * @return The saved file's size, or the bytes written to a stream, or -1 if it is not known.
+   */
+  public long getOutputBytes() {
+    return outputBytes;
+  }
+
+  /**
+   * Gets whether the saved file was published from an ExportCache, in which case only the save phase ran.
+   *
+   * @author Jesse Primiani
+   * @return True if the export was a cache hit.
+   */
+  public boolean isFromCache() {
+    return fromCache;
+  }
+
+  /**
+   * Gets the error that kept the saved file out of the ExportCache, such as a full or unwritable cache 
+   * directory. Adding to the cache is best-effort, so the export still succeeded, and the next export 
+   * of the same content runs the output adapter again.
+   *
+   * @author Jesse Primiani
+   * @return The cache's error, or null if the file was added to the cache, or no cache was used.
+   */
+  public IOException getCacheFailure() {
+    return cacheFailure;
+  }
+
+  /**
+   * Gets the number of bytes allocated so far by the current thread.
+   *
+   * @author Jesse Primiani
+   * @return The current thread's allocated byte count, or -1 if it can not be measured.
+   */
+  private static long currentThreadAllocatedBytes() {
+    if (ALLOCATION_BEAN == null) return -1;
+    return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Gets the HotSpot thread bean, if the run-time has one that measures allocation.
+   *
+   * @author Jesse Primiani
+   * @return The thread bean, or null if allocation can not be measured.
+   */
+  private static com.sun.management.ThreadMXBean getAllocationBean() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+        if (hotSpotBean.isThreadAllocatedMemorySupported() && hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+          return hotSpotBean;
+        }
+      }
+    } catch (LinkageError | RuntimeException ex) {
+      // The com.sun.management extension is not available on this run-time.
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,61 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * One output format of a fan-out export, pairing the output type of the file
+ * with the output adapter that builds it.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     No attributes are null. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class ExportTarget {
+  
+  /** The object containing the output file's type information. */
+  private final OutputType<?> fileType;
+  
+  /** The concrete object that builds the output data structure and saves it to a file. */
+  private final OutputAdapter outputAdapter;
+  
+  /**
+   * Creates an export target.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an ExportTarget with the given type and adapter.
+   *
+   * @author Jesse Primiani
+   * @param type An object containing the output file's type information.
+   * @param adapter The concrete object containing information for file output.
+   * @throws SDMException on a null type or null adapter.
+   */
+  public ExportTarget(final OutputType<?> type, final OutputAdapter adapter) throws SDMException {
+    if (type == null) throw new SDMException("Null 'type' parameter in: ExportTarget constructor");
+    if (adapter == null) throw new SDMException("Null 'adapter' parameter in: ExportTarget constructor");
+    this.fileType = type;
+    this.outputAdapter = adapter;
+  }
+  
+  /**
+   * Gets the output file's type.
+   *
+   * @author Jesse Primiani
+   * @return The object containing the output file's type information.
+   */
+  public OutputType<?> getType() {
+    return fileType;
+  }
+  
+  /**
+   * Gets the output adapter.
+   *
+   * @author Jesse Primiani
+   * @return The concrete object that builds and saves the output file.
+   */
+  public OutputAdapter getAdapter() {
+    return outputAdapter;
+  }
+
+}
@@ -0,0 +1,37 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * An OutputAdapter that can reopen a file it saved and update only the elements that changed,
+ * used by SDMtoFile.exportFileIncremental.
+ * <br>
+ * saveState returns what the adapter needs to reopen the diagram it just saved, such as the ID of
+ * each element's shape, and SDMtoFile keeps it in the file's manifest, or null if the diagram can
+ * not be reopened, in which case the next export is a full one. openDiagram loads the file
+ * with that state in place of initializeDiagram, leaving the adapter as it was before finalizeDiagram
+ * was called for the saved diagram. canOpenDiagram returns false when the adapter's settings would
+ * build the diagram differently, such as split into pages, and SDMtoFile then exports it in full.
+ * <br>
+ * Each replace method removes removeCount elements of its kind, starting at the start'th, and puts
+ * the given elements in their place, in order. Participants, activation blocks and lifelines are
+ * never replaced: if they change, SDMtoFile exports the whole diagram again, so every virtual index
+ * refers to the same element before and after an update. Parallel arrays must be the same length.
+ *
+ * See a concrete implementation for method-specific comments.
+ *
+ * @author Jesse Primiani
+ */
+public interface IncrementalOutputAdapter extends OutputAdapter {
+
+  public void openDiagram(String fileName, byte[] state) throws Exception;
+  public byte[] saveState() throws Exception;
+
+  public default boolean canOpenDiagram() {
+    return true;
+  }
+
+  public void replaceMethods(int start, int removeCount, int[] fromIndices, int[] toIndices, String[] texts) throws Exception;
+  public void replaceConstraints(int start, int removeCount, String[] texts) throws Exception;
+  public void replaceLoops(int start, int removeCount, String[] texts) throws Exception;
+  public void replaceAlternatives(int start, int removeCount, String[] texts, String[] textsElse) throws Exception;
+
+}
@@ -0,0 +1,142 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from int keys to long values, used by the adapters
+ * to relate element IDs to virtual indices without boxing either side.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The table length is a power of two, and at most half of its slots are used. <br>
+ *     A slot is empty exactly when its value is MISSING. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class IndexMap {
+
+  /** Returned by get() when a key is not in the map. This value can not be stored in the map. */
+  static final long MISSING = Long.MIN_VALUE;
+
+  /** The keys of the used slots. */
+  private int[] keys;
+
+  /** The values of each slot, with MISSING marking an empty slot. */
+  private long[] values;
+
+  /** The number of used slots. */
+  private int size;
+
+  /**
+   * Creates an empty map sized for the expected number of keys.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> An empty map is created that holds expectedSize keys without resizing.
+   *
+   * @author Jesse Primiani
+   * @param expectedSize The number of keys expected to be added.
+   */
+  IndexMap(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) capacity <<= 1;
+
+    keys = new int[capacity];
+    values = new long[capacity];
+    Arrays.fill(values, MISSING);
+  }
+
+  /**
+   * Relates a key to a value, replacing any value the key had.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> value must not be MISSING.
+   * <br>
+   * <b>Postconditions:</b> get(key) returns value.
+   *
+   * @author Jesse Primiani
+   * @param key The key, such as an element ID.
+   * @param value The value, such as a virtual index.
+   * @throws IllegalArgumentException If value is MISSING.
+   */
+  void put(int key, long value) {
+    if (value == MISSING) throw new IllegalArgumentException("MISSING can not be stored in an IndexMap");
+
+    int slot = slotOf(key, keys, values);
+    if (values[slot] == MISSING) {
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+
+    if (size * 2 > keys.length) resize();
+  }
+
+  /**
+   * Gets the value related to a key, in a single probe sequence.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns the key's value, or MISSING if the key was never added.
+   *
+   * @author Jesse Primiani
+   * @param key The key to look up.
+   * @return The key's value, or MISSING.
+   */
+  long get(int key) {
+    return values[slotOf(key, keys, values)];
+  }
+
+  /**
+   * Gets the number of keys in the map.
+   *
+   * @author Jesse Primiani
+   * @return The number of keys in the map.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Finds the slot holding a key, or the empty slot where it would be added, using linear probing.
+   *
+   * @author Jesse Primiani
+   * @param key The key to find.
+   * @param keyTable The table of keys to search.
+   * @param valueTable The table of values, marking which slots are used.
+   * @return The slot's index.
+   */
+  private static int slotOf(int key, int[] keyTable, long[] valueTable) {
+    int mask = keyTable.length - 1;
+    int hash = key * 0x9E3779B9;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (valueTable[slot] != MISSING && keyTable[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Doubles the table size, re-adding every used slot.
+   *
+   * @author Jesse Primiani
+   */
+  private void resize() {
+    int[] newKeys = new int[keys.length * 2];
+    long[] newValues = new long[values.length * 2];
+    Arrays.fill(newValues, MISSING);
+
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (values[slot] == MISSING) continue;
+      int newSlot = slotOf(keys[slot], newKeys, newValues);
+      newKeys[newSlot] = keys[slot];
+      newValues[newSlot] = values[slot];
+    }
+
+    keys = newKeys;
+    values = newValues;
+  }
+
+}
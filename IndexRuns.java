@@ -0,0 +1,134 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Gives out virtual indices to elements of several kinds, and finds the kind and 
+ * per-kind position (column) of any virtual index given out.
+ * <br>
+ * Only the start of each run of same-kind elements is stored, so the streaming output 
+ * adapters can place the ends of a connection without a table of every element. 
+ * SDMtoFile adds each kind in a single run, so the memory used does not grow with the diagram.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     runStarts holds runCount increasing virtual indices, the first being 0. <br>
+ *     Consecutive runs have different kinds. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class IndexRuns {
+  
+  /** The first virtual index of each run, and the run's kind and first column. */
+  private int[] runStarts = new int[4];
+  private int[] runKinds = new int[4];
+  private int[] runColumns = new int[4];
+  private int runCount;
+  
+  /** The number of elements given an index, of each kind. */
+  private final int[] kindCounts;
+  
+  /** The next virtual index to be given out. */
+  private int size;
+  
+  /**
+   * Creates an empty set of runs.
+   * 
+   * @author Jesse Primiani
+   * @param kinds The number of element kinds, which are numbered from 0.
+   */
+  IndexRuns(final int kinds) {
+    kindCounts = new int[kinds];
+  }
+  
+  /**
+   * Gives out the next virtual index to an element, recording a new run if its kind differs from the last.
+   * 
+   * @author Jesse Primiani
+   * @param kind The element's kind.
+   * @return The element's virtual index.
+   */
+  int add(final int kind) {
+    if (runCount == 0 || runKinds[runCount - 1] != kind) {
+      if (runCount == runStarts.length) {
+        runStarts = Arrays.copyOf(runStarts, runCount * 2);
+        runKinds = Arrays.copyOf(runKinds, runCount * 2);
+        runColumns = Arrays.copyOf(runColumns, runCount * 2);
+      }
+      runStarts[runCount] = size;
+      runKinds[runCount] = kind;
+      runColumns[runCount] = kindCounts[kind];
+      runCount++;
+    }
+    kindCounts[kind]++;
+    return size++;
+  }
+  
+  /**
+   * Gets the kind of the element at a virtual index.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's kind.
+   */
+  int kindOf(final int virtualIndex) {
+    return runKinds[runOf(virtualIndex)];
+  }
+  
+  /**
+   * Gets the column of the element at a virtual index: the number of elements of its kind added before it.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's column.
+   */
+  int columnOf(final int virtualIndex) {
+    int run = runOf(virtualIndex);
+    return runColumns[run] + virtualIndex - runStarts[run];
+  }
+  
+  /**
+   * Gets the number of elements of a kind.
+   * 
+   * @author Jesse Primiani
+   * @param kind The kind to count.
+   * @return The number of elements of that kind.
+   */
+  int getCount(final int kind) {
+    return kindCounts[kind];
+  }
+  
+  /**
+   * Gets the number of virtual indices given out.
+   * 
+   * @author Jesse Primiani
+   * @return The next virtual index.
+   */
+  int size() {
+    return size;
+  }
+  
+  /**
+   * Removes every run, so that virtual indices are given out from 0 again.
+   * 
+   * @author Jesse Primiani
+   */
+  void clear() {
+    runCount = 0;
+    size = 0;
+    Arrays.fill(kindCounts, 0);
+  }
+  
+  /**
+   * Finds the run holding a virtual index.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The run's position in the runs arrays.
+   */
+  private int runOf(final int virtualIndex) {
+    int run = Arrays.binarySearch(runStarts, 0, runCount, virtualIndex);
+    return (run >= 0) ? run : -run - 2;
+  }
+
+}
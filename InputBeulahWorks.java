@@ -1,8 +1,8 @@
 package com.beulahworks.SDMfileGenerator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import edu.purdue.cs59000.umltranslator.*;
 import edu.purdue.cs59000.umltranslator.message.*;
@@ -30,12 +30,57 @@ public class InputBeulahWorks implements InputAdapter {
   /** This contains the data structures to read from, as given in the Beulah Works SDM package. */
   private UMLSequenceDiagram diagram;
 
+  /** The diagram's actor symbols, in input order. Index i here is actor index i in the getters. */
+  private UMLActor[] actors;
+
+  /** The diagram's class (object) symbols, in input order. */
+  private UMLClass[] classes;
+
+  /** The diagram's activation box (process) symbols, in input order. */
+  private UMLActivationBox[] activationBoxes;
+
+  /** The diagram's life-line symbols, in input order. */
+  private UMLLifeline[] lifelines;
+
+  /** The diagram's message (method) symbols, in input order. */
+  private UMLMessage[] messages;
+
+  /** The diagram's condition (constraint) symbols, in input order. */
+  private UMLCondition[] conditions;
+
+  /** The diagram's loop symbols, in input order. */
+  private UMLLoop[] loops;
+
+  /** The diagram's alternative (if-else) symbols, in input order. */
+  private UMLAlternatives[] alternatives;
+
   /** A 'virtual index map', used to relate the index of an element in the input model to an 
    *  element in the output library, via the relative order of the element. To do so, this map 
    *  stores the input library's element's ID as the key, and the virtual index, which refers to 
    *  the same element in both input and output libraries, as the value.
    */
-  private HashMap<Integer, Integer> virtualIndices;
+  private IndexMap virtualIndices;
+  
+  /** Stored in place of a resolved virtual index when the element has no source or destination. */
+  private static final int NO_ENDPOINT = -1;
+  
+  /** Stored in place of a resolved virtual index when the source or destination has no virtual index. */
+  private static final int UNINDEXED_ENDPOINT = -2;
+  
+  /** Stored in place of a resolved virtual index when more than one symbol claims the element as its source. */
+  private static final int AMBIGUOUS_ENDPOINT = -3;
+  
+  /** The virtual index of each life-line's starting element, resolved once in the constructor, or a negative code. */
+  private int[] lifelineFromIndices;
+  
+  /** The virtual index of each life-line's ending element, resolved once in the constructor, or a negative code. */
+  private int[] lifelineToIndices;
+  
+  /** The virtual index of each message's starting element, resolved once in the constructor, or a negative code. */
+  private int[] methodFromIndices;
+  
+  /** The virtual index of each message's ending element, resolved once in the constructor, or a negative code. */
+  private int[] methodToIndices;
   
   /**
    * Private default constructor.
@@ -59,37 +104,122 @@ public class InputBeulahWorks implements InputAdapter {
     if (diagram == null) throw new SDMException("Null 'diagram' parameter in: InputBeulahWorks constructor");
     this.diagram = diagram;
 
+    // Sort the symbols into per-kind snapshots in a single pass, keeping their relative order.
+    // A symbol is checked against every kind, as the stream filters previously did.
+    List<UMLActor> actorList = new ArrayList<UMLActor>();
+    List<UMLClass> classList = new ArrayList<UMLClass>();
+    List<UMLActivationBox> procList = new ArrayList<UMLActivationBox>();
+    List<UMLLifeline> lifelineList = new ArrayList<UMLLifeline>();
+    List<UMLMessage> messageList = new ArrayList<UMLMessage>();
+    List<UMLCondition> conditionList = new ArrayList<UMLCondition>();
+    List<UMLLoop> loopList = new ArrayList<UMLLoop>();
+    List<UMLAlternatives> alternativeList = new ArrayList<UMLAlternatives>();
+    
+    // A reverse adjacency index, relating a source symbol's ID to every symbol that names it as its source.
+    HashMap<Integer, List<UMLSymbol>> dependents = new HashMap<Integer, List<UMLSymbol>>();
+    
+    for (UMLSymbol symbol : diagram.getUMLSymbols()) {
+      if (symbol.getSource() != null) {
+        List<UMLSymbol> sourceDependents = dependents.get(symbol.getSource().getId());
+        if (sourceDependents == null) {
+          sourceDependents = new ArrayList<UMLSymbol>(1);
+          dependents.put(symbol.getSource().getId(), sourceDependents);
+        }
+        sourceDependents.add(symbol);
+      }
+      
+      if (symbol instanceof UMLActor) actorList.add((UMLActor) symbol);
+      if (symbol instanceof UMLClass) classList.add((UMLClass) symbol);
+      if (symbol instanceof UMLActivationBox) procList.add((UMLActivationBox) symbol);
+      if (symbol instanceof UMLLifeline) lifelineList.add((UMLLifeline) symbol);
+      if (symbol instanceof UMLMessage) messageList.add((UMLMessage) symbol);
+      if (symbol instanceof UMLCondition) conditionList.add((UMLCondition) symbol);
+      if (symbol instanceof UMLLoop) loopList.add((UMLLoop) symbol);
+      if (symbol instanceof UMLAlternatives) alternativeList.add((UMLAlternatives) symbol);
+    }
+    
+    actors = actorList.toArray(new UMLActor[actorList.size()]);
+    classes = classList.toArray(new UMLClass[classList.size()]);
+    activationBoxes = procList.toArray(new UMLActivationBox[procList.size()]);
+    lifelines = lifelineList.toArray(new UMLLifeline[lifelineList.size()]);
+    messages = messageList.toArray(new UMLMessage[messageList.size()]);
+    conditions = conditionList.toArray(new UMLCondition[conditionList.size()]);
+    loops = loopList.toArray(new UMLLoop[loopList.size()]);
+    alternatives = alternativeList.toArray(new UMLAlternatives[alternativeList.size()]);
+
     // Setup the virtual index map.
-    virtualIndices = new HashMap<Integer, Integer>();
+    virtualIndices = new IndexMap(actors.length + classes.length + activationBoxes.length + lifelines.length);
     int nextVirtualIndex = 0;
     
     // Add actor IDs to the virtual index map.
-    List<UMLSymbol> actors = diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLActor).collect(Collectors.toList());
     for (UMLSymbol actor : actors) {
       virtualIndices.put(actor.getId(), nextVirtualIndex);
       nextVirtualIndex++;
     }
     
     // Add class IDs to the virtual index map.
-    List<UMLSymbol> classes = diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLClass).collect(Collectors.toList());
     for (UMLSymbol getClass : classes) {
       virtualIndices.put(getClass.getId(), nextVirtualIndex);
       nextVirtualIndex++;
     }
     
     // Add activation block IDs to the virtual index map.
-    List<UMLSymbol> procs = diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLActivationBox).collect(Collectors.toList());
-    for (UMLSymbol proc : procs) {
+    for (UMLSymbol proc : activationBoxes) {
       virtualIndices.put(proc.getId(), nextVirtualIndex);
       nextVirtualIndex++;
     }
     
     // Add life-line IDs to the virtual index map.
-    List<UMLSymbol> lifelines = diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLLifeline).collect(Collectors.toList());
     for (UMLSymbol lifeline : lifelines) {
       virtualIndices.put(lifeline.getId(), nextVirtualIndex);
       nextVirtualIndex++;
     }
+    
+    // Resolve every life-line's endpoints. A life-line's destination is the symbol whose source 
+    // is the life-line, found through the reverse adjacency index rather than a scan of all symbols.
+    lifelineFromIndices = new int[lifelines.length];
+    lifelineToIndices = new int[lifelines.length];
+    for (int index = 0; index < lifelines.length; index++) {
+      lifelineFromIndices[index] = resolveVirtualIndex(lifelines[index].getSource());
+      
+      List<UMLSymbol> destinations = dependents.get(lifelines[index].getId());
+      if (destinations == null) {
+        lifelineToIndices[index] = NO_ENDPOINT;
+      } else if (destinations.size() > 1) {
+        lifelineToIndices[index] = AMBIGUOUS_ENDPOINT;
+      } else {
+        lifelineToIndices[index] = resolveVirtualIndex(destinations.get(0));
+      }
+    }
+    
+    // Resolve every message's endpoints.
+    methodFromIndices = new int[messages.length];
+    methodToIndices = new int[messages.length];
+    for (int index = 0; index < messages.length; index++) {
+      methodFromIndices[index] = resolveVirtualIndex(messages[index].getSource());
+      methodToIndices[index] = resolveVirtualIndex(messages[index].getDestination());
+    }
+  }
+  
+  /**
+   * Gets the virtual index of an element's source or destination symbol.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The virtual index map has been filled.
+   * <br>
+   * <b>Postconditions:</b> Returns the symbol's virtual index, NO_ENDPOINT for a null symbol, 
+   * or UNINDEXED_ENDPOINT for a symbol without a virtual index.
+   * 
+   * @author Jesse Primiani
+   * @param symbol The source or destination symbol, possibly null.
+   * @return The symbol's virtual index, or a negative code.
+   */
+  private int resolveVirtualIndex(final UMLSymbol symbol) {
+    if (symbol == null) return NO_ENDPOINT;
+    
+    long virtualIndex = virtualIndices.get(symbol.getId());
+    if (virtualIndex == IndexMap.MISSING) return UNINDEXED_ENDPOINT;
+    return (int) virtualIndex;
   }
   
   /**
@@ -104,8 +234,8 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of actor elements in the diagram.
    */
   public int getActorCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLActor
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLActor).collect(Collectors.toList()).size();
+	  // Read from the actor snapshot built in the constructor
+	  return actors.length;
   }
   
   /**
@@ -125,8 +255,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getActorName(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getActorName' method");
       
-	  // Filters list via the use of lambdas, then get it's the index of the object before casting it to UMLActor
-	  String name = ((UMLActor)(diagram.getUMLSymbols().stream().filter(p -> p instanceof UMLActor).collect(Collectors.toList()).get(index))).getName();
+	  String name = actors[index].getName();
 	  if (name == null) name = "";
       return name;
   }
@@ -143,8 +272,8 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of object elements in the diagram.
    */
   public int getClassBlockCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLClass
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLClass).collect(Collectors.toList()).size();
+	  // Read from the class snapshot built in the constructor
+	  return classes.length;
   }
   
   /**
@@ -165,8 +294,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getClassBlockInstanceName(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getClassBlockInstanceName' method");
       
-	  // Filters list via the use of lambdas, then get it's the index of the object before casting it to UMLClass
-	  String name = ((UMLClass)(diagram.getUMLSymbols().stream().filter(p -> p instanceof UMLClass).collect(Collectors.toList()).get(index))).getInstanceName();
+	  String name = classes[index].getInstanceName();
 	  if (name == null) name = "";
       return name;
   }
@@ -189,8 +317,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getClassBlockClassName(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getClassBlockClassName' method");
     
-	  // Filters list via the use of lambdas, then get it's the index of the object before casting it to UMLClass
-	  String name = ((UMLClass)(diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLClass).collect(Collectors.toList()).get(index))).getClassName();
+	  String name = classes[index].getClassName();
 	  if (name == null) name = "";
       return name;
   }
@@ -207,8 +334,8 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of activation block elements in the diagram.
    */
   public int getActivationBlockCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLActivationBox
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLActivationBox).collect(Collectors.toList()).size();
+	  // Read from the activation box snapshot built in the constructor
+	  return activationBoxes.length;
   }
   
   /**
@@ -223,8 +350,8 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of lifelines in the diagram.
    */
   public int getLifelineCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLLifeline
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLLifeline).collect(Collectors.toList()).size();
+	  // Read from the life-line snapshot built in the constructor
+	  return lifelines.length;
   }
   
   /**
@@ -246,20 +373,17 @@ public class InputBeulahWorks implements InputAdapter {
     
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getLifelineFromIndex' method");
       
-	  // Filters list (of UMLLifeline) via the use of lambdas, then get it's the source of the object at index
-	  // Then proceeds to get the id of the parent (source) and find a match against the whole list of UMLSymbols
+	  // Read the source's virtual index, resolved in the constructor
+	  int fromIndex = lifelineFromIndices[index];
 	  
-	  List<UMLSymbol> umlSymbols = diagram.getUMLSymbols();
-	  UMLSymbol parentSymbol = (umlSymbols.stream().filter(s -> s instanceof UMLLifeline).collect(Collectors.toList()).get(index)).getSource();
-	  
-	  if (parentSymbol == null) {
+	  if (fromIndex == NO_ENDPOINT) {
 		  throw new SDMException("Lifeline has no source in method 'getLifelineFromIndex'");
 	  }
-	  if (!virtualIndices.containsKey(parentSymbol.getId())) {
+	  if (fromIndex == UNINDEXED_ENDPOINT) {
 	      throw new SDMException("Object cannot be indexed in method 'getLifelineFromIndex'");
 	  }
 
-	  return virtualIndices.get(parentSymbol.getId());
+	  return fromIndex;
   }
   
   /**
@@ -273,29 +397,26 @@ public class InputBeulahWorks implements InputAdapter {
    * @author Brayden McCoy
    * @param index The index of the requested element.
    * @return The ending index for the requested lifeline element.
-   * @throws SDMException If the index is negative, or the life-line has no destination element.
+   * @throws SDMException If the index is negative, or the life-line has no destination element, or several.
    * @throws IndexOutOfBoundsException If the index is invalid.
    */
   public int getLifelineToIndex(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getLifelineToIndex' method");
     
-	  // Filters list (of UMLLifeline) via the use of lambdas, then get it's the id of UMLLifeline at the given index
-	  // Then proceeds to go throughout the list of UMLSymbols and find a non-null match to a given UMLSymbol's source ID
-	  
-	  List<UMLSymbol> umlSymbols = diagram.getUMLSymbols();
-	  int lifelineID = (umlSymbols.stream().filter(s -> s instanceof UMLLifeline).collect(Collectors.toList()).get(index)).getId();
+	  // Read the destination's virtual index, resolved in the constructor via the symbol whose source is this life-line
+	  int toIndex = lifelineToIndices[index];
 	  
-	  for (UMLSymbol symbol : umlSymbols) {
-		  if (symbol.getSource() != null && lifelineID == symbol.getSource().getId()) {
-		      if (!virtualIndices.containsKey(symbol.getId())) {
-		          throw new SDMException("Object cannot be indexed in method 'getLifelineToIndex'");
-		      }
-		      return virtualIndices.get(symbol.getId());
-		  }
+	  if (toIndex == NO_ENDPOINT) {
+		  throw new SDMException("Lifeline has no destination in method 'getLifelineToIndex'");
+	  }
+	  if (toIndex == AMBIGUOUS_ENDPOINT) {
+		  throw new SDMException("Lifeline has multiple destinations in method 'getLifelineToIndex'");
+	  }
+	  if (toIndex == UNINDEXED_ENDPOINT) {
+		  throw new SDMException("Object cannot be indexed in method 'getLifelineToIndex'");
 	  }
 
-	  // Throws SDMException if no match is found
-	  throw new SDMException("Lifeline has no destination in method 'getLifelineToIndex'");
+	  return toIndex;
   }
   
   /**
@@ -331,8 +452,8 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of methods in the diagram.
    */
   public int getMethodCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLMessage
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLMessage).collect(Collectors.toList()).size();
+	  // Read from the message snapshot built in the constructor
+	  return messages.length;
   }
   
   /**
@@ -354,20 +475,17 @@ public class InputBeulahWorks implements InputAdapter {
     
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getMethodFromIndex' method");
     
-	  // Filters list (of UMLMessage) via the use of lambdas, then get it's the source of the object at index
-	  // Then proceeds to get the id of the parent (source) and find a match against the whole list of UMLSymbols
-	  
-	  List<UMLSymbol> umlSymbols = diagram.getUMLSymbols();
-	  UMLSymbol parentSymbol = (umlSymbols.stream().filter(s -> s instanceof UMLMessage).collect(Collectors.toList()).get(index)).getSource();
+	  // Read the source's virtual index, resolved in the constructor
+	  int fromIndex = methodFromIndices[index];
 	  
-	  if (parentSymbol == null) {
+	  if (fromIndex == NO_ENDPOINT) {
 		  throw new SDMException("Method has no source in method 'getMethodFromIndex'");
 	  }
-	  if (!virtualIndices.containsKey(parentSymbol.getId())) {
+	  if (fromIndex == UNINDEXED_ENDPOINT) {
           throw new SDMException("Object cannot be indexed in method 'getMethodFromIndex'");
       }
 
-      return virtualIndices.get(parentSymbol.getId());
+      return fromIndex;
   }
   
   /**
@@ -387,18 +505,17 @@ public class InputBeulahWorks implements InputAdapter {
   public int getMethodToIndex(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getMethodToIndex' method");
     
-      // Refer to how the getMethodFromIndex and the getLifelineToIndex was implemented.
-	  List<UMLSymbol> umlSymbols = diagram.getUMLSymbols();
-	  UMLSymbol childSymbol = ((UMLMessage) umlSymbols.stream().filter(s -> s instanceof UMLMessage).collect(Collectors.toList()).get(index)).getDestination();
+      // Read the destination's virtual index, resolved in the constructor
+	  int toIndex = methodToIndices[index];
 	  
-	  if (childSymbol == null) {
+	  if (toIndex == NO_ENDPOINT) {
         throw new SDMException("Method has no destination in method 'getMethodToIndex'");
       }
-	  if (!virtualIndices.containsKey(childSymbol.getId())) {
-          throw new SDMException("Object cannot be indexed in method 'getMethodFromIndex'");
+	  if (toIndex == UNINDEXED_ENDPOINT) {
+          throw new SDMException("Object cannot be indexed in method 'getMethodToIndex'");
       }
 
-      return virtualIndices.get(childSymbol.getId());
+      return toIndex;
   }
   
   /**
@@ -418,8 +535,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getMethodText(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getMethodText' method");
       
-      List<UMLSymbol> umlSymbols = diagram.getUMLSymbols();
-      UMLSymbol message = umlSymbols.stream().filter(s -> s instanceof UMLMessage).collect(Collectors.toList()).get(index);
+      UMLSymbol message = messages[index];
     
 	  // Use getName() method for the name, getReturnType() for return type
 	  // May also need to call getArguments() which returns a List of UMLMessageArguments
@@ -475,9 +591,9 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of constraint elements in the diagram.
    */
   public int getConstraintCount() {
-	  // Filters list via the use of lambdas, then get it the total count of instances of UMLCondition
+	  // Read from the condition snapshot built in the constructor
 	  // UMLCondition defines the if / conditional statement (such as if x > 3)
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLCondition).collect(Collectors.toList()).size();
+	  return conditions.length;
   }
   
   /**
@@ -497,10 +613,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getConstraintText(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getConstraintText' method");
     
-	  // Refer to my getClassBlockClassName method, but instead of casting it to UMLClass and calling getClassName()
-	  // cast to UMLCondition and call getCondition()
-
-	  String condition = ((UMLCondition)(diagram.getUMLSymbols().stream().filter(p -> p instanceof UMLCondition).collect(Collectors.toList()).get(index))).getCondition();
+	  String condition = conditions[index].getCondition();
 	  if (condition == null) condition = "";
       return condition;
   }
@@ -517,9 +630,7 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of loop block elements in the diagram.
    */
   public int getLoopCount() {
-	  // Refer to getConstraintCount(), but use UMLLoop instead of UMLCondition for the instanceof
-
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLLoop).collect(Collectors.toList()).size();
+	  return loops.length;
   }
   
   /**
@@ -539,7 +650,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getLoopText(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getLoopText' method");
     
-	  UMLLoop loop = (UMLLoop)(diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLLoop).collect(Collectors.toList()).get(index));
+	  UMLLoop loop = loops[index];
 
 	  // This statement is saying get the UMLCondition from UMLLoop, then get the string "condition" from UMLCondition
 	  String condition = "";
@@ -562,9 +673,7 @@ public class InputBeulahWorks implements InputAdapter {
    * @return The number of if-statement block elements in the diagram.
    */
   public int getAlternativeCount() {
-	  // Refer to getConstraintCount(), but use UMLLoop instead of UMLAlternatives for the instanceof
-
-	  return diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLAlternatives).collect(Collectors.toList()).size();
+	  return alternatives.length;
   }
   
   /**
@@ -584,7 +693,7 @@ public class InputBeulahWorks implements InputAdapter {
   public String getAlternativeText(int index) throws Exception {
       if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBeulahWorks 'getAlternativeText' method");
     
-	  UMLAlternatives alternative = (UMLAlternatives)(diagram.getUMLSymbols().stream().filter(s -> s instanceof UMLAlternatives).collect(Collectors.toList()).get(index));
+	  UMLAlternatives alternative = alternatives[index];
 	  
 	  // This statement is saying get the UMLCondition from UMLLoop, then get the string "condition" from UMLCondition
 	  String condition = "";
@@ -0,0 +1,452 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An InputAdapter that reads a binary diagram file written by BinaryDiagramWriter through a
+ * read-only memory mapping, without loading or decoding it up front.
+ * <br>
+ * Opening a file only reads its header and maps it, so it takes the same time for any size of
+ * diagram. Each getter then reads its value straight from the mapped file: an index is one read
+ * at a position computed from the header, and a text is copied out of its UTF-8 bytes and decoded when
+ * it is asked for. The operating system pages the file in as it is read, and shares those pages
+ * with every other process mapping the same file.
+ * <br>
+ * A mapped buffer is limited to 2 GB, so the file is mapped in chunks of CHUNK_SIZE bytes. Every
+ * int and long in the file is aligned to its size, so none spans two chunks; only a text may.
+ * <br>
+ * Getters only use absolute reads, so any number of threads may read the same diagram at once.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The file's length is the end of its last section, as the header's counts give it. <br>
+ *     No count is negative. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class InputBinaryDiagram implements InputAdapter {
+
+  /** The size of each mapped chunk of the file, in bytes: a multiple of 8, and at most 2 GB. */
+  private static final int CHUNK_SIZE = 1 << 30;
+
+  /** The mapped chunks of the file, in order. */
+  private final MappedByteBuffer[] chunks;
+
+  /** The counts in the file's header, and the size of its distinct texts in bytes. */
+  private final int actorCount;
+  private final int classBlockCount;
+  private final int activationBlockCount;
+  private final int lifelineCount;
+  private final int methodCount;
+  private final int constraintCount;
+  private final int loopCount;
+  private final int alternativeCount;
+  private final int textCount;
+  private final long textByteCount;
+
+  /** Where each section starts in the file, followed by the file's length. */
+  private final long[] offsets;
+
+  /**
+   * Opens a binary diagram file, reading only its header.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The fileName parameter must not be null, and must name a file written by
+   * BinaryDiagramWriter.
+   * <br>
+   * <b>Postconditions:</b> Creates an InputBinaryDiagram reading the file, which stays mapped until
+   * this object is garbage collected.
+   *
+   * @author Jesse Primiani
+   * @param fileName The full name of the binary diagram file.
+   * @throws SDMException on a null file name, or a file that is not a complete binary diagram file.
+   * @throws IOException On a read error.
+   */
+  public InputBinaryDiagram(final String fileName) throws SDMException, IOException {
+    if (fileName == null) throw new SDMException("Null 'fileName' parameter in: InputBinaryDiagram constructor");
+
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(BinaryDiagramWriter.HEADER_SIZE);
+      while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {}
+      if (header.hasRemaining()) throw new SDMException("File is too short in: InputBinaryDiagram constructor");
+      header.flip();
+
+      if (header.getInt() != BinaryDiagramWriter.MAGIC) {
+        throw new SDMException("File is not a binary diagram file in: InputBinaryDiagram constructor");
+      }
+      if (header.getInt() != BinaryDiagramWriter.VERSION) {
+        throw new SDMException("Unsupported binary diagram file version in: InputBinaryDiagram constructor");
+      }
+      actorCount = readCount(header);
+      classBlockCount = readCount(header);
+      activationBlockCount = readCount(header);
+      lifelineCount = readCount(header);
+      methodCount = readCount(header);
+      constraintCount = readCount(header);
+      loopCount = readCount(header);
+      alternativeCount = readCount(header);
+      textCount = readCount(header);
+      textByteCount = header.getLong();
+      if (textByteCount < 0) throw new SDMException("Negative count in: InputBinaryDiagram constructor");
+
+      offsets = BinaryDiagramWriter.layout(actorCount, classBlockCount, lifelineCount, methodCount,
+          constraintCount, loopCount, alternativeCount, textCount, textByteCount);
+      long length = offsets[BinaryDiagramWriter.SECTION_COUNT];
+      if (channel.size() != length) {
+        throw new SDMException("File length does not match its header in: InputBinaryDiagram constructor");
+      }
+
+      chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+      for (int chunk = 0; chunk < chunks.length; chunk++) {
+        long start = (long) chunk * CHUNK_SIZE;
+        chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+      }
+    }
+  }
+
+  /**
+   * Gets the number of actors.
+   *
+   * @author Jesse Primiani
+   * @return The number of actors.
+   */
+  public int getActorCount() {
+    return actorCount;
+  }
+
+  /**
+   * Gets the name of the actor at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested actor.
+   * @return The actor's name, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getActorName(final int index) throws SDMException {
+    checkIndex(index, actorCount, "getActorName");
+    return textAt(BinaryDiagramWriter.ACTOR_NAMES, index, "getActorName");
+  }
+
+  /**
+   * Gets the number of class blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of class blocks.
+   */
+  public int getClassBlockCount() {
+    return classBlockCount;
+  }
+
+  /**
+   * Gets the instance name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The instance name, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getClassBlockInstanceName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockInstanceName");
+    return textAt(BinaryDiagramWriter.INSTANCE_NAMES, index, "getClassBlockInstanceName");
+  }
+
+  /**
+   * Gets the class name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The class name, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getClassBlockClassName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockClassName");
+    return textAt(BinaryDiagramWriter.CLASS_NAMES, index, "getClassBlockClassName");
+  }
+
+  /**
+   * Gets the number of activation blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of activation blocks.
+   */
+  public int getActivationBlockCount() {
+    return activationBlockCount;
+  }
+
+  /**
+   * Gets the number of lifelines.
+   *
+   * @author Jesse Primiani
+   * @return The number of lifelines.
+   */
+  public int getLifelineCount() {
+    return lifelineCount;
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline starts at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as written to the file.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineFromIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineFromIndex");
+    return intAt(BinaryDiagramWriter.LIFELINE_FROM, index);
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline ends at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as written to the file.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineToIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineToIndex");
+    return intAt(BinaryDiagramWriter.LIFELINE_TO, index);
+  }
+
+  /**
+   * Gets whether a lifeline is active.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return Whether the lifeline is active.
+   * @throws SDMException If the index is out of range.
+   */
+  public boolean getLifelineActive(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineActive");
+    long word = longAt(offsets[BinaryDiagramWriter.LIFELINE_ACTIVE] + 8L * (index >>> 6));
+    return (word & (1L << (index & 63))) != 0;
+  }
+
+  /**
+   * Gets the number of methods.
+   *
+   * @author Jesse Primiani
+   * @return The number of methods.
+   */
+  public int getMethodCount() {
+    return methodCount;
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent from.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as written to the file.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodFromIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodFromIndex");
+    return intAt(BinaryDiagramWriter.METHOD_FROM, index);
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent to.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as written to the file.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodToIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodToIndex");
+    return intAt(BinaryDiagramWriter.METHOD_TO, index);
+  }
+
+  /**
+   * Gets the text of a method.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The method's text, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getMethodText(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodText");
+    return textAt(BinaryDiagramWriter.METHOD_TEXTS, index, "getMethodText");
+  }
+
+  /**
+   * Gets the number of constraints.
+   *
+   * @author Jesse Primiani
+   * @return The number of constraints.
+   */
+  public int getConstraintCount() {
+    return constraintCount;
+  }
+
+  /**
+   * Gets the text of a constraint.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested constraint.
+   * @return The constraint's text, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getConstraintText(final int index) throws SDMException {
+    checkIndex(index, constraintCount, "getConstraintText");
+    return textAt(BinaryDiagramWriter.CONSTRAINT_TEXTS, index, "getConstraintText");
+  }
+
+  /**
+   * Gets the number of loop blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of loop blocks.
+   */
+  public int getLoopCount() {
+    return loopCount;
+  }
+
+  /**
+   * Gets the text of a loop block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested loop block.
+   * @return The loop's text, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getLoopText(final int index) throws SDMException {
+    checkIndex(index, loopCount, "getLoopText");
+    return textAt(BinaryDiagramWriter.LOOP_TEXTS, index, "getLoopText");
+  }
+
+  /**
+   * Gets the number of alternative blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of alternative blocks.
+   */
+  public int getAlternativeCount() {
+    return alternativeCount;
+  }
+
+  /**
+   * Gets the text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's text, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getAlternativeText(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeText");
+    return textAt(BinaryDiagramWriter.ALTERNATIVE_TEXTS, index, "getAlternativeText");
+  }
+
+  /**
+   * Gets the else text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's else text, as written to the file.
+   * @throws SDMException If the index is out of range, or the file is damaged.
+   */
+  public String getAlternativeTextElse(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeTextElse");
+    return textAt(BinaryDiagramWriter.ALTERNATIVE_TEXTS_ELSE, index, "getAlternativeTextElse");
+  }
+
+  /**
+   * Reads an int from a column.
+   *
+   * @author Jesse Primiani
+   * @param section The column's section.
+   * @param index The element's index in the column.
+   * @return The element's int.
+   */
+  private int intAt(final int section, final int index) {
+    long position = offsets[section] + 4L * index;
+    return chunks[(int) (position / CHUNK_SIZE)].getInt((int) (position % CHUNK_SIZE));
+  }
+
+  /**
+   * Reads a long from the file.
+   *
+   * @author Jesse Primiani
+   * @param position The long's position in the file, a multiple of 8.
+   * @return The long.
+   */
+  private long longAt(final long position) {
+    return chunks[(int) (position / CHUNK_SIZE)].getLong((int) (position % CHUNK_SIZE));
+  }
+
+  /**
+   * Decodes the text an element of a text column refers to.
+   *
+   * @author Jesse Primiani
+   * @param section The column's section.
+   * @param index The element's index in the column.
+   * @param method The name of the calling method, for error messages.
+   * @return The text, or null if the element has none.
+   * @throws SDMException if the file's string table is damaged.
+   */
+  private String textAt(final int section, final int index, final String method) throws SDMException {
+    int number = intAt(section, index);
+    if (number == -1) return null;
+    if (number < 0 || number >= textCount) {
+      throw new SDMException("Invalid text number in: InputBinaryDiagram '" + method + "' method");
+    }
+
+    long bytesStart = offsets[BinaryDiagramWriter.TEXT_BYTES];
+    long start = longAt(offsets[BinaryDiagramWriter.TEXT_STARTS] + 8L * number);
+    long end = longAt(offsets[BinaryDiagramWriter.TEXT_STARTS] + 8L * (number + 1));
+    if (start < 0 || end < start || end > textByteCount || end - start > Integer.MAX_VALUE) {
+      throw new SDMException("Invalid text bounds in: InputBinaryDiagram '" + method + "' method");
+    }
+
+    // Copy the bytes out of the chunk, or chunks, holding them, then decode them.
+    byte[] bytes = new byte[(int) (end - start)];
+    for (int copied = 0; copied < bytes.length; ) {
+      long position = bytesStart + start + copied;
+      MappedByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)];
+      int offset = (int) (position % CHUNK_SIZE);
+      int length = Math.min(bytes.length - copied, chunk.limit() - offset);
+      chunk.get(offset, bytes, copied, length);
+      copied += length;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a count from the header.
+   *
+   * @author Jesse Primiani
+   * @param header The header, at the count.
+   * @return The count.
+   * @throws SDMException on a negative count.
+   */
+  private static int readCount(final ByteBuffer header) throws SDMException {
+    int count = header.getInt();
+    if (count < 0) throw new SDMException("Negative count in: InputBinaryDiagram constructor");
+    return count;
+  }
+
+  /**
+   * Checks an element index against its element count.
+   *
+   * @author Jesse Primiani
+   * @param index The index to check.
+   * @param count The number of elements of its kind.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if the index is out of range.
+   */
+  private static void checkIndex(final int index, final int count, final String method) throws SDMException {
+    if (index < 0) throw new SDMException("'index' parameter must be positive in: InputBinaryDiagram '" + method + "' method");
+    if (index >= count) throw new SDMException("'index' parameter is out of range in: InputBinaryDiagram '" + method + "' method");
+  }
+
+}
@@ -0,0 +1,1178 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An InputAdapter that reads a sequence diagram from a JSON file, in one streaming pass, into
+ * compact arrays for each kind of element, without building a tree of the document.
+ * <br>
+ * The document is an object with any of these keys, in any order; other keys are skipped:
+ * <br>
+ *     "actors": an array of actor names. <br>
+ *     "classBlocks": an array of objects with "instanceName" and "className". <br>
+ *     "activationBlockCount": the number of activation blocks. <br>
+ *     "lifelines": an array of objects with "from" and "to" virtual indices, and "active". <br>
+ *     "methods": an array of objects with "from" and "to" virtual indices, and "text". <br>
+ *     "constraints" and "loops": arrays of texts. <br>
+ *     "alternatives": an array of objects with "text" and "textElse". <br>
+ * Any text may be null or left out. Virtual indices are laid out as SDMtoFile adds the elements:
+ * actors, then class blocks, then activation blocks, then lifelines, so a method's references must
+ * be less than the total number of those elements. Lifelines are added in order, so a lifeline may
+ * only refer to the participants, the activation blocks and the lifelines before it. As the document
+ * may list the elements after the references to them, a reference past the elements read so far is
+ * kept with its line and column, and checked once the whole document is read.
+ * <br>
+ * Method texts, by far the largest part of a big diagram, are kept as UTF-8 bytes in one table.
+ * Once that table would grow past the text memory limit, it is moved to a temporary file, and every
+ * later text is appended there, so a document bigger than the heap is read with a heap holding only
+ * a few ints per element. Spilled texts are read back from the file when they are asked for, and
+ * close() deletes the file.
+ * <br>
+ * Every error in the document, such as a syntax error, a missing "from" or "to", or a reference to
+ * an element that does not exist, is reported as an SDMException giving its line and column,
+ * counting characters from 1.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The first count entries of each element array are in use. <br>
+ *     methodTextStarts holds methodCount + 1 ascending entries, starting at 0. <br>
+ *     Every method reference is less than the number of virtual indices. <br>
+ *     Every lifeline reference is less than the lifeline's own virtual index. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class InputJsonDiagram implements InputAdapter, Closeable {
+
+  /** The most bytes of method text kept on the heap by default, if an eighth of the heap is more. */
+  public static final long DEFAULT_TEXT_MEMORY_LIMIT = 64L << 20;
+
+  /** The reference kinds, naming each kind of reference in error messages. */
+  private static final int LIFELINE_FROM = 0;
+  private static final int LIFELINE_TO = 1;
+  private static final int METHOD_FROM = 2;
+  private static final int METHOD_TO = 3;
+  private static final String[] REFERENCE_NAMES = {"lifeline 'from'", "lifeline 'to'", "method 'from'", "method 'to'"};
+
+  private String[] actorNames = new String[16];
+  private int actorCount;
+
+  private String[] instanceNames = new String[16];
+  private String[] classNames = new String[16];
+  private int classBlockCount;
+
+  private int activationBlockCount;
+
+  private int[] lifelineFrom = new int[16];
+  private int[] lifelineTo = new int[16];
+  private final BitSet lifelineActive = new BitSet();
+  private int lifelineCount;
+
+  /** The virtual indices each method connects, where its text starts in the text table, and which texts are null. */
+  private int[] methodFrom = new int[16];
+  private int[] methodTo = new int[16];
+  private long[] methodTextStarts = new long[17];
+  private final BitSet methodTextNull = new BitSet();
+  private int methodCount;
+
+  private String[] constraintTexts = new String[16];
+  private int constraintCount;
+  private String[] loopTexts = new String[16];
+  private int loopCount;
+  private String[] alternativeTexts = new String[16];
+  private String[] alternativeTextsElse = new String[16];
+  private int alternativeCount;
+
+  /** The most bytes of method text kept in textBytes. */
+  private final long textMemoryLimit;
+
+  /** The method text table, while it is on the heap, and its size, wherever it is. */
+  private byte[] textBytes = new byte[1024];
+  private long textByteCount;
+
+  /** The file the method text table is spilled to, while it is written, then while it is read, or null. */
+  private Path spillFile;
+  private OutputStream spillOut;
+  private FileChannel spillChannel;
+
+  /** The document being read, and the unread characters of its buffer. Only used while reading. */
+  private Reader reader;
+  private char[] buffer;
+  private int position;
+  private int limit;
+
+  /** The line and column of the next character, and of the start of the current token. */
+  private int line = 1;
+  private int column = 1;
+  private int tokenLine;
+  private int tokenColumn;
+
+  /** The line and column of the last key read. */
+  private int keyLine;
+  private int keyColumn;
+
+  /** Collects the characters of each string read. */
+  private StringBuilder text = new StringBuilder();
+
+  /** The references past the elements read so far, with their kinds and positions, to check at the end. */
+  private int[] pendingValues = new int[16];
+  private int[] pendingKinds = new int[16];
+  /** The index of the lifeline each pending reference belongs to, or -1 for a method's reference. */
+  private int[] pendingLifelines = new int[16];
+  private int[] pendingLines = new int[16];
+  private int[] pendingColumns = new int[16];
+  private int pendingCount;
+
+  /**
+   * A convenience constructor, which keeps up to an eighth of the heap, and at most
+   * DEFAULT_TEXT_MEMORY_LIMIT bytes, of method text on the heap.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The fileName parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Creates an InputJsonDiagram holding the document's diagram.
+   *
+   * @author Jesse Primiani
+   * @param fileName The full name of the JSON file.
+   * @throws SDMException on a null file name, or an error in the document, with its line and column.
+   * @throws IOException On a read error, or if the file is not valid UTF-8.
+   */
+  public InputJsonDiagram(final String fileName) throws SDMException, IOException {
+    this(fileName, Math.min(DEFAULT_TEXT_MEMORY_LIMIT, Runtime.getRuntime().maxMemory() / 8));
+  }
+
+  /**
+   * Reads a diagram from a JSON file, in one pass.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The fileName parameter must not be null, and textMemoryLimit must not be negative.
+   * <br>
+   * <b>Postconditions:</b> Creates an InputJsonDiagram holding the document's diagram, with its
+   * method texts in a temporary file if they take more than textMemoryLimit bytes.
+   *
+   * @author Jesse Primiani
+   * @param fileName The full name of the JSON file.
+   * @param textMemoryLimit The most bytes of method text to keep on the heap.
+   * @throws SDMException on a null file name, a negative limit, or an error in the document, with its line and column.
+   * @throws IOException On a read or spill file error, or if the file is not valid UTF-8.
+   */
+  public InputJsonDiagram(final String fileName, final long textMemoryLimit) throws SDMException, IOException {
+    if (fileName == null) throw new SDMException("Null 'fileName' parameter in: InputJsonDiagram constructor");
+    if (textMemoryLimit < 0) throw new SDMException("'textMemoryLimit' parameter must not be negative in: InputJsonDiagram constructor");
+    this.textMemoryLimit = Math.min(textMemoryLimit, Integer.MAX_VALUE - 8);
+
+    try (Reader document = new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8.newDecoder())) {
+      reader = document;
+      buffer = new char[1 << 16];
+      readDocument();
+
+      if (spillOut != null) {
+        spillOut.close();
+        spillOut = null;
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ);
+      }
+    } catch (SDMException | IOException | RuntimeException ex) {
+      try {
+        close();
+      } catch (IOException closeEx) {
+        ex.addSuppressed(closeEx);
+      }
+      throw ex;
+    } finally {
+      // Free the reading state; only the element arrays are kept.
+      reader = null;
+      buffer = null;
+      text = null;
+      pendingValues = pendingKinds = pendingLifelines = pendingLines = pendingColumns = null;
+    }
+  }
+
+  /**
+   * Reads the whole document, then checks the references that were past the elements read when they were found.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read or spill file error.
+   */
+  private void readDocument() throws SDMException, IOException {
+    if (peek() == '\uFEFF') read();
+
+    BitSet seenKeys = new BitSet();
+    expect('{');
+    for (String key = readKey(true); key != null; key = readKey(false)) {
+      int keyNumber;
+      switch (key) {
+        case "actors":               keyNumber = 0; break;
+        case "classBlocks":          keyNumber = 1; break;
+        case "activationBlockCount": keyNumber = 2; break;
+        case "lifelines":            keyNumber = 3; break;
+        case "methods":              keyNumber = 4; break;
+        case "constraints":          keyNumber = 5; break;
+        case "loops":                keyNumber = 6; break;
+        case "alternatives":         keyNumber = 7; break;
+        default:
+          skipValue();
+          continue;
+      }
+      if (seenKeys.get(keyNumber)) throw errorAt("Duplicate key '" + key + "'", keyLine, keyColumn);
+      seenKeys.set(keyNumber);
+
+      switch (keyNumber) {
+        case 0: readActors(); break;
+        case 1: readClassBlocks(); break;
+        case 2:
+          activationBlockCount = readInt();
+          if (activationBlockCount < 0) throw error("Negative 'activationBlockCount'");
+          break;
+        case 3: readLifelines(); break;
+        case 4: readMethods(); break;
+        case 5: readConstraints(); break;
+        case 6: readLoops(); break;
+        default: readAlternatives(); break;
+      }
+    }
+    if (peekToken() >= 0) throw error("Unexpected content after the document");
+
+    long blockCount = (long) actorCount + classBlockCount + activationBlockCount;
+    for (int pending = 0; pending < pendingCount; pending++) {
+      int lifeline = pendingLifelines[pending];
+      long indexCount = blockCount + ((lifeline < 0) ? lifelineCount : lifeline);
+      if (pendingValues[pending] >= indexCount) {
+        throw errorAt("Reference " + pendingValues[pending] + " in " + REFERENCE_NAMES[pendingKinds[pending]]
+            + " is out of range (" + indexCount + " virtual indices" + ((lifeline < 0) ? "" : " before lifeline " + lifeline) + ")",
+            pendingLines[pending], pendingColumns[pending]);
+      }
+    }
+  }
+
+  /**
+   * Reads the "actors" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readActors() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      if (actorCount == actorNames.length) actorNames = Arrays.copyOf(actorNames, actorCount * 2);
+      actorNames[actorCount++] = readNullableString();
+    }
+  }
+
+  /**
+   * Reads the "classBlocks" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readClassBlocks() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      String instanceName = null;
+      String className = null;
+      expect('{');
+      for (String key = readKey(true); key != null; key = readKey(false)) {
+        switch (key) {
+          case "instanceName": instanceName = readNullableString(); break;
+          case "className":    className = readNullableString(); break;
+          default:             skipValue(); break;
+        }
+      }
+
+      if (classBlockCount == instanceNames.length) {
+        instanceNames = Arrays.copyOf(instanceNames, classBlockCount * 2);
+        classNames = Arrays.copyOf(classNames, classBlockCount * 2);
+      }
+      instanceNames[classBlockCount] = instanceName;
+      classNames[classBlockCount] = className;
+      classBlockCount++;
+    }
+  }
+
+  /**
+   * Reads the "lifelines" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readLifelines() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      peekToken();
+      int objectLine = tokenLine;
+      int objectColumn = tokenColumn;
+      int from = -1;
+      int to = -1;
+      boolean active = false;
+      expect('{');
+      for (String key = readKey(true); key != null; key = readKey(false)) {
+        switch (key) {
+          case "from":   from = readReference(LIFELINE_FROM); break;
+          case "to":     to = readReference(LIFELINE_TO); break;
+          case "active": active = readBoolean(); break;
+          default:       skipValue(); break;
+        }
+      }
+      if (from < 0 || to < 0) throw errorAt("Missing 'from' or 'to' in lifeline", objectLine, objectColumn);
+
+      if (lifelineCount == lifelineFrom.length) {
+        lifelineFrom = Arrays.copyOf(lifelineFrom, lifelineCount * 2);
+        lifelineTo = Arrays.copyOf(lifelineTo, lifelineCount * 2);
+      }
+      lifelineFrom[lifelineCount] = from;
+      lifelineTo[lifelineCount] = to;
+      if (active) lifelineActive.set(lifelineCount);
+      lifelineCount++;
+    }
+  }
+
+  /**
+   * Reads the "methods" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read or spill file error.
+   */
+  private void readMethods() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      peekToken();
+      int objectLine = tokenLine;
+      int objectColumn = tokenColumn;
+      int from = -1;
+      int to = -1;
+      String methodText = null;
+      expect('{');
+      for (String key = readKey(true); key != null; key = readKey(false)) {
+        switch (key) {
+          case "from": from = readReference(METHOD_FROM); break;
+          case "to":   to = readReference(METHOD_TO); break;
+          case "text": methodText = readNullableString(); break;
+          default:     skipValue(); break;
+        }
+      }
+      if (from < 0 || to < 0) throw errorAt("Missing 'from' or 'to' in method", objectLine, objectColumn);
+
+      if (methodCount == methodFrom.length) {
+        methodFrom = Arrays.copyOf(methodFrom, methodCount * 2);
+        methodTo = Arrays.copyOf(methodTo, methodCount * 2);
+        methodTextStarts = Arrays.copyOf(methodTextStarts, methodCount * 2 + 1);
+      }
+      methodFrom[methodCount] = from;
+      methodTo[methodCount] = to;
+      addMethodText(methodText);
+      methodCount++;
+    }
+  }
+
+  /**
+   * Reads the "constraints" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readConstraints() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      if (constraintCount == constraintTexts.length) constraintTexts = Arrays.copyOf(constraintTexts, constraintCount * 2);
+      constraintTexts[constraintCount++] = readNullableString();
+    }
+  }
+
+  /**
+   * Reads the "loops" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readLoops() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      if (loopCount == loopTexts.length) loopTexts = Arrays.copyOf(loopTexts, loopCount * 2);
+      loopTexts[loopCount++] = readNullableString();
+    }
+  }
+
+  /**
+   * Reads the "alternatives" array.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException on an error in the document.
+   * @throws IOException On a read error.
+   */
+  private void readAlternatives() throws SDMException, IOException {
+    expect('[');
+    for (boolean first = true; hasNextElement(first); first = false) {
+      String alternativeText = null;
+      String alternativeTextElse = null;
+      expect('{');
+      for (String key = readKey(true); key != null; key = readKey(false)) {
+        switch (key) {
+          case "text":     alternativeText = readNullableString(); break;
+          case "textElse": alternativeTextElse = readNullableString(); break;
+          default:         skipValue(); break;
+        }
+      }
+
+      if (alternativeCount == alternativeTexts.length) {
+        alternativeTexts = Arrays.copyOf(alternativeTexts, alternativeCount * 2);
+        alternativeTextsElse = Arrays.copyOf(alternativeTextsElse, alternativeCount * 2);
+      }
+      alternativeTexts[alternativeCount] = alternativeText;
+      alternativeTextsElse[alternativeCount] = alternativeTextElse;
+      alternativeCount++;
+    }
+  }
+
+  /**
+   * Adds the text of the method being read to the text table, spilling the table to a file once
+   * it would grow past the text memory limit.
+   *
+   * @author Jesse Primiani
+   * @param methodText The method's text, which may be null.
+   * @throws IOException On a spill file error.
+   */
+  private void addMethodText(final String methodText) throws IOException {
+    if (methodText == null) {
+      methodTextNull.set(methodCount);
+    } else {
+      byte[] encoded = methodText.getBytes(StandardCharsets.UTF_8);
+      if (spillOut == null && textByteCount + encoded.length > textMemoryLimit) {
+        spillFile = Files.createTempFile("sdm-method-texts-", ".tmp");
+        spillOut = new BufferedOutputStream(Files.newOutputStream(spillFile), 1 << 16);
+        spillOut.write(textBytes, 0, (int) textByteCount);
+        textBytes = null;
+      }
+
+      if (spillOut != null) {
+        spillOut.write(encoded);
+      } else {
+        if (textByteCount + encoded.length > textBytes.length) {
+          textBytes = Arrays.copyOf(textBytes, (int) Math.min(textMemoryLimit, Math.max(2L * textBytes.length, textByteCount + encoded.length)));
+        }
+        System.arraycopy(encoded, 0, textBytes, (int) textByteCount, encoded.length);
+      }
+      textByteCount += encoded.length;
+    }
+    methodTextStarts[methodCount + 1] = textByteCount;
+  }
+
+  /**
+   * Reads a lifeline or method reference, keeping it to check at the end if it is past the
+   * elements read so far. A lifeline's reference is only valid if it is before the lifeline
+   * being read, which is the last one counted so far.
+   *
+   * @author Jesse Primiani
+   * @param kind The kind of reference, for error messages.
+   * @return The virtual index.
+   * @throws SDMException on a value that is not an integer, or is negative.
+   * @throws IOException On a read error.
+   */
+  private int readReference(final int kind) throws SDMException, IOException {
+    int value = readInt();
+    if (value < 0) throw error("Negative reference " + value + " in " + REFERENCE_NAMES[kind]);
+
+    // References only become valid as elements are read, so one that is valid now stays valid.
+    if ((long) value >= (long) actorCount + classBlockCount + activationBlockCount + lifelineCount) {
+      if (pendingCount == pendingValues.length) {
+        pendingValues = Arrays.copyOf(pendingValues, pendingCount * 2);
+        pendingKinds = Arrays.copyOf(pendingKinds, pendingCount * 2);
+        pendingLifelines = Arrays.copyOf(pendingLifelines, pendingCount * 2);
+        pendingLines = Arrays.copyOf(pendingLines, pendingCount * 2);
+        pendingColumns = Arrays.copyOf(pendingColumns, pendingCount * 2);
+      }
+      pendingValues[pendingCount] = value;
+      pendingKinds[pendingCount] = kind;
+      pendingLifelines[pendingCount] = (kind == LIFELINE_FROM || kind == LIFELINE_TO) ? lifelineCount : -1;
+      pendingLines[pendingCount] = tokenLine;
+      pendingColumns[pendingCount] = tokenColumn;
+      pendingCount++;
+    }
+    return value;
+  }
+
+  /**
+   * Checks for another element of the array being read, reading the ',' or ']' after the last one.
+   *
+   * @author Jesse Primiani
+   * @param first Whether no element of the array has been read yet.
+   * @return True if an element follows, or false if the array has ended.
+   * @throws SDMException if neither a ',' nor a ']' follows an element.
+   * @throws IOException On a read error.
+   */
+  private boolean hasNextElement(final boolean first) throws SDMException, IOException {
+    int c = peekToken();
+    if (c == ']') {
+      read();
+      return false;
+    }
+    if (!first) {
+      if (c != ',') throw error("Expected ',' or ']'");
+      read();
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next key of the object being read, and the ':' after it.
+   *
+   * @author Jesse Primiani
+   * @param first Whether no key of the object has been read yet.
+   * @return The key, or null if the object has ended.
+   * @throws SDMException if no key, ',' or '}' follows where one should.
+   * @throws IOException On a read error.
+   */
+  private String readKey(final boolean first) throws SDMException, IOException {
+    int c = peekToken();
+    if (c == '}') {
+      read();
+      return null;
+    }
+    if (!first) {
+      if (c != ',') throw error("Expected ',' or '}'");
+      read();
+      c = peekToken();
+    }
+    if (c != '"') throw error("Expected a key");
+    keyLine = tokenLine;
+    keyColumn = tokenColumn;
+    String key = readString();
+    expect(':');
+    return key;
+  }
+
+  /**
+   * Reads a string, or null.
+   *
+   * @author Jesse Primiani
+   * @return The string's value, or null.
+   * @throws SDMException if the next value is neither a string nor null.
+   * @throws IOException On a read error.
+   */
+  private String readNullableString() throws SDMException, IOException {
+    if (peekToken() == 'n') {
+      readLiteral("null");
+      return null;
+    }
+    return readString();
+  }
+
+  /**
+   * Reads a string, resolving its escapes.
+   *
+   * @author Jesse Primiani
+   * @return The string's value.
+   * @throws SDMException if the next value is not a valid string.
+   * @throws IOException On a read error.
+   */
+  private String readString() throws SDMException, IOException {
+    if (peekToken() != '"') throw error("Expected a string");
+    read();
+
+    text.setLength(0);
+    while (true) {
+      int c = read();
+      if (c == '"') return text.toString();
+      if (c < 0) throw error("Unterminated string");
+      if (c < 0x20) throw errorAt("Control character in string", line, column - 1);
+      if (c != '\\') {
+        text.append((char) c);
+        continue;
+      }
+
+      c = read();
+      switch (c) {
+        case '"':  text.append('"'); break;
+        case '\\': text.append('\\'); break;
+        case '/':  text.append('/'); break;
+        case 'b':  text.append('\b'); break;
+        case 'f':  text.append('\f'); break;
+        case 'n':  text.append('\n'); break;
+        case 'r':  text.append('\r'); break;
+        case 't':  text.append('\t'); break;
+        case 'u':
+          int value = 0;
+          for (int digit = 0; digit < 4; digit++) {
+            int hex = Character.digit(read(), 16);
+            if (hex < 0) throw errorAt("Invalid unicode escape", line, column - 1);
+            value = value * 16 + hex;
+          }
+          text.append((char) value);
+          break;
+        default:
+          throw errorAt("Invalid escape in string", line, column - 1);
+      }
+    }
+  }
+
+  /**
+   * Reads an integer, which must fit in an int.
+   *
+   * @author Jesse Primiani
+   * @return The integer.
+   * @throws SDMException if the next value is not an integer, or does not fit in an int.
+   * @throws IOException On a read error.
+   */
+  private int readInt() throws SDMException, IOException {
+    int c = peekToken();
+    boolean negative = (c == '-');
+    if (negative) {
+      read();
+      c = peek();
+    }
+    if (c < '0' || c > '9') throw error("Expected an integer");
+    if (c == '0') {
+      read();
+      c = peek();
+      if (c >= '0' && c <= '9') throw errorAt("Leading zero in integer", line, column);
+    }
+
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE + 1L) throw error("Integer out of range");
+      read();
+      c = peek();
+    }
+    if (c == '.' || c == 'e' || c == 'E') throw error("Expected an integer");
+    if (negative) value = -value;
+    if (value > Integer.MAX_VALUE) throw error("Integer out of range");
+    return (int) value;
+  }
+
+  /**
+   * Reads true or false.
+   *
+   * @author Jesse Primiani
+   * @return The boolean.
+   * @throws SDMException if the next value is not a boolean.
+   * @throws IOException On a read error.
+   */
+  private boolean readBoolean() throws SDMException, IOException {
+    int c = peekToken();
+    if (c == 't') {
+      readLiteral("true");
+      return true;
+    }
+    if (c == 'f') {
+      readLiteral("false");
+      return false;
+    }
+    throw error("Expected true or false");
+  }
+
+  /**
+   * Reads a literal: true, false or null.
+   *
+   * @author Jesse Primiani
+   * @param literal The literal expected next.
+   * @throws SDMException if the next characters are not the literal.
+   * @throws IOException On a read error.
+   */
+  private void readLiteral(final String literal) throws SDMException, IOException {
+    peekToken();
+    for (int index = 0; index < literal.length(); index++) {
+      if (read() != literal.charAt(index)) throw error("Expected " + literal);
+    }
+  }
+
+  /**
+   * Skips a value of any kind, including nested arrays and objects, under a key that is not used.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException if the next value is not valid.
+   * @throws IOException On a read error.
+   */
+  private void skipValue() throws SDMException, IOException {
+    int c = peekToken();
+    if (c == '"') {
+      readString();
+    } else if (c == '{') {
+      read();
+      for (String key = readKey(true); key != null; key = readKey(false)) {
+        skipValue();
+      }
+    } else if (c == '[') {
+      read();
+      for (boolean first = true; hasNextElement(first); first = false) {
+        skipValue();
+      }
+    } else if (c == 't') {
+      readLiteral("true");
+    } else if (c == 'f') {
+      readLiteral("false");
+    } else if (c == 'n') {
+      readLiteral("null");
+    } else if (c == '-' || (c >= '0' && c <= '9')) {
+      skipNumber();
+    } else {
+      throw error("Expected a value");
+    }
+  }
+
+  /**
+   * Skips a number, checking it against JSON's grammar: an optional '-', an integer part without
+   * leading zeros, then an optional fraction and an optional exponent, each with at least one digit.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException at the first character that does not fit the grammar.
+   * @throws IOException On a read error.
+   */
+  private void skipNumber() throws SDMException, IOException {
+    if (peekToken() == '-') read();
+    if (peek() == '0') {
+      read();
+    } else {
+      skipDigits();
+    }
+
+    if (peek() == '.') {
+      read();
+      skipDigits();
+    }
+    if (peek() == 'e' || peek() == 'E') {
+      read();
+      if (peek() == '+' || peek() == '-') read();
+      skipDigits();
+    }
+  }
+
+  /**
+   * Skips one or more digits, for skipNumber.
+   *
+   * @author Jesse Primiani
+   * @throws SDMException if the next character is not a digit.
+   * @throws IOException On a read error.
+   */
+  private void skipDigits() throws SDMException, IOException {
+    int c = peek();
+    if (c < '0' || c > '9') throw errorAt("Expected a digit in number", line, column);
+    while (c >= '0' && c <= '9') {
+      read();
+      c = peek();
+    }
+  }
+
+  /**
+   * Reads the ',', ':', '[', '{' or other character expected next, after any whitespace.
+   *
+   * @author Jesse Primiani
+   * @param expected The expected character.
+   * @throws SDMException if a different character follows.
+   * @throws IOException On a read error.
+   */
+  private void expect(final char expected) throws SDMException, IOException {
+    if (peekToken() != expected) throw error("Expected '" + expected + "'");
+    read();
+  }
+
+  /**
+   * Skips whitespace, marking the position of the token after it.
+   *
+   * @author Jesse Primiani
+   * @return The token's first character, not yet read, or -1 at the end of the document.
+   * @throws IOException On a read error.
+   */
+  private int peekToken() throws IOException {
+    int c = peek();
+    while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+      read();
+      c = peek();
+    }
+    tokenLine = line;
+    tokenColumn = column;
+    return c;
+  }
+
+  /**
+   * Gets the next character of the document without reading it.
+   *
+   * @author Jesse Primiani
+   * @return The next character, or -1 at the end of the document.
+   * @throws IOException On a read error.
+   */
+  private int peek() throws IOException {
+    if (position == limit) {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit < 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position];
+  }
+
+  /**
+   * Reads the next character of the document, moving the line and column past it.
+   *
+   * @author Jesse Primiani
+   * @return The character, or -1 at the end of the document.
+   * @throws IOException On a read error.
+   */
+  private int read() throws IOException {
+    int c = peek();
+    if (c < 0) return c;
+    position++;
+    if (c == '\n') {
+      line++;
+      column = 1;
+    } else {
+      column++;
+    }
+    return c;
+  }
+
+  /**
+   * Creates the exception for an error at the current token.
+   *
+   * @author Jesse Primiani
+   * @param message What is wrong.
+   * @return The exception.
+   */
+  private SDMException error(final String message) {
+    return errorAt(message, tokenLine, tokenColumn);
+  }
+
+  /**
+   * Creates the exception for an error at a position in the document.
+   *
+   * @author Jesse Primiani
+   * @param message What is wrong.
+   * @param errorLine The error's line.
+   * @param errorColumn The error's column.
+   * @return The exception.
+   */
+  private static SDMException errorAt(final String message, final int errorLine, final int errorColumn) {
+    return new SDMException(message + " at line " + errorLine + ", column " + errorColumn + " in: InputJsonDiagram constructor");
+  }
+
+  /**
+   * Releases the temporary file holding the method texts, if they were spilled to one.
+   * Spilled method texts can not be read afterwards; everything else still can.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> No temporary file is left behind.
+   *
+   * @author Jesse Primiani
+   * @throws IOException On an error deleting the file.
+   */
+  public void close() throws IOException {
+    try {
+      if (spillOut != null) spillOut.close();
+      if (spillChannel != null) spillChannel.close();
+    } finally {
+      spillOut = null;
+      if (spillFile != null) Files.deleteIfExists(spillFile);
+    }
+  }
+
+  /**
+   * Gets whether the method texts were spilled to a temporary file.
+   *
+   * @author Jesse Primiani
+   * @return True if the method texts are read from a file.
+   */
+  public boolean isMethodTextSpilled() {
+    return spillFile != null;
+  }
+
+  /**
+   * Gets the number of actors.
+   *
+   * @author Jesse Primiani
+   * @return The number of actors.
+   */
+  public int getActorCount() {
+    return actorCount;
+  }
+
+  /**
+   * Gets the name of the actor at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested actor.
+   * @return The actor's name, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getActorName(final int index) throws SDMException {
+    checkIndex(index, actorCount, "getActorName");
+    return actorNames[index];
+  }
+
+  /**
+   * Gets the number of class blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of class blocks.
+   */
+  public int getClassBlockCount() {
+    return classBlockCount;
+  }
+
+  /**
+   * Gets the instance name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The instance name, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockInstanceName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockInstanceName");
+    return instanceNames[index];
+  }
+
+  /**
+   * Gets the class name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The class name, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockClassName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockClassName");
+    return classNames[index];
+  }
+
+  /**
+   * Gets the number of activation blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of activation blocks.
+   */
+  public int getActivationBlockCount() {
+    return activationBlockCount;
+  }
+
+  /**
+   * Gets the number of lifelines.
+   *
+   * @author Jesse Primiani
+   * @return The number of lifelines.
+   */
+  public int getLifelineCount() {
+    return lifelineCount;
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline starts at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineFromIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineFromIndex");
+    return lifelineFrom[index];
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline ends at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineToIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineToIndex");
+    return lifelineTo[index];
+  }
+
+  /**
+   * Gets whether a lifeline is active.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return Whether the lifeline is active; false if the document does not say.
+   * @throws SDMException If the index is out of range.
+   */
+  public boolean getLifelineActive(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineActive");
+    return lifelineActive.get(index);
+  }
+
+  /**
+   * Gets the number of methods.
+   *
+   * @author Jesse Primiani
+   * @return The number of methods.
+   */
+  public int getMethodCount() {
+    return methodCount;
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent from.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodFromIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodFromIndex");
+    return methodFrom[index];
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent to.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodToIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodToIndex");
+    return methodTo[index];
+  }
+
+  /**
+   * Gets the text of a method, from the heap or from the spill file.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The method's text, as read from the document.
+   * @throws SDMException If the index is out of range, or the spill file is shorter than expected.
+   * @throws IOException On a spill file error, including after close().
+   */
+  public String getMethodText(final int index) throws SDMException, IOException {
+    checkIndex(index, methodCount, "getMethodText");
+    if (methodTextNull.get(index)) return null;
+
+    long start = methodTextStarts[index];
+    int length = (int) (methodTextStarts[index + 1] - start);
+    if (spillFile == null) return new String(textBytes, (int) start, length, StandardCharsets.UTF_8);
+    if (spillChannel == null) throw new IOException("Method text file is closed");
+
+    byte[] bytes = new byte[length];
+    ByteBuffer target = ByteBuffer.wrap(bytes);
+    while (target.hasRemaining()) {
+      if (spillChannel.read(target, start + target.position()) < 0) {
+        throw new SDMException("Method text file is too short in: InputJsonDiagram 'getMethodText' method");
+      }
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the number of constraints.
+   *
+   * @author Jesse Primiani
+   * @return The number of constraints.
+   */
+  public int getConstraintCount() {
+    return constraintCount;
+  }
+
+  /**
+   * Gets the text of a constraint.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested constraint.
+   * @return The constraint's text, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getConstraintText(final int index) throws SDMException {
+    checkIndex(index, constraintCount, "getConstraintText");
+    return constraintTexts[index];
+  }
+
+  /**
+   * Gets the number of loop blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of loop blocks.
+   */
+  public int getLoopCount() {
+    return loopCount;
+  }
+
+  /**
+   * Gets the text of a loop block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested loop block.
+   * @return The loop's text, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getLoopText(final int index) throws SDMException {
+    checkIndex(index, loopCount, "getLoopText");
+    return loopTexts[index];
+  }
+
+  /**
+   * Gets the number of alternative blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of alternative blocks.
+   */
+  public int getAlternativeCount() {
+    return alternativeCount;
+  }
+
+  /**
+   * Gets the text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's text, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeText(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeText");
+    return alternativeTexts[index];
+  }
+
+  /**
+   * Gets the else text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's else text, as read from the document.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeTextElse(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeTextElse");
+    return alternativeTextsElse[index];
+  }
+
+  /**
+   * Checks an element index against its element count.
+   *
+   * @author Jesse Primiani
+   * @param index The index to check.
+   * @param count The number of elements of its kind.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if the index is out of range.
+   */
+  private static void checkIndex(final int index, final int count, final String method) throws SDMException {
+    if (index < 0) throw new SDMException("'index' parameter must be positive in: InputJsonDiagram '" + method + "' method");
+    if (index >= count) throw new SDMException("'index' parameter is out of range in: InputJsonDiagram '" + method + "' method");
+  }
+
+}
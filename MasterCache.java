@@ -0,0 +1,112 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.util.HashMap;
+import com.aspose.diagram.Diagram;
+
+/**
+ * A process-wide cache of parsed Visio master (stencil) files, shared by every OutputAspose instance
+ * so that a stencil file is only parsed again when it changes on disk.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Each cached entry holds the stencil as parsed at its recorded modification time. <br>
+ *     All access to the cache map is synchronized on the MasterCache class. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class MasterCache {
+
+  /** A parsed stencil file, and the modification time of the file it was parsed from. */
+  private static final class Entry {
+    final Diagram masterFile;
+    final long lastModified;
+
+    Entry(Diagram masterFile, long lastModified) {
+      this.masterFile = masterFile;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /** The cached stencils, keyed by the stencil file's absolute path. */
+  private static final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+  /**
+   * Private default constructor, as this class only has static methods.
+   */
+  private MasterCache() {}
+
+  /**
+   * Gets the parsed stencil for a master file, parsing it only if it is not cached,
+   * or if the file was modified since it was cached.
+   * <br>
+   * The returned Diagram is shared between threads, so callers must hold its lock
+   * while reading masters from it (see addMaster).
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fileName must refer to a readable Visio stencil file.
+   * <br>
+   * <b>Postconditions:</b> Returns the parsed stencil, which is cached for later calls.
+   *
+   * @author Jesse Primiani
+   * @param fileName The path to the stencil file.
+   * @return The parsed stencil file.
+   * @throws SDMException If fileName is null.
+   * @throws Exception On an Aspose.Diagram error while parsing the file.
+   */
+  static synchronized Diagram getMasterFile(final String fileName) throws Exception {
+    if (fileName == null) throw new SDMException("Null 'fileName' parameter in: MasterCache 'getMasterFile' method");
+
+    File file = new File(fileName);
+    String key = file.getAbsolutePath();
+    long lastModified = file.lastModified();
+
+    // Reuse the cached stencil if the file is unchanged.
+    Entry entry = entries.get(key);
+    if (entry != null && entry.lastModified == lastModified) {
+      return entry.masterFile;
+    }
+
+    // Parse the file and replace any stale entry.
+    Diagram masterFile = new Diagram(fileName);
+    entries.put(key, new Entry(masterFile, lastModified));
+    return masterFile;
+  }
+
+  /**
+   * Adds a master from a cached stencil to a diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> masterFile was returned by getMasterFile.
+   * <br>
+   * <b>Postconditions:</b> The named master is added to the diagram,
+   * without the stencil file being read from disk.
+   *
+   * @author Jesse Primiani
+   * @param diagram The diagram to add the master to.
+   * @param masterFile The cached stencil containing the master.
+   * @param masterName The name of the master to add.
+   * @throws Exception On an Aspose.Diagram error.
+   */
+  static void addMaster(final Diagram diagram, final Diagram masterFile, final String masterName) throws Exception {
+    // The stencil is shared, so only one diagram may read from it at a time.
+    synchronized (masterFile) {
+      diagram.addMaster(masterFile, masterName);
+    }
+  }
+
+  /**
+   * Removes every cached stencil, so that each is parsed again on its next use.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The cache is empty.
+   *
+   * @author Jesse Primiani
+   */
+  static synchronized void clear() {
+    entries.clear();
+  }
+
+}
@@ -1,5 +1,10 @@
 package com.beulahworks.SDMfileGenerator;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Contains the methods used by SDMtoFile for collecting the information needed 
  * to export a sequence diagram to a file.
@@ -9,27 +14,127 @@ package com.beulahworks.SDMfileGenerator;
  * <br>
  * Traceability: Class design is given in Sections 6.1.6 and 6.2.6 of the SDD.
  * 
- * See a concrete implementation for method-specific comments.
+ * See a concrete implementation for method-specific comments. Progress is reported 
+ * by SDMtoFile through an ExportListener, so adapters do not build logging messages; 
+ * saveToFile returns the full name of the file it saved. saveToStream writes the same content 
+ * to a caller's stream, which it flushes but does not close.
  * 
  * @author Jesse Primiani
  */
 public interface OutputAdapter {
   
-  public String initializeDiagram() throws Exception;
+  public void initializeDiagram() throws Exception;
+  
+  public void addActor(String actorName) throws Exception;
+  public void addClassBlock(String instanceName, String className) throws Exception;
+  public void addActivationBlocks(int count) throws Exception;
+  
+  public void addLifeline(int fromIndex, int toIndex, boolean active) throws Exception;
+  public void addMethod(int fromIndex, int toIndex, String text) throws Exception;
+  
+  public void addConstraint(String text) throws Exception;
+  public void addLoop(String text) throws Exception;
+  public void addAlternative(String text, String textElse) throws Exception;
+  
+  /*
+   * Bulk versions of the methods above, used by SDMtoFile to add the elements of a kind a chunk at a time. 
+   * Parallel arrays must be the same length. The default implementations call the single-element 
+   * method once per element; adapters override them to pre-size their data structures, and to look up 
+   * what the elements of a group share, once for each group.
+   */
+  
+  public default void addActors(String[] actorNames) throws Exception {
+    for (String actorName : actorNames) {
+      addActor(actorName);
+    }
+  }
+  
+  public default void addClassBlocks(String[] instanceNames, String[] classNames) throws Exception {
+    if (instanceNames.length != classNames.length) throw new SDMException("Array lengths differ in method 'addClassBlocks'");
+    for (int index = 0; index < instanceNames.length; index++) {
+      addClassBlock(instanceNames[index], classNames[index]);
+    }
+  }
+  
+  public default void addLifelines(int[] fromIndices, int[] toIndices, boolean[] active) throws Exception {
+    if (fromIndices.length != toIndices.length || fromIndices.length != active.length) {
+      throw new SDMException("Array lengths differ in method 'addLifelines'");
+    }
+    for (int index = 0; index < fromIndices.length; index++) {
+      addLifeline(fromIndices[index], toIndices[index], active[index]);
+    }
+  }
   
-  public String addActor(String actorName) throws Exception;
-  public String addClassBlock(String instanceName, String className) throws Exception;
-  public String addActivationBlocks(int count) throws Exception;
+  public default void addMethods(int[] fromIndices, int[] toIndices, String[] texts) throws Exception {
+    if (fromIndices.length != toIndices.length || fromIndices.length != texts.length) {
+      throw new SDMException("Array lengths differ in method 'addMethods'");
+    }
+    for (int index = 0; index < fromIndices.length; index++) {
+      addMethod(fromIndices[index], toIndices[index], texts[index]);
+    }
+  }
   
-  public String addLifeline(int fromIndex, int toIndex, boolean active) throws Exception;
-  public String addMethod(int fromIndex, int toIndex, String text) throws Exception;
+  public default void addConstraints(String[] texts) throws Exception {
+    for (String text : texts) {
+      addConstraint(text);
+    }
+  }
   
-  public String addConstraint(String text) throws Exception;
-  public String addLoop(String text) throws Exception;
-  public String addAlternative(String text, String textElse) throws Exception;
+  public default void addLoops(String[] texts) throws Exception {
+    for (String text : texts) {
+      addLoop(text);
+    }
+  }
   
-  public String finalizeDiagram() throws Exception;
+  public default void addAlternatives(String[] texts, String[] textsElse) throws Exception {
+    if (texts.length != textsElse.length) throw new SDMException("Array lengths differ in method 'addAlternatives'");
+    for (int index = 0; index < texts.length; index++) {
+      addAlternative(texts[index], textsElse[index]);
+    }
+  }
+  
+  public void finalizeDiagram() throws Exception;
   
   public String saveToFile(String path, String name, OutputType<?> type, boolean overwrite) throws Exception;
+  
+  /*
+   * The default implementation saves to a file in a temporary directory, copies it to the stream, and 
+   * deletes it. Adapters override it to write to the stream directly, without the file.
+   */
+  
+  public default void saveToStream(OutputStream out, OutputType<?> type) throws Exception {
+    if (out == null) throw new SDMException("Null 'out' parameter in: saveToStream");
+    Path directory = Files.createTempDirectory("sdm-");
+    try {
+      Path savedFile = Paths.get(saveToFile(directory.toString(), "diagram", type, true));
+      try {
+        Files.copy(savedFile, out);
+        out.flush();
+      } finally {
+        Files.deleteIfExists(savedFile);
+      }
+    } finally {
+      Files.deleteIfExists(directory);
+    }
+  }
+  
+  /*
+   * Throws away the diagram being built, such as when an export fails or is abandoned, deleting any 
+   * temporary files it was spooled to. A new diagram must be initialized before adding more elements. 
+   * The default does nothing, for adapters that keep the diagram only in memory until it is saved.
+   */
+  
+  public default void discardDiagram() {
+  }
+  
+  /*
+   * The adapter's settings that change the files it saves, as a string, which ExportCache adds to an 
+   * export's key so that exports with different settings never share an entry. The default, null, 
+   * means the adapter does not describe its settings, and SDMtoFile does not cache its exports.
+   */
+  
+  public default String getCacheKeyParameters() {
+    return null;
+  }
 
 }
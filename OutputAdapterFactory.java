@@ -0,0 +1,13 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * Creates new OutputAdapter instances, used when several diagrams are exported 
+ * at once and each worker needs an adapter of its own, for example: OutputAspose::new
+ * 
+ * @author Jesse Primiani
+ */
+public interface OutputAdapterFactory {
+  
+  public OutputAdapter createAdapter() throws Exception;
+
+}
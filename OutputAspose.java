@@ -1,7 +1,16 @@
 package com.beulahworks.SDMfileGenerator;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import com.aspose.diagram.*;
 
 /**
@@ -20,21 +29,103 @@ import com.aspose.diagram.*;
  * @author Jesse Primiani
  * @author Isis Curiel
  */
-public class OutputAspose implements OutputAdapter {
+public class OutputAspose implements IncrementalOutputAdapter {
 
+  /** The path to the Visio stencil file containing the masters used for every shape. */
+  private static final String MASTER_FILE = "VisioMasters" + File.separator + "MasterSDM.vssx";
+  
   /** This stores the aspose.diagram data structure used to generate the file. */
   private Diagram diagram;
   
+  /** The diagram's page that shapes are added to, looked up once per diagram. */
+  private Page page;
+  
+  /** The parsed stencil file, shared through MasterCache, that masters are copied from. */
+  private Diagram masterFile;
+  
+  /** The names of the masters already added to the diagram. Masters are only added when first used. */
+  private HashSet<String> addedMasters;
+  
   /** A 'virtual index map', used to relate the index of an element in the input model to an 
-   *  element in the output library, via the relative order of the element. To do so, this map 
-   *  stores the output library's element insertion order, which refers to the same element in 
-   *  both input and output libraries, as the key, and its actual ID as the value.
+   *  element in the output library, via the relative order of the element. To do so, this array 
+   *  is indexed by the output library's element insertion order, which refers to the same element in 
+   *  both input and output libraries, and stores its actual ID. Virtual indices are dense and 
+   *  zero-based, so only the first nextVirtualIndex entries are in use.
    */
-  private HashMap<Integer, Long> actualIDs;
+  private long[] actualIDs;
   
   /** The next virtual index to store. For use with the virtual index map. */
   private int nextVirtualIndex;
   
+  /** Returned by getActualID() for a virtual index that has not been added yet. */
+  private static final long MISSING_ID = -1;
+  
+  /** The kinds of element that a virtual index can refer to, for layout. */
+  private static final int PARTICIPANT = 0;
+  private static final int ACTIVATION_BLOCK = 1;
+  private static final int LIFELINE = 2;
+  
+  /** The kinds of fragment: constraints and loops take one row, and alternatives two. */
+  private static final int CONSTRAINT = 0;
+  private static final int LOOP = 1;
+  private static final int ALTERNATIVE = 2;
+  
+  /** The version of the state written by saveState(). */
+  private static final int STATE_VERSION = 1;
+  
+  /** The masters of each kind of fragment, indexed by kind. */
+  private static final String[] FRAGMENT_MASTERS = {"UMLConstraintBlock", "UMLOptionLoopBlock", "UMLAlternativeBlock2"};
+  
+  /** The most methods on one page, or 0 for no limit. Set by setMessagesPerPage(). */
+  private int messagesPerPage;
+  
+  /** The tallest page, in inches, or 0 for no limit. Set by setMaxPageHeight(). */
+  private double maxPageHeight;
+  
+  /** The most rows of methods and fragments on one page of the diagram being built, or 0 to put every shape on one page. */
+  private int rowsPerPage;
+  
+  /** The layout of the page, in inches. */
+  private static final double MARGIN = 0.5;
+  private static final double COLUMN_WIDTH = 1.75;
+  private static final double ROW_HEIGHT = 0.4;
+  private static final double PARTICIPANT_WIDTH = 1.5;
+  private static final double PARTICIPANT_HEIGHT = 0.6;
+  private static final double ACTIVATION_BLOCK_WIDTH = 0.2;
+  private static final double HEADER_GAP = 0.4;
+  
+  /** The kind of element at each virtual index, and its position among the elements of its kind. */
+  private IndexRuns kinds;
+  
+  /** The shape at each virtual index, indexed as the virtual index map is. */
+  private Shape[] shapes;
+  
+  /** The virtual indices of the elements each lifeline connects, indexed by the lifeline's position among lifelines. */
+  private int[] lifelineFrom;
+  private int[] lifelineTo;
+  
+  /** The connector of each method, and the virtual indices of the elements it connects, in the order added. */
+  private Shape[] methodShapes;
+  private int[] methodFrom;
+  private int[] methodTo;
+  private int methodCount;
+  
+  /** The shape of each constraint, loop and alternative, and its kind of fragment, in the order added. */
+  private Shape[] fragmentShapes;
+  private int[] fragmentKinds;
+  private int fragmentCount;
+  
+  /** When paginating, what each page's shapes are built from in finalizeDiagram(): each participant's 
+   *  master and text, indexed by its position among participants, each lifeline's pattern, and the 
+   *  texts of each method and fragment, in the order added.
+   */
+  private String[] participantMasters;
+  private String[] participantTexts;
+  private BitSet lifelineActive;
+  private String[] methodTexts;
+  private String[] fragmentTexts;
+  private String[] fragmentTextsElse;
+  
   /**
    * Automatically call initialize() in the default constructor 
    * to prevent the diagram attribute from being null.
@@ -60,33 +151,109 @@ public class OutputAspose implements OutputAdapter {
    * <br>
    * <b>Preconditions:</b> None
    * <br>
-   * <b>Postconditions:</b> The output librarys diagram object is created or reset. 
-   * Logging information is returned.
+   * <b>Postconditions:</b> The output librarys diagram object is created or reset, without any masters. 
    * 
    * @author Jesse Primiani
-   * @return A logging message, stating that an empty diagram was created.
    */
-  public String initializeDiagram() throws Exception {
+  public void initializeDiagram() throws Exception {
     // Create the output diagram data structure.
     diagram = new Diagram();
+    page = diagram.getPages().getPage(0);
 
-    // Add stencils from the master file.
-    Diagram masterFile = new Diagram("VisioMasters" + File.separator + "MasterSDM.vssx");
-    diagram.addMaster(masterFile, "Dynamic connector");
-    diagram.addMaster(masterFile, "UMLActorBlock");
-    diagram.addMaster(masterFile, "UMLSeqEntityBlock");
-    diagram.addMaster(masterFile, "UMLObjectBlock");
-    diagram.addMaster(masterFile, "UMLActivationBlock");
-    diagram.addMaster(masterFile, "UMLConstraintBlock");
-    diagram.addMaster(masterFile, "UMLOptionLoopBlock");
-    diagram.addMaster(masterFile, "UMLAlternativeBlock2");
-    diagram.addMaster(masterFile, "UMLDeletionBlock");
+    // Get the stencil from the master file, which is only parsed again if it changed since its last use.
+    // Its masters are added to the diagram by useMaster(), only when a shape first needs them.
+    masterFile = MasterCache.getMasterFile(MASTER_FILE);
+    addedMasters = new HashSet<String>();
     
     // Initialize the virtual index map.
-    actualIDs = new HashMap<Integer, Long>();
+    actualIDs = new long[16];
     nextVirtualIndex = 0;
-
-    return "Empty Diagram object created & masters added";
+    
+    // Initialize the records used for layout.
+    kinds = new IndexRuns(3);
+    shapes = new Shape[16];
+    lifelineFrom = new int[16];
+    lifelineTo = new int[16];
+    methodShapes = new Shape[16];
+    methodFrom = new int[16];
+    methodTo = new int[16];
+    methodCount = 0;
+    fragmentShapes = new Shape[16];
+    fragmentKinds = new int[16];
+    fragmentCount = 0;
+    
+    // When paginating, shapes are only recorded until finalizeDiagram() builds the pages.
+    rowsPerPage = getRowsPerPage();
+    if (rowsPerPage > 0) {
+      participantMasters = new String[16];
+      participantTexts = new String[16];
+      lifelineActive = new BitSet();
+      methodTexts = new String[16];
+      fragmentTexts = new String[16];
+      fragmentTextsElse = new String[16];
+    } else {
+      participantMasters = participantTexts = methodTexts = fragmentTexts = fragmentTextsElse = null;
+      lifelineActive = null;
+    }
+  }
+  
+  /**
+   * Splits the diagrams built from now on into pages of at most the given number of methods, each 
+   * with every participant repeated along its top. Constraints, loops and alternatives follow the 
+   * methods, counting as one method each, or two for an alternative.
+   * <br>
+   * Each page's activation blocks span only the rows of that page's methods, and a page only has 
+   * the participants its own methods use, so that each page's size, and the time taken to lay it out 
+   * and to open it, depend on its own methods rather than the whole diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The next diagram initialized is split into pages of at most messages methods, 
+   * or, if messages is 0, is only split by setMaxPageHeight().
+   * 
+   * @author Jesse Primiani
+   * @param messages The most methods on a page, or 0 for no limit.
+   * @throws SDMException if messages is negative.
+   */
+  public void setMessagesPerPage(int messages) throws SDMException {
+    if (messages < 0) throw new SDMException("Negative 'messages' parameter in: OutputAspose 'setMessagesPerPage' method");
+    messagesPerPage = messages;
+  }
+  
+  /**
+   * Splits the diagrams built from now on into pages no taller than the given height, as 
+   * setMessagesPerPage() does. A page always has room for at least two rows.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The next diagram initialized is split into pages of at most the given height, 
+   * or, if inches is 0, is only split by setMessagesPerPage().
+   * 
+   * @author Jesse Primiani
+   * @param inches The tallest page, in inches, or 0 for no limit.
+   * @throws SDMException if inches is negative.
+   */
+  public void setMaxPageHeight(double inches) throws SDMException {
+    if (!(inches >= 0)) throw new SDMException("Negative 'inches' parameter in: OutputAspose 'setMaxPageHeight' method");
+    maxPageHeight = inches;
+  }
+  
+  /**
+   * Gets the most rows on a page, from the message and height limits.
+   * 
+   * @author Jesse Primiani
+   * @return The smaller of the two limits in rows, or 0 if neither is set.
+   */
+  private int getRowsPerPage() {
+    int rows = messagesPerPage;
+    if (maxPageHeight > 0) {
+      int heightRows = (int) Math.floor((maxPageHeight - 2 * MARGIN - PARTICIPANT_HEIGHT - HEADER_GAP) / ROW_HEIGHT);
+      heightRows = Math.max(heightRows, 2);
+      rows = (rows > 0) ? Math.min(rows, heightRows) : heightRows;
+    }
+    return rows;
   }
   
   /**
@@ -95,27 +262,24 @@ public class OutputAspose implements OutputAdapter {
    * <br>
    * <b>Preconditions:</b> None
    * <br>
-   * <b>Postconditions:</b> An actor diagram element with the given name is added to the diagram. 
-   * Logging information is returned.
+   * <b>Postconditions:</b> An actor diagram element with the given name is added to the diagram.
    * 
    * @author Isis Curiel with help from Brayden McCoy  
    * @param actorName The actor element's name.
-   * @return A logging message, stating that an actor with a given name was added.
    * @throws Exception on an output library error.
    */
-  public String addActor(String actorName) throws Exception {
+  public void addActor(String actorName) throws Exception {
 	if (actorName == null) actorName = "";
 	
-	// Add an actor to the diagram.
-	long shapeID = diagram.addShape(0, 0, "UMLActorBlock", 0); // Use this master in asposeMasters: "UMLActorBlock"
-	Shape shape = diagram.getPages().getPage(0).getShapes().getShape(shapeID); // gets the added shape
-	shape.getText().getValue().add(new Txt(actorName)); // Change actor's text to the assigned name
-	
-	// Add the actual element ID to the virtual index map.
-	actualIDs.put(nextVirtualIndex, shapeID);
-	nextVirtualIndex++;
+	// When paginating, the actor is added to every page by finalizeDiagram().
+	if (rowsPerPage > 0) {
+	  addParticipant("UMLActorBlock", actorName);
+	  return;
+	}
 	
-    return "Actor: " + actorName + " added to UML Sequence Diagram"; 
+	// Add an actor to the diagram.
+	useMaster("UMLActorBlock");
+	addParticipantShape(page.getShapes(), "UMLActorBlock", actorName); // Use this master in asposeMasters: "UMLActorBlock"
   }
   
   /**
@@ -124,29 +288,26 @@ public class OutputAspose implements OutputAdapter {
    * <br>
    * <b>Preconditions:</b> None
    * <br>
-   * <b>Postconditions:</b> An object diagram element with the given name and class text is added to the diagram. 
-   * Logging information is returned.
+   * <b>Postconditions:</b> An object diagram element with the given name and class text is added to the diagram.
    * 
    * @author Isis Curiel with help from Jesse Primiani
    * @param instanceName The object element's name.
    * @param className The name of the object element's class.
-   * @return A logging message, stating that an object with the given instance and class names was added.
    * @throws Exception on an output library error.
    */
-  public String addClassBlock(String instanceName, String className) throws Exception {
+  public void addClassBlock(String instanceName, String className) throws Exception {
 	if (instanceName == null) instanceName = "";
 	if (className == null) className = "";
 	
-	// Add a class to the diagram.
-	long shapeID = diagram.addShape(0, 0, "UMLObjectBlock", 0); // Use this master in asposeMasters: "UMLObjectBlock"
-	Shape shape = diagram.getPages().getPage(0).getShapes().getShape(shapeID); // gets the added shape
-	shape.getText().getValue().add(new Txt (instanceName+":"+className)); // Change class text to the assigned names
-	
-	// Add the actual element ID to the virtual index map.
-    actualIDs.put(nextVirtualIndex, shapeID);
-    nextVirtualIndex++;
+	// When paginating, the class is added to every page by finalizeDiagram().
+	if (rowsPerPage > 0) {
+	  addParticipant("UMLObjectBlock", instanceName+":"+className);
+	  return;
+	}
 	
-    return "Class: " + className + " with instance: " + instanceName + " added to the UML Sequence Diagram" ;
+	// Add a class to the diagram.
+	useMaster("UMLObjectBlock");
+	addParticipantShape(page.getShapes(), "UMLObjectBlock", instanceName+":"+className); // Use this master in asposeMasters: "UMLObjectBlock"
   }
   
   /**
@@ -156,26 +317,31 @@ public class OutputAspose implements OutputAdapter {
    * <b>Preconditions:</b> None
    * <br>
    * <b>Postconditions:</b> The given number, count, of process block diagram elements are added to the diagram. 
-   * Logging information is returned.
    * 
    * @author Isis Curiel
    * @param count The number of process blocks to add.
-   * @return A logging message, stating that the given number of activation blocks were added.
    * @throws Exception on an output library error.
    */
-  public String addActivationBlocks(int count) throws Exception {
+  public void addActivationBlocks(int count) throws Exception {
 	  if (count < 0) count = 0;
 	  
+	  // When paginating, each page adds the activation blocks its methods use.
+	  if (rowsPerPage > 0) {
+	    ensureActualIDCapacity(count);
+	    for (int i = 0; i < count; i++) addActualID(MISSING_ID, ACTIVATION_BLOCK, null);
+	    return;
+	  }
+	  
+	  if (count > 0) useMaster("UMLActivationBlock");
+	  
 	  for (int i = 0; i < count; i++) {
 	      // Add an activation block to the diagram.
 		  long shapeID = diagram.addShape(0, 0, "UMLActivationBlock", 0); // Use this master in asposeMasters: "UMLActivationBlock"
 		  
 		  // Add the actual element ID to the virtual index map.
-		  actualIDs.put(nextVirtualIndex, shapeID);
-		  nextVirtualIndex++;
+		  addActualID(shapeID, ACTIVATION_BLOCK, page.getShapes().getShape(shapeID));
 	  }
 	  
-	  return count + " activation blocks added to the UML Sequence Diagram";
   } 
   
   /**
@@ -186,49 +352,60 @@ public class OutputAspose implements OutputAdapter {
    * <br>
    * <b>Postconditions:</b> A connection starting at the element referred to by fromIndex, and ending at that 
    * referred to by toIndex, is added to the diagram. With a dashed line when active is false, and a 
-   * solid line otherwise. Logging information is returned.
+   * solid line otherwise.
    * 
    * @author Isis Curiel 
    * @param fromIndex The starting element for the lifeline.
    * @param toIndex The ending element for the lifeline.
    * @param active Whether the lifeline represents an active object.
-   * @return A logging message, stating that an object's lifeline, active or not, was added.
    * @throws SDMException if an index is negative or invalid.
    * @throws Exception on output library error.
    */
-  public String addLifeline(int fromIndex, int toIndex, boolean active) throws Exception {
-	  if (fromIndex < 0) throw new SDMException("fromIndex in method 'addLifeline' is less than 0");
-	  if (toIndex < 0) throw new SDMException("toIndex in method 'addLifeline' is less than 0");
+  public void addLifeline(int fromIndex, int toIndex, boolean active) throws Exception {
+	  checkNonNegative(fromIndex, toIndex, "addLifeline");
+
+	  // When paginating, each page adds the life-lines of the elements on it.
+	  if (rowsPerPage > 0) {
+	    addActualID(MISSING_ID, LIFELINE, null);
+	    addLifelineEnds(fromIndex, toIndex);
+	    lifelineActive.set(kinds.getCount(LIFELINE) - 1, active);
+	    checkRecorded(fromIndex, toIndex, "addLifeline");
+	    return;
+	  }
 
 	  // Add a life-line to the diagram.
+	  useMaster("Dynamic connector");
+	  connectLifeline(page.getShapes(), fromIndex, toIndex, active);
+  }
+  
+  /**
+   * Adds a life-line connector to a diagram that is not paginated, once its master has been added.
+   * 
+   * @author Isis Curiel
+   * @param pageShapes The shapes of the diagram's page.
+   * @param fromIndex The starting element for the lifeline.
+   * @param toIndex The ending element for the lifeline.
+   * @param active Whether the lifeline represents an active object.
+   * @throws SDMException if an index is invalid.
+   * @throws Exception on output library error.
+   */
+  private void connectLifeline(ShapeCollection pageShapes, int fromIndex, int toIndex, boolean active) throws Exception {
 	  long connectorID = diagram.addShape(0, 0, "Dynamic connector", 0); // Use this master in asposeMasters: "Dynamic connector"
-	  Shape shape = diagram.getPages().getPage(0).getShapes().getShape(connectorID); // gets the added shape
-	  shape.getLine().getBeginArrow().setValue(0); // Remove beginning arrow
-	  shape.getLine().getEndArrow().setValue(0); // Remove ending arrow
-	  shape.getLine().getLineColor().setValue("#000000"); // Use a black line
-      shape.getLine().getLineWeight().setValue(0.014); // Use a thicker line
-	  
-	  // Set the life-line to be solid or dashed.
-	  if (active) {
-	    shape.getLine().getLinePattern().setValue(1); // 1 = solid line
-	  } else {
-	    shape.getLine().getLinePattern().setValue(2); // 2 = dashed line
-	  }
+	  Shape shape = pageShapes.getShape(connectorID); // gets the added shape
+	  styleLifeline(shape, active);
 	  
 	  // Add the actual element ID to the virtual index map.
-      actualIDs.put(nextVirtualIndex, connectorID);
-      nextVirtualIndex++;
+      addActualID(connectorID, LIFELINE, shape);
+      addLifelineEnds(fromIndex, toIndex);
 	  
 	  // Convert from virtual to real indices, then connect shapes.
-      if (!actualIDs.containsKey(fromIndex)) throw new SDMException("fromIndex in method 'addLifeline' is currently invalid");
-      if (!actualIDs.containsKey(toIndex)) throw new SDMException("toIndex in method 'addLifeline' is currently invalid");
+      long realFromIndex = getActualID(fromIndex);
+      long realToIndex = getActualID(toIndex);
+      if (realFromIndex == MISSING_ID) throw new SDMException("fromIndex in method 'addLifeline' is currently invalid");
+      if (realToIndex == MISSING_ID) throw new SDMException("toIndex in method 'addLifeline' is currently invalid");
       
-	  long realFromIndex = actualIDs.get(fromIndex);
-	  long realToIndex = actualIDs.get(toIndex);
-	  diagram.getPages().getPage(0).connectShapesViaConnector(realFromIndex, ConnectionPointPlace.BOTTOM, 
+	  page.connectShapesViaConnector(realFromIndex, ConnectionPointPlace.BOTTOM, 
 	      realToIndex, ConnectionPointPlace.TOP, connectorID); // connect shapes via indices
-	  
-      return "Lifeline from index: " + fromIndex + " to index: " + toIndex + " active: " + active + " added to the UML Sequence Diagram";
   }
   
   /**
@@ -238,43 +415,61 @@ public class OutputAspose implements OutputAdapter {
    * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
    * <br>
    * <b>Postconditions:</b> A method starting at the element referred to by fromIndex, and ending at that 
-   * referred to by toIndex, with name for the method name, is added to the diagram. 
-   * Logging information is returned.
+   * referred to by toIndex, with name for the method name, is added to the diagram.
    * 
    * @author Isis Curiel 
    * @param fromIndex The starting element for the message.
    * @param toIndex The ending element for the message.
    * @param text The message's (method's) text.
-   * @return A logging message, stating that a message between the given objects with the given text was added.
    * @throws SDMException if an index is negative or invalid.
    * @throws Exception on output library error.
    */
-  public String addMethod(int fromIndex, int toIndex, String text) throws Exception {
-      if (fromIndex < 0) throw new SDMException("fromIndex in method 'addMethod' is less than 0");
-      if (toIndex < 0) throw new SDMException("toIndex in method 'addMethod' is less than 0");
+  public void addMethod(int fromIndex, int toIndex, String text) throws Exception {
+      checkNonNegative(fromIndex, toIndex, "addMethod");
     
       if (text == null) text = "";
 
+      // When paginating, the method is added to its page by finalizeDiagram().
+      if (rowsPerPage > 0) {
+        checkRecorded(fromIndex, toIndex, "addMethod");
+        addMethodShape(null, fromIndex, toIndex);
+        methodTexts = recordText(methodTexts, methodCount - 1, text);
+        return;
+      }
+
       // Add a method to the diagram.
+	  useMaster("Dynamic connector");
+	  connectMethod(page.getShapes(), fromIndex, toIndex, text);
+  }
+  
+  /**
+   * Adds a method connector to a diagram that is not paginated, once its master has been added.
+   * 
+   * @author Isis Curiel
+   * @param pageShapes The shapes of the diagram's page.
+   * @param fromIndex The starting element for the message.
+   * @param toIndex The ending element for the message.
+   * @param text The message's (method's) text.
+   * @throws SDMException if an index is invalid.
+   * @throws Exception on output library error.
+   */
+  private void connectMethod(ShapeCollection pageShapes, int fromIndex, int toIndex, String text) throws Exception {
 	  long connectorID = diagram.addShape(0, 0, "Dynamic connector", 0); // Use this master in asposeMasters: "Dynamic connector"
-	  Shape shape = diagram.getPages().getPage(0).getShapes().getShape(connectorID); // gets the added shape
+	  Shape shape = pageShapes.getShape(connectorID); // gets the added shape
 	  shape.getText().getValue().add(new Txt(text)); // Change method text to the assigned text
-	  shape.getLine().getBeginArrow().setValue(0); // Remove beginning arrow
-      shape.getLine().getEndArrow().setValue(2); // Set ending arrow to a basic arrow type
-      shape.getLine().getLinePattern().setValue(1); // Use a solid line
-      shape.getLine().getLineColor().setValue("#000000"); // Use a black line
-      shape.getLine().getLineWeight().setValue(0.014); // Use a thicker line
+	  styleMethod(shape);
 	  
 	  // Convert from virtual to real indices, then connect shapes.
-      if (!actualIDs.containsKey(fromIndex)) throw new SDMException("fromIndex in method 'addMethod' is currently invalid");
-      if (!actualIDs.containsKey(toIndex)) throw new SDMException("toIndex in method 'addMethod' is currently invalid");
+      long realFromIndex = getActualID(fromIndex);
+      long realToIndex = getActualID(toIndex);
+      if (realFromIndex == MISSING_ID) throw new SDMException("fromIndex in method 'addMethod' is currently invalid");
+      if (realToIndex == MISSING_ID) throw new SDMException("toIndex in method 'addMethod' is currently invalid");
       
-      long realFromIndex = actualIDs.get(fromIndex);;
-      long realToIndex = actualIDs.get(toIndex);;
-      diagram.getPages().getPage(0).connectShapesViaConnector(realFromIndex, ConnectionPointPlace.RIGHT, 
+      page.connectShapesViaConnector(realFromIndex, ConnectionPointPlace.RIGHT, 
           realToIndex, ConnectionPointPlace.LEFT, connectorID); // connect shapes via indices
-
-      return "Method from index: " + fromIndex + " to index: " + toIndex + " with text: " + text + " added to the UML Sequence Diagram";
+      
+      // Keep the method's connector, and its order, for layout.
+      addMethodShape(shape, fromIndex, toIndex);
   }
   
   /**
@@ -283,23 +478,25 @@ public class OutputAspose implements OutputAdapter {
    * <br>
    * <b>Preconditions:</b> None
    * <br>
-   * <b>Postconditions:</b> A constraint diagram element with the given internal text is added to the diagram. 
-   * Logging information is returned.
+   * <b>Postconditions:</b> A constraint diagram element with the given internal text is added to the diagram.
    * 
    * @author Isis Curiel
    * @param text The constraint's text.
-   * @return A logging message, stating that a constraint with the given text was added.
    * @throws Exception on an output library error.
    */
-  public String addConstraint(String text) throws Exception {
+  public void addConstraint(String text) throws Exception {
 	  if (text == null) text = "";
 
+	  // When paginating, the constraint is added to its page by finalizeDiagram().
+	  if (rowsPerPage > 0) {
+	    addFragmentShape(null, CONSTRAINT);
+	    recordFragmentTexts(text, null);
+	    return;
+	  }
+
 	  // Add a constraint block to the diagram.
-	  long shapeID = diagram.addShape(0, 0, "UMLConstraintBlock", 0); // Use this master in asposeMasters: "UMLConstraintBlock"
-	  Shape shape = diagram.getPages().getPage(0).getShapes().getShape(shapeID); // gets the added shape
-	  shape.getText().getValue().add(new Txt (text)); // Change constraint text to the assigned text
-	  
-      return "Constraint with text: " + text + " added to the UML Sequence Diagram";
+	  useMaster("UMLConstraintBlock");
+	  addFragment(page.getShapes(), "UMLConstraintBlock", CONSTRAINT, text, null); // Use this master in asposeMasters: "UMLConstraintBlock"
   }
   
   /**
@@ -309,22 +506,25 @@ public class OutputAspose implements OutputAdapter {
    * <b>Preconditions:</b> None
    * <br> 
    * <b>Postconditions:</b> A loop block diagram element with the given internal text for the looping condition 
-   * is added to the diagram. Logging information is returned.
+   * is added to the diagram.
    * 
    * @author Isis Curiel
    * @param text The loop's constraint text.
-   * @return A logging message, stating that a loop with the given constraint text was added.
    * @throws Exception on an output library error.
    */
-  public String addLoop(String text) throws Exception {
+  public void addLoop(String text) throws Exception {
 	  if (text == null) text = "";
 	  
-	  // Add a loop block to the diagram.
-	  long shapeID = diagram.addShape(0, 0, "UMLOptionLoopBlock", 0); // Use this master in asposeMasters: "UMLOptionLoopBlock"
-	  Shape shape = diagram.getPages().getPage(0).getShapes().getShape(shapeID); // gets the added shape
-	  shape.getText().getValue().add(new Txt (text)); // Change constraint text to the assigned text
+	  // When paginating, the loop is added to its page by finalizeDiagram().
+	  if (rowsPerPage > 0) {
+	    addFragmentShape(null, LOOP);
+	    recordFragmentTexts(text, null);
+	    return;
+	  }
 	  
-      return "Loop with constraint: " + text + " added to the UML Sequence Diagram";
+	  // Add a loop block to the diagram.
+	  useMaster("UMLOptionLoopBlock");
+	  addFragment(page.getShapes(), "UMLOptionLoopBlock", LOOP, text, null); // Use this master in asposeMasters: "UMLOptionLoopBlock"
   }
   
   /**
@@ -334,103 +534,1574 @@ public class OutputAspose implements OutputAdapter {
    * <b>Preconditions:</b> None
    * <br>
    * <b>Postconditions:</b> An alternative (if-else) block diagram element, with the given internal text for 
-   * the if condition, and textElse for the else text, is added to the diagram. Logging information 
-   * is returned.
+   * the if condition, and textElse for the else text, is added to the diagram.
    * 
    * @author Isis Curiel
    * @param text The initial constraint's text.
    * @param textElse The else section's text.
-   * @return A logging message, stating that an if-block with the given constraint and else text was added.
    * @throws Exception on an output library error.
    */
-  public String addAlternative(String text, String textElse) throws Exception {
+  public void addAlternative(String text, String textElse) throws Exception {
       if (text == null) text = "";
       if (textElse == null) textElse = "";
 	  
+	  // When paginating, the alternative is added to its page by finalizeDiagram().
+	  if (rowsPerPage > 0) {
+	    addFragmentShape(null, ALTERNATIVE);
+	    recordFragmentTexts(text, textElse);
+	    return;
+	  }
+	  
 	  // Add an alternative block to the diagram.
-	  long shapeID = diagram.addShape(0, 0, "UMLAlternativeBlock2", 0); // Use this master in asposeMasters: "UMLAlternativeBlock2"
-	  Shape shape = diagram.getPages().getPage(0).getShapes().getShape(shapeID); // gets the added shape
+	  useMaster("UMLAlternativeBlock2");
+	  addFragment(page.getShapes(), "UMLAlternativeBlock2", ALTERNATIVE, text, textElse); // Use this master in asposeMasters: "UMLAlternativeBlock2"
+  }
+  
+  /**
+   * Adds a participant (an actor or object) shape to a diagram that is not paginated, once its master has been added.
+   * 
+   * @author Isis Curiel
+   * @param pageShapes The shapes of the diagram's page.
+   * @param masterName The name of the participant's master in the stencil file.
+   * @param text The participant's text.
+   * @throws Exception on an output library error.
+   */
+  private void addParticipantShape(ShapeCollection pageShapes, String masterName, String text) throws Exception {
+	long shapeID = diagram.addShape(0, 0, masterName, 0);
+	Shape shape = pageShapes.getShape(shapeID); // gets the added shape
+	shape.getText().getValue().add(new Txt(text)); // Change the participant's text to the assigned text
+	
+	// Add the actual element ID to the virtual index map.
+	addActualID(shapeID, PARTICIPANT, shape);
+  }
+  
+  /**
+   * Adds a constraint, loop or alternative shape to a diagram that is not paginated, once its master has been added.
+   * 
+   * @author Isis Curiel
+   * @param pageShapes The shapes of the diagram's page.
+   * @param masterName The name of the fragment's master in the stencil file.
+   * @param kind The kind of fragment: CONSTRAINT, LOOP or ALTERNATIVE.
+   * @param text The fragment's text.
+   * @param textElse An alternative's else text, or null.
+   * @throws Exception on an output library error.
+   */
+  private void addFragment(ShapeCollection pageShapes, String masterName, int kind, String text, String textElse) throws Exception {
+	  long shapeID = diagram.addShape(0, 0, masterName, 0);
+	  Shape shape = pageShapes.getShape(shapeID); // gets the added shape
 	  shape.getText().getValue().add(new Txt (text)); // Change constraint text to the assigned text
-	  shape.getText().getValue().add(new Txt (textElse)); // Change else text to the assigned text
-
-      return "Alternative block with if statement: " + text + " and else statement: " + textElse + " added to the UML Sequence Diagram";
+	  if (textElse != null) shape.getText().getValue().add(new Txt (textElse)); // Change else text to the assigned text
+	  addFragmentShape(shape, kind); // Keep the fragment for layout
   }
   
   /**
-   * Called after all content is added to the diagram, but before the diagram is saved. 
-   * Used for shape positioning code, and any other diagram finalization code.
+   * Checks that the element indices a lifeline or method connects are not negative.
+   * 
+   * @author Jesse Primiani
+   * @param fromIndex The starting element's virtual index.
+   * @param toIndex The ending element's virtual index.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if an index is negative.
+   */
+  private static void checkNonNegative(int fromIndex, int toIndex, String method) throws SDMException {
+    if (fromIndex < 0) throw new SDMException("fromIndex in method '" + method + "' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method '" + method + "' is less than 0");
+  }
+  
+  /**
+   * Adds a master from the stencil file to the diagram, if it has not been added yet.
+   * <br>
+   * Called before adding a shape, so that a diagram only contains the masters it uses.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> The named master is part of the diagram.
+   * 
+   * @author Jesse Primiani
+   * @param masterName The name of the master in the stencil file.
+   * @throws Exception on an output library error.
+   */
+  private void useMaster(String masterName) throws Exception {
+    if (!addedMasters.contains(masterName)) {
+      MasterCache.addMaster(diagram, masterFile, masterName);
+      addedMasters.add(masterName); // Only once the diagram has it, so that a failed add is retried
+    }
+  }
+  
+  /**
+   * Records a participant (an actor or object) of a paginated diagram, to be added to every page.
+   * 
+   * @author Jesse Primiani
+   * @param masterName The name of the participant's master in the stencil file.
+   * @param text The participant's text.
+   */
+  private void addParticipant(String masterName, String text) {
+    addActualID(MISSING_ID, PARTICIPANT, null);
+    int participant = kinds.getCount(PARTICIPANT) - 1;
+    participantMasters = recordText(participantMasters, participant, masterName);
+    participantTexts = recordText(participantTexts, participant, text);
+  }
+  
+  /**
+   * Records the texts of the constraint, loop or alternative of a paginated diagram just added.
+   * 
+   * @author Jesse Primiani
+   * @param text The fragment's text.
+   * @param textElse An alternative's else text, or null.
+   */
+  private void recordFragmentTexts(String text, String textElse) {
+    fragmentTexts = recordText(fragmentTexts, fragmentCount - 1, text);
+    fragmentTextsElse = recordText(fragmentTextsElse, fragmentCount - 1, textElse);
+  }
+  
+  /**
+   * Stores a text at an index of an array, growing the array if the index is its length.
+   * 
+   * @author Jesse Primiani
+   * @param texts The array.
+   * @param index The index, at most the array's length.
+   * @param text The text.
+   * @return The array, or its grown copy.
+   */
+  private static String[] recordText(String[] texts, int index, String text) {
+    if (index == texts.length) texts = Arrays.copyOf(texts, index * 2);
+    texts[index] = text;
+    return texts;
+  }
+  
+  /**
+   * Checks that the elements a paginated lifeline or method connects have been added, as 
+   * connecting their shapes would check in a diagram that is not paginated.
+   * 
+   * @author Jesse Primiani
+   * @param fromIndex The starting element's virtual index.
+   * @param toIndex The ending element's virtual index.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if an index is invalid.
+   */
+  private void checkRecorded(int fromIndex, int toIndex, String method) throws SDMException {
+    if (fromIndex >= nextVirtualIndex) throw new SDMException("fromIndex in method '" + method + "' is currently invalid");
+    if (toIndex >= nextVirtualIndex) throw new SDMException("toIndex in method '" + method + "' is currently invalid");
+  }
+  
+  /**
+   * Styles a life-line connector: black, without arrows, and solid for an active object or dashed otherwise.
+   * 
+   * @author Isis Curiel
+   * @param shape The connector.
+   * @param active Whether the lifeline represents an active object.
+   */
+  private static void styleLifeline(Shape shape, boolean active) {
+	  shape.getLine().getBeginArrow().setValue(0); // Remove beginning arrow
+	  shape.getLine().getEndArrow().setValue(0); // Remove ending arrow
+	  shape.getLine().getLineColor().setValue("#000000"); // Use a black line
+      shape.getLine().getLineWeight().setValue(0.014); // Use a thicker line
+	  
+	  // Set the life-line to be solid or dashed.
+	  if (active) {
+	    shape.getLine().getLinePattern().setValue(1); // 1 = solid line
+	  } else {
+	    shape.getLine().getLinePattern().setValue(2); // 2 = dashed line
+	  }
+  }
+  
+  /**
+   * Styles a method connector: a solid black line, with a basic arrow at its end.
+   * 
+   * @author Isis Curiel
+   * @param shape The connector.
+   */
+  private static void styleMethod(Shape shape) {
+	  shape.getLine().getBeginArrow().setValue(0); // Remove beginning arrow
+      shape.getLine().getEndArrow().setValue(2); // Set ending arrow to a basic arrow type
+      shape.getLine().getLinePattern().setValue(1); // Use a solid line
+      shape.getLine().getLineColor().setValue("#000000"); // Use a black line
+      shape.getLine().getLineWeight().setValue(0.014); // Use a thicker line
+  }
+  
+  /**
+   * Add actor elements to the sequence diagram with the given names to be saved.
    * <br>
    * <br>
    * <b>Preconditions:</b> None
    * <br>
-   * <b>Postconditions:</b> The shapes will be properly positioned in the diagram.
+   * <b>Postconditions:</b> An actor diagram element is added for each name, in order. 
    * 
    * @author Jesse Primiani
-   * @return A logging message, stating that shapes were properly positioned.
+   * @param actorNames The actor elements' names.
+   * @throws Exception on an output library error.
    */
-  public String finalizeDiagram() throws Exception {
-    // TODO: Implement shape positioning code.
+  public void addActors(String[] actorNames) throws Exception {
+    ensureActualIDCapacity(actorNames.length);
+    if (rowsPerPage > 0 || actorNames.length == 0) {
+      for (int index = 0; index < actorNames.length; index++) {
+        addActor(actorNames[index]);
+      }
+      return;
+    }
     
-    return "Shapes were properly positioned in the diagram.";
+    // Look up the master and the page's shapes once for the whole group.
+    useMaster("UMLActorBlock");
+    ShapeCollection pageShapes = page.getShapes();
+    for (int index = 0; index < actorNames.length; index++) {
+      String actorName = (actorNames[index] == null) ? "" : actorNames[index];
+      addParticipantShape(pageShapes, "UMLActorBlock", actorName);
+    }
   }
   
   /**
-   * Saves all the added elements contained in the diagram object to a file.
+   * Add object elements with the given names and classes to be saved.
    * <br>
    * <br>
-   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <b>Preconditions:</b> Both arrays must be the same length.
    * <br>
-   * <b>Postconditions:</b> A file containing all the information previously added to the diagram attribute 
-   * is created. Logging information is returned.
+   * <b>Postconditions:</b> An object diagram element is added for each name and class pair, in order. 
    * 
    * @author Jesse Primiani
-   * @param path The output directory's path.
-   * @param name The output file's name.
-   * @param type An object containing the output file's type information.
-   * @param overwrite Whether to overwrite an already existing file if it exists.
-   * @return A logging message, stating whether the file was successfully created.
-   * @throws SDMException If any parameter is null.
+   * @param instanceNames The object elements' names.
+   * @param classNames The names of the object elements' classes.
+   * @throws SDMException if the array lengths differ.
    * @throws Exception on an output library error.
    */
-  public String saveToFile(final String path, final String name, final OutputType<?> type, boolean overwrite) throws Exception {
-    if (path == null) {
-      throw new SDMException("Null 'path' parameter in: saveToFile");
-    } else if (name == null) {
-      throw new SDMException("Null 'name' parameter in: saveToFile");
-    } else if (type == null) {
-      throw new SDMException("Null 'type' parameter in: saveToFile");
-    }
-
-    String appendString = "";
-    
-    // Create the output directory if it does not exist.
-    File pathFile = new File(path);
-    if (!pathFile.exists()) {
-      pathFile.mkdir();
-    }
-    
-    // Rename the output file if it exists and overwrite is false via appending an integer.
-    if (!overwrite) {
-      int appendNum = 0;
-      File resultFile = new File(path, name + type.getExtension());
-      while (resultFile.exists()) {
-        appendNum++;
-        appendString = Integer.toString(appendNum);
-        resultFile = new File(path, name + appendString + type.getExtension());
+  public void addClassBlocks(String[] instanceNames, String[] classNames) throws Exception {
+    if (instanceNames.length != classNames.length) throw new SDMException("Array lengths differ in method 'addClassBlocks'");
+    ensureActualIDCapacity(instanceNames.length);
+    if (rowsPerPage > 0 || instanceNames.length == 0) {
+      for (int index = 0; index < instanceNames.length; index++) {
+        addClassBlock(instanceNames[index], classNames[index]);
       }
+      return;
     }
     
-    // Add a file path seperator on the path if it is not empty.
-    String pathSeperator = File.separator;
-    if (path.isEmpty()) {
-      pathSeperator = "";
+    // Look up the master and the page's shapes once for the whole group.
+    useMaster("UMLObjectBlock");
+    ShapeCollection pageShapes = page.getShapes();
+    for (int index = 0; index < instanceNames.length; index++) {
+      String instanceName = (instanceNames[index] == null) ? "" : instanceNames[index];
+      String className = (classNames[index] == null) ? "" : classNames[index];
+      addParticipantShape(pageShapes, "UMLObjectBlock", instanceName+":"+className);
+    }
+  }
+  
+  /**
+   * Connect pairs of added elements with lines.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All arrays must be the same length, and the indices must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> A lifeline is added for each from, to and active triple, in order. 
+   * 
+   * @author Jesse Primiani
+   * @param fromIndices The starting element for each lifeline.
+   * @param toIndices The ending element for each lifeline.
+   * @param active Whether each lifeline represents an active object.
+   * @throws SDMException if the array lengths differ, or an index is negative or invalid.
+   * @throws Exception on output library error.
+   */
+  public void addLifelines(int[] fromIndices, int[] toIndices, boolean[] active) throws Exception {
+    if (fromIndices.length != toIndices.length || fromIndices.length != active.length) {
+      throw new SDMException("Array lengths differ in method 'addLifelines'");
+    }
+    ensureActualIDCapacity(fromIndices.length);
+    if (rowsPerPage > 0 || fromIndices.length == 0) {
+      for (int index = 0; index < fromIndices.length; index++) {
+        addLifeline(fromIndices[index], toIndices[index], active[index]);
+      }
+      return;
     }
     
-    // Save the created Aspose diagram to disk.
-    String fullFileName = path + pathSeperator + name + appendString + type.getExtension();
-    diagram.save(fullFileName, (int) type.getType());
+    // Look up the master and the page's shapes once for the whole group.
+    useMaster("Dynamic connector");
+    ShapeCollection pageShapes = page.getShapes();
+    for (int index = 0; index < fromIndices.length; index++) {
+      checkNonNegative(fromIndices[index], toIndices[index], "addLifeline");
+      connectLifeline(pageShapes, fromIndices[index], toIndices[index], active[index]);
+    }
+  }
+  
+  /**
+   * Add method call messages between processes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All arrays must be the same length, and the indices must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> A method is added for each from, to and text triple, in order. 
+   * 
+   * @author Jesse Primiani
+   * @param fromIndices The starting element for each message.
+   * @param toIndices The ending element for each message.
+   * @param texts Each message's (method's) text.
+   * @throws SDMException if the array lengths differ, or an index is negative or invalid.
+   * @throws Exception on output library error.
+   */
+  public void addMethods(int[] fromIndices, int[] toIndices, String[] texts) throws Exception {
+    if (fromIndices.length != toIndices.length || fromIndices.length != texts.length) {
+      throw new SDMException("Array lengths differ in method 'addMethods'");
+    }
+    if (rowsPerPage > 0 || fromIndices.length == 0) {
+      for (int index = 0; index < fromIndices.length; index++) {
+        addMethod(fromIndices[index], toIndices[index], texts[index]);
+      }
+      return;
+    }
     
-    return "Diagram successfully saved as: " + fullFileName;
+    // Look up the master and the page's shapes once for the whole group.
+    useMaster("Dynamic connector");
+    ShapeCollection pageShapes = page.getShapes();
+    for (int index = 0; index < fromIndices.length; index++) {
+      checkNonNegative(fromIndices[index], toIndices[index], "addMethod");
+      String text = (texts[index] == null) ? "" : texts[index];
+      connectMethod(pageShapes, fromIndices[index], toIndices[index], text);
+    }
+  }
+  
+  /**
+   * Add constraint boxes with the given constraint texts to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> A constraint diagram element is added for each text, in order. 
+   * 
+   * @author Jesse Primiani
+   * @param texts The constraints' texts.
+   * @throws Exception on an output library error.
+   */
+  public void addConstraints(String[] texts) throws Exception {
+    addFragments("UMLConstraintBlock", CONSTRAINT, texts, null);
+  }
+  
+  /**
+   * Add loop boxes with the given condition texts to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> A loop block diagram element is added for each text, in order. 
+   * 
+   * @author Jesse Primiani
+   * @param texts The loops' constraint texts.
+   * @throws Exception on an output library error.
+   */
+  public void addLoops(String[] texts) throws Exception {
+    addFragments("UMLOptionLoopBlock", LOOP, texts, null);
+  }
+  
+  /**
+   * Add if-statement boxes with the given condition texts to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> Both arrays must be the same length.
+   * <br>
+   * <b>Postconditions:</b> An alternative block diagram element is added for each if and else text pair, in order. 
+   * 
+   * @author Jesse Primiani
+   * @param texts The initial constraints' texts.
+   * @param textsElse The else sections' texts.
+   * @throws SDMException if the array lengths differ.
+   * @throws Exception on an output library error.
+   */
+  public void addAlternatives(String[] texts, String[] textsElse) throws Exception {
+    if (texts.length != textsElse.length) throw new SDMException("Array lengths differ in method 'addAlternatives'");
+    addFragments("UMLAlternativeBlock2", ALTERNATIVE, texts, textsElse);
+  }
+  
+  /**
+   * Adds a group of constraints, loops or alternatives, looking up their master and the page's shapes once.
+   * 
+   * @author Jesse Primiani
+   * @param masterName The name of the fragments' master in the stencil file.
+   * @param kind The kind of fragment: CONSTRAINT, LOOP or ALTERNATIVE.
+   * @param texts The fragments' texts.
+   * @param textsElse The alternatives' else texts, or null for constraints and loops.
+   * @throws Exception on an output library error.
+   */
+  private void addFragments(String masterName, int kind, String[] texts, String[] textsElse) throws Exception {
+    if (rowsPerPage > 0 || texts.length == 0) {
+      for (int index = 0; index < texts.length; index++) {
+        if (kind == CONSTRAINT) addConstraint(texts[index]);
+        else if (kind == LOOP) addLoop(texts[index]);
+        else addAlternative(texts[index], textsElse[index]);
+      }
+      return;
+    }
+    
+    useMaster(masterName);
+    ShapeCollection pageShapes = page.getShapes();
+    for (int index = 0; index < texts.length; index++) {
+      String text = (texts[index] == null) ? "" : texts[index];
+      String textElse = null;
+      if (textsElse != null) textElse = (textsElse[index] == null) ? "" : textsElse[index];
+      addFragment(pageShapes, masterName, kind, text, textElse);
+    }
+  }
+  
+  /**
+   * Grows the virtual index map, if needed, so that the given number of elements can be added without resizing it again.
+   * It at least doubles when it grows, so that elements added a chunk at a time are copied a bounded number of times.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The virtual index map can hold nextVirtualIndex + count entries.
+   * 
+   * @author Jesse Primiani
+   * @param count The number of elements about to be added.
+   */
+  private void ensureActualIDCapacity(int count) {
+    if (nextVirtualIndex + count > actualIDs.length) {
+      int capacity = Math.max(nextVirtualIndex + count, actualIDs.length * 2);
+      actualIDs = Arrays.copyOf(actualIDs, capacity);
+      shapes = Arrays.copyOf(shapes, capacity);
+    }
+  }
+  
+  /**
+   * Stores an added element's actual ID at the next virtual index.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The ID is stored in the virtual index map, which grows as needed, 
+   * with the element's kind and shape for layout, and the next virtual index is incremented.
+   * 
+   * @author Jesse Primiani
+   * @param actualID The output library's ID for the added element.
+   * @param kind The kind of element: PARTICIPANT, ACTIVATION_BLOCK or LIFELINE.
+   * @param shape The added element's shape.
+   */
+  private void addActualID(long actualID, int kind, Shape shape) {
+    if (nextVirtualIndex == actualIDs.length) {
+      actualIDs = Arrays.copyOf(actualIDs, actualIDs.length * 2);
+      shapes = Arrays.copyOf(shapes, actualIDs.length);
+    }
+    actualIDs[nextVirtualIndex] = actualID;
+    shapes[nextVirtualIndex] = shape;
+    kinds.add(kind);
+    nextVirtualIndex++;
+  }
+  
+  /**
+   * Stores the ends of the lifeline just added, for layout.
+   * 
+   * @author Jesse Primiani
+   * @param fromIndex The lifeline's starting element.
+   * @param toIndex The lifeline's ending element.
+   */
+  private void addLifelineEnds(int fromIndex, int toIndex) {
+    int lifeline = kinds.getCount(LIFELINE) - 1;
+    if (lifeline == lifelineFrom.length) {
+      lifelineFrom = Arrays.copyOf(lifelineFrom, lifeline * 2);
+      lifelineTo = Arrays.copyOf(lifelineTo, lifeline * 2);
+    }
+    lifelineFrom[lifeline] = fromIndex;
+    lifelineTo[lifeline] = toIndex;
+  }
+  
+  /**
+   * Stores a method's connector and ends, in the order added, for layout.
+   * 
+   * @author Jesse Primiani
+   * @param shape The method's connector.
+   * @param fromIndex The method's starting element.
+   * @param toIndex The method's ending element.
+   */
+  private void addMethodShape(Shape shape, int fromIndex, int toIndex) {
+    if (methodCount == methodShapes.length) {
+      methodShapes = Arrays.copyOf(methodShapes, methodCount * 2);
+      methodFrom = Arrays.copyOf(methodFrom, methodCount * 2);
+      methodTo = Arrays.copyOf(methodTo, methodCount * 2);
+    }
+    methodShapes[methodCount] = shape;
+    methodFrom[methodCount] = fromIndex;
+    methodTo[methodCount] = toIndex;
+    methodCount++;
+  }
+  
+  /**
+   * Stores a constraint, loop or alternative shape, in the order added, for layout.
+   * 
+   * @author Jesse Primiani
+   * @param shape The fragment's shape.
+   * @param kind The kind of fragment: CONSTRAINT, LOOP or ALTERNATIVE.
+   */
+  private void addFragmentShape(Shape shape, int kind) {
+    if (fragmentCount == fragmentShapes.length) {
+      fragmentShapes = Arrays.copyOf(fragmentShapes, fragmentCount * 2);
+      fragmentKinds = Arrays.copyOf(fragmentKinds, fragmentCount * 2);
+    }
+    fragmentShapes[fragmentCount] = shape;
+    fragmentKinds[fragmentCount] = kind;
+    fragmentCount++;
+  }
+  
+  /**
+   * Gets the number of rows a kind of fragment takes: two for an alternative, for its if and else, and one otherwise.
+   * 
+   * @author Jesse Primiani
+   * @param kind The kind of fragment.
+   * @return The number of rows.
+   */
+  private static int rowsOf(int kind) {
+    return (kind == ALTERNATIVE) ? 2 : 1;
+  }
+  
+  /**
+   * Gets the actual ID of a previously added element from its virtual index.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns the element's actual ID, or MISSING_ID if nothing has been added at that virtual index.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The element's virtual index.
+   * @return The element's actual ID, or MISSING_ID.
+   */
+  private long getActualID(int virtualIndex) {
+    if (virtualIndex < 0 || virtualIndex >= nextVirtualIndex) return MISSING_ID;
+    return actualIDs[virtualIndex];
+  }
+  
+  /**
+   * Loads a diagram saved by this class, to update it in place of building a new one.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fileName is a file saved by this class, and state was returned by saveState() 
+   * for the diagram just before it was saved.
+   * <br>
+   * <b>Postconditions:</b> The diagram and the records used for layout are as they were before 
+   * finalizeDiagram() was called for the saved diagram, so its elements can be replaced, then the 
+   * diagram finalized and saved again.
+   * 
+   * @author Jesse Primiani
+   * @param fileName The full name of the saved file.
+   * @param state The state saveState() returned for it.
+   * @throws SDMException If a parameter is null, the state is not of this version, names a shape the file does not have, 
+   * or setMessagesPerPage() or setMaxPageHeight() has set a limit.
+   * @throws Exception on an output library error.
+   */
+  public void openDiagram(final String fileName, final byte[] state) throws Exception {
+    if (fileName == null) throw new SDMException("Null 'fileName' parameter in: OutputAspose 'openDiagram' method");
+    if (state == null) throw new SDMException("Null 'state' parameter in: OutputAspose 'openDiagram' method");
+    
+    // A saved diagram is always on one page, and a paginated one is only built by finalizeDiagram().
+    if (!canOpenDiagram()) throw new SDMException("Pagination is set in: OutputAspose 'openDiagram' method");
+    
+    // Reset the records, then load the saved diagram in place of the new, empty one.
+    initializeDiagram();
+    diagram = new Diagram(fileName);
+    page = diagram.getPages().getPage(0);
+    
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+    if (in.readInt() != STATE_VERSION) throw new SDMException("Unknown state version in: OutputAspose 'openDiagram' method");
+    
+    // The masters already in the diagram, which are not added again.
+    for (int count = in.readInt(); count > 0; count--) {
+      addedMasters.add(in.readUTF());
+    }
+    
+    // The virtual index map, with each element's kind and shape, and each lifeline's ends.
+    int count = in.readInt();
+    ensureActualIDCapacity(count);
+    for (int index = 0; index < count; index++) {
+      int kind = in.readByte();
+      long actualID = in.readLong();
+      addActualID(actualID, kind, getSavedShape(actualID));
+      if (kind == LIFELINE) {
+        int fromIndex = in.readInt();
+        int toIndex = in.readInt();
+        addLifelineEnds(fromIndex, toIndex);
+      }
+    }
+    
+    // The methods' connectors and ends, in order.
+    count = in.readInt();
+    for (int row = 0; row < count; row++) {
+      long actualID = in.readLong();
+      int fromIndex = in.readInt();
+      int toIndex = in.readInt();
+      addMethodShape(getSavedShape(actualID), fromIndex, toIndex);
+    }
+    
+    // The constraints, loops and alternatives, in order.
+    count = in.readInt();
+    for (int fragment = 0; fragment < count; fragment++) {
+      int kind = in.readByte();
+      addFragmentShape(getSavedShape(in.readLong()), kind);
+    }
+  }
+  
+  /**
+   * Whether openDiagram() can reopen a saved diagram: only when no page limit is set, since a diagram 
+   * split into pages is built again from its texts by finalizeDiagram().
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns true if neither setMessagesPerPage() nor setMaxPageHeight() has set a limit.
+   * 
+   * @author Jesse Primiani
+   * @return Whether openDiagram() can be called.
+   */
+  public boolean canOpenDiagram() {
+    return getRowsPerPage() == 0;
+  }
+  
+  /**
+   * Gets a shape of a loaded diagram by its ID.
+   * 
+   * @author Jesse Primiani
+   * @param actualID The shape's ID, as saved by saveState().
+   * @return The shape.
+   * @throws SDMException If the diagram has no shape with the ID.
+   */
+  private Shape getSavedShape(long actualID) throws SDMException {
+    Shape shape = page.getShapes().getShape(actualID);
+    if (shape == null) throw new SDMException("Shape " + actualID + " is missing in: OutputAspose 'openDiagram' method");
+    return shape;
+  }
+  
+  /**
+   * Gets what openDiagram() needs to reopen this diagram once it is saved: the masters it contains, 
+   * and the ID, kind and ends of every element.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All content has been added to the diagram.
+   * <br>
+   * <b>Postconditions:</b> Returns the state, which is only valid for the diagram as it is now, 
+   * or null if the diagram is split into pages, which are always built again.
+   * 
+   * @author Jesse Primiani
+   * @return The state, to pass to openDiagram(), or null.
+   * @throws Exception on an output library error.
+   */
+  public byte[] saveState() throws Exception {
+    if (rowsPerPage > 0) return null;
+    
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(STATE_VERSION);
+    
+    out.writeInt(addedMasters.size());
+    for (String masterName : addedMasters) {
+      out.writeUTF(masterName);
+    }
+    
+    out.writeInt(nextVirtualIndex);
+    for (int index = 0; index < nextVirtualIndex; index++) {
+      int kind = kinds.kindOf(index);
+      out.writeByte(kind);
+      out.writeLong(actualIDs[index]);
+      if (kind == LIFELINE) {
+        out.writeInt(lifelineFrom[kinds.columnOf(index)]);
+        out.writeInt(lifelineTo[kinds.columnOf(index)]);
+      }
+    }
+    
+    out.writeInt(methodCount);
+    for (int row = 0; row < methodCount; row++) {
+      out.writeLong(methodShapes[row].getID());
+      out.writeInt(methodFrom[row]);
+      out.writeInt(methodTo[row]);
+    }
+    
+    out.writeInt(fragmentCount);
+    for (int fragment = 0; fragment < fragmentCount; fragment++) {
+      out.writeByte(fragmentKinds[fragment]);
+      out.writeLong(fragmentShapes[fragment].getID());
+    }
+    
+    out.flush();
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Replaces a run of method call messages with new ones.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All arrays must be the same length, and the indices must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> The removeCount methods from the start'th are removed from the diagram, and 
+   * a method is added in their place for each from, to and text triple, in order. The other methods keep their shapes.
+   * 
+   * @author Jesse Primiani
+   * @param start The position of the first method to replace.
+   * @param removeCount The number of methods to remove.
+   * @param fromIndices The starting element for each new method.
+   * @param toIndices The ending element for each new method.
+   * @param texts Each new method's text.
+   * @throws SDMException if an array is null, the array lengths differ, the run is outside the methods, 
+   * or an index is negative or invalid, in which case the diagram is unchanged.
+   * @throws Exception on output library error, in which case the diagram is unchanged.
+   */
+  public void replaceMethods(int start, int removeCount, int[] fromIndices, int[] toIndices, String[] texts) throws Exception {
+    if (fromIndices == null) throw new SDMException("Null 'fromIndices' parameter in: OutputAspose 'replaceMethods' method");
+    if (toIndices == null) throw new SDMException("Null 'toIndices' parameter in: OutputAspose 'replaceMethods' method");
+    if (texts == null) throw new SDMException("Null 'texts' parameter in: OutputAspose 'replaceMethods' method");
+    if (fromIndices.length != toIndices.length || fromIndices.length != texts.length) {
+      throw new SDMException("Array lengths differ in method 'replaceMethods'");
+    }
+    if (start < 0 || removeCount < 0 || start + removeCount > methodCount) {
+      throw new SDMException("Invalid run of methods in method 'replaceMethods'");
+    }
+    for (int index = 0; index < fromIndices.length; index++) {
+      if (getActualID(fromIndices[index]) == MISSING_ID) throw new SDMException("fromIndices[" + index + "] in method 'replaceMethods' is invalid");
+      if (getActualID(toIndices[index]) == MISSING_ID) throw new SDMException("toIndices[" + index + "] in method 'replaceMethods' is invalid");
+    }
+    
+    // Add the new methods after the others, so that the diagram is unchanged if one can not be added.
+    int oldCount = methodCount;
+    try {
+      addMethods(fromIndices, toIndices, texts);
+    }
+    catch (Exception ex) {
+      for (int row = oldCount; row < methodCount; row++) {
+        page.getShapes().remove(methodShapes[row]);
+      }
+      methodCount = oldCount;
+      throw ex;
+    }
+    
+    // Remove the replaced methods' connectors, then move the new methods into their place.
+    int end = start + removeCount;
+    for (int row = start; row < end; row++) {
+      page.getShapes().remove(methodShapes[row]);
+    }
+    methodShapes = splice(methodShapes, start, end, oldCount, methodCount);
+    methodFrom = splice(methodFrom, start, end, oldCount, methodCount);
+    methodTo = splice(methodTo, start, end, oldCount, methodCount);
+    methodCount -= removeCount;
+  }
+  
+  /**
+   * Replaces a run of constraint boxes with new ones.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The removeCount constraints from the start'th are removed from the diagram, 
+   * and a constraint is added in their place for each text, in order.
+   * 
+   * @author Jesse Primiani
+   * @param start The position of the first constraint to replace, among the constraints.
+   * @param removeCount The number of constraints to remove.
+   * @param texts Each new constraint's text.
+   * @throws SDMException if texts is null, or the run is outside the constraints.
+   * @throws Exception on an output library error.
+   */
+  public void replaceConstraints(int start, int removeCount, String[] texts) throws Exception {
+    replaceFragments(CONSTRAINT, start, removeCount, texts, null, "replaceConstraints");
+  }
+  
+  /**
+   * Replaces a run of loop boxes with new ones.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The removeCount loops from the start'th are removed from the diagram, 
+   * and a loop is added in their place for each text, in order.
+   * 
+   * @author Jesse Primiani
+   * @param start The position of the first loop to replace, among the loops.
+   * @param removeCount The number of loops to remove.
+   * @param texts Each new loop's constraint text.
+   * @throws SDMException if texts is null, or the run is outside the loops.
+   * @throws Exception on an output library error.
+   */
+  public void replaceLoops(int start, int removeCount, String[] texts) throws Exception {
+    replaceFragments(LOOP, start, removeCount, texts, null, "replaceLoops");
+  }
+  
+  /**
+   * Replaces a run of if-statement boxes with new ones.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> Both arrays must be the same length.
+   * <br>
+   * <b>Postconditions:</b> The removeCount alternatives from the start'th are removed from the diagram, 
+   * and an alternative is added in their place for each text and textElse pair, in order.
+   * 
+   * @author Jesse Primiani
+   * @param start The position of the first alternative to replace, among the alternatives.
+   * @param removeCount The number of alternatives to remove.
+   * @param texts Each new alternative's initial constraint text.
+   * @param textsElse Each new alternative's else section text.
+   * @throws SDMException if an array is null, the array lengths differ, or the run is outside the alternatives.
+   * @throws Exception on an output library error.
+   */
+  public void replaceAlternatives(int start, int removeCount, String[] texts, String[] textsElse) throws Exception {
+    if (texts == null) throw new SDMException("Null 'texts' parameter in: OutputAspose 'replaceAlternatives' method");
+    if (textsElse == null) throw new SDMException("Null 'textsElse' parameter in: OutputAspose 'replaceAlternatives' method");
+    if (texts.length != textsElse.length) throw new SDMException("Array lengths differ in method 'replaceAlternatives'");
+    replaceFragments(ALTERNATIVE, start, removeCount, texts, textsElse, "replaceAlternatives");
+  }
+  
+  /**
+   * Replaces a run of one kind of fragment with new ones.
+   * <br>
+   * Fragments are kept in the order SDMtoFile adds them: all constraints, then all loops, then all 
+   * alternatives. The new fragments are added after the others, then moved into the removed ones' place.
+   * 
+   * @author Jesse Primiani
+   * @param kind The kind of fragment: CONSTRAINT, LOOP or ALTERNATIVE.
+   * @param start The position of the first fragment to replace, among the fragments of its kind.
+   * @param removeCount The number of fragments to remove.
+   * @param texts Each new fragment's text.
+   * @param textsElse Each new alternative's else section text, or null for other kinds.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if texts is null, or the run is outside the fragments of the kind, in which case the diagram is unchanged.
+   * @throws Exception on an output library error, in which case the diagram is unchanged.
+   */
+  private void replaceFragments(int kind, int start, int removeCount, String[] texts, String[] textsElse, 
+      String method) throws Exception {
+    if (texts == null) throw new SDMException("Null 'texts' parameter in: OutputAspose '" + method + "' method");
+    
+    // Find the start'th fragment of the kind, or where it would be added.
+    int first = 0;
+    int rank = 0;
+    while (first < fragmentCount && fragmentKinds[first] <= kind) {
+      if (fragmentKinds[first] == kind) {
+        if (rank == start) break;
+        rank++;
+      }
+      first++;
+    }
+    int end = first + removeCount;
+    if (start < 0 || removeCount < 0 || rank != start || end > fragmentCount) {
+      throw new SDMException("Invalid run of fragments in method '" + method + "'");
+    }
+    for (int fragment = first; fragment < end; fragment++) {
+      if (fragmentKinds[fragment] != kind) throw new SDMException("Invalid run of fragments in method '" + method + "'");
+    }
+    
+    // Add the new fragments after the others, so that the diagram is unchanged if one can not be added.
+    int oldCount = fragmentCount;
+    try {
+      for (int index = 0; index < texts.length; index++) {
+        if (kind == CONSTRAINT) {
+          addConstraint(texts[index]);
+        } else if (kind == LOOP) {
+          addLoop(texts[index]);
+        } else {
+          addAlternative(texts[index], textsElse[index]);
+        }
+      }
+    }
+    catch (Exception ex) {
+      for (int fragment = oldCount; fragment < fragmentCount; fragment++) {
+        page.getShapes().remove(fragmentShapes[fragment]);
+      }
+      fragmentCount = oldCount;
+      throw ex;
+    }
+    
+    // Remove the replaced fragments' shapes, then move the new fragments into their place.
+    for (int fragment = first; fragment < end; fragment++) {
+      page.getShapes().remove(fragmentShapes[fragment]);
+    }
+    fragmentShapes = splice(fragmentShapes, first, end, oldCount, fragmentCount);
+    fragmentKinds = splice(fragmentKinds, first, end, oldCount, fragmentCount);
+    fragmentCount -= removeCount;
+  }
+  
+  /**
+   * Removes the entries from start to end of an array, and moves the entries added from oldCount to count into their place.
+   * 
+   * @author Jesse Primiani
+   * @param array The array, whose first count entries are in use.
+   * @param start The first entry to remove.
+   * @param end The entry after the last to remove.
+   * @param oldCount The first added entry.
+   * @param count The number of entries in use, including the added ones.
+   * @return A new array, whose first count - (end - start) entries are in use.
+   */
+  private static int[] splice(int[] array, int start, int end, int oldCount, int count) {
+    int[] result = Arrays.copyOf(array, Math.max(count - (end - start), 16));
+    System.arraycopy(array, oldCount, result, start, count - oldCount);
+    System.arraycopy(array, end, result, start + count - oldCount, oldCount - end);
+    return result;
+  }
+  
+  /**
+   * Removes the entries from start to end of an array, and moves the entries added from oldCount to count into their place.
+   * 
+   * @author Jesse Primiani
+   * @param array The array, whose first count entries are in use.
+   * @param start The first entry to remove.
+   * @param end The entry after the last to remove.
+   * @param oldCount The first added entry.
+   * @param count The number of entries in use, including the added ones.
+   * @return A new array, whose first count - (end - start) entries are in use, and the rest null.
+   */
+  private static Shape[] splice(Shape[] array, int start, int end, int oldCount, int count) {
+    int length = count - (end - start);
+    Shape[] result = Arrays.copyOf(array, Math.max(length, 16));
+    System.arraycopy(array, oldCount, result, start, count - oldCount);
+    System.arraycopy(array, end, result, start + count - oldCount, oldCount - end);
+    Arrays.fill(result, length, result.length, null);
+    return result;
+  }
+  
+  /**
+   * Called after all content is added to the diagram, but before the diagram is saved. 
+   * Lays out every shape, in time linear in the number of shapes.
+   * <br>
+   * Participants (actors and objects) are placed in columns along the top, in the order added. 
+   * Each activation block is placed in the column of the participant its lifeline comes from, or 
+   * in a column of its own after the participants if it has none. Each method takes the next row 
+   * down, in the order added, and each activation block spans the rows of the first and last methods 
+   * that start or end at it. Constraints, loops and alternatives take the rows below the methods, 
+   * across the page, as the input model does not say which methods they contain.
+   * <br>
+   * Every position is computed first, then all are assigned to the shapes in one pass.
+   * <br>
+   * When the diagram is split into pages, by setMessagesPerPage() or setMaxPageHeight(), the shapes 
+   * are added to their pages here instead, as finalizePages() describes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The shapes are positioned and sized in the diagram, and each page is sized to fit them.
+   * 
+   * @author Jesse Primiani
+   * @throws Exception on an output library error.
+   */
+  public void finalizeDiagram() throws Exception {
+    if (rowsPerPage > 0) {
+      finalizePages();
+      return;
+    }
+    
+    // Place each activation block in the column of the participant at the other end of its lifeline.
+    int blockCount = kinds.getCount(ACTIVATION_BLOCK);
+    int[] blockColumns = new int[blockCount];
+    int columnCount = placeBlocks(blockColumns);
+    
+    // Find the first and last method rows of each activation block.
+    int[] firstRows = new int[blockCount];
+    int[] lastRows = new int[blockCount];
+    Arrays.fill(firstRows, -1);
+    for (int row = 0; row < methodCount; row++) {
+      extendRows(methodFrom[row], row, firstRows, lastRows);
+      extendRows(methodTo[row], row, firstRows, lastRows);
+    }
+    
+    // Size the page to fit every column and row.
+    int rowCount = methodCount;
+    for (int fragment = 0; fragment < fragmentCount; fragment++) {
+      rowCount += rowsOf(fragmentKinds[fragment]);
+    }
+    double pageWidth = 2 * MARGIN + Math.max(columnCount, 1) * COLUMN_WIDTH;
+    double pageHeight = 2 * MARGIN + PARTICIPANT_HEIGHT + HEADER_GAP + Math.max(rowCount, 1) * ROW_HEIGHT;
+    double participantTop = pageHeight - MARGIN;
+    double rowsTop = participantTop - PARTICIPANT_HEIGHT - HEADER_GAP;
+    
+    // Compute the center and vertical extent of every element with a virtual index.
+    double[] xs = new double[nextVirtualIndex];
+    double[] tops = new double[nextVirtualIndex];
+    double[] bottoms = new double[nextVirtualIndex];
+    for (int index = 0; index < nextVirtualIndex; index++) {
+      int kind = kinds.kindOf(index);
+      if (kind == PARTICIPANT) {
+        xs[index] = MARGIN + (kinds.columnOf(index) + 0.5) * COLUMN_WIDTH;
+        tops[index] = participantTop;
+        bottoms[index] = participantTop - PARTICIPANT_HEIGHT;
+      } else if (kind == ACTIVATION_BLOCK) {
+        int block = kinds.columnOf(index);
+        int first = Math.max(firstRows[block], 0);
+        int last = Math.max(lastRows[block], first);
+        xs[index] = MARGIN + (blockColumns[block] + 0.5) * COLUMN_WIDTH;
+        tops[index] = rowsTop - first * ROW_HEIGHT;
+        bottoms[index] = rowsTop - (last + 1) * ROW_HEIGHT;
+      } else {
+        // A lifeline is placed at the bottom of the element it starts from.
+        int from = lifelineFrom[kinds.columnOf(index)];
+        if (from < 0 || from >= index) from = index;
+        xs[index] = xs[from];
+        tops[index] = bottoms[from];
+        bottoms[index] = bottoms[from];
+      }
+    }
+    
+    // Assign every position and size.
+    page.getPageSheet().getPageProps().getPageWidth().setValue(pageWidth);
+    page.getPageSheet().getPageProps().getPageHeight().setValue(pageHeight);
+    
+    for (int index = 0; index < nextVirtualIndex; index++) {
+      int kind = kinds.kindOf(index);
+      if (kind == LIFELINE) {
+        int to = lifelineTo[kinds.columnOf(index)];
+        if (to < 0 || to >= nextVirtualIndex) to = index;
+        setEnds(shapes[index], xs[index], tops[index], xs[to], tops[to]);
+      } else {
+        double width = (kind == PARTICIPANT) ? PARTICIPANT_WIDTH : ACTIVATION_BLOCK_WIDTH;
+        setBounds(shapes[index], xs[index], (tops[index] + bottoms[index]) / 2, width, tops[index] - bottoms[index]);
+      }
+    }
+    
+    for (int row = 0; row < methodCount; row++) {
+      int from = methodFrom[row];
+      int to = methodTo[row];
+      double y = rowsTop - (row + 0.5) * ROW_HEIGHT;
+      setMethodEnds(methodShapes[row], xs[from], halfWidthOf(from), xs[to], halfWidthOf(to), y);
+    }
+    
+    int row = methodCount;
+    for (int fragment = 0; fragment < fragmentCount; fragment++) {
+      double top = rowsTop - row * ROW_HEIGHT;
+      double height = rowsOf(fragmentKinds[fragment]) * ROW_HEIGHT;
+      setBounds(fragmentShapes[fragment], pageWidth / 2, top - height / 2, pageWidth - 2 * MARGIN, height - ROW_HEIGHT / 4);
+      row += rowsOf(fragmentKinds[fragment]);
+    }
+  }
+  
+  /**
+   * Builds the pages of a paginated diagram, in time linear in the number of shapes on them.
+   * <br>
+   * The methods, then the fragments, are split into pages of at most rowsPerPage rows, and each page 
+   * is planned, then built on its own Visio page, one after another, as an Aspose.Diagram document 
+   * may only be changed by one thread at a time. Each page has the participants 
+   * of the columns its methods use along its top, in the diagram's order, the activation blocks its 
+   * methods use, their lifelines, and its methods and fragments, laid out as finalizeDiagram() lays 
+   * out a single page. Participants no method uses are put on the first page. A lifeline is drawn on 
+   * every page both of its ends are on.
+   * 
+   * @author Jesse Primiani
+   * @throws Exception on an output library error.
+   */
+  private void finalizePages() throws Exception {
+    int blockCount = kinds.getCount(ACTIVATION_BLOCK);
+    int lifelineCount = kinds.getCount(LIFELINE);
+    int[] blockColumns = new int[blockCount];
+    int columnCount = placeBlocks(blockColumns);
+    
+    // Split the methods and fragments into pages.
+    int[] rows = new int[fragmentCount];
+    for (int fragment = 0; fragment < fragmentCount; fragment++) {
+      rows[fragment] = rowsOf(fragmentKinds[fragment]);
+    }
+    PagePlan[] plans = PagePlan.paginate(methodCount, rows, fragmentCount, rowsPerPage);
+    
+    // Draw each method at the element its ends are drawn at, and find the participants no method uses.
+    int participantCount = kinds.getCount(PARTICIPANT);
+    int[] drawnFrom = new int[methodCount];
+    int[] drawnTo = new int[methodCount];
+    BitSet usedColumns = new BitSet(columnCount);
+    for (int method = 0; method < methodCount; method++) {
+      drawnFrom[method] = resolveEnd(methodFrom[method]);
+      drawnTo[method] = resolveEnd(methodTo[method]);
+      useColumn(drawnFrom[method], blockColumns, usedColumns);
+      useColumn(drawnTo[method], blockColumns, usedColumns);
+    }
+    int[] unusedParticipants = new int[participantCount - usedColumns.get(0, participantCount).cardinality()];
+    for (int participant = usedColumns.nextClearBit(0), next = 0; participant < participantCount; 
+        participant = usedColumns.nextClearBit(participant + 1)) {
+      unusedParticipants[next++] = participant;
+    }
+    
+    // Plan each page's activation blocks and columns.
+    for (int pageIndex = 0; pageIndex < plans.length; pageIndex++) {
+      plans[pageIndex].plan(drawnFrom, drawnTo, kinds, PARTICIPANT, ACTIVATION_BLOCK, blockColumns, 
+          (pageIndex == 0) ? unusedParticipants : null);
+    }
+    
+    // Index the lifelines by the activation block they are drawn with: the block they end at, or 
+    // start at if they do not end at one. Lifelines between participants are drawn on every page both are on.
+    int[] lifelineStarts = new int[blockCount + 1];
+    int headerLifelineCount = 0;
+    for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+      int block = blockOfLifeline(lifeline);
+      if (block >= 0) {
+        lifelineStarts[block + 1]++;
+      } else if (isHeaderLifeline(lifeline)) {
+        headerLifelineCount++;
+      }
+    }
+    for (int block = 0; block < blockCount; block++) {
+      lifelineStarts[block + 1] += lifelineStarts[block];
+    }
+    int[] lifelinesByBlock = new int[lifelineStarts[blockCount]];
+    int[] headerLifelines = new int[headerLifelineCount];
+    int[] nextLifelines = Arrays.copyOf(lifelineStarts, blockCount);
+    headerLifelineCount = 0;
+    for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+      int block = blockOfLifeline(lifeline);
+      if (block >= 0) {
+        lifelinesByBlock[nextLifelines[block]++] = lifeline;
+      } else if (isHeaderLifeline(lifeline)) {
+        headerLifelines[headerLifelineCount++] = lifeline;
+      }
+    }
+    
+    for (int pageIndex = 0; pageIndex < plans.length; pageIndex++) {
+      buildPage(pageIndex, plans[pageIndex], drawnFrom, drawnTo, blockColumns, lifelineStarts, lifelinesByBlock, 
+          headerLifelines);
+    }
+  }
+  
+  /**
+   * Marks the column of the participant or activation block a method end is drawn at as used.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The virtual index the method end is drawn at.
+   * @param blockColumns The column of each activation block.
+   * @param usedColumns The used columns.
+   */
+  private void useColumn(int virtualIndex, int[] blockColumns, BitSet usedColumns) {
+    if (virtualIndex < 0 || virtualIndex >= nextVirtualIndex) return;
+    int kind = kinds.kindOf(virtualIndex);
+    if (kind == PARTICIPANT) {
+      usedColumns.set(kinds.columnOf(virtualIndex));
+    } else if (kind == ACTIVATION_BLOCK) {
+      usedColumns.set(blockColumns[kinds.columnOf(virtualIndex)]);
+    }
+  }
+  
+  /**
+   * Builds one page of a paginated diagram.
+   * 
+   * @author Jesse Primiani
+   * @param pageIndex The page's position in the diagram.
+   * @param plan The page's plan.
+   * @param drawnFrom The virtual index each method is drawn from.
+   * @param drawnTo The virtual index each method is drawn to.
+   * @param blockColumns The column of each activation block.
+   * @param lifelineStarts The start of each activation block's lifelines in lifelinesByBlock, and their end.
+   * @param lifelinesByBlock The lifelines drawn with each activation block.
+   * @param headerLifelines The lifelines between participants.
+   * @throws Exception on an output library error.
+   */
+  private void buildPage(int pageIndex, PagePlan plan, int[] drawnFrom, int[] drawnTo, int[] blockColumns, 
+      int[] lifelineStarts, int[] lifelinesByBlock, int[] headerLifelines) throws Exception {
+    Page target = page;
+    if (pageIndex > 0) {
+      target = new Page();
+      target.setName("Page-" + (pageIndex + 1));
+      target.setID(pageIndex);
+      diagram.getPages().add(target);
+    }
+    
+    double pageWidth = 2 * MARGIN + Math.max(plan.getColumnCount(), 1) * COLUMN_WIDTH;
+    double pageHeight = 2 * MARGIN + PARTICIPANT_HEIGHT + HEADER_GAP + Math.max(plan.rowCount, 1) * ROW_HEIGHT;
+    double participantTop = pageHeight - MARGIN;
+    double rowsTop = participantTop - PARTICIPANT_HEIGHT - HEADER_GAP;
+    target.getPageSheet().getPageProps().getPageWidth().setValue(pageWidth);
+    target.getPageSheet().getPageProps().getPageHeight().setValue(pageHeight);
+    
+    // Repeat the participant of each of the page's columns along the top.
+    int participantCount = kinds.getCount(PARTICIPANT);
+    long[] participantIDs = new long[plan.getColumnCount()];
+    Arrays.fill(participantIDs, MISSING_ID);
+    for (int slot = 0; slot < participantIDs.length && plan.getColumn(slot) < participantCount; slot++) {
+      int participant = plan.getColumn(slot);
+      Shape shape = addPageShape(target, pageIndex, participantMasters[participant]);
+      shape.getText().getValue().add(new Txt(participantTexts[participant]));
+      setBounds(shape, MARGIN + (slot + 0.5) * COLUMN_WIDTH, participantTop - PARTICIPANT_HEIGHT / 2, 
+          PARTICIPANT_WIDTH, PARTICIPANT_HEIGHT);
+      participantIDs[slot] = shape.getID();
+    }
+    
+    // Add the activation blocks this page's methods use, spanning this page's rows.
+    long[] blockIDs = new long[plan.getBlockCount()];
+    for (int slot = 0; slot < blockIDs.length; slot++) {
+      int block = plan.getBlock(slot);
+      double top = rowsTop - plan.getFirstRow(slot) * ROW_HEIGHT;
+      double bottom = rowsTop - (plan.getLastRow(slot) + 1) * ROW_HEIGHT;
+      Shape shape = addPageShape(target, pageIndex, "UMLActivationBlock");
+      setBounds(shape, MARGIN + (plan.getColumnSlot(blockColumns[block]) + 0.5) * COLUMN_WIDTH, (top + bottom) / 2, 
+          ACTIVATION_BLOCK_WIDTH, top - bottom);
+      blockIDs[slot] = shape.getID();
+    }
+    
+    // Add the lifelines of the elements on this page, from the bottom of their start to the top of their end.
+    for (int lifeline : headerLifelines) {
+      addPageLifeline(target, pageIndex, plan, lifeline, blockColumns, participantTop, rowsTop, participantIDs, blockIDs);
+    }
+    for (int slot = 0; slot < blockIDs.length; slot++) {
+      int block = plan.getBlock(slot);
+      for (int next = lifelineStarts[block]; next < lifelineStarts[block + 1]; next++) {
+        addPageLifeline(target, pageIndex, plan, lifelinesByBlock[next], blockColumns, participantTop, rowsTop, 
+            participantIDs, blockIDs);
+      }
+    }
+    
+    // Add the methods, one per row.
+    for (int method = plan.firstMethod; method < plan.endMethod; method++) {
+      int from = drawnFrom[method];
+      int to = drawnTo[method];
+      
+      Shape shape = addPageShape(target, pageIndex, "Dynamic connector");
+      shape.getText().getValue().add(new Txt(methodTexts[method]));
+      styleMethod(shape);
+      long fromID = pageIDOf(from, plan, participantIDs, blockIDs);
+      long toID = pageIDOf(to, plan, participantIDs, blockIDs);
+      if (fromID != MISSING_ID && toID != MISSING_ID) {
+        target.connectShapesViaConnector(fromID, ConnectionPointPlace.RIGHT, toID, ConnectionPointPlace.LEFT, shape.getID());
+      }
+      
+      double y = rowsTop - (method - plan.firstMethod + 0.5) * ROW_HEIGHT;
+      setMethodEnds(shape, pageXOf(from, plan, blockColumns), halfWidthOf(from), pageXOf(to, plan, blockColumns), 
+          halfWidthOf(to), y);
+    }
+    
+    // Add the constraints, loops and alternatives below the methods, across the page.
+    int row = plan.endMethod - plan.firstMethod;
+    for (int fragment = plan.firstFragment; fragment < plan.endFragment; fragment++) {
+      Shape shape = addPageShape(target, pageIndex, FRAGMENT_MASTERS[fragmentKinds[fragment]]);
+      shape.getText().getValue().add(new Txt(fragmentTexts[fragment]));
+      if (fragmentKinds[fragment] == ALTERNATIVE) shape.getText().getValue().add(new Txt(fragmentTextsElse[fragment]));
+      
+      double top = rowsTop - row * ROW_HEIGHT;
+      double height = rowsOf(fragmentKinds[fragment]) * ROW_HEIGHT;
+      setBounds(shape, pageWidth / 2, top - height / 2, pageWidth - 2 * MARGIN, height - ROW_HEIGHT / 4);
+      row += rowsOf(fragmentKinds[fragment]);
+    }
+  }
+  
+  /**
+   * Adds a lifeline to a page of a paginated diagram, if both of its ends are on the page.
+   * 
+   * @author Jesse Primiani
+   * @param target The page.
+   * @param pageIndex The page's position in the diagram.
+   * @param plan The page's plan.
+   * @param lifeline The lifeline's position among lifelines.
+   * @param blockColumns The column of each activation block.
+   * @param participantTop The top of the participants, in inches.
+   * @param rowsTop The top of the first row, in inches.
+   * @param participantIDs The ID of the participant's shape in each of the page's columns, or MISSING_ID.
+   * @param blockIDs The ID of each activation block's shape on the page, as the plan orders them.
+   * @throws Exception on an output library error.
+   */
+  private void addPageLifeline(Page target, int pageIndex, PagePlan plan, int lifeline, int[] blockColumns, 
+      double participantTop, double rowsTop, long[] participantIDs, long[] blockIDs) throws Exception {
+    int from = lifelineFrom[lifeline];
+    int to = lifelineTo[lifeline];
+    long fromID = pageIDOf(from, plan, participantIDs, blockIDs);
+    long toID = pageIDOf(to, plan, participantIDs, blockIDs);
+    if (fromID == MISSING_ID || toID == MISSING_ID) return;
+    
+    Shape shape = addPageShape(target, pageIndex, "Dynamic connector");
+    styleLifeline(shape, lifelineActive.get(lifeline));
+    target.connectShapesViaConnector(fromID, ConnectionPointPlace.BOTTOM, toID, ConnectionPointPlace.TOP, shape.getID());
+    setEnds(shape, pageXOf(from, plan, blockColumns), pageYOf(from, plan, participantTop, rowsTop, false), 
+        pageXOf(to, plan, blockColumns), pageYOf(to, plan, participantTop, rowsTop, true));
+  }
+  
+  /**
+   * Adds a shape to a page of a paginated diagram.
+   * 
+   * @author Jesse Primiani
+   * @param target The page.
+   * @param pageIndex The page's position in the diagram.
+   * @param masterName The name of the shape's master in the stencil file.
+   * @return The added shape.
+   * @throws Exception on an output library error.
+   */
+  private Shape addPageShape(Page target, int pageIndex, String masterName) throws Exception {
+    useMaster(masterName);
+    long shapeID = diagram.addShape(0, 0, masterName, pageIndex);
+    return target.getShapes().getShape(shapeID);
+  }
+  
+  /**
+   * Gets the ID of the shape of a participant or activation block on a page of a paginated diagram.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The element's virtual index.
+   * @param plan The page's plan.
+   * @param participantIDs The ID of the participant's shape in each of the page's columns, or MISSING_ID.
+   * @param blockIDs The ID of each activation block's shape on the page, as the plan orders them.
+   * @return The shape's ID, or MISSING_ID if the element has no shape on the page.
+   */
+  private long pageIDOf(int virtualIndex, PagePlan plan, long[] participantIDs, long[] blockIDs) {
+    if (virtualIndex < 0 || virtualIndex >= nextVirtualIndex) return MISSING_ID;
+    int kind = kinds.kindOf(virtualIndex);
+    int slot;
+    if (kind == PARTICIPANT) {
+      slot = plan.getColumnSlot(kinds.columnOf(virtualIndex));
+      return (slot < 0) ? MISSING_ID : participantIDs[slot];
+    }
+    if (kind != ACTIVATION_BLOCK) return MISSING_ID;
+    slot = plan.getSlot(kinds.columnOf(virtualIndex));
+    return (slot < 0) ? MISSING_ID : blockIDs[slot];
+  }
+  
+  /**
+   * Gets the horizontal center of a participant or activation block on a page of a paginated diagram.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The element's virtual index, which is not a lifeline's.
+   * @param plan The page's plan.
+   * @param blockColumns The column of each activation block.
+   * @return The element's horizontal center, in inches, or the first column's if it is not on the page.
+   */
+  private double pageXOf(int virtualIndex, PagePlan plan, int[] blockColumns) {
+    int slot = -1;
+    if (kinds.kindOf(virtualIndex) == PARTICIPANT) {
+      slot = plan.getColumnSlot(kinds.columnOf(virtualIndex));
+    } else if (kinds.kindOf(virtualIndex) == ACTIVATION_BLOCK) {
+      slot = plan.getColumnSlot(blockColumns[kinds.columnOf(virtualIndex)]);
+    }
+    return MARGIN + (Math.max(slot, 0) + 0.5) * COLUMN_WIDTH;
+  }
+  
+  /**
+   * Gets the top or bottom of a participant or activation block on a page of a paginated diagram.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The element's virtual index, which has a shape on the page.
+   * @param plan The page's plan.
+   * @param participantTop The top of the participants, in inches.
+   * @param rowsTop The top of the first row, in inches.
+   * @param top True for the element's top, or false for its bottom.
+   * @return The element's top or bottom, in inches.
+   */
+  private double pageYOf(int virtualIndex, PagePlan plan, double participantTop, double rowsTop, boolean top) {
+    if (kinds.kindOf(virtualIndex) == PARTICIPANT) return top ? participantTop : participantTop - PARTICIPANT_HEIGHT;
+    int slot = plan.getSlot(kinds.columnOf(virtualIndex));
+    return top ? rowsTop - plan.getFirstRow(slot) * ROW_HEIGHT : rowsTop - (plan.getLastRow(slot) + 1) * ROW_HEIGHT;
+  }
+  
+  /**
+   * Gets the element a method end is drawn at: the element itself, or for a lifeline, the element it starts from.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The method end's virtual index.
+   * @return The virtual index of a participant or activation block, or of the first lifeline that starts from neither.
+   */
+  private int resolveEnd(int virtualIndex) {
+    while (kinds.kindOf(virtualIndex) == LIFELINE) {
+      int from = lifelineFrom[kinds.columnOf(virtualIndex)];
+      if (from < 0 || from >= virtualIndex) break;
+      virtualIndex = from;
+    }
+    return virtualIndex;
+  }
+  
+  /**
+   * Gets the activation block a lifeline is drawn with: the block it ends at, or starts at if it does not end at one.
+   * 
+   * @author Jesse Primiani
+   * @param lifeline The lifeline's position among lifelines.
+   * @return The block's position among activation blocks, or -1 if neither end is an activation block.
+   */
+  private int blockOfLifeline(int lifeline) {
+    int from = lifelineFrom[lifeline];
+    int to = lifelineTo[lifeline];
+    if (from >= nextVirtualIndex || to >= nextVirtualIndex) return -1;
+    if (kinds.kindOf(to) == ACTIVATION_BLOCK) return kinds.columnOf(to);
+    if (kinds.kindOf(from) == ACTIVATION_BLOCK) return kinds.columnOf(from);
+    return -1;
+  }
+  
+  /**
+   * Checks whether a lifeline connects two participants, and so is drawn on every page both are on.
+   * 
+   * @author Jesse Primiani
+   * @param lifeline The lifeline's position among lifelines.
+   * @return True if both of the lifeline's ends are participants.
+   */
+  private boolean isHeaderLifeline(int lifeline) {
+    int from = lifelineFrom[lifeline];
+    int to = lifelineTo[lifeline];
+    return from < nextVirtualIndex && to < nextVirtualIndex 
+        && kinds.kindOf(from) == PARTICIPANT && kinds.kindOf(to) == PARTICIPANT;
+  }
+  
+  /**
+   * Places each activation block in the column of the participant at the other end of its lifeline, 
+   * or in a column of its own after the participants if it has none.
+   * 
+   * @author Jesse Primiani
+   * @param blockColumns Receives the column of each activation block.
+   * @return The number of columns.
+   */
+  private int placeBlocks(int[] blockColumns) {
+    Arrays.fill(blockColumns, -1);
+    for (int lifeline = 0, count = kinds.getCount(LIFELINE); lifeline < count; lifeline++) {
+      int from = lifelineFrom[lifeline];
+      int to = lifelineTo[lifeline];
+      if (from < 0 || to < 0 || from >= nextVirtualIndex || to >= nextVirtualIndex) continue;
+      
+      if (kinds.kindOf(from) == PARTICIPANT && kinds.kindOf(to) == ACTIVATION_BLOCK) {
+        if (blockColumns[kinds.columnOf(to)] < 0) blockColumns[kinds.columnOf(to)] = kinds.columnOf(from);
+      } else if (kinds.kindOf(to) == PARTICIPANT && kinds.kindOf(from) == ACTIVATION_BLOCK) {
+        if (blockColumns[kinds.columnOf(from)] < 0) blockColumns[kinds.columnOf(from)] = kinds.columnOf(to);
+      }
+    }
+    
+    // Give blocks without a participant their own columns.
+    int columnCount = kinds.getCount(PARTICIPANT);
+    for (int block = 0; block < blockColumns.length; block++) {
+      if (blockColumns[block] < 0) blockColumns[block] = columnCount++;
+    }
+    return columnCount;
+  }
+  
+  /**
+   * Positions a method's connector across one row, from the side of its starting element facing its 
+   * ending element, to the facing side of the ending element.
+   * 
+   * @author Jesse Primiani
+   * @param shape The method's connector.
+   * @param fromX The starting element's horizontal center, in inches.
+   * @param fromEdge Half the starting element's width, in inches.
+   * @param toX The ending element's horizontal center, in inches.
+   * @param toEdge Half the ending element's width, in inches.
+   * @param y The row's vertical center, in inches.
+   */
+  private static void setMethodEnds(Shape shape, double fromX, double fromEdge, double toX, double toEdge, double y) {
+    if (toX > fromX) {
+      setEnds(shape, fromX + fromEdge, y, toX - toEdge, y);
+    } else if (toX < fromX) {
+      setEnds(shape, fromX - fromEdge, y, toX + toEdge, y);
+    } else {
+      // A method to its own column loops back on its right side.
+      setEnds(shape, fromX + fromEdge, y + ROW_HEIGHT / 4, toX + toEdge, y - ROW_HEIGHT / 4);
+    }
+  }
+  
+  /**
+   * Extends an activation block's rows to include a method's row, if the method's end is an activation block.
+   * 
+   * @author Jesse Primiani
+   * @param end The virtual index of one end of the method.
+   * @param row The method's row.
+   * @param firstRows The first row of each activation block, or -1 if it has none yet.
+   * @param lastRows The last row of each activation block.
+   */
+  private void extendRows(int end, int row, int[] firstRows, int[] lastRows) {
+    if (kinds.kindOf(end) != ACTIVATION_BLOCK) return;
+    int block = kinds.columnOf(end);
+    if (firstRows[block] < 0) firstRows[block] = row;
+    lastRows[block] = row;
+  }
+  
+  /**
+   * Gets half the width of the element at a virtual index: the distance from its center to its side.
+   * 
+   * @author Jesse Primiani
+   * @param virtualIndex The element's virtual index.
+   * @return Half the element's width, in inches.
+   */
+  private double halfWidthOf(int virtualIndex) {
+    int kind = kinds.kindOf(virtualIndex);
+    if (kind == PARTICIPANT) return PARTICIPANT_WIDTH / 2;
+    if (kind == ACTIVATION_BLOCK) return ACTIVATION_BLOCK_WIDTH / 2;
+    return 0;
+  }
+  
+  /**
+   * Positions and sizes a two-dimensional shape.
+   * 
+   * @author Jesse Primiani
+   * @param shape The shape.
+   * @param pinX The shape's horizontal center, in inches.
+   * @param pinY The shape's vertical center, in inches.
+   * @param width The shape's width, in inches.
+   * @param height The shape's height, in inches.
+   */
+  private static void setBounds(Shape shape, double pinX, double pinY, double width, double height) {
+    XForm xForm = shape.getXForm();
+    xForm.getPinX().setValue(pinX);
+    xForm.getPinY().setValue(pinY);
+    xForm.getWidth().setValue(width);
+    xForm.getHeight().setValue(height);
+  }
+  
+  /**
+   * Positions the ends of a one-dimensional shape, such as a connector.
+   * 
+   * @author Jesse Primiani
+   * @param shape The shape.
+   * @param beginX The starting end's horizontal position, in inches.
+   * @param beginY The starting end's vertical position, in inches.
+   * @param endX The ending end's horizontal position, in inches.
+   * @param endY The ending end's vertical position, in inches.
+   */
+  private static void setEnds(Shape shape, double beginX, double beginY, double endX, double endY) {
+    XForm1D xForm1D = shape.getXForm1D();
+    xForm1D.getBeginX().setValue(beginX);
+    xForm1D.getBeginY().setValue(beginY);
+    xForm1D.getEndX().setValue(endX);
+    xForm1D.getEndY().setValue(endY);
+  }
+  
+  /**
+   * Saves all the added elements contained in the diagram object to a file.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> A file containing all the information previously added to the diagram attribute 
+   * is created. Its full name is returned. The file only appears under that name once it is complete.
+   * 
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information.
+   * @param overwrite Whether to overwrite an already existing file if it exists.
+   * @return The full name of the saved file, including its path and extension.
+   * @throws SDMException If any parameter is null.
+   * @throws Exception on an output library error.
+   */
+  public String saveToFile(final String path, final String name, final OutputType<?> type, boolean overwrite) throws Exception {
+    Path stagedFile = OutputFiles.createStagingFile(path, name, type);
+    
+    // Save the created Aspose diagram to disk, under a staging name until it is complete.
+    try {
+      diagram.save(stagedFile.toString(), (int) type.getType());
+    } catch (Exception ex) {
+      Files.deleteIfExists(stagedFile);
+      throw ex;
+    }
+    
+    return OutputFiles.publishFile(stagedFile, path, name, type, overwrite);
+  }
+  
+  /**
+   * Saves all the added elements contained in the diagram object to a stream, without a file.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The content saveToFile would save is written to the stream, which is 
+   * flushed but not closed.
+   * 
+   * @author Jesse Primiani
+   * @param out The stream to write to.
+   * @param type An object containing the output file's type information.
+   * @throws SDMException If any parameter is null.
+   * @throws Exception on an output library error.
+   */
+  public void saveToStream(final OutputStream out, final OutputType<?> type) throws Exception {
+    if (out == null) throw new SDMException("Null 'out' parameter in: OutputAspose 'saveToStream' method");
+    if (type == null) throw new SDMException("Null 'type' parameter in: OutputAspose 'saveToStream' method");
+    
+    // Save the created Aspose diagram to the stream.
+    diagram.save(out, (int) type.getType());
+    out.flush();
+  }
+  
+  /**
+   * Gets the settings that change the files this adapter saves, for ExportCache's keys: the most 
+   * rows on a page, from setMessagesPerPage() and setMaxPageHeight(), so that a paginated export 
+   * and a single-page one never share a cache entry.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns a string that differs whenever the pages the next diagram is split into would.
+   * 
+   * @author Jesse Primiani
+   * @return The settings, as a string.
+   */
+  public String getCacheKeyParameters() {
+    return "rowsPerPage=" + getRowsPerPage();
   }
 
 }
@@ -0,0 +1,228 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * File naming and publishing shared by the OutputAdapter implementations that save to disk.
+ * <br>
+ * An output file is first written to a hidden staging file in its output directory, then
+ * published under its final name in one atomic step, so that no other thread or process ever
+ * sees a partly written file, and a failed save leaves nothing behind under the final name.
+ * <br>
+ * When overwrite is false and the name is taken, the first integer whose name is free is appended
+ * to the name, so the name depends only on the files in the directory. Names are claimed with
+ * create-new semantics, so two exports of the same name never pick the same integer. Taken names
+ * are skipped with a check for the file, and a claim is only tried on a name that looks free.
+ *
+ * @author Jesse Primiani
+ */
+final class OutputFiles {
+
+  /**
+   * Private default constructor, as this class only has static methods.
+   */
+  private OutputFiles() {}
+
+  /**
+   * Creates an empty staging file to write an output file to, in its output directory,
+   * creating the directory and any missing parents if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null.
+   * <br>
+   * <b>Postconditions:</b> The output directory exists, and contains a new, hidden, empty file.
+   * The caller must publish or delete the file.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information.
+   * @return The staging file.
+   * @throws SDMException If any parameter is null.
+   * @throws IOException If the directory or file can not be created.
+   */
+  static Path createStagingFile(final String path, final String name, final OutputType<?> type) throws SDMException, IOException {
+    checkParameters(path, name, type);
+
+    // Create the output directory, and any missing parents, if it does not exist.
+    File directory = getDirectory(path);
+    Files.createDirectories(directory.toPath());
+
+    // java.io temporary files get the default permissions, rather than owner-only ones, like the final file.
+    return File.createTempFile("." + name + "-", type.getExtension() + ".part", directory).toPath();
+  }
+
+  /**
+   * Publishes a finished file under its output file name.
+   * <br>
+   * A file outside the output directory, such as one in the system's temporary directory, is
+   * first moved to a staging file next to the output file, so that publishing it stays atomic.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> file is a finished file. No parameter may be null.
+   * <br>
+   * <b>Postconditions:</b> The file is published in the output directory, replacing any file with
+   * its name if overwrite is true, or otherwise under the name with the next free integer appended.
+   * The file itself no longer exists, whether or not this method succeeds.
+   *
+   * @author Jesse Primiani
+   * @param file The finished file.
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information.
+   * @param overwrite Whether an existing file may be overwritten.
+   * @return The full name of the published file, including its path and extension.
+   * @throws SDMException If any parameter is null.
+   * @throws IOException On a file system error.
+   */
+  static String publishFile(final Path file, final String path, final String name, final OutputType<?> type,
+      final boolean overwrite) throws SDMException, IOException {
+    if (file == null) throw new SDMException("Null 'file' parameter in: publishFile");
+
+    Path staged = file;
+    try {
+      checkParameters(path, name, type);
+      File directory = getDirectory(path);
+      Path parent = file.toAbsolutePath().normalize().getParent();
+      if (!directory.toPath().toAbsolutePath().normalize().equals(parent)) {
+        staged = createStagingFile(path, name, type);
+        Files.move(file, staged, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      String extension = type.getExtension();
+      String savedName = overwrite ? replace(staged, directory.toPath(), name + extension)
+          : claimName(staged, directory.toPath(), name, extension);
+
+      // Add a file path seperator on the path if it is not empty.
+      String pathSeperator = path.isEmpty() ? "" : File.separator;
+      return path + pathSeperator + savedName;
+    }
+    finally {
+      Files.deleteIfExists(staged);
+      if (staged != file) Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Moves a staged file over the output file, atomically where the file system allows it.
+   *
+   * @author Jesse Primiani
+   * @param staged The staged file, in the output directory.
+   * @param directory The output directory.
+   * @param fileName The output file's name, with its extension.
+   * @return The output file's name.
+   * @throws IOException On a file system error.
+   */
+  private static String replace(final Path staged, final Path directory, final String fileName) throws IOException {
+    Path target = directory.resolve(fileName);
+    try {
+      Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return fileName;
+  }
+
+  /**
+   * Publishes a staged file under the first free name: the name itself, or the name with the
+   * lowest integer suffix that no file has.
+   *
+   * @author Jesse Primiani
+   * @param staged The staged file, in the output directory.
+   * @param directory The output directory.
+   * @param name The output file's name, without extension.
+   * @param extension The output file's extension.
+   * @return The file name that was used.
+   * @throws IOException On a file system error.
+   */
+  private static String claimName(final Path staged, final Path directory, final String name,
+      final String extension) throws IOException {
+    int appendNum = 0;
+    while (true) {
+      String candidate = name + (appendNum == 0 ? "" : Integer.toString(appendNum)) + extension;
+      Path target = directory.resolve(candidate);
+
+      // A name another export claims between the check and the claim is skipped by the claim.
+      if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS) && claim(staged, target)) return candidate;
+      appendNum++;
+    }
+  }
+
+  /**
+   * Publishes a staged file under a name, only if no file has that name.
+   * <br>
+   * The file is hard linked to the name, which fails if the name exists, then its staging name is
+   * removed. Where hard links are not supported, the name is reserved by creating it as a new,
+   * empty file, which the staged file then replaces.
+   *
+   * @author Jesse Primiani
+   * @param staged The staged file.
+   * @param target The name to publish it under.
+   * @return True if the file was published, or false if the name was taken.
+   * @throws IOException On a file system error.
+   */
+  private static boolean claim(final Path staged, final Path target) throws IOException {
+    try {
+      Files.createLink(target, staged);
+      Files.delete(staged);
+      return true;
+    } catch (FileAlreadyExistsException ex) {
+      return false;
+    } catch (UnsupportedOperationException | FileSystemException ex) {
+      // Hard links are not supported here; reserve the name instead.
+    }
+
+    try {
+      Files.createFile(target);
+    } catch (FileAlreadyExistsException ex) {
+      return false;
+    }
+    try {
+      replace(staged, target.getParent(), target.getFileName().toString());
+    } catch (IOException ex) {
+      // Release the reserved name rather than leave an empty file under it.
+      Files.deleteIfExists(target);
+      throw ex;
+    }
+    return true;
+  }
+
+  /**
+   * Checks the parameters that name an output file.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information.
+   * @throws SDMException If any parameter is null.
+   */
+  private static void checkParameters(final String path, final String name, final OutputType<?> type) throws SDMException {
+    if (path == null) {
+      throw new SDMException("Null 'path' parameter in: saveToFile");
+    } else if (name == null) {
+      throw new SDMException("Null 'name' parameter in: saveToFile");
+    } else if (type == null) {
+      throw new SDMException("Null 'type' parameter in: saveToFile");
+    }
+  }
+
+  /**
+   * Gets the output directory for a path, where an empty path is the working directory.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @return The output directory.
+   */
+  private static File getDirectory(final String path) {
+    return new File(path.isEmpty() ? "." : path);
+  }
+
+}
@@ -0,0 +1,112 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An OutputAdapter that writes the sequence diagram as Mermaid sequence diagram text.
+ * <br>
+ * Text is far cheaper to produce and to compare between versions than a Visio drawing, and Mermaid
+ * text is drawn directly by many documentation sites. Each participant is declared with the alias "P"
+ * followed by its virtual index. Constraints are written as notes over every participant, and loops
+ * and alternatives as empty blocks, as the input model does not say which messages they contain.
+ *
+ * @author Jesse Primiani
+ */
+public class OutputMermaid extends OutputText {
+
+  /**
+   * Default constructor.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an OutputMermaid instance.
+   *
+   * @author Jesse Primiani
+   */
+  public OutputMermaid() {}
+
+  void writeHeader(final Writer out) throws IOException {
+    out.write("sequenceDiagram\n");
+  }
+
+  void writeFooter(final Writer out) throws IOException {
+    // Mermaid diagrams have no closing statement.
+  }
+
+  void writeParticipant(final Writer out, final boolean actor, final int participant, final String name) throws IOException {
+    out.write(actor ? "  actor P" : "  participant P");
+    out.write(Integer.toString(participant));
+    out.write(" as ");
+    writeEscaped(out, name);
+    out.write('\n');
+  }
+
+  void writeMethod(final Writer out, final int fromParticipant, final int toParticipant, final String text) throws IOException {
+    out.write("  P");
+    out.write(Integer.toString(fromParticipant));
+    out.write("->>P");
+    out.write(Integer.toString(toParticipant));
+    out.write(": ");
+    writeEscaped(out, text);
+    out.write('\n');
+  }
+
+  void writeConstraint(final Writer out, final int firstParticipant, final int lastParticipant, final String text) throws IOException {
+    // A Mermaid note must be placed over a participant.
+    if (firstParticipant < 0) {
+      out.write("  %% {");
+    } else {
+      out.write("  Note over P");
+      out.write(Integer.toString(firstParticipant));
+      if (lastParticipant != firstParticipant) {
+        out.write(",P");
+        out.write(Integer.toString(lastParticipant));
+      }
+      out.write(": {");
+    }
+    writeEscaped(out, text);
+    out.write("}\n");
+  }
+
+  void writeLoop(final Writer out, final String text) throws IOException {
+    out.write("  loop ");
+    writeEscaped(out, text);
+    out.write("\n  end\n");
+  }
+
+  void writeAlternative(final Writer out, final String text, final String textElse) throws IOException {
+    out.write("  alt ");
+    writeEscaped(out, text);
+    out.write("\n  else ");
+    writeEscaped(out, textElse);
+    out.write("\n  end\n");
+  }
+
+  /**
+   * Writes text so that it stays within one Mermaid statement. Line breaks are written as "&lt;br&gt;",
+   * the statement separator ';' and the entity marker '#' as Mermaid entity codes, and other control
+   * characters are dropped.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param text The text to write.
+   * @throws IOException On a write error.
+   */
+  private static void writeEscaped(final Writer out, final String text) throws IOException {
+    for (int index = 0; index < text.length(); index++) {
+      char c = text.charAt(index);
+      if (c == '\n') {
+        out.write("<br>");
+      } else if (c == ';') {
+        out.write("#59;");
+      } else if (c == '#') {
+        out.write("#35;");
+      } else if (c >= 0x20 || c == '\t') {
+        out.write(c);
+      }
+    }
+  }
+
+}
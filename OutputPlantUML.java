@@ -0,0 +1,102 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An OutputAdapter that writes the sequence diagram as PlantUML sequence diagram text.
+ * <br>
+ * Text is far cheaper to produce and to compare between versions than a Visio drawing, which suits
+ * diagrams that are regenerated often, such as for documentation. Each participant is declared with
+ * the alias "P" followed by its virtual index, and its name in quotes. Constraints are written as notes
+ * across every participant, and loops and alternatives as empty groups, as the input model does not
+ * say which messages they contain.
+ *
+ * @author Jesse Primiani
+ */
+public class OutputPlantUML extends OutputText {
+
+  /**
+   * Default constructor.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an OutputPlantUML instance.
+   *
+   * @author Jesse Primiani
+   */
+  public OutputPlantUML() {}
+
+  void writeHeader(final Writer out) throws IOException {
+    out.write("@startuml\n");
+  }
+
+  void writeFooter(final Writer out) throws IOException {
+    out.write("@enduml\n");
+  }
+
+  void writeParticipant(final Writer out, final boolean actor, final int participant, final String name) throws IOException {
+    out.write(actor ? "actor \"" : "participant \"");
+    writeEscaped(out, name, true);
+    out.write("\" as P");
+    out.write(Integer.toString(participant));
+    out.write('\n');
+  }
+
+  void writeMethod(final Writer out, final int fromParticipant, final int toParticipant, final String text) throws IOException {
+    out.write('P');
+    out.write(Integer.toString(fromParticipant));
+    out.write(" -> P");
+    out.write(Integer.toString(toParticipant));
+    if (!text.isEmpty()) {
+      out.write(" : ");
+      writeEscaped(out, text, false);
+    }
+    out.write('\n');
+  }
+
+  void writeConstraint(final Writer out, final int firstParticipant, final int lastParticipant, final String text) throws IOException {
+    out.write("note across : {");
+    writeEscaped(out, text, false);
+    out.write("}\n");
+  }
+
+  void writeLoop(final Writer out, final String text) throws IOException {
+    out.write("loop ");
+    writeEscaped(out, text, false);
+    out.write("\nend\n");
+  }
+
+  void writeAlternative(final Writer out, final String text, final String textElse) throws IOException {
+    out.write("alt ");
+    writeEscaped(out, text, false);
+    out.write("\nelse ");
+    writeEscaped(out, textElse, false);
+    out.write("\nend\n");
+  }
+
+  /**
+   * Writes text so that it stays within one PlantUML statement. Line breaks are written as PlantUML's
+   * "\n" escape, and other control characters are dropped.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param text The text to write.
+   * @param quoted Whether the text is within double quotes, which can not be escaped, so become single quotes.
+   * @throws IOException On a write error.
+   */
+  private static void writeEscaped(final Writer out, final String text, final boolean quoted) throws IOException {
+    for (int index = 0; index < text.length(); index++) {
+      char c = text.charAt(index);
+      if (c == '\n') {
+        out.write("\\n");
+      } else if (c == '"' && quoted) {
+        out.write('\'');
+      } else if (c >= 0x20 || c == '\t') {
+        out.write(c);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,587 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An OutputAdapter that draws the sequence diagram as an SVG image, without any output library.
+ * <br>
+ * Elements are written to a buffered Writer as they are added. The body of the image is spooled
+ * to a temporary file, as the image's size is only known once every element has been added;
+ * saveToFile then writes the header, copies the body after it, and removes the temporary file.
+ * Memory use does not grow with the size of the diagram, however long its message sequence.
+ * <br>
+ * Participants (actors and class blocks) are drawn as boxes along the top, with an activation bar
+ * below each, connected by their lifelines. Each method is drawn as an arrow on its own row, below
+ * the rows before it, and constraints, loops and alternatives are drawn as notes on the next rows.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Between initializeDiagram and saveToFile, body is open, or the diagram is finalized. <br>
+ *     nextRowY is below every element drawn so far. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class OutputSVG implements OutputAdapter {
+
+  /** The kinds of element that a virtual index can refer to. */
+  private static final int PARTICIPANT = 0;
+  private static final int ACTIVATION_BLOCK = 1;
+  private static final int LIFELINE = 2;
+
+  /** The layout of the image, in pixels. */
+  private static final int MARGIN = 20;
+  private static final int COLUMN_WIDTH = 160;
+  private static final int BOX_WIDTH = 140;
+  private static final int BOX_HEIGHT = 40;
+  private static final int PARTICIPANT_Y = 20;
+  private static final int BAR_WIDTH = 12;
+  private static final int BAR_HEIGHT = 30;
+  private static final int ACTIVATION_BLOCK_Y = 100;
+  private static final int FIRST_ROW_Y = 170;
+  private static final int ROW_HEIGHT = 30;
+  private static final int SELF_CALL_WIDTH = 30;
+  private static final int SELF_CALL_HEIGHT = 14;
+  private static final int NOTE_WIDTH = 300;
+  private static final int NOTE_HEIGHT = 40;
+
+  /** The temporary file the image's body is spooled to, until it is saved. */
+  private Path bodyFile;
+
+  /** Writes the image's body, while it is open. */
+  private Writer body;
+
+  /** Whether finalizeDiagram has finished the body. */
+  private boolean finalized;
+
+  /** Gives out the virtual indices, and places the element at each one. */
+  private final IndexRuns indices = new IndexRuns(3);
+
+  /** The top of the next method or note row. */
+  private int nextRowY;
+
+  /**
+   * Default constructor.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an OutputSVG instance.
+   *
+   * @author Jesse Primiani
+   */
+  public OutputSVG() {}
+
+  /**
+   * Starts a new image body in a temporary file, discarding any unsaved diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> An empty image is open for elements to be added to.
+   *
+   * @author Jesse Primiani
+   * @throws IOException If the temporary file can not be created.
+   */
+  public void initializeDiagram() throws IOException {
+    discard();
+    indices.clear();
+    nextRowY = FIRST_ROW_Y;
+    finalized = false;
+
+    bodyFile = File.createTempFile("sdm-", ".svg.part").toPath();
+    body = Files.newBufferedWriter(bodyFile, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Add an actor element to the sequence diagram with the given name to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An actor box is drawn in the next participant column.
+   *
+   * @author Jesse Primiani
+   * @param actorName The actor element's name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addActor(String actorName) throws Exception {
+    checkOpen("addActor");
+    drawParticipant("actor", (actorName == null) ? "" : actorName);
+  }
+
+  /**
+   * Add a class block (object) element to the sequence diagram with the given names to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A class block box with the text "instanceName:className" is drawn in the
+   * next participant column.
+   *
+   * @author Jesse Primiani
+   * @param instanceName The class block's instance name.
+   * @param className The class block's class name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addClassBlock(String instanceName, String className) throws Exception {
+    checkOpen("addClassBlock");
+    if (instanceName == null) instanceName = "";
+    if (className == null) className = "";
+    drawParticipant("object", instanceName + ":" + className);
+  }
+
+  /**
+   * Add process block elements to the internal diagram to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> The given number, count, of activation bars are drawn, in the next columns.
+   *
+   * @author Jesse Primiani
+   * @param count The number of process blocks to add.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addActivationBlocks(int count) throws Exception {
+    checkOpen("addActivationBlocks");
+    for (int i = 0; i < count; i++) {
+      int x = xOf(indices.add(ACTIVATION_BLOCK));
+      body.write("<rect class='bar' x='" + (x - BAR_WIDTH / 2) + "' y='" + ACTIVATION_BLOCK_Y
+          + "' width='" + BAR_WIDTH + "' height='" + BAR_HEIGHT + "'/>\n");
+    }
+  }
+
+  /**
+   * Connect two added elements with a line.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> A line from the bottom of the element referred to by fromIndex to the top of
+   * that referred to by toIndex is drawn, dashed when active is false, and solid otherwise.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the lifeline.
+   * @param toIndex The ending element for the lifeline.
+   * @param active Whether the lifeline represents an active object.
+   * @throws SDMException if an index is negative or invalid.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addLifeline(int fromIndex, int toIndex, boolean active) throws Exception {
+    checkOpen("addLifeline");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addLifeline' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addLifeline' is less than 0");
+    if (fromIndex >= indices.size()) throw new SDMException("fromIndex in method 'addLifeline' is currently invalid");
+    if (toIndex >= indices.size()) throw new SDMException("toIndex in method 'addLifeline' is currently invalid");
+
+    indices.add(LIFELINE);
+    body.write("<line class='" + (active ? "life" : "life dashed") + "' x1='" + xOf(fromIndex)
+        + "' y1='" + bottomOf(fromIndex) + "' x2='" + xOf(toIndex) + "' y2='" + topOf(toIndex) + "'/>\n");
+  }
+
+  /**
+   * Add a method call message between processes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> An arrow from the column of the element referred to by fromIndex to that of
+   * toIndex, labelled with text, is drawn on the next row. A method to the same column is drawn as a loop.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the message.
+   * @param toIndex The ending element for the message.
+   * @param text The message's (method's) text.
+   * @throws SDMException if an index is negative or invalid.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addMethod(int fromIndex, int toIndex, String text) throws Exception {
+    checkOpen("addMethod");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addMethod' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addMethod' is less than 0");
+    if (fromIndex >= indices.size()) throw new SDMException("fromIndex in method 'addMethod' is currently invalid");
+    if (toIndex >= indices.size()) throw new SDMException("toIndex in method 'addMethod' is currently invalid");
+    if (text == null) text = "";
+
+    int fromX = xOf(fromIndex);
+    int toX = xOf(toIndex);
+    int y = nextRowY + ROW_HEIGHT - 8;
+
+    if (fromX == toX) {
+      // A call to itself loops out to the right and back.
+      body.write("<path class='message' d='M" + fromX + "," + y + " h" + SELF_CALL_WIDTH + " v" + SELF_CALL_HEIGHT
+          + " h-" + SELF_CALL_WIDTH + "'/>\n");
+      writeText(fromX + SELF_CALL_WIDTH + 4, y + SELF_CALL_HEIGHT / 2 + 4, "start", text);
+      nextRowY += ROW_HEIGHT + SELF_CALL_HEIGHT;
+    } else {
+      body.write("<line class='message' x1='" + fromX + "' y1='" + y + "' x2='" + toX + "' y2='" + y + "'/>\n");
+      writeText((fromX + toX) / 2, y - 4, "middle", text);
+      nextRowY += ROW_HEIGHT;
+    }
+  }
+
+  /**
+   * Add a constraint box with the given constraint text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A constraint note with the given text is drawn on the next row.
+   *
+   * @author Jesse Primiani
+   * @param text The constraint's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addConstraint(String text) throws Exception {
+    checkOpen("addConstraint");
+    drawNote("constraint", text, null);
+  }
+
+  /**
+   * Add a loop box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A loop note with the given condition is drawn on the next row.
+   *
+   * @author Jesse Primiani
+   * @param text The loop's constraint text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addLoop(String text) throws Exception {
+    checkOpen("addLoop");
+    drawNote("loop", text, null);
+  }
+
+  /**
+   * Add an if-statement box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An alternative note with the if condition and the else text, divided by
+   * a dashed line, is drawn on the next rows.
+   *
+   * @author Jesse Primiani
+   * @param text The initial constraint's text.
+   * @param textElse The else section's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addAlternative(String text, String textElse) throws Exception {
+    checkOpen("addAlternative");
+    drawNote("alt", text, (textElse == null) ? "" : textElse);
+  }
+
+  /**
+   * Finishes the image's body.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> No more elements can be added. Calling this method again before the next
+   * initializeDiagram() has no effect.
+   *
+   * @author Jesse Primiani
+   * @throws Exception If the diagram was never initialized, or on a write error.
+   */
+  public void finalizeDiagram() throws Exception {
+    if (finalized) return;
+    checkOpen("finalizeDiagram");
+
+    try {
+      body.close();
+      body = null;
+      finalized = true;
+    } catch (IOException ex) {
+      discard();
+      throw ex;
+    }
+  }
+
+  /**
+   * Saves the image to a file, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The image is written to the output file, sized to fit every element, with a
+   * dashed line running down from each activation bar. Its full name is returned. A new diagram must
+   * be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information, such as OutputTypeSVG.
+   * @param overwrite Whether to overwrite an already existing file if it exists.
+   * @return The full name of the saved file, including its path and extension.
+   * @throws SDMException If any parameter is null, or the diagram was never initialized.
+   * @throws Exception On a write error.
+   */
+  public String saveToFile(final String path, final String name, final OutputType<?> type, boolean overwrite) throws Exception {
+    Path stagedFile = OutputFiles.createStagingFile(path, name, type);
+    try {
+      finalizeDiagram();
+      try (OutputStream out = Files.newOutputStream(stagedFile)) {
+        writeImage(out);
+      }
+    } catch (Exception ex) {
+      Files.deleteIfExists(stagedFile);
+      throw ex;
+    } finally {
+      if (bodyFile != null) Files.deleteIfExists(bodyFile);
+      bodyFile = null;
+      finalized = false;
+    }
+
+    return OutputFiles.publishFile(stagedFile, path, name, type, overwrite);
+  }
+
+  /**
+   * Saves the image to a stream, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The image saveToFile would save is written to the stream, which is flushed
+   * but not closed. A new diagram must be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write to.
+   * @param type An object containing the output file's type information, which is not needed to write the image.
+   * @throws SDMException If out is null, or the diagram was never initialized.
+   * @throws Exception On a write error.
+   */
+  public void saveToStream(final OutputStream out, final OutputType<?> type) throws Exception {
+    if (out == null) throw new SDMException("Null 'out' parameter in: OutputSVG 'saveToStream' method");
+    finalizeDiagram();
+
+    try {
+      writeImage(out);
+    } finally {
+      Files.deleteIfExists(bodyFile);
+      bodyFile = null;
+      finalized = false;
+    }
+  }
+
+  /**
+   * Throws away the diagram being built, such as when an export fails or is abandoned.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The unsaved image and its temporary file are deleted. A new diagram must be
+   * initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   */
+  public void discardDiagram() {
+    discard();
+  }
+
+  /**
+   * Gets the settings that change the files this adapter saves, for ExportCache's keys. This adapter has none, so its image depends only on the diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns an empty string.
+   *
+   * @author Jesse Primiani
+   * @return An empty string.
+   */
+  public String getCacheKeyParameters() {
+    return "";
+  }
+
+  /**
+   * Writes the whole image: the header, sized to fit every element, a dashed line running down from
+   * each activation bar, and the spooled body.
+   *
+   * @author Jesse Primiani
+   * @param target The stream to write to, which is flushed but not closed.
+   * @throws IOException On a read or write error.
+   */
+  private void writeImage(final OutputStream target) throws IOException {
+    int columns = Math.max(indices.getCount(PARTICIPANT), indices.getCount(ACTIVATION_BLOCK));
+    int width = Math.max(2 * MARGIN + columns * COLUMN_WIDTH, 2 * MARGIN + NOTE_WIDTH);
+    int height = nextRowY + MARGIN;
+
+    // The Writer is flushed rather than closed, so that the target stays open.
+    Writer out = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 65536);
+
+    out.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+    out.write("<svg xmlns='http://www.w3.org/2000/svg' width='" + width + "' height='" + height
+        + "' viewBox='0 0 " + width + " " + height + "' font-family='sans-serif' font-size='12'>\n");
+    out.write("<style>.box{fill:#fff;stroke:#000}.bar{fill:#eee;stroke:#000}.life{stroke:#000}"
+        + ".dashed{stroke-dasharray:6 4}.lane{stroke:#999;stroke-dasharray:4 4}"
+        + ".message{stroke:#000;fill:none;marker-end:url(#arrow)}.note{fill:#ffc;stroke:#000}</style>\n");
+    out.write("<defs><marker id='arrow' viewBox='0 0 10 10' refX='10' refY='5' markerWidth='8' markerHeight='8' "
+        + "orient='auto'><path d='M0,0 L10,5 L0,10 z'/></marker></defs>\n");
+    out.write("<rect width='100%' height='100%' fill='#fff'/>\n");
+
+    // Run a dashed lane down from each activation bar, behind the messages.
+    for (int column = 0, count = indices.getCount(ACTIVATION_BLOCK); column < count; column++) {
+      int x = MARGIN + BOX_WIDTH / 2 + column * COLUMN_WIDTH;
+      out.write("<line class='lane' x1='" + x + "' y1='" + (ACTIVATION_BLOCK_Y + BAR_HEIGHT)
+          + "' x2='" + x + "' y2='" + (height - MARGIN) + "'/>\n");
+    }
+
+    try (BufferedReader spooled = Files.newBufferedReader(bodyFile, StandardCharsets.UTF_8)) {
+      char[] buffer = new char[8192];
+      int read;
+      while ((read = spooled.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+    }
+    out.write("</svg>\n");
+    out.flush();
+  }
+
+  /**
+   * Draws a participant box, in the next participant column.
+   *
+   * @author Jesse Primiani
+   * @param kind The participant's kind, shown above its text.
+   * @param text The participant's text.
+   * @throws IOException On a write error.
+   */
+  private void drawParticipant(final String kind, final String text) throws IOException {
+    int x = xOf(indices.add(PARTICIPANT));
+    body.write("<rect class='box' x='" + (x - BOX_WIDTH / 2) + "' y='" + PARTICIPANT_Y
+        + "' width='" + BOX_WIDTH + "' height='" + BOX_HEIGHT + "'/>\n");
+    writeText(x, PARTICIPANT_Y + 15, "middle", "<<" + kind + ">>");
+    writeText(x, PARTICIPANT_Y + 32, "middle", text);
+  }
+
+  /**
+   * Draws a note on the next row, with a label, its text, and an optional second section.
+   *
+   * @author Jesse Primiani
+   * @param label The note's label, such as "loop".
+   * @param text The note's text.
+   * @param secondText The text of a second section, divided by a dashed line, or null for none.
+   * @throws IOException On a write error.
+   */
+  private void drawNote(final String label, final String text, final String secondText) throws IOException {
+    int y = nextRowY + 5;
+    int height = (secondText == null) ? NOTE_HEIGHT : 2 * NOTE_HEIGHT;
+
+    body.write("<rect class='note' x='" + MARGIN + "' y='" + y + "' width='" + NOTE_WIDTH + "' height='" + height + "'/>\n");
+    writeText(MARGIN + 6, y + 15, "start", label);
+    writeText(MARGIN + 6, y + 32, "start", (text == null) ? "" : text);
+    if (secondText != null) {
+      body.write("<line class='life dashed' x1='" + MARGIN + "' y1='" + (y + NOTE_HEIGHT) + "' x2='"
+          + (MARGIN + NOTE_WIDTH) + "' y2='" + (y + NOTE_HEIGHT) + "'/>\n");
+      writeText(MARGIN + 6, y + NOTE_HEIGHT + 24, "start", secondText);
+    }
+    nextRowY = y + height + 5;
+  }
+
+  /**
+   * Writes a text element, escaping its content for XML.
+   *
+   * @author Jesse Primiani
+   * @param x The text's horizontal position.
+   * @param y The text's baseline.
+   * @param anchor The SVG text-anchor: "start" or "middle".
+   * @param text The text to write.
+   * @throws IOException On a write error.
+   */
+  private void writeText(final int x, final int y, final String anchor, final String text) throws IOException {
+    body.write("<text x='" + x + "' y='" + y + "' text-anchor='" + anchor + "'>");
+    for (int index = 0; index < text.length(); index++) {
+      char c = text.charAt(index);
+      switch (c) {
+        case '&': body.write("&amp;"); break;
+        case '<': body.write("&lt;"); break;
+        case '>': body.write("&gt;"); break;
+        default:
+          if (c >= 0x20 || c == '\t') body.write(c);
+      }
+    }
+    body.write("</text>\n");
+  }
+
+  /**
+   * Gets the horizontal center of the column of the element at a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's horizontal center.
+   */
+  private int xOf(final int virtualIndex) {
+    return MARGIN + BOX_WIDTH / 2 + indices.columnOf(virtualIndex) * COLUMN_WIDTH;
+  }
+
+  /**
+   * Gets the top of the element at a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's top edge.
+   */
+  private int topOf(final int virtualIndex) {
+    int kind = indices.kindOf(virtualIndex);
+    if (kind == PARTICIPANT) return PARTICIPANT_Y;
+    if (kind == ACTIVATION_BLOCK) return ACTIVATION_BLOCK_Y;
+    return PARTICIPANT_Y + BOX_HEIGHT;
+  }
+
+  /**
+   * Gets the bottom of the element at a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's bottom edge.
+   */
+  private int bottomOf(final int virtualIndex) {
+    int kind = indices.kindOf(virtualIndex);
+    if (kind == PARTICIPANT) return PARTICIPANT_Y + BOX_HEIGHT;
+    if (kind == ACTIVATION_BLOCK) return ACTIVATION_BLOCK_Y + BAR_HEIGHT;
+    return ACTIVATION_BLOCK_Y;
+  }
+
+  /**
+   * Checks that a diagram is open for elements to be added.
+   *
+   * @author Jesse Primiani
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException If initializeDiagram() has not been called since the last save or finalize.
+   */
+  private void checkOpen(final String method) throws SDMException {
+    if (body == null) throw new SDMException("Diagram is not initialized in: OutputSVG '" + method + "' method");
+  }
+
+  /**
+   * Closes and deletes the temporary file of an unsaved diagram, if there is one.
+   *
+   * @author Jesse Primiani
+   */
+  private void discard() {
+    try {
+      if (body != null) body.close();
+    } catch (IOException ex) {
+      // The body is being thrown away.
+    }
+    try {
+      if (bodyFile != null) Files.deleteIfExists(bodyFile);
+    } catch (IOException ex) {
+      // The temporary file is left for the operating system to remove.
+    }
+    body = null;
+    bodyFile = null;
+    finalized = false;
+  }
+
+}
@@ -0,0 +1,539 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The common part of the OutputAdapters that write a sequence diagram as text, such as
+ * OutputPlantUML and OutputMermaid. Subclasses only give the syntax of each statement.
+ * <br>
+ * Each statement is written through a single buffered Writer as its element is added, to a
+ * temporary file that saveToFile moves into place, so no text is kept in memory per element.
+ * <br>
+ * Text formats have no activation block or lifeline elements of their own, so unlike OutputAspose,
+ * there is no table of the output's own IDs. Instead, a virtual index map relates each element's
+ * virtual index to the participant it belongs to. A participant (actor or class block) is its own
+ * participant, and a lifeline or activation block belongs to the participant at the other end of
+ * its lifeline; participants are resolved only through lifelines, as they are added. A method
+ * between two activation blocks is so written between their participants, and a method from or to
+ * an activation block that no lifeline has reached yet is rejected, as it has no participant.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Between initializeDiagram and saveToFile, out is open, or the diagram is finalized. <br>
+ *     Only the first nextVirtualIndex entries of participantOf are in use. <br>
+ *
+ * @author Jesse Primiani
+ */
+abstract class OutputText implements OutputAdapter {
+
+  /** Stored in the virtual index map for an activation block that no lifeline has reached yet. */
+  private static final int UNRESOLVED = -1;
+
+  /** The temporary file the text is written to, until it is saved. */
+  private Path textFile;
+
+  /** Writes the text, while it is open. */
+  private Writer out;
+
+  /** Whether finalizeDiagram has finished the text. */
+  private boolean finalized;
+
+  /** The virtual index map: the virtual index of the participant each element belongs to, or UNRESOLVED. */
+  private int[] participantOf;
+
+  /** The next virtual index to store. For use with the virtual index map. */
+  private int nextVirtualIndex;
+
+  /** The virtual indices of the first and last participants, or -1 before any are added. */
+  private int firstParticipant;
+  private int lastParticipant;
+
+  /**
+   * Starts a new text file in a temporary file, discarding any unsaved diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The diagram's opening statement is written, and elements can be added.
+   *
+   * @author Jesse Primiani
+   * @throws IOException If the temporary file can not be created or written.
+   */
+  public void initializeDiagram() throws IOException {
+    discard();
+    participantOf = new int[16];
+    nextVirtualIndex = 0;
+    firstParticipant = -1;
+    lastParticipant = -1;
+    finalized = false;
+
+    textFile = File.createTempFile("sdm-", ".txt.part").toPath();
+    out = Files.newBufferedWriter(textFile, StandardCharsets.UTF_8);
+    writeHeader(out);
+  }
+
+  /**
+   * Add an actor element to the sequence diagram with the given name to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An actor participant with the given name is declared.
+   *
+   * @author Jesse Primiani
+   * @param actorName The actor element's name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addActor(String actorName) throws Exception {
+    checkOpen("addActor");
+    if (actorName == null) actorName = "";
+    writeParticipant(out, true, addParticipant(), actorName);
+  }
+
+  /**
+   * Add a class block (object) element to the sequence diagram with the given names to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A participant named "instanceName:className" is declared.
+   *
+   * @author Jesse Primiani
+   * @param instanceName The class block's instance name.
+   * @param className The class block's class name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addClassBlock(String instanceName, String className) throws Exception {
+    checkOpen("addClassBlock");
+    if (instanceName == null) instanceName = "";
+    if (className == null) className = "";
+    writeParticipant(out, false, addParticipant(), instanceName + ":" + className);
+  }
+
+  /**
+   * Add process block elements to the internal diagram to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> The given number, count, of activation blocks are given virtual indices.
+   * Nothing is written for them, as they belong to the participant their lifeline comes from.
+   *
+   * @author Jesse Primiani
+   * @param count The number of process blocks to add.
+   * @throws Exception If the diagram is not open.
+   */
+  public void addActivationBlocks(int count) throws Exception {
+    checkOpen("addActivationBlocks");
+    if (count < 0) count = 0;
+
+    ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      addVirtualIndex(UNRESOLVED);
+    }
+  }
+
+  /**
+   * Connect two added elements with a line.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> The lifeline is given a virtual index. If one end is an activation block that
+   * no lifeline has reached yet, it now belongs to the participant of the other end. Nothing is written,
+   * as text formats draw a lifeline under every participant.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the lifeline.
+   * @param toIndex The ending element for the lifeline.
+   * @param active Whether the lifeline represents an active object.
+   * @throws SDMException if an index is negative or invalid.
+   * @throws Exception If the diagram is not open.
+   */
+  public void addLifeline(int fromIndex, int toIndex, boolean active) throws Exception {
+    checkOpen("addLifeline");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addLifeline' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addLifeline' is less than 0");
+    if (fromIndex >= nextVirtualIndex) throw new SDMException("fromIndex in method 'addLifeline' is currently invalid");
+    if (toIndex >= nextVirtualIndex) throw new SDMException("toIndex in method 'addLifeline' is currently invalid");
+
+    int participant = participantOf[fromIndex];
+    if (participant == UNRESOLVED) {
+      participant = participantOf[toIndex];
+      if (participant != UNRESOLVED) participantOf[fromIndex] = participant;
+    } else if (participantOf[toIndex] == UNRESOLVED) {
+      participantOf[toIndex] = participant;
+    }
+    addVirtualIndex(participant);
+  }
+
+  /**
+   * Add a method call message between processes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> A message with the given text is written, from the participant of the element
+   * referred to by fromIndex to that of toIndex.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the message.
+   * @param toIndex The ending element for the message.
+   * @param text The message's (method's) text.
+   * @throws SDMException if an index is negative or invalid, or refers to an activation block that no
+   * lifeline has reached yet.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addMethod(int fromIndex, int toIndex, String text) throws Exception {
+    checkOpen("addMethod");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addMethod' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addMethod' is less than 0");
+    if (fromIndex >= nextVirtualIndex) throw new SDMException("fromIndex in method 'addMethod' is currently invalid");
+    if (toIndex >= nextVirtualIndex) throw new SDMException("toIndex in method 'addMethod' is currently invalid");
+    if (text == null) text = "";
+
+    writeMethod(out, getParticipant(fromIndex, "fromIndex"), getParticipant(toIndex, "toIndex"), text);
+  }
+
+  /**
+   * Add a constraint box with the given constraint text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A note with the given text is written, across every participant.
+   *
+   * @author Jesse Primiani
+   * @param text The constraint's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addConstraint(String text) throws Exception {
+    checkOpen("addConstraint");
+    writeConstraint(out, firstParticipant, lastParticipant, (text == null) ? "" : text);
+  }
+
+  /**
+   * Add a loop box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A loop with the given condition is written.
+   *
+   * @author Jesse Primiani
+   * @param text The loop's constraint text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addLoop(String text) throws Exception {
+    checkOpen("addLoop");
+    writeLoop(out, (text == null) ? "" : text);
+  }
+
+  /**
+   * Add an if-statement box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An alternative with the if condition and the else text is written.
+   *
+   * @author Jesse Primiani
+   * @param text The initial constraint's text.
+   * @param textElse The else section's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addAlternative(String text, String textElse) throws Exception {
+    checkOpen("addAlternative");
+    writeAlternative(out, (text == null) ? "" : text, (textElse == null) ? "" : textElse);
+  }
+
+  /**
+   * Writes the diagram's closing statement, and closes the text.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> No more elements can be added. Calling this method again before the next
+   * initializeDiagram() has no effect.
+   *
+   * @author Jesse Primiani
+   * @throws Exception If the diagram was never initialized, or on a write error.
+   */
+  public void finalizeDiagram() throws Exception {
+    if (finalized) return;
+    checkOpen("finalizeDiagram");
+
+    try {
+      writeFooter(out);
+      out.close();
+      out = null;
+      finalized = true;
+    } catch (IOException ex) {
+      discard();
+      throw ex;
+    }
+  }
+
+  /**
+   * Saves the text to a file, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The text is moved to the output file, and its full name is returned.
+   * A new diagram must be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information, such as OutputTypePlantUML.
+   * @param overwrite Whether to overwrite an already existing file if it exists.
+   * @return The full name of the saved file, including its path and extension.
+   * @throws SDMException If any parameter is null, or the diagram was never initialized.
+   * @throws Exception If the file can not be moved into place.
+   */
+  public String saveToFile(final String path, final String name, final OutputType<?> type, boolean overwrite) throws Exception {
+    finalizeDiagram();
+
+    try {
+      return OutputFiles.publishFile(textFile, path, name, type, overwrite);
+    } finally {
+      textFile = null;
+      finalized = false;
+    }
+  }
+
+  /**
+   * Copies the finished text to a stream, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The text is written to the stream, which is flushed but not closed, and its
+   * temporary file is deleted. A new diagram must be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write to.
+   * @param type An object containing the output file's type information, which is not needed to write the text.
+   * @throws SDMException If out is null, or the diagram was never initialized.
+   * @throws Exception On a write error.
+   */
+  public void saveToStream(final OutputStream out, final OutputType<?> type) throws Exception {
+    if (out == null) throw new SDMException("Null 'out' parameter in: " + getClass().getSimpleName() + " 'saveToStream' method");
+    finalizeDiagram();
+
+    try {
+      Files.copy(textFile, out);
+      out.flush();
+    } finally {
+      Files.deleteIfExists(textFile);
+      textFile = null;
+      finalized = false;
+    }
+  }
+
+  /**
+   * Throws away the diagram being built, such as when an export fails or is abandoned.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The unsaved text and its temporary file are deleted. A new diagram must be
+   * initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   */
+  public void discardDiagram() {
+    discard();
+  }
+
+  /**
+   * Gets the settings that change the files this adapter saves, for ExportCache's keys. This adapter has none, so its text depends only on the diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns an empty string.
+   *
+   * @author Jesse Primiani
+   * @return An empty string.
+   */
+  public String getCacheKeyParameters() {
+    return "";
+  }
+
+  /**
+   * Writes the statement that opens a diagram.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @throws IOException On a write error.
+   */
+  abstract void writeHeader(Writer out) throws IOException;
+
+  /**
+   * Writes the statement that closes a diagram.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @throws IOException On a write error.
+   */
+  abstract void writeFooter(Writer out) throws IOException;
+
+  /**
+   * Writes the declaration of a participant. Participants are referred to as "P" followed by their virtual index.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param actor Whether the participant is an actor, rather than a class block.
+   * @param participant The participant's virtual index.
+   * @param name The participant's name.
+   * @throws IOException On a write error.
+   */
+  abstract void writeParticipant(Writer out, boolean actor, int participant, String name) throws IOException;
+
+  /**
+   * Writes a message between two participants.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param fromParticipant The sending participant's virtual index.
+   * @param toParticipant The receiving participant's virtual index.
+   * @param text The message's text.
+   * @throws IOException On a write error.
+   */
+  abstract void writeMethod(Writer out, int fromParticipant, int toParticipant, String text) throws IOException;
+
+  /**
+   * Writes a constraint note.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param firstParticipant The first participant's virtual index, or -1 if there are none.
+   * @param lastParticipant The last participant's virtual index, or -1 if there are none.
+   * @param text The constraint's text.
+   * @throws IOException On a write error.
+   */
+  abstract void writeConstraint(Writer out, int firstParticipant, int lastParticipant, String text) throws IOException;
+
+  /**
+   * Writes a loop.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param text The loop's condition.
+   * @throws IOException On a write error.
+   */
+  abstract void writeLoop(Writer out, String text) throws IOException;
+
+  /**
+   * Writes an alternative.
+   *
+   * @author Jesse Primiani
+   * @param out The Writer to write to.
+   * @param text The if condition.
+   * @param textElse The else section's text.
+   * @throws IOException On a write error.
+   */
+  abstract void writeAlternative(Writer out, String text, String textElse) throws IOException;
+
+  /**
+   * Gives the next virtual index to a new participant.
+   *
+   * @author Jesse Primiani
+   * @return The participant's virtual index.
+   */
+  private int addParticipant() {
+    int participant = nextVirtualIndex;
+    addVirtualIndex(participant);
+    if (firstParticipant < 0) firstParticipant = participant;
+    lastParticipant = participant;
+    return participant;
+  }
+
+  /**
+   * Gets the participant an element belongs to, for addMethod.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @param indexName The name of addMethod's parameter that gave virtualIndex, for the error message.
+   * @return The participant's virtual index.
+   * @throws SDMException if the element is an activation block that no lifeline has reached yet, so
+   * it has no participant to write.
+   */
+  private int getParticipant(final int virtualIndex, final String indexName) throws SDMException {
+    int participant = participantOf[virtualIndex];
+    if (participant == UNRESOLVED) {
+      throw new SDMException(indexName + " in method 'addMethod' is an activation block that no lifeline reaches");
+    }
+    return participant;
+  }
+
+  /**
+   * Grows the virtual index map, if needed, so that the given number of elements can be added without resizing it again.
+   *
+   * @author Jesse Primiani
+   * @param count The number of elements about to be added.
+   */
+  private void ensureCapacity(final int count) {
+    if (nextVirtualIndex + count > participantOf.length) {
+      participantOf = Arrays.copyOf(participantOf, nextVirtualIndex + count);
+    }
+  }
+
+  /**
+   * Stores an element's participant at the next virtual index.
+   *
+   * @author Jesse Primiani
+   * @param participant The participant's virtual index, or UNRESOLVED.
+   */
+  private void addVirtualIndex(final int participant) {
+    if (nextVirtualIndex == participantOf.length) {
+      participantOf = Arrays.copyOf(participantOf, participantOf.length * 2);
+    }
+    participantOf[nextVirtualIndex] = participant;
+    nextVirtualIndex++;
+  }
+
+  /**
+   * Checks that a diagram is open for elements to be added.
+   *
+   * @author Jesse Primiani
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException If initializeDiagram() has not been called since the last save or finalize.
+   */
+  private void checkOpen(final String method) throws SDMException {
+    if (out == null) {
+      throw new SDMException("Diagram is not initialized in: " + getClass().getSimpleName() + " '" + method + "' method");
+    }
+  }
+
+  /**
+   * Closes and deletes the temporary file of an unsaved diagram, if there is one.
+   *
+   * @author Jesse Primiani
+   */
+  private void discard() {
+    try {
+      if (out != null) out.close();
+    } catch (IOException ex) {
+      // The text is being thrown away.
+    }
+    try {
+      if (textFile != null) Files.deleteIfExists(textFile);
+    } catch (IOException ex) {
+      // The temporary file is left for the operating system to remove.
+    }
+    out = null;
+    textFile = null;
+    finalized = false;
+  }
+
+}
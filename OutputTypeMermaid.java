@@ -0,0 +1,47 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * Sets the extension and type for exporting a Mermaid text file.
+ * Used by OutputMermaid, which needs no output library to determine the file's format.
+ * 
+ * @author Jesse Primiani
+ */
+public class OutputTypeMermaid extends OutputType<String> {
+  
+  /** This represents the file name's extension. */
+  private final String EXTENSION = ".mmd";
+  
+  /** This represents the file's media type, as Mermaid text needs no output library format code. */
+  private final String TYPE = "text/vnd.mermaid";
+  
+  /**
+   * Gets the file extension string from this class.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None 
+   * <br>
+   * <b>Postconditions:</b> Returns a string containing the extension part of a file name.
+   * 
+   * @author Jesse Primiani
+   * @return The file extension String. (".mmd")
+   */
+  public final String getExtension() {
+    return this.EXTENSION;
+  }
+  
+  /**
+   * Gets the file type data structure from this class.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None 
+   * <br>
+   * <b>Postconditions:</b> Returns the Mermaid media type.
+   * 
+   * @author Jesse Primiani
+   * @return The file's media type. ("text/vnd.mermaid")
+   */
+  public final String getType() {
+    return this.TYPE;
+  }
+
+}
@@ -0,0 +1,47 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * Sets the extension and type for exporting a PlantUML text file.
+ * Used by OutputPlantUML, which needs no output library to determine the file's format.
+ * 
+ * @author Jesse Primiani
+ */
+public class OutputTypePlantUML extends OutputType<String> {
+  
+  /** This represents the file name's extension. */
+  private final String EXTENSION = ".puml";
+  
+  /** This represents the file's media type, as PlantUML text needs no output library format code. */
+  private final String TYPE = "text/x-plantuml";
+  
+  /**
+   * Gets the file extension string from this class.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None 
+   * <br>
+   * <b>Postconditions:</b> Returns a string containing the extension part of a file name.
+   * 
+   * @author Jesse Primiani
+   * @return The file extension String. (".puml")
+   */
+  public final String getExtension() {
+    return this.EXTENSION;
+  }
+  
+  /**
+   * Gets the file type data structure from this class.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None 
+   * <br>
+   * <b>Postconditions:</b> Returns the PlantUML media type.
+   * 
+   * @author Jesse Primiani
+   * @return The file's media type. ("text/x-plantuml")
+   */
+  public final String getType() {
+    return this.TYPE;
+  }
+
+}
@@ -0,0 +1,816 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An OutputAdapter that writes the Visio (VSDX) Open Packaging archive directly,
+ * without building an Aspose.Diagram object model.
+ * <br>
+ * The page's shapes are written to the archive as each element is added, and its connections
+ * are spooled to a temporary file, so memory use does not grow with the size of the diagram.
+ * The archive itself is written to a temporary file, which saveToFile moves into place.
+ * The masters are copied from the same MasterSDM.vssx stencil that OutputAspose uses, and
+ * the files are saved with the extension of OutputTypeAsposeVSDX.
+ * <br>
+ * As shapes are written before the whole diagram is known, they are placed as they arrive:
+ * participants (actors and class blocks) in a row along the top of the page, activation blocks
+ * in a row below them, and constraints, loops and alternatives in a row below those. Lifelines
+ * and methods are glued to the shapes they connect.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Between initializeDiagram and saveToFile, archive and page are open, or the diagram is finalized. <br>
+ *     The shape ID of the element at virtual index v is 2v + 1; shapes without a virtual index have even IDs. <br>
+ *     indices describes which kind of element each virtual index refers to. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class OutputVSDX implements OutputAdapter {
+
+  /** The stencil file containing the masters, shared with OutputAspose. */
+  private static final String MASTER_FILE = "VisioMasters" + File.separator + "MasterSDM.vssx";
+
+  /** The name of the single page part within the archive. */
+  private static final String PAGE_PART = "visio/pages/page1.xml";
+
+  /** The stencil parts that are replaced or left out of a drawing. */
+  private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+  private static final String DOCUMENT_RELS_PART = "visio/_rels/document.xml.rels";
+  private static final String WINDOWS_PART = "visio/windows.xml";
+
+  /** The relationship types of the parts written by this adapter. */
+  private static final String PAGES_RELATIONSHIP = "http://schemas.microsoft.com/visio/2010/relationships/pages";
+  private static final String PAGE_RELATIONSHIP = "http://schemas.microsoft.com/visio/2010/relationships/page";
+  private static final String MASTER_RELATIONSHIP = "http://schemas.microsoft.com/visio/2010/relationships/master";
+
+  /** The kinds of element that a virtual index can refer to, each laid out in its own row. */
+  private static final int PARTICIPANT = 0;
+  private static final int ACTIVATION_BLOCK = 1;
+  private static final int LIFELINE = 2;
+
+  /** The layout of the page, in inches. */
+  private static final double MARGIN = 1.0;
+  private static final double COLUMN_WIDTH = 1.5;
+  private static final double NOTE_WIDTH = 2.5;
+  private static final double PAGE_HEIGHT = 8.5;
+  private static final double PARTICIPANT_Y = 7.5;
+  private static final double LIFELINE_Y = 6.5;
+  private static final double ACTIVATION_BLOCK_Y = 5.5;
+  private static final double NOTE_Y = 3.0;
+
+  /** The stencil the masters are copied from. */
+  private VsdxStencil stencil;
+
+  /** The temporary file the archive is written to, until it is saved. */
+  private Path archiveFile;
+
+  /** The archive being written. */
+  private ZipOutputStream archive;
+
+  /** Writes the page part of the archive, while it is open. */
+  private Writer page;
+
+  /** The temporary file the page's connections are spooled to, until the page is finished. */
+  private Path connectsFile;
+
+  /** Writes the spooled connections. */
+  private Writer connects;
+
+  /** Whether any connection has been spooled. */
+  private boolean hasConnects;
+
+  /** Whether finalizeDiagram has finished the archive. */
+  private boolean finalized;
+
+  /** The names of the masters used by the page; at most the number of masters in the stencil. */
+  private final LinkedHashSet<String> usedMasters = new LinkedHashSet<String>();
+
+  /** Gives out the virtual indices, and places the element at each one. */
+  private final IndexRuns indices = new IndexRuns(3);
+
+  /** The next shape ID for a shape without a virtual index. */
+  private int nextUnindexedID;
+
+  /** The number of constraints, loops and alternatives added. */
+  private int noteCount;
+
+  /**
+   * Default constructor. Creates the output adapter without reading the stencil,
+   * which is read by initializeDiagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates an OutputVSDX instance.
+   *
+   * @author Jesse Primiani
+   */
+  public OutputVSDX() {}
+
+  /**
+   * Starts a new archive in a temporary file, discarding any unsaved diagram, and opens its page.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> An empty page is open for elements to be added to.
+   *
+   * @author Jesse Primiani
+   * @throws Exception If the stencil or a temporary file can not be read or written.
+   */
+  public void initializeDiagram() throws Exception {
+    discard();
+    stencil = VsdxStencil.getStencil(MASTER_FILE);
+
+    usedMasters.clear();
+    indices.clear();
+    nextUnindexedID = 2;
+    noteCount = 0;
+    hasConnects = false;
+    finalized = false;
+
+    try {
+      // Created as java.io does, with the default permissions, as the file is later moved into place.
+      archiveFile = File.createTempFile("sdm-", ".vsdx.part").toPath();
+      archive = new ZipOutputStream(Files.newOutputStream(archiveFile));
+      archive.putNextEntry(new ZipEntry(PAGE_PART));
+      page = new BufferedWriter(new OutputStreamWriter(archive, StandardCharsets.UTF_8), 65536);
+      page.write("<?xml version='1.0' encoding='utf-8' ?>\r\n");
+      page.write("<PageContents xmlns='" + VsdxStencil.VISIO_NAMESPACE + "' xmlns:r='"
+          + VsdxStencil.RELATIONSHIPS_NAMESPACE + "' xml:space='preserve'><Shapes>");
+
+      connectsFile = Files.createTempFile("sdm-", ".connects.part");
+      connects = Files.newBufferedWriter(connectsFile, StandardCharsets.UTF_8);
+    } catch (IOException ex) {
+      discard();
+      throw ex;
+    }
+  }
+
+  /**
+   * Add an actor element to the sequence diagram with the given name to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An actor diagram element is written to the page, in the next participant column.
+   *
+   * @author Jesse Primiani
+   * @param actorName The actor element's name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addActor(String actorName) throws Exception {
+    checkOpen("addActor");
+    writeIndexedShape(PARTICIPANT, "UMLActorBlock", (actorName == null) ? "" : actorName, null);
+  }
+
+  /**
+   * Add a class block (object) element to the sequence diagram with the given names to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A class block diagram element is written to the page, in the next participant column,
+   * with the text "instanceName:className".
+   *
+   * @author Jesse Primiani
+   * @param instanceName The class block's instance name.
+   * @param className The class block's class name.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addClassBlock(String instanceName, String className) throws Exception {
+    checkOpen("addClassBlock");
+    if (instanceName == null) instanceName = "";
+    if (className == null) className = "";
+    writeIndexedShape(PARTICIPANT, "UMLObjectBlock", instanceName + ":" + className, null);
+  }
+
+  /**
+   * Add process block elements to the internal diagram to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> The given number, count, of process block diagram elements are written to the page.
+   *
+   * @author Jesse Primiani
+   * @param count The number of process blocks to add.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addActivationBlocks(int count) throws Exception {
+    checkOpen("addActivationBlocks");
+    for (int i = 0; i < count; i++) {
+      writeIndexedShape(ACTIVATION_BLOCK, "UMLActivationBlock", null, null);
+    }
+  }
+
+  /**
+   * Connect two added elements with a line.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> A connector glued to the elements referred to by fromIndex and toIndex is written
+   * to the page, with a dashed line when active is false, and a solid line otherwise.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the lifeline.
+   * @param toIndex The ending element for the lifeline.
+   * @param active Whether the lifeline represents an active object.
+   * @throws SDMException if an index is negative or invalid.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addLifeline(int fromIndex, int toIndex, boolean active) throws Exception {
+    checkOpen("addLifeline");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addLifeline' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addLifeline' is less than 0");
+    if (fromIndex >= indices.size()) throw new SDMException("fromIndex in method 'addLifeline' is currently invalid");
+    if (toIndex >= indices.size()) throw new SDMException("toIndex in method 'addLifeline' is currently invalid");
+
+    int virtualIndex = indices.add(LIFELINE);
+    writeConnector(2 * virtualIndex + 1, fromIndex, toIndex, null, active ? 1 : 2, 0);
+  }
+
+  /**
+   * Add a method call message between processes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fromIndex and toIndex must refer to valid, previously added elements.
+   * <br>
+   * <b>Postconditions:</b> An arrow glued to the elements referred to by fromIndex and toIndex, with text for
+   * the method name, is written to the page.
+   *
+   * @author Jesse Primiani
+   * @param fromIndex The starting element for the message.
+   * @param toIndex The ending element for the message.
+   * @param text The message's (method's) text.
+   * @throws SDMException if an index is negative or invalid.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addMethod(int fromIndex, int toIndex, String text) throws Exception {
+    checkOpen("addMethod");
+    if (fromIndex < 0) throw new SDMException("fromIndex in method 'addMethod' is less than 0");
+    if (toIndex < 0) throw new SDMException("toIndex in method 'addMethod' is less than 0");
+    if (fromIndex >= indices.size()) throw new SDMException("fromIndex in method 'addMethod' is currently invalid");
+    if (toIndex >= indices.size()) throw new SDMException("toIndex in method 'addMethod' is currently invalid");
+    if (text == null) text = "";
+
+    writeConnector(takeUnindexedID(), fromIndex, toIndex, text, 1, 2);
+  }
+
+  /**
+   * Add a constraint box with the given constraint text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A constraint diagram element with the given internal text is written to the page.
+   *
+   * @author Jesse Primiani
+   * @param text The constraint's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addConstraint(String text) throws Exception {
+    checkOpen("addConstraint");
+    writeNoteShape("UMLConstraintBlock", text, null);
+  }
+
+  /**
+   * Add a loop box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> A loop block diagram element with the given internal text for the looping condition
+   * is written to the page.
+   *
+   * @author Jesse Primiani
+   * @param text The loop's constraint text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addLoop(String text) throws Exception {
+    checkOpen("addLoop");
+    writeNoteShape("UMLOptionLoopBlock", text, null);
+  }
+
+  /**
+   * Add an if-statement box with the given condition text to be saved.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> An alternative (if-else) block diagram element, with the given internal text for
+   * the if condition, and textElse for the else text on the next line, is written to the page.
+   *
+   * @author Jesse Primiani
+   * @param text The initial constraint's text.
+   * @param textElse The else section's text.
+   * @throws Exception If the diagram is not open, or on a write error.
+   */
+  public void addAlternative(String text, String textElse) throws Exception {
+    checkOpen("addAlternative");
+    writeNoteShape("UMLAlternativeBlock2", text, (textElse == null) ? "" : textElse);
+  }
+
+  /**
+   * Finishes the page and writes the rest of the archive: the page's relationships, the page list,
+   * the stencil's document, styles and masters, and the package's content types.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> initializeDiagram() has been called.
+   * <br>
+   * <b>Postconditions:</b> The archive is complete, and no more elements can be added. Calling this
+   * method again before the next initializeDiagram() has no effect.
+   *
+   * @author Jesse Primiani
+   * @throws Exception If the diagram was never initialized, or on a write error.
+   */
+  public void finalizeDiagram() throws Exception {
+    if (finalized) return;
+    checkOpen("finalizeDiagram");
+
+    try {
+      // Finish the page, appending the spooled connections after its shapes.
+      page.write("</Shapes>");
+      connects.close();
+      connects = null;
+      if (hasConnects) {
+        page.write("<Connects>");
+        try (BufferedReader spooled = Files.newBufferedReader(connectsFile, StandardCharsets.UTF_8)) {
+          char[] buffer = new char[8192];
+          int read;
+          while ((read = spooled.read(buffer)) > 0) {
+            page.write(buffer, 0, read);
+          }
+        }
+        page.write("</Connects>");
+      }
+      page.write("</PageContents>");
+      page.flush();
+      archive.closeEntry();
+      page = null;
+      Files.deleteIfExists(connectsFile);
+      connectsFile = null;
+
+      // Relate the page to the masters it uses.
+      StringBuilder pageRels = new StringBuilder(relationshipsHeader());
+      int relationshipID = 1;
+      for (String masterName : usedMasters) {
+        VsdxStencil.Master master = stencil.getMaster(masterName);
+        pageRels.append("<Relationship Id='rId").append(relationshipID++).append("' Type='").append(MASTER_RELATIONSHIP)
+            .append("' Target='../").append(master.partName.substring("visio/".length())).append("'/>");
+      }
+      pageRels.append("</Relationships>");
+      writePart("visio/pages/_rels/page1.xml.rels", pageRels.toString());
+
+      // List the page, sized to fit the widest row.
+      int columns = Math.max(Math.max(indices.getCount(PARTICIPANT), indices.getCount(ACTIVATION_BLOCK)), indices.getCount(LIFELINE));
+      double width = Math.max(2 * MARGIN + columns * COLUMN_WIDTH, 2 * MARGIN + noteCount * NOTE_WIDTH);
+      width = Math.max(width, 11.0);
+      writePart("visio/pages/pages.xml", "<?xml version='1.0' encoding='utf-8' ?>\r\n"
+          + "<Pages xmlns='" + VsdxStencil.VISIO_NAMESPACE + "' xmlns:r='" + VsdxStencil.RELATIONSHIPS_NAMESPACE
+          + "' xml:space='preserve'><Page ID='0' NameU='Page-1' Name='Page-1'><PageSheet>"
+          + "<Cell N='PageWidth' V='" + formatNumber(width) + "'/><Cell N='PageHeight' V='" + formatNumber(PAGE_HEIGHT)
+          + "'/></PageSheet><Rel r:id='rId1'/></Page></Pages>");
+      writePart("visio/pages/_rels/pages.xml.rels", relationshipsHeader()
+          + "<Relationship Id='rId1' Type='" + PAGE_RELATIONSHIP + "' Target='page1.xml'/></Relationships>");
+
+      // Copy the stencil's parts, turning its package into a drawing with pages and no stencil window.
+      for (Map.Entry<String, byte[]> part : stencil.getParts().entrySet()) {
+        String partName = part.getKey();
+        if (partName.equals(WINDOWS_PART)) continue;
+
+        if (partName.equals(CONTENT_TYPES_PART)) {
+          String types = new String(part.getValue(), StandardCharsets.UTF_8)
+              .replace("application/vnd.ms-visio.stencil.main+xml", "application/vnd.ms-visio.drawing.main+xml")
+              .replaceAll("<Override[^>]*PartName=[\"']/visio/windows\\.xml[\"'][^>]*/>", "")
+              .replace("</Types>", "<Override PartName='/visio/pages/pages.xml' ContentType='application/vnd.ms-visio.pages+xml'/>"
+                  + "<Override PartName='/" + PAGE_PART + "' ContentType='application/vnd.ms-visio.page+xml'/></Types>");
+          writePart(partName, types);
+        } else if (partName.equals(DOCUMENT_RELS_PART)) {
+          String rels = new String(part.getValue(), StandardCharsets.UTF_8)
+              .replaceAll("<Relationship[^>]*Type=[\"'][^\"']*/windows[\"'][^>]*/>", "")
+              .replace("</Relationships>", "<Relationship Id='rIdSdmPages' Type='" + PAGES_RELATIONSHIP
+                  + "' Target='pages/pages.xml'/></Relationships>");
+          writePart(partName, rels);
+        } else {
+          archive.putNextEntry(new ZipEntry(partName));
+          archive.write(part.getValue());
+          archive.closeEntry();
+        }
+      }
+
+      archive.close();
+      archive = null;
+      finalized = true;
+    } catch (Exception ex) {
+      discard();
+      throw ex;
+    }
+  }
+
+  /**
+   * Saves the finished archive to a file, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The archive is moved from its temporary file to the output file,
+   * and its full name is returned. A new diagram must be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param path The output directory's path.
+   * @param name The output file's name.
+   * @param type An object containing the output file's type information, such as OutputTypeAsposeVSDX.
+   * @param overwrite Whether to overwrite an already existing file if it exists.
+   * @return The full name of the saved file, including its path and extension.
+   * @throws SDMException If any parameter is null, or the diagram was never initialized.
+   * @throws Exception On a write error.
+   */
+  public String saveToFile(final String path, final String name, final OutputType<?> type, boolean overwrite) throws Exception {
+    finalizeDiagram();
+
+    try {
+      return OutputFiles.publishFile(archiveFile, path, name, type, overwrite);
+    } finally {
+      archiveFile = null;
+      finalized = false;
+    }
+  }
+
+  /**
+   * Copies the finished archive to a stream, finalizing the diagram first if needed.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> All parameters must be valid, as given in SDMtoFile, and not null.
+   * <br>
+   * <b>Postconditions:</b> The archive is written to the stream, which is flushed but not closed, and its
+   * temporary file is deleted. A new diagram must be initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   * @param out The stream to write to.
+   * @param type An object containing the output file's type information, which is not needed to write the archive.
+   * @throws SDMException If out is null, or the diagram was never initialized.
+   * @throws Exception On a write error.
+   */
+  public void saveToStream(final OutputStream out, final OutputType<?> type) throws Exception {
+    if (out == null) throw new SDMException("Null 'out' parameter in: OutputVSDX 'saveToStream' method");
+    finalizeDiagram();
+
+    try {
+      Files.copy(archiveFile, out);
+      out.flush();
+    } finally {
+      Files.deleteIfExists(archiveFile);
+      archiveFile = null;
+      finalized = false;
+    }
+  }
+
+  /**
+   * Throws away the diagram being built, such as when an export fails or is abandoned.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The unsaved drawing and its temporary files are deleted. A new diagram must be
+   * initialized before adding more elements.
+   *
+   * @author Jesse Primiani
+   */
+  public void discardDiagram() {
+    discard();
+  }
+
+  /**
+   * Gets the settings that change the files this adapter saves, for ExportCache's keys. This adapter has none, so its drawing depends only on the diagram.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns an empty string.
+   *
+   * @author Jesse Primiani
+   * @return An empty string.
+   */
+  public String getCacheKeyParameters() {
+    return "";
+  }
+
+  /**
+   * Writes a shape for an element that is given a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param kind The kind of element, PARTICIPANT or ACTIVATION_BLOCK.
+   * @param masterName The name of the shape's master.
+   * @param text The shape's text, or null for none.
+   * @param secondText A second line of text, or null for none.
+   * @throws Exception On a write error, or if the stencil lacks the master.
+   */
+  private void writeIndexedShape(final int kind, final String masterName, final String text,
+      final String secondText) throws Exception {
+    int virtualIndex = indices.add(kind);
+    writeShape(2 * virtualIndex + 1, masterName, xOf(virtualIndex), rowOf(kind), text, secondText);
+  }
+
+  /**
+   * Writes a shape for a constraint, loop or alternative, in the next column of the bottom row.
+   *
+   * @author Jesse Primiani
+   * @param masterName The name of the shape's master.
+   * @param text The shape's text.
+   * @param secondText A second line of text, or null for none.
+   * @throws Exception On a write error, or if the stencil lacks the master.
+   */
+  private void writeNoteShape(final String masterName, final String text, final String secondText) throws Exception {
+    double x = MARGIN + NOTE_WIDTH / 2 + noteCount * NOTE_WIDTH;
+    noteCount++;
+    writeShape(takeUnindexedID(), masterName, x, NOTE_Y, (text == null) ? "" : text, secondText);
+  }
+
+  /**
+   * Writes a two-dimensional shape to the page.
+   *
+   * @author Jesse Primiani
+   * @param id The shape's ID.
+   * @param masterName The name of the shape's master.
+   * @param x The shape's horizontal position.
+   * @param y The shape's vertical position.
+   * @param text The shape's text, or null for none.
+   * @param secondText A second line of text, or null for none.
+   * @throws Exception On a write error, or if the stencil lacks the master.
+   */
+  private void writeShape(final int id, final String masterName, final double x, final double y,
+      final String text, final String secondText) throws Exception {
+    page.write("<Shape ID='");
+    page.write(Integer.toString(id));
+    page.write("' Type='Shape' Master='");
+    page.write(Integer.toString(useMaster(masterName)));
+    page.write("'><Cell N='PinX' V='");
+    page.write(formatNumber(x));
+    page.write("'/><Cell N='PinY' V='");
+    page.write(formatNumber(y));
+    page.write("'/>");
+    writeText(text, secondText);
+    page.write("</Shape>");
+  }
+
+  /**
+   * Writes a connector to the page, and spools the connections gluing its ends to two elements.
+   *
+   * @author Jesse Primiani
+   * @param id The connector's shape ID.
+   * @param fromIndex The virtual index of the element at the connector's start.
+   * @param toIndex The virtual index of the element at the connector's end.
+   * @param text The connector's text, or null for none.
+   * @param linePattern The Visio line pattern: 1 for solid, 2 for dashed.
+   * @param endArrow The Visio arrow at the end: 0 for none, 2 for a basic arrow.
+   * @throws Exception On a write error, or if the stencil lacks the master.
+   */
+  private void writeConnector(final int id, final int fromIndex, final int toIndex, final String text,
+      final int linePattern, final int endArrow) throws Exception {
+    double beginX = xOf(fromIndex);
+    double beginY = yOf(fromIndex);
+    double endX = xOf(toIndex);
+    double endY = yOf(toIndex);
+    double width = Math.hypot(endX - beginX, endY - beginY);
+    double angle = Math.atan2(endY - beginY, endX - beginX);
+
+    page.write("<Shape ID='");
+    page.write(Integer.toString(id));
+    page.write("' Type='Shape' Master='");
+    page.write(Integer.toString(useMaster("Dynamic connector")));
+    page.write("'>");
+    writeCell("PinX", formatNumber((beginX + endX) / 2));
+    writeCell("PinY", formatNumber((beginY + endY) / 2));
+    writeCell("Width", formatNumber(width));
+    writeCell("Height", "0");
+    writeCell("Angle", formatNumber(angle));
+    writeCell("BeginX", formatNumber(beginX));
+    writeCell("BeginY", formatNumber(beginY));
+    writeCell("EndX", formatNumber(endX));
+    writeCell("EndY", formatNumber(endY));
+    writeCell("LineWeight", "0.014");
+    writeCell("LineColor", "#000000");
+    writeCell("LinePattern", Integer.toString(linePattern));
+    writeCell("BeginArrow", "0");
+    writeCell("EndArrow", Integer.toString(endArrow));
+    writeText(text, null);
+    page.write("</Shape>");
+
+    // Glue both ends to the whole of the connected shapes, leaving Visio to pick the connection points.
+    connects.write("<Connect FromSheet='" + id + "' FromCell='BeginX' FromPart='9' ToSheet='" + (2 * fromIndex + 1)
+        + "' ToCell='PinX' ToPart='3'/><Connect FromSheet='" + id + "' FromCell='EndX' FromPart='12' ToSheet='"
+        + (2 * toIndex + 1) + "' ToCell='PinX' ToPart='3'/>");
+    hasConnects = true;
+  }
+
+  /**
+   * Writes a cell of the current shape.
+   *
+   * @author Jesse Primiani
+   * @param name The cell's name.
+   * @param value The cell's value.
+   * @throws IOException On a write error.
+   */
+  private void writeCell(final String name, final String value) throws IOException {
+    page.write("<Cell N='");
+    page.write(name);
+    page.write("' V='");
+    page.write(value);
+    page.write("'/>");
+  }
+
+  /**
+   * Writes the text of the current shape, escaping it for XML.
+   *
+   * @author Jesse Primiani
+   * @param text The shape's text, or null for none.
+   * @param secondText A second line of text, or null for none.
+   * @throws IOException On a write error.
+   */
+  private void writeText(final String text, final String secondText) throws IOException {
+    if (text == null && secondText == null) return;
+    page.write("<Text>");
+    if (text != null) writeEscaped(text);
+    if (secondText != null) {
+      page.write('\n');
+      writeEscaped(secondText);
+    }
+    page.write("</Text>");
+  }
+
+  /**
+   * Writes text to the page, escaping XML markup and leaving out characters that XML can not hold.
+   *
+   * @author Jesse Primiani
+   * @param text The text to write.
+   * @throws IOException On a write error.
+   */
+  private void writeEscaped(final String text) throws IOException {
+    for (int index = 0; index < text.length(); index++) {
+      char c = text.charAt(index);
+      switch (c) {
+        case '&': page.write("&amp;"); break;
+        case '<': page.write("&lt;"); break;
+        case '>': page.write("&gt;"); break;
+        default:
+          if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') page.write(c);
+      }
+    }
+  }
+
+  /**
+   * Writes a whole part to the archive.
+   *
+   * @author Jesse Primiani
+   * @param partName The part's name within the archive.
+   * @param content The part's content.
+   * @throws IOException On a write error.
+   */
+  private void writePart(final String partName, final String content) throws IOException {
+    archive.putNextEntry(new ZipEntry(partName));
+    archive.write(content.getBytes(StandardCharsets.UTF_8));
+    archive.closeEntry();
+  }
+
+  /**
+   * Gets the start of a relationships part.
+   *
+   * @author Jesse Primiani
+   * @return The XML declaration and opening Relationships tag.
+   */
+  private static String relationshipsHeader() {
+    return "<?xml version='1.0' encoding='utf-8' standalone='yes'?>\r\n"
+        + "<Relationships xmlns='http://schemas.openxmlformats.org/package/2006/relationships'>";
+  }
+
+  /**
+   * Marks a master as used by the page.
+   *
+   * @author Jesse Primiani
+   * @param masterName The master's name in the stencil.
+   * @return The master's ID.
+   * @throws SDMException If the stencil lacks the master.
+   */
+  private int useMaster(final String masterName) throws SDMException {
+    int id = stencil.getMaster(masterName).id;
+    usedMasters.add(masterName);
+    return id;
+  }
+
+  /**
+   * Gives out the next ID for a shape without a virtual index.
+   *
+   * @author Jesse Primiani
+   * @return The shape ID.
+   */
+  private int takeUnindexedID() {
+    int id = nextUnindexedID;
+    nextUnindexedID += 2;
+    return id;
+  }
+
+  /**
+   * Gets the horizontal position of the element at a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's horizontal position.
+   */
+  private double xOf(final int virtualIndex) {
+    return MARGIN + indices.columnOf(virtualIndex) * COLUMN_WIDTH;
+  }
+
+  /**
+   * Gets the vertical position of the element at a virtual index.
+   *
+   * @author Jesse Primiani
+   * @param virtualIndex A virtual index that has been given out.
+   * @return The element's vertical position.
+   */
+  private double yOf(final int virtualIndex) {
+    return rowOf(indices.kindOf(virtualIndex));
+  }
+
+  /**
+   * Gets the vertical position of the row holding a kind of element.
+   *
+   * @author Jesse Primiani
+   * @param kind The element's kind.
+   * @return The row's vertical position.
+   */
+  private static double rowOf(final int kind) {
+    if (kind == PARTICIPANT) return PARTICIPANT_Y;
+    if (kind == ACTIVATION_BLOCK) return ACTIVATION_BLOCK_Y;
+    return LIFELINE_Y;
+  }
+
+  /**
+   * Formats a number for a cell value, rounded to ten thousandths.
+   *
+   * @author Jesse Primiani
+   * @param value The number.
+   * @return The number's text.
+   */
+  private static String formatNumber(final double value) {
+    double rounded = Math.round(value * 10000) / 10000.0;
+    if (rounded == (long) rounded) return Long.toString((long) rounded);
+    return Double.toString(rounded);
+  }
+
+  /**
+   * Checks that a diagram is open for elements to be added.
+   *
+   * @author Jesse Primiani
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException If initializeDiagram() has not been called since the last save or finalize.
+   */
+  private void checkOpen(final String method) throws SDMException {
+    if (page == null) throw new SDMException("Diagram is not initialized in: OutputVSDX '" + method + "' method");
+  }
+
+  /**
+   * Closes and deletes the temporary files of an unsaved diagram, if there is one.
+   *
+   * @author Jesse Primiani
+   */
+  private void discard() {
+    try {
+      if (connects != null) connects.close();
+    } catch (IOException ex) {
+      // The spooled connections are being thrown away.
+    }
+    try {
+      if (archive != null) archive.close();
+    } catch (IOException ex) {
+      // The archive is being thrown away.
+    }
+    try {
+      if (connectsFile != null) Files.deleteIfExists(connectsFile);
+      if (archiveFile != null) Files.deleteIfExists(archiveFile);
+    } catch (IOException ex) {
+      // The temporary files are left for the operating system to remove.
+    }
+    connects = null;
+    archive = null;
+    page = null;
+    connectsFile = null;
+    archiveFile = null;
+    finalized = false;
+  }
+
+}
@@ -0,0 +1,314 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One page of a diagram that OutputAspose splits into pages: the run of methods and fragments
+ * (constraints, loops and alternatives) on the page, the activation blocks those methods use, with
+ * the first and last row each block spans on the page, and the columns those blocks and methods use.
+ * <br>
+ * Methods take one row each, in order, and fragments take the rows after the last method, so a
+ * page holds a run of methods, a run of fragments, or the end of one and the start of the other.
+ * A page only has the columns, and so the participant headers, that its own methods use, in the
+ * diagram's column order, so its width depends on its own methods rather than the whole diagram.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The first blockCount entries of blocks, firstRows and lastRows are in use. <br>
+ *     blockSlots relates each planned block to its position in those arrays. <br>
+ *     columns is sorted, and columnSlots relates each of its columns to its position in it. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class PagePlan {
+
+  /** The methods on the page, from firstMethod up to, but not including, endMethod. */
+  final int firstMethod;
+  final int endMethod;
+
+  /** The fragments on the page, from firstFragment up to, but not including, endFragment. */
+  final int firstFragment;
+  final int endFragment;
+
+  /** The number of rows the page's methods and fragments take. */
+  final int rowCount;
+
+  /** The position of each activation block on the page in the arrays below, keyed by its position among activation blocks. */
+  private IndexMap blockSlots;
+
+  /** Each activation block on the page, by its position among activation blocks, in the order first used. */
+  private int[] blocks = new int[16];
+
+  /** The first and last row on the page of each activation block, as blocks is indexed. */
+  private int[] firstRows = new int[16];
+  private int[] lastRows = new int[16];
+
+  /** The number of activation blocks on the page. */
+  private int blockCount;
+
+  /** The diagram's columns that are on the page, in order, and the position of each on the page, keyed by the diagram's column. */
+  private int[] columns;
+  private IndexMap columnSlots;
+
+  /** The number of columns on the page. */
+  private int columnCount;
+
+  /**
+   * Creates the plan of a page, without its activation blocks.
+   *
+   * @author Jesse Primiani
+   */
+  private PagePlan(final int firstMethod, final int endMethod, final int firstFragment, final int endFragment,
+      final int rowCount) {
+    this.firstMethod = firstMethod;
+    this.endMethod = endMethod;
+    this.firstFragment = firstFragment;
+    this.endFragment = endFragment;
+    this.rowCount = rowCount;
+  }
+
+  /**
+   * Splits a diagram's methods and fragments into pages of at most rowsPerPage rows, in order.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> rowsPerPage is at least 1.
+   * <br>
+   * <b>Postconditions:</b> Returns at least one page. Each method and fragment is on exactly one
+   * page, and only a fragment taller than rowsPerPage, alone on its page, makes a page taller.
+   *
+   * @author Jesse Primiani
+   * @param methodCount The number of methods.
+   * @param fragmentRows The number of rows each fragment takes.
+   * @param fragmentCount The number of fragments.
+   * @param rowsPerPage The most rows on a page.
+   * @return The pages, in order, without their activation blocks.
+   */
+  static PagePlan[] paginate(final int methodCount, final int[] fragmentRows, final int fragmentCount,
+      final int rowsPerPage) {
+    List<PagePlan> pages = new ArrayList<PagePlan>(methodCount / rowsPerPage + 1);
+    int method = 0;
+    int fragment = 0;
+    do {
+      int firstMethod = method;
+      int firstFragment = fragment;
+      int rows = Math.min(methodCount - method, rowsPerPage);
+      method += rows;
+
+      while (method == methodCount && fragment < fragmentCount && rows + fragmentRows[fragment] <= rowsPerPage) {
+        rows += fragmentRows[fragment];
+        fragment++;
+      }
+      if (rows == 0 && fragment < fragmentCount) {
+        // A fragment taller than a page gets a page of its own.
+        rows = fragmentRows[fragment];
+        fragment++;
+      }
+
+      pages.add(new PagePlan(firstMethod, method, firstFragment, fragment, rows));
+    } while (method < methodCount || fragment < fragmentCount);
+
+    return pages.toArray(new PagePlan[pages.size()]);
+  }
+
+  /**
+   * Finds the activation blocks the page's methods start or end at, the rows each spans, and the
+   * columns of those blocks and of the participants the methods start or end at.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The arrays and runs are not changed while the page is planned. Each method
+   * end is the virtual index of the element it is drawn at.
+   * <br>
+   * <b>Postconditions:</b> The page is planned, in time linear in its number of methods, apart from
+   * sorting its columns.
+   *
+   * @author Jesse Primiani
+   * @param methodFrom The virtual index each method is drawn from.
+   * @param methodTo The virtual index each method is drawn to.
+   * @param kinds The kind of element at each virtual index.
+   * @param participantKind The kind of a participant, whose column is its position among participants.
+   * @param blockKind The kind of an activation block.
+   * @param blockColumns The column of each activation block.
+   * @param extraColumns More columns to put on the page, or null.
+   */
+  void plan(final int[] methodFrom, final int[] methodTo, final IndexRuns kinds, final int participantKind,
+      final int blockKind, final int[] blockColumns, final int[] extraColumns) {
+    int expectedSize = Math.min(endMethod - firstMethod, 1 << 16);
+    blockSlots = new IndexMap(expectedSize);
+    columnSlots = new IndexMap(expectedSize);
+    columns = new int[16];
+    columnCount = 0;
+
+    for (int method = firstMethod; method < endMethod; method++) {
+      int row = method - firstMethod;
+      useEnd(methodFrom[method], row, kinds, participantKind, blockKind, blockColumns);
+      useEnd(methodTo[method], row, kinds, participantKind, blockKind, blockColumns);
+    }
+
+    if (extraColumns != null) {
+      for (int column : extraColumns) {
+        useColumn(column);
+      }
+    }
+
+    // Keep the diagram's column order on the page.
+    columns = Arrays.copyOf(columns, columnCount);
+    Arrays.sort(columns);
+    for (int slot = 0; slot < columnCount; slot++) {
+      columnSlots.put(columns[slot], slot);
+    }
+  }
+
+  /**
+   * Adds the column of a method's end to the page, and if the end is an activation block, extends its rows.
+   *
+   * @author Jesse Primiani
+   * @param end The virtual index of the element the method is drawn at.
+   * @param row The method's row on the page.
+   * @param kinds The kind of element at each virtual index.
+   * @param participantKind The kind of a participant.
+   * @param blockKind The kind of an activation block.
+   * @param blockColumns The column of each activation block.
+   */
+  private void useEnd(final int end, final int row, final IndexRuns kinds, final int participantKind,
+      final int blockKind, final int[] blockColumns) {
+    int kind = kinds.kindOf(end);
+    if (kind == blockKind) {
+      useBlock(kinds.columnOf(end), row);
+      useColumn(blockColumns[kinds.columnOf(end)]);
+    } else if (kind == participantKind) {
+      useColumn(kinds.columnOf(end));
+    }
+  }
+
+  /**
+   * Adds one of the diagram's columns to the page, if it is not on it yet.
+   *
+   * @author Jesse Primiani
+   * @param column The diagram's column.
+   */
+  private void useColumn(final int column) {
+    if (columnSlots.get(column) != IndexMap.MISSING) return;
+
+    // The slot is set once every column is known and sorted.
+    columnSlots.put(column, 0);
+    if (columnCount == columns.length) columns = Arrays.copyOf(columns, columnCount * 2);
+    columns[columnCount++] = column;
+  }
+
+  /**
+   * Extends an activation block's rows on the page to include a row, adding the block if it is new.
+   *
+   * @author Jesse Primiani
+   * @param block The block's position among activation blocks.
+   * @param row The row on the page.
+   */
+  private void useBlock(final int block, final int row) {
+    long slot = blockSlots.get(block);
+    if (slot != IndexMap.MISSING) {
+      lastRows[(int) slot] = row;
+      return;
+    }
+
+    if (blockCount == blocks.length) {
+      blocks = Arrays.copyOf(blocks, blockCount * 2);
+      firstRows = Arrays.copyOf(firstRows, blockCount * 2);
+      lastRows = Arrays.copyOf(lastRows, blockCount * 2);
+    }
+    blocks[blockCount] = block;
+    firstRows[blockCount] = row;
+    lastRows[blockCount] = row;
+    blockSlots.put(block, blockCount);
+    blockCount++;
+  }
+
+  /**
+   * Gets the number of activation blocks on the page.
+   *
+   * @author Jesse Primiani
+   * @return The number of planned blocks.
+   */
+  int getBlockCount() {
+    return blockCount;
+  }
+
+  /**
+   * Gets a planned activation block.
+   *
+   * @author Jesse Primiani
+   * @param slot The block's position on the page, from 0 to getBlockCount() - 1.
+   * @return The block's position among activation blocks.
+   */
+  int getBlock(final int slot) {
+    return blocks[slot];
+  }
+
+  /**
+   * Gets the first row on the page of a planned activation block.
+   *
+   * @author Jesse Primiani
+   * @param slot The block's position on the page.
+   * @return The row of the first method on the page that starts or ends at the block.
+   */
+  int getFirstRow(final int slot) {
+    return firstRows[slot];
+  }
+
+  /**
+   * Gets the last row on the page of a planned activation block.
+   *
+   * @author Jesse Primiani
+   * @param slot The block's position on the page.
+   * @return The row of the last method on the page that starts or ends at the block.
+   */
+  int getLastRow(final int slot) {
+    return lastRows[slot];
+  }
+
+  /**
+   * Gets the number of columns on the page.
+   *
+   * @author Jesse Primiani
+   * @return The number of planned columns.
+   */
+  int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Gets a planned column.
+   *
+   * @author Jesse Primiani
+   * @param slot The column's position on the page, from 0 to getColumnCount() - 1.
+   * @return The diagram's column.
+   */
+  int getColumn(final int slot) {
+    return columns[slot];
+  }
+
+  /**
+   * Gets the position on the page of one of the diagram's columns.
+   *
+   * @author Jesse Primiani
+   * @param column The diagram's column.
+   * @return The column's position on the page, or -1 if it is not on the page.
+   */
+  int getColumnSlot(final int column) {
+    long slot = columnSlots.get(column);
+    return (slot == IndexMap.MISSING) ? -1 : (int) slot;
+  }
+
+  /**
+   * Gets the position on the page of an activation block.
+   *
+   * @author Jesse Primiani
+   * @param block The block's position among activation blocks.
+   * @return The block's position on the page, or -1 if it is not on the page.
+   */
+  int getSlot(final int block) {
+    long slot = blockSlots.get(block);
+    return (slot == IndexMap.MISSING) ? -1 : (int) slot;
+  }
+
+}
@@ -0,0 +1,209 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory ExportMetricsRegistry that keeps every recorded time, 
+ * so that exact percentiles (such as p50 and p99) can be read for each ExportPhase 
+ * and for whole exports.
+ * <br>
+ * A phase's percentiles only include the exports that ran it, so cache hits, which only 
+ * run the save phase, and incremental updates, which skip the participant phases, do not 
+ * count as zero-time samples of the phases they skipped.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Each phase's sample array holds phaseCounts of that phase recorded values, followed by unused space. <br>
+ *     The total and output sample arrays hold exportCount recorded values, followed by unused space. <br>
+ *     All access to the samples is synchronized on the registry. <br>
+ * 
+ * @author Jesse Primiani
+ */
+public class PercentileMetricsRegistry implements ExportMetricsRegistry {
+  
+  /** The recorded time of each phase, per ExportPhase ordinal, in nanoseconds. */
+  private final long[][] phaseSamples = new long[ExportPhase.values().length][];
+  
+  /** The number of recorded exports that ran each phase, per ExportPhase ordinal. */
+  private final int[] phaseCounts = new int[ExportPhase.values().length];
+  
+  /** The recorded total time of each export, in nanoseconds. */
+  private long[] totalSamples;
+  
+  /** The recorded output size of each export, in bytes. */
+  private long[] outputSamples;
+  
+  /** The number of recorded exports. */
+  private int exportCount;
+  
+  /**
+   * Creates an empty registry.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates a registry with no recorded exports.
+   * 
+   * @author Jesse Primiani
+   */
+  public PercentileMetricsRegistry() {
+    clear();
+  }
+  
+  /**
+   * Records the measurements of a completed export.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> stats must not be null.
+   * <br>
+   * <b>Postconditions:</b> The export's total time and output size, and the time of each phase 
+   * it ran, are included in later percentiles.
+   * 
+   * @author Jesse Primiani
+   * @param stats The measurements of one export.
+   * @throws NullPointerException if stats is null.
+   */
+  @Override
+  public synchronized void recordExport(final ExportStats stats) {
+    if (exportCount == totalSamples.length) {
+      int capacity = exportCount * 2;
+      totalSamples = Arrays.copyOf(totalSamples, capacity);
+      outputSamples = Arrays.copyOf(outputSamples, capacity);
+    }
+    
+    for (ExportPhase phase : ExportPhase.values()) {
+      if (!stats.hasPhaseRun(phase)) continue;
+      int index = phase.ordinal();
+      if (phaseCounts[index] == phaseSamples[index].length) {
+        phaseSamples[index] = Arrays.copyOf(phaseSamples[index], phaseCounts[index] * 2);
+      }
+      phaseSamples[index][phaseCounts[index]++] = stats.getPhaseNanos(phase);
+    }
+    totalSamples[exportCount] = stats.getTotalNanos();
+    outputSamples[exportCount] = stats.getOutputBytes();
+    exportCount++;
+  }
+  
+  /**
+   * Gets the number of recorded exports.
+   * 
+   * @author Jesse Primiani
+   * @return The number of recorded exports.
+   */
+  public synchronized int getExportCount() {
+    return exportCount;
+  }
+  
+  /**
+   * Gets the number of recorded exports that ran a phase, which the phase's percentiles are taken over.
+   * 
+   * @author Jesse Primiani
+   * @param phase The phase to get the count of.
+   * @return The number of recorded exports that ran the phase.
+   * @throws SDMException on a null phase.
+   */
+  public synchronized int getPhaseCount(final ExportPhase phase) throws SDMException {
+    if (phase == null) throw new SDMException("Null 'phase' parameter in: getPhaseCount");
+    return phaseCounts[phase.ordinal()];
+  }
+  
+  /**
+   * Gets a percentile of the recorded times of one phase, using the nearest-rank method.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> phase must not be null, and percentile must be between 0 and 100.
+   * <br>
+   * <b>Postconditions:</b> Returns the smallest recorded time that is at least as large as 
+   * the given percentage of the times recorded for the phase, by the exports that ran it.
+   * 
+   * @author Jesse Primiani
+   * @param phase The phase to get the percentile of.
+   * @param percentile The percentile to get, such as 50 or 99.
+   * @return The percentile, in nanoseconds, or 0 if no recorded export ran the phase.
+   * @throws SDMException on a null phase or a percentile out of range.
+   */
+  public synchronized long getPhasePercentile(final ExportPhase phase, final double percentile) throws SDMException {
+    if (phase == null) throw new SDMException("Null 'phase' parameter in: getPhasePercentile");
+    return percentileOf(phaseSamples[phase.ordinal()], phaseCounts[phase.ordinal()], percentile, "getPhasePercentile");
+  }
+  
+  /**
+   * Gets a percentile of the recorded total export times, using the nearest-rank method.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> percentile must be between 0 and 100.
+   * <br>
+   * <b>Postconditions:</b> Returns the smallest recorded time that is at least as large as 
+   * the given percentage of the recorded times.
+   * 
+   * @author Jesse Primiani
+   * @param percentile The percentile to get, such as 50 or 99.
+   * @return The percentile, in nanoseconds, or 0 if no exports were recorded.
+   * @throws SDMException on a percentile out of range.
+   */
+  public synchronized long getTotalPercentile(final double percentile) throws SDMException {
+    return percentileOf(totalSamples, exportCount, percentile, "getTotalPercentile");
+  }
+  
+  /**
+   * Gets a percentile of the recorded output file sizes, using the nearest-rank method.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> percentile must be between 0 and 100.
+   * <br>
+   * <b>Postconditions:</b> Returns the smallest recorded size that is at least as large as 
+   * the given percentage of the recorded sizes.
+   * 
+   * @author Jesse Primiani
+   * @param percentile The percentile to get, such as 50 or 99.
+   * @return The percentile, in bytes, or 0 if no exports were recorded.
+   * @throws SDMException on a percentile out of range.
+   */
+  public synchronized long getOutputBytesPercentile(final double percentile) throws SDMException {
+    return percentileOf(outputSamples, exportCount, percentile, "getOutputBytesPercentile");
+  }
+  
+  /**
+   * Removes every recorded export.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The registry has no recorded exports.
+   * 
+   * @author Jesse Primiani
+   */
+  public synchronized void clear() {
+    for (int index = 0; index < phaseSamples.length; index++) {
+      phaseSamples[index] = new long[16];
+      phaseCounts[index] = 0;
+    }
+    totalSamples = new long[16];
+    outputSamples = new long[16];
+    exportCount = 0;
+  }
+  
+  /**
+   * Gets a nearest-rank percentile of the recorded part of a sample array, without reordering it.
+   * 
+   * @author Jesse Primiani
+   * @param samples The sample array.
+   * @param count The number of recorded values at the start of the sample array.
+   * @param percentile The percentile to get, between 0 and 100.
+   * @param method The name of the calling method, for error messages.
+   * @return The percentile, or 0 if no values were recorded.
+   * @throws SDMException on a percentile out of range.
+   */
+  private static long percentileOf(final long[] samples, final int count, final double percentile, final String method) throws SDMException {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new SDMException("'percentile' parameter must be between 0 and 100 in: " + method);
+    }
+    if (count == 0) return 0;
+    
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+}
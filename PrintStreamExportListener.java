@@ -0,0 +1,139 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.PrintStream;
+
+/**
+ * An ExportListener that prints a readable export log to a PrintStream, one line 
+ * per event as it happens. Used by SDMtoFile.exportFile(InputAdapter, PrintStream).
+ * <br>
+ * <br>
+ * The log matches the one exportFile built before listeners, except for two lines, which 
+ * are now true for every output adapter. "Empty Diagram object created & masters added" 
+ * is now "Empty Diagram object created", as OutputAspose adds each master when a shape 
+ * first needs it. "Shapes were properly positioned in the diagram." is now "The diagram 
+ * was finalized.", as the text adapters and OutputVSDX position nothing when they finalize.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The log attribute is not null. <br>
+ * 
+ * @author Jesse Primiani
+ */
+public class PrintStreamExportListener implements ExportListener {
+  
+  /** The separator line printed at the start and end of an export. */
+  private static final String SEPARATOR = "--------------------------------";
+  
+  /** The PrintStream object that prints status updates. */
+  private final PrintStream log;
+  
+  /**
+   * Creates a listener printing to the given PrintStream.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates a PrintStreamExportListener printing to log.
+   * 
+   * @author Jesse Primiani
+   * @param log The PrintStream object that prints status updates.
+   * @throws SDMException If log is null.
+   */
+  public PrintStreamExportListener(final PrintStream log) throws SDMException {
+    if (log == null) throw new SDMException("Null 'log' parameter in: PrintStreamExportListener constructor");
+    this.log = log;
+  }
+  
+  public void exportStarted() {
+    log.println(SEPARATOR);
+  }
+  
+  public void phaseStarted(ExportPhase phase, int count) {
+    switch (phase) {
+      case ACTORS:            log.println("Input Actors: " + count); break;
+      case CLASS_BLOCKS:      log.println("Input Class Blocks: " + count); break;
+      case ACTIVATION_BLOCKS: log.println("Input Activation Blocks: " + count); break;
+      case LIFELINES:         log.println("Input Lifelines: " + count); break;
+      case METHODS:           log.println("Input Methods: " + count); break;
+      case CONSTRAINTS:       log.println("Input Constraints: " + count); break;
+      case LOOPS:             log.println("Input Loop Blocks: " + count); break;
+      case ALTERNATIVES:      log.println("Input Alternative Blocks: " + count); break;
+      default: break;
+    }
+  }
+  
+  public void phaseFinished(ExportPhase phase, int count) {
+    switch (phase) {
+      case INITIALIZE:
+        log.println("Empty Diagram object created");
+        log.println();
+        break;
+      case FINALIZE:
+        log.println("The diagram was finalized.");
+        log.println();
+        break;
+      case READ:
+      case SAVE:
+        break;
+      case ACTIVATION_BLOCKS:
+        log.println();
+        break;
+      default:
+        // Element phases are followed by a blank line, unless they were empty.
+        if (count > 0) log.println();
+        break;
+    }
+  }
+  
+  public void actorAdded(int index, String actorName) {
+    log.println("Actor: " + text(actorName) + " added to UML Sequence Diagram");
+  }
+  
+  public void classBlockAdded(int index, String instanceName, String className) {
+    log.println("Class: " + text(className) + " with instance: " + text(instanceName) + " added to the UML Sequence Diagram");
+  }
+  
+  public void activationBlocksAdded(int count) {
+    log.println(count + " activation blocks added to the UML Sequence Diagram");
+  }
+  
+  public void lifelineAdded(int index, int fromIndex, int toIndex, boolean active) {
+    log.println("Lifeline from index: " + fromIndex + " to index: " + toIndex + " active: " + active + " added to the UML Sequence Diagram");
+  }
+  
+  public void methodAdded(int index, int fromIndex, int toIndex, String text) {
+    log.println("Method from index: " + fromIndex + " to index: " + toIndex + " with text: " + text(text) + " added to the UML Sequence Diagram");
+  }
+  
+  public void constraintAdded(int index, String text) {
+    log.println("Constraint with text: " + text(text) + " added to the UML Sequence Diagram");
+  }
+  
+  public void loopAdded(int index, String text) {
+    log.println("Loop with constraint: " + text(text) + " added to the UML Sequence Diagram");
+  }
+  
+  public void alternativeAdded(int index, String text, String textElse) {
+    log.println("Alternative block with if statement: " + text(text) + " and else statement: " + text(textElse) + " added to the UML Sequence Diagram");
+  }
+  
+  public void diagramSaved(String fileName) {
+    log.println("Diagram successfully saved as: " + fileName);
+  }
+  
+  public void exportFinished() {
+    log.println(SEPARATOR);
+  }
+  
+  /**
+   * Gets the text to print for an element's text, which output adapters treat null as empty.
+   * 
+   * @author Jesse Primiani
+   * @param text The element's text, possibly null.
+   * @return The text, or an empty String for null.
+   */
+  private static String text(final String text) {
+    return (text == null) ? "" : text;
+  }
+
+}
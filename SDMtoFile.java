@@ -1,6 +1,34 @@
 package com.beulahworks.SDMfileGenerator;
 
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The primary SDM file conversion class.
@@ -14,7 +42,7 @@ import java.io.PrintStream;
  * <br>
  * <br>
  * <b>Class Invariants:</b> <br>
- * No attributes are null. <br>
+ * No attributes are null, except metricsRegistry and exportCache. <br>
  * filePath and fileName have valid path and name strings for the run-time operating system. <br>
  * fileType and outputAdapter both contain concrete implementations. <br>
  * 
@@ -37,6 +65,94 @@ public class SDMtoFile {
   /** This contains the object that creates the output data structure and exports a sequence diagram to a file. */
   private OutputAdapter outputAdapter;
   
+  /** This receives the measurements of each completed export, or is null if they are not published. */
+  private ExportMetricsRegistry metricsRegistry;
+  
+  /** This holds previously exported files, to publish in place of exporting the same content again, or is null if there is no cache. */
+  private ExportCache exportCache;
+  
+  /** Appended to an output file's name to name the manifest kept by exportFileIncremental. */
+  public static final String MANIFEST_EXTENSION = ".sdmmanifest";
+  
+  /** The most elements given to one call of an output adapter's bulk add methods. */
+  private static final int BULK_CHUNK_SIZE = 8192;
+  
+  /** Creates the daemon threads used by the shared executors, so that they never keep the JVM alive. */
+  private static final ThreadFactory DAEMON_THREADS = runnable -> {
+    Thread thread = new Thread(runnable, "SDMtoFile-export");
+    thread.setDaemon(true);
+    return thread;
+  };
+  
+  /** Counts the bytes an output adapter writes to a caller's stream, for the export's measurements. */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+    
+    CountingOutputStream(final OutputStream out) {
+      super(out);
+    }
+    
+    public void write(final int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+    
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+  
+  /**
+   * The future of an exportFileAsync export. Cancelling it, or its deadline passing, only asks the export 
+   * to stop, at its next checkpoint; the future is completed by the thread running the export once it has 
+   * stopped, so the output adapter is no longer in use whenever the future is done. An export that has 
+   * not started yet is never started, and its future is completed at once.
+   */
+  private static final class AsyncExport extends CompletableFuture<ExportStats> {
+    /** The System.nanoTime() value after which the export is abandoned; 0 for no deadline. */
+    final long deadline;
+    
+    /** The exception the export is to stop with, once asked to stop; null while it may continue. */
+    private volatile Exception stopReason;
+    
+    /** Whether a thread is running the export, after which only that thread completes this future. */
+    private boolean running;
+    
+    AsyncExport(final long deadline) {
+      this.deadline = deadline;
+    }
+    
+    /**
+     * Asks the export to stop. Returns true if the export had not completed yet, even if it then 
+     * completes normally because it was already past its last checkpoint.
+     */
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      return stop(new CancellationException("Export cancelled in: exportFileAsync"));
+    }
+    
+    /** Asks the export to stop with the given exception, completing this future at once if the export is not running. */
+    synchronized boolean stop(final Exception reason) {
+      if (isDone()) return false;
+      if (stopReason == null) stopReason = reason;
+      if (!running) completeExceptionally(stopReason);
+      return true;
+    }
+    
+    /** Marks the export as running, unless it was already asked to stop. */
+    synchronized boolean start() {
+      if (isDone()) return false;
+      running = true;
+      return true;
+    }
+  }
+  
+  /** The executor that asynchronous exports run on when the caller does not supply one. Created on first use. */
+  private static Executor defaultAsyncExecutor;
+  
+  /** Completes asynchronous exports with a TimeoutException when their deadline passes. Created on first use. */
+  private static ScheduledExecutorService deadlineTimer;
+  
   /**
    * The default constructor.
    * <br>
@@ -235,6 +351,49 @@ public class SDMtoFile {
     outputAdapter = adapter;
   }
   
+  /**
+   * Sets the metrics registry that the measurements of each completed export are published to. 
+   * <br>
+   * Used to aggregate export times, such as p50 and p99, across many exports. 
+   * The batch exportFiles methods publish each job's measurements to this registry as well.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The metricsRegistry attribute is set to the registry parameter.
+   * 
+   * @author Jesse Primiani
+   * @param registry The registry to publish to, which must be thread-safe; null stops publishing.
+   */
+  public void setMetricsRegistry(final ExportMetricsRegistry registry) {
+    metricsRegistry = registry;
+  }
+  
+  /**
+   * Sets the cache that file exports are looked up in and added to. 
+   * <br>
+   * When an export's key, computed from the diagram's content, the output type, and the output 
+   * adapter's class and settings, is in the cache, the cached file is published under the output 
+   * name and the output adapter is not used. Otherwise the exported file is added to the cache. Adding 
+   * it is best-effort: if the cache can not take the file, the export still succeeds, and its 
+   * ExportStats.getCacheFailure() gives the cache's error. The batch exportFiles methods use this 
+   * cache as well; exportFileIncremental and stream exports do 
+   * not, nor do exports with an output adapter whose getCacheKeyParameters() returns null.
+   * A cached export reads the diagram twice, so it first reads it into a SequenceDiagramModel, 
+   * which holds the whole diagram on the heap; leave the cache unset for diagrams too large for that.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> The exportCache attribute is set to the cache parameter.
+   * 
+   * @author Jesse Primiani
+   * @param cache The cache to use, which may be shared by several SDMtoFile objects; null stops caching.
+   */
+  public void setExportCache(final ExportCache cache) {
+    exportCache = cache;
+  }
+  
   /**
    * Exports the sequence diagram in the InputAdapter object.
    * <br>
@@ -252,125 +411,815 @@ public class SDMtoFile {
    * @author Jesse Primiani
    * @param diagram The concrete object containing the diagram to save to a file.
    * @param log The PrintStream object that prints status updates; null disables logging.
+   * @return The time and allocation of each export phase, the element counts, and the saved file's size.
+   * @throws SDMException if the file export process does not successfully complete.
+   */
+  public ExportStats exportFile(final InputAdapter diagram, final PrintStream log) throws Exception {
+    return exportFileWithListener(diagram, (log == null) ? null : new PrintStreamExportListener(log));
+  }
+  
+  /**
+   * Exports the sequence diagram in the InputAdapter object, reporting progress to a listener.
+   * <br>
+   * Named apart from exportFile(InputAdapter diagram, PrintStream log), so that a call passing a null 
+   * log stays unambiguous.
+   * <br>
+   * Used to perform the conversion from the input adapter's data structures to 
+   * the output adapter's data structures. Also generates the output file using 
+   * the output adapter, alongside this class' attributes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null, and must be a concrete object.
+   * <br>
+   * <b>Postconditions:</b> A file containing the parameters internal sequence diagram will be saved 
+   * using the information found in the SDMtoFile objects attributes, with each step of the export 
+   * sent to the listener as it happens.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @param listener Receives the export's events; null disables them at no cost.
+   * @return The time and allocation of each export phase, the element counts, and the saved file's size.
+   * @throws SDMException if the file export process does not successfully complete.
+   */
+  public ExportStats exportFileWithListener(final InputAdapter diagram, final ExportListener listener) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportFileWithListener");
+    return exportDiagram(diagram, listener, overwrite, exportCache, null, null);
+  }
+  
+  /**
+   * Exports the sequence diagram in the InputAdapter object to a stream, instead of a file.
+   * <br>
+   * The diagram is converted as exportFileWithListener(InputAdapter diagram, ExportListener listener) would, 
+   * but the output adapter writes it directly to the caller's stream, such as an HTTP response 
+   * body or a ByteArrayOutputStream, so no output file is written and read back. The output path, 
+   * name and overwrite setting are not used; the output type still selects the format.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram and out parameters must not be null.
+   * <br>
+   * <b>Postconditions:</b> The parameter's internal sequence diagram is written to out, which is 
+   * flushed but not closed. The listener receives every event but diagramSaved, as no file is saved.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to export.
+   * @param out The stream to write the diagram to.
+   * @param listener Receives the export's events; null disables them at no cost.
+   * @return The time and allocation of each export phase, the element counts, and the number of bytes written.
+   * @throws SDMException if the export process does not successfully complete.
+   */
+  public ExportStats exportToStream(final InputAdapter diagram, final OutputStream out, final ExportListener listener) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportToStream");
+    if (out == null) throw new SDMException("Null 'out' parameter in: exportToStream");
+    return exportDiagram(diagram, listener, overwrite, null, out, null);
+  }
+  
+  /**
+   * A convenience version of: exportToStream(InputAdapter diagram, OutputStream out, ExportListener listener), 
+   * without a listener.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram and out parameters must not be null.
+   * <br>
+   * <b>Postconditions:</b> The parameter's internal sequence diagram is written to out, which is 
+   * flushed but not closed.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to export.
+   * @param out The stream to write the diagram to.
+   * @return The time and allocation of each export phase, the element counts, and the number of bytes written.
+   * @throws SDMException if the export process does not successfully complete.
+   */
+  public ExportStats exportToStream(final InputAdapter diagram, final OutputStream out) throws Exception {
+    return exportToStream(diagram, out, null);
+  }
+  
+  /**
+   * Exports the sequence diagram in the InputAdapter object to a channel, such as a socket or 
+   * object storage upload channel, as exportToStream does for a stream.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram and channel parameters must not be null.
+   * <br>
+   * <b>Postconditions:</b> The parameter's internal sequence diagram is written to the channel, 
+   * which is not closed.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to export.
+   * @param channel The channel to write the diagram to.
+   * @param listener Receives the export's events; null disables them at no cost.
+   * @return The time and allocation of each export phase, the element counts, and the number of bytes written.
+   * @throws SDMException if the export process does not successfully complete.
+   */
+  public ExportStats exportToChannel(final InputAdapter diagram, final WritableByteChannel channel, 
+      final ExportListener listener) throws Exception {
+    if (channel == null) throw new SDMException("Null 'channel' parameter in: exportToChannel");
+    
+    // Wrap the channel without taking ownership of it: the stream is never closed.
+    return exportToStream(diagram, Channels.newOutputStream(channel), listener);
+  }
+  
+  /**
+   * Exports the sequence diagram in the InputAdapter object over the output file from a previous 
+   * export, updating only the elements that changed since then, when the output adapter can.
+   * <br>
+   * A manifest is kept next to the output file, named as the file with MANIFEST_EXTENSION appended, 
+   * holding a fingerprint of every element exported, and the output adapter's state. When the output 
+   * adapter is an IncrementalOutputAdapter that can reopen the file with its current settings, the manifest 
+   * matches the file, and the diagram has the same participants, activation blocks and lifelines as before, 
+   * the file is reopened, each changed run of methods, constraints, loops and alternatives is replaced, 
+   * and the diagram is finalized and saved again, so the time taken depends mostly on the size of the change. Otherwise, the whole diagram 
+   * is exported, as exportFile does. Either way, the output file is always overwritten.
+   * <br>
+   * An update only reports the INITIALIZE, METHODS, CONSTRAINTS, LOOPS, ALTERNATIVES, FINALIZE and 
+   * SAVE phases, with the elements added in place of changed ones.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null, and must be a concrete object.
+   * <br>
+   * <b>Postconditions:</b> The output file contains the parameter's internal sequence diagram, and 
+   * its manifest describes it, if the output adapter is an IncrementalOutputAdapter.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @param listener Receives the export's events; null disables them at no cost.
+   * @return The time and allocation of each export phase, the element counts, and the saved file's size.
    * @throws SDMException if the file export process does not successfully complete.
    */
-  public void exportFile(final InputAdapter diagram, final PrintStream log) throws Exception {
-    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportFile");
+  public ExportStats exportFileIncremental(final InputAdapter diagram, final ExportListener listener) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportFileIncremental");
     
-    StringBuilder logString = new StringBuilder();
+    File outputFile = new File(filePath.isEmpty() ? "." : filePath, fileName + fileType.getExtension());
+    File manifestFile = new File(outputFile.getPath() + MANIFEST_EXTENSION);
+    SequenceDiagramModel model = SequenceDiagramModel.of(diagram);
+    ExportManifest current = ExportManifest.fingerprint(model);
     
+    if (!(outputAdapter instanceof IncrementalOutputAdapter)) {
+      // Without an adapter that can update a file, a manifest would never be used.
+      Files.deleteIfExists(manifestFile.toPath());
+      return exportDiagram(model, listener, true, null, null, null);
+    }
+    IncrementalOutputAdapter adapter = (IncrementalOutputAdapter) outputAdapter;
+    
+    // Forget the manifest before the file changes, so that it never describes a file it does not match.
+    ExportManifest previous = ExportManifest.read(manifestFile);
+    Files.deleteIfExists(manifestFile.toPath());
+    
+    ExportStats stats;
+    if (previous != null && previous.describes(outputFile) && previous.hasSameParticipants(current) 
+        && adapter.canOpenDiagram()) {
+      stats = updateDiagram(model, listener, adapter, outputFile, previous, current);
+    } else {
+      stats = exportDiagram(model, listener, true, null, null, null);
+    }
+    
+    // An adapter that can not reopen this diagram, such as one split into pages, gets no manifest.
+    byte[] state = adapter.saveState();
+    if (state != null) {
+      current.setOutput(new File(stats.getFileName()), state);
+      current.write(manifestFile);
+    }
+    return stats;
+  }
+  
+  /**
+   * Performs the update for exportFileIncremental: reopens the output file, and replaces the run of 
+   * each kind of element between the longest unchanged prefix and suffix.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> previous describes the output file, and has the same participants, activation 
+   * blocks and lifelines as current.
+   * <br>
+   * <b>Postconditions:</b> The output file is overwritten with the parameter's internal sequence 
+   * diagram, with each step of the update sent to the listener, and its measurements sent to the 
+   * metrics registry, if there is one.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The model of the diagram to save to a file.
+   * @param listener Receives the update's events; null disables them.
+   * @param adapter The output adapter.
+   * @param outputFile The output file.
+   * @param previous The manifest of the output file.
+   * @param current The manifest of the diagram.
+   * @return The measurements of the update.
+   * @throws SDMException if the update does not successfully complete.
+   */
+  private ExportStats updateDiagram(final SequenceDiagramModel diagram, final ExportListener listener, 
+      final IncrementalOutputAdapter adapter, final File outputFile, final ExportManifest previous, 
+      final ExportManifest current) throws Exception {
+    ExportStats stats = new ExportStats();
     try {
-      logString.append("--------------------------------" + System.lineSeparator());
+      if (listener != null) listener.exportStarted();
+      stats.exportStarted();
       
-      // Initialize the output adapter's internal data structures.
-      String logInit = outputAdapter.initializeDiagram();
-      logString.append(logInit + System.lineSeparator() + System.lineSeparator());
+      // Reopen the output file, as it was before it was finalized.
+      if (listener != null) listener.phaseStarted(ExportPhase.INITIALIZE, 0);
+      stats.phaseStarted();
+      adapter.openDiagram(outputFile.getPath(), previous.getAdapterState());
+      stats.phaseFinished(ExportPhase.INITIALIZE, 0);
+      if (listener != null) listener.phaseFinished(ExportPhase.INITIALIZE, 0);
       
-      // Add all actor elements.
-      int count = diagram.getActorCount();
-      logString.append("Input Actors: " + count + System.lineSeparator());
+      // Replace the changed methods.
+      int start = ExportManifest.commonPrefix(previous.methods, current.methods);
+      int suffix = ExportManifest.commonSuffix(previous.methods, current.methods, start);
+      int count = current.methods.length - start - suffix;
+      if (listener != null) listener.phaseStarted(ExportPhase.METHODS, count);
+      stats.phaseStarted();
+      int[] fromIndices = new int[count];
+      int[] toIndices = new int[count];
+      String[] texts = new String[count];
       for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addActor(
-            diagram.getActorName(index));
-        logString.append(logObject + System.lineSeparator());
+        fromIndices[index] = diagram.getMethodFromIndex(start + index);
+        toIndices[index] = diagram.getMethodToIndex(start + index);
+        texts[index] = diagram.getMethodText(start + index);
+      }
+      adapter.replaceMethods(start, previous.methods.length - start - suffix, fromIndices, toIndices, texts);
+      stats.phaseFinished(ExportPhase.METHODS, count);
+      if (listener != null) {
+        for (int index = 0; index < count; index++) {
+          listener.methodAdded(start + index, fromIndices[index], toIndices[index], texts[index]);
+        }
+        listener.phaseFinished(ExportPhase.METHODS, count);
       }
-      if (count > 0) logString.append(System.lineSeparator());
       
-      // Add all class block (object) elements.
-      count = diagram.getClassBlockCount();
-      logString.append("Input Class Blocks: " + count + System.lineSeparator());
+      // Replace the changed constraints.
+      start = ExportManifest.commonPrefix(previous.constraints, current.constraints);
+      suffix = ExportManifest.commonSuffix(previous.constraints, current.constraints, start);
+      count = current.constraints.length - start - suffix;
+      if (listener != null) listener.phaseStarted(ExportPhase.CONSTRAINTS, count);
+      stats.phaseStarted();
+      texts = new String[count];
       for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addClassBlock(
-            diagram.getClassBlockInstanceName(index), 
-            diagram.getClassBlockClassName(index));
-        logString.append(logObject + System.lineSeparator());
+        texts[index] = diagram.getConstraintText(start + index);
+      }
+      adapter.replaceConstraints(start, previous.constraints.length - start - suffix, texts);
+      stats.phaseFinished(ExportPhase.CONSTRAINTS, count);
+      if (listener != null) {
+        for (int index = 0; index < count; index++) {
+          listener.constraintAdded(start + index, texts[index]);
+        }
+        listener.phaseFinished(ExportPhase.CONSTRAINTS, count);
       }
-      if (count > 0) logString.append(System.lineSeparator());
-      
-      // Add all activation block (process) elements.
-      count = diagram.getActivationBlockCount();
-      logString.append("Input Activation Blocks: " + count + System.lineSeparator());
-      String logObjectList = outputAdapter.addActivationBlocks(count);
-      logString.append(logObjectList + System.lineSeparator() + System.lineSeparator());
       
-      // All all lifelines (internal lines).
-      count = diagram.getLifelineCount();
-      logString.append("Input Lifelines: " + count + System.lineSeparator());
+      // Replace the changed loop blocks.
+      start = ExportManifest.commonPrefix(previous.loops, current.loops);
+      suffix = ExportManifest.commonSuffix(previous.loops, current.loops, start);
+      count = current.loops.length - start - suffix;
+      if (listener != null) listener.phaseStarted(ExportPhase.LOOPS, count);
+      stats.phaseStarted();
+      texts = new String[count];
       for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addLifeline(
-            diagram.getLifelineFromIndex(index), 
-            diagram.getLifelineToIndex(index), 
-            diagram.getLifelineActive(index));
-        logString.append(logObject + System.lineSeparator());
+        texts[index] = diagram.getLoopText(start + index);
+      }
+      adapter.replaceLoops(start, previous.loops.length - start - suffix, texts);
+      stats.phaseFinished(ExportPhase.LOOPS, count);
+      if (listener != null) {
+        for (int index = 0; index < count; index++) {
+          listener.loopAdded(start + index, texts[index]);
+        }
+        listener.phaseFinished(ExportPhase.LOOPS, count);
       }
-      if (count > 0) logString.append(System.lineSeparator());
       
-      // Add all methods (external lines with message names).
-      count = diagram.getMethodCount();
-      logString.append("Input Methods: " + count + System.lineSeparator());
+      // Replace the changed alternative blocks.
+      start = ExportManifest.commonPrefix(previous.alternatives, current.alternatives);
+      suffix = ExportManifest.commonSuffix(previous.alternatives, current.alternatives, start);
+      count = current.alternatives.length - start - suffix;
+      if (listener != null) listener.phaseStarted(ExportPhase.ALTERNATIVES, count);
+      stats.phaseStarted();
+      texts = new String[count];
+      String[] textsElse = new String[count];
       for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addMethod(
-            diagram.getMethodFromIndex(index), 
-            diagram.getMethodToIndex(index), 
-            diagram.getMethodText(index));
-        logString.append(logObject + System.lineSeparator());
+        texts[index] = diagram.getAlternativeText(start + index);
+        textsElse[index] = diagram.getAlternativeTextElse(start + index);
+      }
+      adapter.replaceAlternatives(start, previous.alternatives.length - start - suffix, texts, textsElse);
+      stats.phaseFinished(ExportPhase.ALTERNATIVES, count);
+      if (listener != null) {
+        for (int index = 0; index < count; index++) {
+          listener.alternativeAdded(start + index, texts[index], textsElse[index]);
+        }
+        listener.phaseFinished(ExportPhase.ALTERNATIVES, count);
       }
-      if (count > 0) logString.append(System.lineSeparator());
       
-      // Add all constraints.
-      count = diagram.getConstraintCount();
-      logString.append("Input Constraints: " + count + System.lineSeparator());
-      for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addConstraint(
-            diagram.getConstraintText(index));
-        logString.append(logObject + System.lineSeparator());
+      // Lay out the diagram again, as replaced elements may move every element after them.
+      if (listener != null) listener.phaseStarted(ExportPhase.FINALIZE, 0);
+      stats.phaseStarted();
+      adapter.finalizeDiagram();
+      stats.phaseFinished(ExportPhase.FINALIZE, 0);
+      if (listener != null) listener.phaseFinished(ExportPhase.FINALIZE, 0);
+      
+      // Save the updated diagram over the output file.
+      if (listener != null) listener.phaseStarted(ExportPhase.SAVE, 0);
+      stats.phaseStarted();
+      String savedFile = adapter.saveToFile(filePath, fileName, fileType, true);
+      stats.phaseFinished(ExportPhase.SAVE, 0);
+      stats.exportFinished(savedFile);
+      if (listener != null) {
+        listener.diagramSaved(savedFile);
+        listener.phaseFinished(ExportPhase.SAVE, 0);
+        listener.exportFinished();
+      }
+    }
+    catch (Exception ex) {
+      if (listener != null) listener.exportFailed(ex);
+      throw ex;
+    }
+    
+    if (metricsRegistry != null) metricsRegistry.recordExport(stats);
+    return stats;
+  }
+  
+  /**
+   * Performs the export for exportFile and exportFileAsync.
+   * <br>
+   * When task is not null, the export is abandoned at its next checkpoint, before each phase and 
+   * each chunk of elements, once task is asked to stop (cancelled or timed out) or its deadline 
+   * passes, and the file is saved through a staging directory so that an abandoned export leaves 
+   * no file behind. A failed or abandoned export discards the output adapter's unsaved diagram. 
+   * When stream is not null, the diagram is written to it instead of to a file.
+   * <br>
+   * Each element phase reads straight from the InputAdapter, so the export needs no more memory 
+   * than the diagram's source and the output adapter do. Only when the cache is used, which reads 
+   * the diagram once for its key and again for the export, is the diagram first read into a 
+   * SequenceDiagramModel, unless it already is one.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null, and must be a concrete object.
+   * <br>
+   * <b>Postconditions:</b> A file containing the parameters internal sequence diagram is saved, 
+   * with each step of the export sent to the listener, and the export's measurements sent to the 
+   * metrics registry, if there is one.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @param listener Receives the export's events; null disables them.
+   * @param overwriteFile Whether to overwrite an already existing output file.
+   * @param cache The cache a file export is looked up in and added to, or null.
+   * @param stream The stream to write the diagram to, or null to save it to the output file.
+   * @param task The future of an asynchronous export, or null for a synchronous export.
+   * @return The measurements of the export.
+   * @throws CancellationException if task was cancelled.
+   * @throws TimeoutException if the deadline passed.
+   * @throws SDMException if the file export process does not successfully complete.
+   */
+  private ExportStats exportDiagram(final InputAdapter diagram, final ExportListener listener, 
+      final boolean overwriteFile, final ExportCache cache, final OutputStream stream, final AsyncExport task) throws Exception {
+    ExportStats stats = new ExportStats();
+    try {
+      if (listener != null) listener.exportStarted();
+      stats.exportStarted();
+      
+      // The cache key and the export each read the whole diagram, so a cached export reads it 
+      // once, into the compact model both passes read from. Otherwise the single pass reads the 
+      // InputAdapter itself.
+      InputAdapter source = diagram;
+      boolean cached = cache != null && stream == null && outputAdapter.getCacheKeyParameters() != null;
+      if (cached && !(diagram instanceof SequenceDiagramModel)) {
+        checkpoint(task);
+        if (listener != null) listener.phaseStarted(ExportPhase.READ, 0);
+        stats.phaseStarted();
+        source = SequenceDiagramModel.of(diagram);
+        stats.phaseFinished(ExportPhase.READ, 0);
+        if (listener != null) listener.phaseFinished(ExportPhase.READ, 0);
       }
-      if (count > 0) logString.append(System.lineSeparator());
       
-      // Add all loop blocks.
-      count = diagram.getLoopCount();
-      logString.append("Input Loop Blocks: " + count + System.lineSeparator());
-      for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addLoop(
-            diagram.getLoopText(index));
-        logString.append(logObject + System.lineSeparator());
+      // Publish the cached file, if this content was exported before.
+      String cacheKey = null;
+      if (cached) {
+        checkpoint(task);
+        stats.phaseStarted();
+        cacheKey = cache.getKey(source, fileType, outputAdapter);
+        String savedFile = cache.publish(cacheKey, filePath, fileName, fileType, overwriteFile);
+        if (savedFile != null) {
+          // The lookup and publish are the whole export, and are reported as its save phase.
+          stats.phaseFinished(ExportPhase.SAVE, 0);
+          stats.exportFinished(savedFile);
+          stats.cacheHit();
+          if (listener != null) {
+            listener.phaseStarted(ExportPhase.SAVE, 0);
+            listener.diagramSaved(savedFile);
+            listener.phaseFinished(ExportPhase.SAVE, 0);
+            listener.exportFinished();
+          }
+          if (metricsRegistry != null) metricsRegistry.recordExport(stats);
+          return stats;
+        }
       }
-      if (count > 0) logString.append(System.lineSeparator());
       
-      // Add all alternative blocks.
-      count = diagram.getAlternativeCount();
-      logString.append("Input Alternative Blocks: " + count + System.lineSeparator());
-      for (int index = 0; index < count; index++) {
-        String logObject = outputAdapter.addAlternative(
-            diagram.getAlternativeText(index), 
-            diagram.getAlternativeTextElse(index));
-        logString.append(logObject + System.lineSeparator());
+      // Initialize the output adapter's internal data structures.
+      checkpoint(task);
+      if (listener != null) listener.phaseStarted(ExportPhase.INITIALIZE, 0);
+      stats.phaseStarted();
+      outputAdapter.initializeDiagram();
+      stats.phaseFinished(ExportPhase.INITIALIZE, 0);
+      if (listener != null) listener.phaseFinished(ExportPhase.INITIALIZE, 0);
+      
+      // Add all actor elements.
+      checkpoint(task);
+      int count = source.getActorCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.ACTORS, count);
+      stats.phaseStarted();
+      exportActors(source, listener, task);
+      stats.phaseFinished(ExportPhase.ACTORS, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.ACTORS, count);
+      
+      // Add all class block (object) elements.
+      checkpoint(task);
+      count = source.getClassBlockCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.CLASS_BLOCKS, count);
+      stats.phaseStarted();
+      exportClassBlocks(source, listener, task);
+      stats.phaseFinished(ExportPhase.CLASS_BLOCKS, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.CLASS_BLOCKS, count);
+      
+      // Add all activation block (process) elements.
+      checkpoint(task);
+      count = source.getActivationBlockCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.ACTIVATION_BLOCKS, count);
+      stats.phaseStarted();
+      for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+        checkpoint(task);
+        outputAdapter.addActivationBlocks(Math.min(BULK_CHUNK_SIZE, count - start));
+      }
+      stats.phaseFinished(ExportPhase.ACTIVATION_BLOCKS, count);
+      if (listener != null) {
+        listener.activationBlocksAdded(count);
+        listener.phaseFinished(ExportPhase.ACTIVATION_BLOCKS, count);
       }
-      if (count > 0) logString.append(System.lineSeparator());
+      
+      // All all lifelines (internal lines).
+      checkpoint(task);
+      count = source.getLifelineCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.LIFELINES, count);
+      stats.phaseStarted();
+      exportLifelines(source, listener, task);
+      stats.phaseFinished(ExportPhase.LIFELINES, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.LIFELINES, count);
+      
+      // Add all methods (external lines with message names).
+      checkpoint(task);
+      count = source.getMethodCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.METHODS, count);
+      stats.phaseStarted();
+      exportMethods(source, listener, task);
+      stats.phaseFinished(ExportPhase.METHODS, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.METHODS, count);
+      
+      // Add all constraints.
+      checkpoint(task);
+      count = source.getConstraintCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.CONSTRAINTS, count);
+      stats.phaseStarted();
+      exportConstraints(source, listener, task);
+      stats.phaseFinished(ExportPhase.CONSTRAINTS, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.CONSTRAINTS, count);
+      
+      // Add all loop blocks.
+      checkpoint(task);
+      count = source.getLoopCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.LOOPS, count);
+      stats.phaseStarted();
+      exportLoops(source, listener, task);
+      stats.phaseFinished(ExportPhase.LOOPS, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.LOOPS, count);
+      
+      // Add all alternative blocks.
+      checkpoint(task);
+      count = source.getAlternativeCount();
+      if (listener != null) listener.phaseStarted(ExportPhase.ALTERNATIVES, count);
+      stats.phaseStarted();
+      exportAlternatives(source, listener, task);
+      stats.phaseFinished(ExportPhase.ALTERNATIVES, count);
+      if (listener != null) listener.phaseFinished(ExportPhase.ALTERNATIVES, count);
       
       // Finalize the output adapter's internal data structures.
-      String logFinalize = outputAdapter.finalizeDiagram();
-      logString.append(logFinalize + System.lineSeparator() + System.lineSeparator());
+      checkpoint(task);
+      if (listener != null) listener.phaseStarted(ExportPhase.FINALIZE, 0);
+      stats.phaseStarted();
+      outputAdapter.finalizeDiagram();
+      stats.phaseFinished(ExportPhase.FINALIZE, 0);
+      if (listener != null) listener.phaseFinished(ExportPhase.FINALIZE, 0);
       
       // Save the created output library data structure to a file.
-      String logSaved = outputAdapter.saveToFile(filePath, fileName, fileType, overwrite);
-      logString.append(logSaved + System.lineSeparator());
-      logString.append("--------------------------------");
-
-      if (log != null){
-        log.println(logString.toString());
+      checkpoint(task);
+      if (listener != null) listener.phaseStarted(ExportPhase.SAVE, 0);
+      stats.phaseStarted();
+      if (stream != null) {
+        CountingOutputStream counter = new CountingOutputStream(stream);
+        outputAdapter.saveToStream(counter, fileType);
+        stats.phaseFinished(ExportPhase.SAVE, 0);
+        stats.exportFinished(counter.count);
+      } else {
+        String savedFile;
+        if (task == null) {
+          savedFile = outputAdapter.saveToFile(filePath, fileName, fileType, overwriteFile);
+        } else {
+          savedFile = saveStaged(task, overwriteFile);
+        }
+        stats.phaseFinished(ExportPhase.SAVE, 0);
+        stats.exportFinished(savedFile);
+        if (listener != null) listener.diagramSaved(savedFile);
+        if (cacheKey != null) {
+          // The file is already published, so a cache that can not take it must not fail the export.
+          try {
+            cache.put(cacheKey, savedFile, fileType);
+          } catch (IOException ex) {
+            stats.cacheFailed(ex);
+          }
+        }
+      }
+      if (listener != null) {
+        listener.phaseFinished(ExportPhase.SAVE, 0);
+        listener.exportFinished();
       }
     }
     catch (Exception ex) {
-      if (log != null){
-        log.println(logString.toString());
-      }
+      // Throw away what was built, such as the temporary file of an abandoned export.
+      outputAdapter.discardDiagram();
+      if (listener != null) listener.exportFailed(ex);
       throw ex;
     }
+    
+    if (metricsRegistry != null) metricsRegistry.recordExport(stats);
+    return stats;
+  }
+  
+  /**
+   * Adds the diagram's actors to the output adapter, for exportDiagram.
+   * <br>
+   * With a listener, each actor is added on its own and reported as soon as it is added, so that a 
+   * failing export reports every actor added before the failure. Without one, the actors are added 
+   * with the adapter's bulk method, BULK_CHUNK_SIZE at a time, so that the arrays passed to it stay 
+   * the same size however large the diagram is.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every actor has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the actors from.
+   * @param listener Receives an event per actor added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportActors(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getActorCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        String name = diagram.getActorName(index);
+        outputAdapter.addActor(name);
+        listener.actorAdded(index, name);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      String[] names = new String[Math.min(BULK_CHUNK_SIZE, count - start)];
+      for (int index = 0; index < names.length; index++) {
+        names[index] = diagram.getActorName(start + index);
+      }
+      outputAdapter.addActors(names);
+    }
+  }
+  
+  /**
+   * Adds the diagram's class blocks to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every class block has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the class blocks from.
+   * @param listener Receives an event per class block added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportClassBlocks(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getClassBlockCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        String instanceName = diagram.getClassBlockInstanceName(index);
+        String className = diagram.getClassBlockClassName(index);
+        outputAdapter.addClassBlock(instanceName, className);
+        listener.classBlockAdded(index, instanceName, className);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      String[] instanceNames = new String[Math.min(BULK_CHUNK_SIZE, count - start)];
+      String[] classNames = new String[instanceNames.length];
+      for (int index = 0; index < instanceNames.length; index++) {
+        instanceNames[index] = diagram.getClassBlockInstanceName(start + index);
+        classNames[index] = diagram.getClassBlockClassName(start + index);
+      }
+      outputAdapter.addClassBlocks(instanceNames, classNames);
+    }
+  }
+  
+  /**
+   * Adds the diagram's lifelines to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every lifeline has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the lifelines from.
+   * @param listener Receives an event per lifeline added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportLifelines(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getLifelineCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        int fromIndex = diagram.getLifelineFromIndex(index);
+        int toIndex = diagram.getLifelineToIndex(index);
+        boolean active = diagram.getLifelineActive(index);
+        outputAdapter.addLifeline(fromIndex, toIndex, active);
+        listener.lifelineAdded(index, fromIndex, toIndex, active);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      int[] fromIndices = new int[Math.min(BULK_CHUNK_SIZE, count - start)];
+      int[] toIndices = new int[fromIndices.length];
+      boolean[] active = new boolean[fromIndices.length];
+      for (int index = 0; index < fromIndices.length; index++) {
+        fromIndices[index] = diagram.getLifelineFromIndex(start + index);
+        toIndices[index] = diagram.getLifelineToIndex(start + index);
+        active[index] = diagram.getLifelineActive(start + index);
+      }
+      outputAdapter.addLifelines(fromIndices, toIndices, active);
+    }
+  }
+  
+  /**
+   * Adds the diagram's methods to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every method has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the methods from.
+   * @param listener Receives an event per method added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportMethods(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getMethodCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        int fromIndex = diagram.getMethodFromIndex(index);
+        int toIndex = diagram.getMethodToIndex(index);
+        String text = diagram.getMethodText(index);
+        outputAdapter.addMethod(fromIndex, toIndex, text);
+        listener.methodAdded(index, fromIndex, toIndex, text);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      int[] fromIndices = new int[Math.min(BULK_CHUNK_SIZE, count - start)];
+      int[] toIndices = new int[fromIndices.length];
+      String[] texts = new String[fromIndices.length];
+      for (int index = 0; index < fromIndices.length; index++) {
+        fromIndices[index] = diagram.getMethodFromIndex(start + index);
+        toIndices[index] = diagram.getMethodToIndex(start + index);
+        texts[index] = diagram.getMethodText(start + index);
+      }
+      outputAdapter.addMethods(fromIndices, toIndices, texts);
+    }
+  }
+  
+  /**
+   * Adds the diagram's constraints to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every constraint has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the constraints from.
+   * @param listener Receives an event per constraint added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportConstraints(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getConstraintCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        String text = diagram.getConstraintText(index);
+        outputAdapter.addConstraint(text);
+        listener.constraintAdded(index, text);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      String[] texts = new String[Math.min(BULK_CHUNK_SIZE, count - start)];
+      for (int index = 0; index < texts.length; index++) {
+        texts[index] = diagram.getConstraintText(start + index);
+      }
+      outputAdapter.addConstraints(texts);
+    }
+  }
+  
+  /**
+   * Adds the diagram's loop blocks to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every loop block has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the loop blocks from.
+   * @param listener Receives an event per loop block added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportLoops(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getLoopCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        String text = diagram.getLoopText(index);
+        outputAdapter.addLoop(text);
+        listener.loopAdded(index, text);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      String[] texts = new String[Math.min(BULK_CHUNK_SIZE, count - start)];
+      for (int index = 0; index < texts.length; index++) {
+        texts[index] = diagram.getLoopText(start + index);
+      }
+      outputAdapter.addLoops(texts);
+    }
+  }
+  
+  /**
+   * Adds the diagram's alternative blocks to the output adapter, for exportDiagram, as exportActors adds actors.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Every alternative block has been added, in order.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read the alternative blocks from.
+   * @param listener Receives an event per alternative block added, or null.
+   * @param task The future of an asynchronous export, checked before each chunk of elements, or null.
+   * @throws Exception on an input or output adapter error.
+   */
+  private void exportAlternatives(final InputAdapter diagram, final ExportListener listener, final AsyncExport task) throws Exception {
+    int count = diagram.getAlternativeCount();
+    if (listener != null) {
+      for (int index = 0; index < count; index++) {
+        if (index % BULK_CHUNK_SIZE == 0) checkpoint(task);
+        String text = diagram.getAlternativeText(index);
+        String textElse = diagram.getAlternativeTextElse(index);
+        outputAdapter.addAlternative(text, textElse);
+        listener.alternativeAdded(index, text, textElse);
+      }
+      return;
+    }
+    
+    for (int start = 0; start < count; start += BULK_CHUNK_SIZE) {
+      checkpoint(task);
+      String[] texts = new String[Math.min(BULK_CHUNK_SIZE, count - start)];
+      String[] textsElse = new String[texts.length];
+      for (int index = 0; index < texts.length; index++) {
+        texts[index] = diagram.getAlternativeText(start + index);
+        textsElse[index] = diagram.getAlternativeTextElse(start + index);
+      }
+      outputAdapter.addAlternatives(texts, textsElse);
+    }
   }
   
   /**
-   * A convenience version of: exportFile(InputAdapter diagram, PrintStream log). 
+   * A convenience version of: exportFileWithListener(InputAdapter diagram, ExportListener listener), without a listener. 
    * <br>
    * Used to perform the conversion from the input adapter's data structures to 
    * the output adapter's data structures. Also generates the output file using 
@@ -384,10 +1233,539 @@ public class SDMtoFile {
    * 
    * @author Jesse Primiani
    * @param diagram The concrete object containing the diagram to save to a file.
+   * @return The time and allocation of each export phase, the element counts, and the saved file's size.
    * @throws SDMException if the file export process does not successfully complete.
    */
-  public void exportFile(final InputAdapter diagram) throws Exception {
-    exportFile(diagram, null);
+  public ExportStats exportFile(final InputAdapter diagram) throws Exception {
+    return exportFileWithListener(diagram, null);
+  }
+  
+  /**
+   * Exports the sequence diagram in the InputAdapter object without blocking the calling thread.
+   * <br>
+   * The export runs as exportFileWithListener(InputAdapter diagram, ExportListener listener) would, on the given 
+   * executor. Cancelling the returned future, or letting its deadline pass, stops the export 
+   * at its next checkpoint: before each phase (initialize, each element kind, finalize, save), 
+   * and before each chunk of elements within a phase. The future is only completed once the 
+   * export has stopped, so a cancel or deadline completes it after up to one chunk of elements, 
+   * or the rest of the finalize or save phase, which are not interrupted. 
+   * The file is saved to a staging directory next to the output file and only moved into place 
+   * once the export is complete, so a cancelled, timed out or failed export leaves no file 
+   * behind, and the output adapter's unsaved diagram, with any temporary file, is discarded. 
+   * A cancel that comes after the file has been moved into place does not remove it, and the 
+   * future then completes normally.
+   * <br>
+   * The export uses this object's attributes as they are when this method is called, so changing 
+   * them afterwards does not affect it. The output adapter holds the diagram being built, so no 
+   * other export may use it, through this object or any other, until the future completes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram and unit parameters must not be null.
+   * <br>
+   * <b>Postconditions:</b> Returns a future that completes with the export's measurements once the file 
+   * is saved, or exceptionally with the exception that stopped the export, a CancellationException, 
+   * or a TimeoutException.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @param listener Receives the export's events, on the thread running the export; null disables them.
+   * @param executor Runs the export; null uses a shared executor, with virtual threads when the run-time supports them.
+   * @param timeout The time the export may take before it is abandoned; zero or less for no deadline.
+   * @param unit The unit of the timeout parameter.
+   * @return A future representing the export.
+   * @throws SDMException on a null diagram or unit.
+   */
+  public CompletableFuture<ExportStats> exportFileAsync(final InputAdapter diagram, final ExportListener listener, 
+      final Executor executor, final long timeout, final TimeUnit unit) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportFileAsync");
+    if (unit == null) throw new SDMException("Null 'unit' parameter in: exportFileAsync");
+    
+    final AsyncExport task = new AsyncExport((timeout > 0) ? System.nanoTime() + unit.toNanos(timeout) : 0);
+    
+    // The export runs on a copy of this object's attributes, so changing them while it runs 
+    // does not redirect it, as exportJob does for each job of a batch.
+    final SDMtoFile exporter = new SDMtoFile(filePath, fileName, fileType, outputAdapter);
+    exporter.setOverwrite(overwrite);
+    exporter.setMetricsRegistry(metricsRegistry);
+    exporter.setExportCache(exportCache);
+    
+    try {
+      Executor runner = (executor != null) ? executor : getDefaultAsyncExecutor();
+      runner.execute(() -> {
+        // An export cancelled or timed out before it started is already complete.
+        if (!task.start()) return;
+        try {
+          task.complete(exporter.exportDiagram(diagram, listener, exporter.overwrite, exporter.exportCache, null, task));
+        } catch (Throwable ex) {
+          task.completeExceptionally(ex);
+        }
+      });
+    } catch (RuntimeException ex) {
+      // The executor refused the export.
+      task.completeExceptionally(ex);
+    }
+    
+    // Stop the export when the deadline passes, even if it is waiting to start and so never reaches a checkpoint.
+    if (timeout > 0 && !task.isDone()) {
+      final ScheduledFuture<?> timer = getDeadlineTimer().schedule(() -> {
+        task.stop(new TimeoutException("Export deadline passed in: exportFileAsync"));
+      }, timeout, unit);
+      task.whenComplete((result, ex) -> timer.cancel(false));
+    }
+    
+    return task;
+  }
+  
+  /**
+   * A convenience version of: exportFileAsync(InputAdapter diagram, ExportListener listener, Executor executor, 
+   * long timeout, TimeUnit unit), without a listener or a deadline, on the shared executor.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> Returns a future that completes once the file is saved, or the export fails or is cancelled.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to a file.
+   * @return A future representing the export.
+   * @throws SDMException on a null diagram.
+   */
+  public CompletableFuture<ExportStats> exportFileAsync(final InputAdapter diagram) throws Exception {
+    return exportFileAsync(diagram, (ExportListener) null, null, 0, TimeUnit.MILLISECONDS);
+  }
+  
+  /**
+   * Stops an asynchronous export if it was cancelled or its deadline passed. Does nothing for a synchronous export.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Returns normally only if the export may continue.
+   * 
+   * @author Jesse Primiani
+   * @param task The future of an asynchronous export, or null for a synchronous export.
+   * @throws CancellationException if task was cancelled, or completed by someone else.
+   * @throws TimeoutException if the deadline passed.
+   */
+  private static void checkpoint(final AsyncExport task) throws Exception {
+    if (task == null) return;
+    if (task.deadline != 0 && System.nanoTime() - task.deadline >= 0) {
+      task.stop(new TimeoutException("Export deadline passed in: exportFileAsync"));
+    }
+    if (task.stopReason != null) throw task.stopReason;
+    if (task.isDone()) {
+      throw new CancellationException("Export cancelled in: exportFileAsync");
+    }
+  }
+  
+  /**
+   * Saves the output adapter's diagram to a staging directory, then moves the finished file 
+   * to its output path, so that nothing appears at the output path unless the save completes.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The output adapter contains a finalized diagram.
+   * <br>
+   * <b>Postconditions:</b> The file is saved at the output path, named as saveToFile would name it, 
+   * and the staging directory is removed. Its full name is returned.
+   * 
+   * @author Jesse Primiani
+   * @param task The future of the asynchronous export.
+   * @param overwriteFile Whether to overwrite an already existing output file.
+   * @return The full name of the saved file, including its path and extension.
+   * @throws CancellationException if task was cancelled before the file was moved into place.
+   * @throws TimeoutException if the deadline passed before the file was moved into place.
+   * @throws Exception on an output adapter or file system error.
+   */
+  private String saveStaged(final AsyncExport task, final boolean overwriteFile) throws Exception {
+    File outputDirectory = new File(filePath.isEmpty() ? "." : filePath);
+    outputDirectory.mkdirs();
+    
+    Path stagingDirectory = Files.createTempDirectory(outputDirectory.toPath(), ".sdm-export-");
+    try {
+      outputAdapter.saveToFile(stagingDirectory.toString(), fileName, fileType, true);
+      checkpoint(task);
+      
+      Path stagedFile = stagingDirectory.resolve(fileName + fileType.getExtension());
+      return OutputFiles.publishFile(stagedFile, filePath, fileName, fileType, overwriteFile);
+    }
+    finally {
+      deleteDirectory(stagingDirectory);
+    }
+  }
+  
+  /**
+   * Deletes a staging directory and any files left in it.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The directory only contains files, not other directories.
+   * <br>
+   * <b>Postconditions:</b> The directory no longer exists.
+   * 
+   * @author Jesse Primiani
+   * @param directory The directory to delete.
+   * @throws IOException on a file system error.
+   */
+  private static void deleteDirectory(final Path directory) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    }
+    Files.deleteIfExists(directory);
+  }
+  
+  /**
+   * Gets the executor used by exportFileAsync when the caller does not supply one.
+   * <br>
+   * Uses a virtual-thread-per-task executor when the run-time supports it (Java 21 and later), 
+   * otherwise a cached pool of daemon threads.
+   * 
+   * @author Jesse Primiani
+   * @return The shared asynchronous export executor.
+   */
+  private static synchronized Executor getDefaultAsyncExecutor() {
+    if (defaultAsyncExecutor == null) {
+      try {
+        defaultAsyncExecutor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException ex) {
+        defaultAsyncExecutor = Executors.newCachedThreadPool(DAEMON_THREADS);
+      }
+    }
+    return defaultAsyncExecutor;
+  }
+  
+  /**
+   * Gets the timer used to complete asynchronous exports when their deadline passes.
+   * 
+   * @author Jesse Primiani
+   * @return The shared deadline timer.
+   */
+  private static synchronized ScheduledExecutorService getDeadlineTimer() {
+    if (deadlineTimer == null) {
+      deadlineTimer = Executors.newSingleThreadScheduledExecutor(DAEMON_THREADS);
+    }
+    return deadlineTimer;
+  }
+  
+  /**
+   * Exports a batch of diagrams concurrently, using the given executor.
+   * <br>
+   * Each job is exported as exportFile(InputAdapter) would, using this object's 
+   * output type and overwrite setting, and its own path and name. OutputAdapter 
+   * objects hold the diagram being built, so each running job is given an adapter 
+   * of its own from the factory; adapters are reused by later jobs once free, so 
+   * at most one adapter is created per concurrently running job.
+   * <br>
+   * Jobs that may be saved as the same file are run one after another, in the order 
+   * they were given, so that the file each one is saved as, with or without an integer 
+   * appended to its name, is the same as when the jobs are exported one at a time. 
+   * These are the jobs with the same output path and name, and, when existing files 
+   * are not overwritten, also those whose names differ only in their trailing digits, 
+   * such as "same" and "same1", as an integer appended to one can give the other's name.
+   * <br>
+   * A failing job does not stop the batch; its exception is kept in its result.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, and no job may be null.
+   * <br>
+   * <b>Postconditions:</b> Every job has been attempted, and the returned report holds 
+   * one result per job, in the order the jobs were given.
+   * 
+   * @author Jesse Primiani
+   * @param jobs The diagrams to export, with their output paths and names.
+   * @param factory Creates the output adapters used by the workers.
+   * @param executor Runs the export jobs.
+   * @return The result of each job, and the aggregate throughput of the batch.
+   * @throws SDMException on a null parameter or null job.
+   * @throws InterruptedException if interrupted while waiting for the jobs to finish.
+   */
+  public BatchExportReport exportFiles(final Collection<ExportJob> jobs, final OutputAdapterFactory factory, 
+      final Executor executor) throws Exception {
+    if (jobs == null) throw new SDMException("Null 'jobs' parameter in: exportFiles");
+    if (factory == null) throw new SDMException("Null 'factory' parameter in: exportFiles");
+    if (executor == null) throw new SDMException("Null 'executor' parameter in: exportFiles");
+    
+    final ExportJob[] jobList = jobs.toArray(new ExportJob[jobs.size()]);
+    for (ExportJob job : jobList) {
+      if (job == null) throw new SDMException("Null job in 'jobs' parameter in: exportFiles");
+    }
+    
+    final ExportResult[] results = new ExportResult[jobList.length];
+    final Queue<OutputAdapter> idleAdapters = new ConcurrentLinkedQueue<OutputAdapter>();
+    final CountDownLatch remaining = new CountDownLatch(jobList.length);
+    final OutputType<?> type = fileType;
+    final boolean overwriteFile = overwrite;
+    final ExportMetricsRegistry registry = metricsRegistry;
+    final ExportCache cache = exportCache;
+    
+    // Group the jobs by output file, in the order they were given. The integer appended to a taken 
+    // name depends on which job saves first, so the jobs of a group are run in order by one task. 
+    // Without overwriting, every name a job may be saved as starts with its name less any trailing 
+    // digits, so jobs are grouped by that instead.
+    Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+    for (int index = 0; index < jobList.length; index++) {
+      String path = jobList[index].getPath();
+      String name = jobList[index].getName();
+      if (!overwriteFile) name = name.replaceFirst("[0-9]+$", "");
+      String key = new File(path.isEmpty() ? "." : path, name).toPath().toAbsolutePath().normalize().toString();
+      List<Integer> group = groups.get(key);
+      if (group == null) {
+        group = new ArrayList<Integer>(1);
+        groups.put(key, group);
+      }
+      group.add(index);
+    }
+    
+    long startTime = System.nanoTime();
+    for (final List<Integer> group : groups.values()) {
+      try {
+        executor.execute(() -> {
+          int finished = 0;
+          try {
+            for (int jobIndex : group) {
+              results[jobIndex] = exportJob(jobList[jobIndex], type, overwriteFile, registry, cache, factory, idleAdapters);
+              remaining.countDown();
+              finished++;
+            }
+          } finally {
+            // An Error stops the group, and its jobs left are reported as not completed.
+            for (; finished < group.size(); finished++) remaining.countDown();
+          }
+        });
+      } catch (RuntimeException ex) {
+        // The executor refused the jobs, so record them as failed rather than waiting for them.
+        for (int jobIndex : group) {
+          results[jobIndex] = new ExportResult(jobList[jobIndex], null, ex, 0);
+          remaining.countDown();
+        }
+      }
+    }
+    remaining.await();
+    long elapsed = System.nanoTime() - startTime;
+    
+    // A job that ended with an Error rather than an Exception has no result of its own.
+    for (int index = 0; index < results.length; index++) {
+      if (results[index] == null) {
+        results[index] = new ExportResult(jobList[index], null, new SDMException("Export job did not complete in: exportFiles"), 0);
+      }
+    }
+    
+    return new BatchExportReport(Arrays.asList(results), elapsed);
+  }
+  
+  /**
+   * A convenience version of: exportFiles(Collection jobs, OutputAdapterFactory factory, Executor executor), 
+   * which runs the batch on a thread pool of the given size, created and shut down by this method.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, no job may be null, and threadCount must be positive.
+   * <br>
+   * <b>Postconditions:</b> Every job has been attempted, and the returned report holds 
+   * one result per job, in the order the jobs were given.
+   * 
+   * @author Jesse Primiani
+   * @param jobs The diagrams to export, with their output paths and names.
+   * @param factory Creates the output adapters used by the workers.
+   * @param threadCount The number of jobs to run at once.
+   * @return The result of each job, and the aggregate throughput of the batch.
+   * @throws SDMException on a null parameter, null job, or non-positive thread count.
+   * @throws InterruptedException if interrupted while waiting for the jobs to finish.
+   */
+  public BatchExportReport exportFiles(final Collection<ExportJob> jobs, final OutputAdapterFactory factory, 
+      final int threadCount) throws Exception {
+    if (threadCount < 1) throw new SDMException("'threadCount' parameter must be positive in: exportFiles");
+    
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      return exportFiles(jobs, factory, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  /**
+   * Exports one diagram to several output formats at once, reading the diagram only once.
+   * <br>
+   * The diagram is read into a SequenceDiagramModel on the calling thread, then each target is 
+   * exported from that model as exportFile(InputAdapter) would, using this object's output path, 
+   * name, overwrite setting, metrics registry and cache, with the target's own output type and 
+   * adapter. Each target is its own task on the executor, so one target's file is written while 
+   * the others are still being built.
+   * <br>
+   * A failing target does not stop the others; its exception is kept in its result.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, no target may be null, and no two targets may 
+   * share an adapter.
+   * <br>
+   * <b>Postconditions:</b> Every target has been attempted, and the returned report holds one 
+   * result per target, in the order the targets were given. Each result's job has the model, and 
+   * this object's path and name.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to files.
+   * @param targets The output type and adapter of each file to save.
+   * @param executor Runs the export of each target.
+   * @return The result of each target, and the time taken by the whole export, including the read.
+   * @throws SDMException on a null parameter, null target, or shared adapter.
+   * @throws InterruptedException if interrupted while waiting for the targets to finish.
+   */
+  public BatchExportReport exportTargets(final InputAdapter diagram, final Collection<ExportTarget> targets, 
+      final Executor executor) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: exportTargets");
+    if (targets == null) throw new SDMException("Null 'targets' parameter in: exportTargets");
+    if (executor == null) throw new SDMException("Null 'executor' parameter in: exportTargets");
+    
+    final ExportTarget[] targetList = targets.toArray(new ExportTarget[targets.size()]);
+    for (int index = 0; index < targetList.length; index++) {
+      if (targetList[index] == null) throw new SDMException("Null target in 'targets' parameter in: exportTargets");
+      for (int other = 0; other < index; other++) {
+        // An adapter holds the diagram being built, so two targets can not build with the same one.
+        if (targetList[other].getAdapter() == targetList[index].getAdapter()) {
+          throw new SDMException("Shared adapter in 'targets' parameter in: exportTargets");
+        }
+      }
+    }
+    
+    long startTime = System.nanoTime();
+    final ExportJob job = new ExportJob(SequenceDiagramModel.of(diagram), filePath, fileName);
+    final ExportResult[] results = new ExportResult[targetList.length];
+    final CountDownLatch remaining = new CountDownLatch(targetList.length);
+    final boolean overwriteFile = overwrite;
+    final ExportMetricsRegistry registry = metricsRegistry;
+    final ExportCache cache = exportCache;
+    
+    for (int index = 0; index < targetList.length; index++) {
+      final int targetIndex = index;
+      try {
+        executor.execute(() -> {
+          try {
+            results[targetIndex] = exportTarget(job, targetList[targetIndex], overwriteFile, registry, cache);
+          } finally {
+            remaining.countDown();
+          }
+        });
+      } catch (RuntimeException ex) {
+        // The executor refused the target, so record it as failed rather than waiting for it.
+        results[targetIndex] = new ExportResult(job, null, ex, 0);
+        remaining.countDown();
+      }
+    }
+    remaining.await();
+    long elapsed = System.nanoTime() - startTime;
+    
+    // A target that ended with an Error rather than an Exception has no result of its own.
+    for (int index = 0; index < results.length; index++) {
+      if (results[index] == null) {
+        results[index] = new ExportResult(job, null, new SDMException("Export target did not complete in: exportTargets"), 0);
+      }
+    }
+    
+    return new BatchExportReport(Arrays.asList(results), elapsed);
+  }
+  
+  /**
+   * A convenience version of: exportTargets(InputAdapter diagram, Collection targets, Executor executor), 
+   * which builds every target at once, on a thread pool created and shut down by this method.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, no target may be null, and no two targets may 
+   * share an adapter.
+   * <br>
+   * <b>Postconditions:</b> Every target has been attempted, and the returned report holds one 
+   * result per target, in the order the targets were given.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to save to files.
+   * @param targets The output type and adapter of each file to save.
+   * @return The result of each target, and the time taken by the whole export, including the read.
+   * @throws SDMException on a null parameter, null target, or shared adapter.
+   * @throws InterruptedException if interrupted while waiting for the targets to finish.
+   */
+  public BatchExportReport exportTargets(final InputAdapter diagram, final Collection<ExportTarget> targets) throws Exception {
+    if (targets == null) throw new SDMException("Null 'targets' parameter in: exportTargets");
+    
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, targets.size()), DAEMON_THREADS);
+    try {
+      return exportTargets(diagram, targets, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  /**
+   * Exports a single target of a fan-out export, on the calling worker thread.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null, except registry and cache.
+   * <br>
+   * <b>Postconditions:</b> The target's file is exported, or the exception stopping it is 
+   * recorded in the returned result.
+   * 
+   * @author Jesse Primiani
+   * @param job The model of the diagram to export, with its output path and name.
+   * @param target The output type and adapter of the file.
+   * @param overwriteFile Whether to overwrite an existing file.
+   * @param registry The registry the target's measurements are published to, or null.
+   * @param cache The cache the target is looked up in and added to, or null.
+   * @return The target's result.
+   */
+  private static ExportResult exportTarget(final ExportJob job, final ExportTarget target, final boolean overwriteFile, 
+      final ExportMetricsRegistry registry, final ExportCache cache) {
+    long startTime = System.nanoTime();
+    try {
+      SDMtoFile exporter = new SDMtoFile(job.getPath(), job.getName(), target.getType(), target.getAdapter());
+      exporter.setOverwrite(overwriteFile);
+      exporter.setMetricsRegistry(registry);
+      exporter.setExportCache(cache);
+      ExportStats stats = exporter.exportFile(job.getDiagram());
+      return new ExportResult(job, stats, null, System.nanoTime() - startTime);
+    }
+    catch (Exception ex) {
+      return new ExportResult(job, null, ex, System.nanoTime() - startTime);
+    }
+  }
+  
+  /**
+   * Exports a single job of a batch, on the calling worker thread.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> No parameter may be null.
+   * <br>
+   * <b>Postconditions:</b> The job's file is exported, or the exception stopping it is 
+   * recorded in the returned result. The adapter used is returned to idleAdapters.
+   * 
+   * @author Jesse Primiani
+   * @param job The diagram to export, with its output path and name.
+   * @param type An object containing the output file's type information.
+   * @param overwriteFile Whether to overwrite an existing file.
+   * @param registry The registry the job's measurements are published to, or null.
+   * @param cache The cache the job is looked up in and added to, or null.
+   * @param factory Creates an output adapter if no idle adapter is available.
+   * @param idleAdapters The adapters not currently used by another job.
+   * @return The job's result.
+   */
+  private static ExportResult exportJob(final ExportJob job, final OutputType<?> type, final boolean overwriteFile, 
+      final ExportMetricsRegistry registry, final ExportCache cache, final OutputAdapterFactory factory, 
+      final Queue<OutputAdapter> idleAdapters) {
+    long startTime = System.nanoTime();
+    OutputAdapter adapter = idleAdapters.poll();
+    try {
+      if (adapter == null) adapter = factory.createAdapter();
+      
+      SDMtoFile exporter = new SDMtoFile(job.getPath(), job.getName(), type, adapter);
+      exporter.setOverwrite(overwriteFile);
+      exporter.setMetricsRegistry(registry);
+      exporter.setExportCache(cache);
+      ExportStats stats = exporter.exportFile(job.getDiagram());
+      return new ExportResult(job, stats, null, System.nanoTime() - startTime);
+    }
+    catch (Exception ex) {
+      return new ExportResult(job, null, ex, System.nanoTime() - startTime);
+    }
+    finally {
+      if (adapter != null) idleAdapters.offer(adapter);
+    }
   }
 
 }
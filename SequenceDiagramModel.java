@@ -0,0 +1,504 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, compact copy of a sequence diagram, read once from any InputAdapter, which
+ * SDMtoFile exports from when it reads a diagram more than once: for a cached export, an
+ * incremental export, or an export to several targets. A single export reads its InputAdapter
+ * directly, since the model holds the whole diagram on the heap.
+ * <br>
+ * Each property of each kind of element is kept in a column: an int array of virtual indices,
+ * a bit set of flags, or an int array of text numbers. Every distinct text is kept once, as
+ * UTF-8 bytes in one shared byte array, so a method takes three ints and its text's share of
+ * the string table, rather than an object per symbol. Texts are decoded when they are read.
+ * <br>
+ * A model is read from its InputAdapter one element kind at a time, in the order SDMtoFile adds
+ * them, and is never changed afterwards, so it may be read by any number of threads at once,
+ * and exported any number of times without reading the InputAdapter again.
+ * The columns are package-private, so that BinaryDiagramWriter writes them as they are; nothing
+ * else in the package changes them.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Every text number is NO_TEXT or a valid index into textStarts, but not its last entry. <br>
+ *     textStarts is ascending, starts at 0 and ends at textBytes.length. <br>
+ *     Parallel columns have the same length. <br>
+ *
+ * @author Jesse Primiani
+ */
+public final class SequenceDiagramModel implements InputAdapter {
+
+  /** The text number of a null text. */
+  private static final int NO_TEXT = -1;
+
+  /** The UTF-8 bytes of every distinct text, one after another. */
+  final byte[] textBytes;
+
+  /** Where each text starts in textBytes, by text number, followed by the end of the last text. */
+  final int[] textStarts;
+
+  /** The text number of each actor's name. */
+  final int[] actorNames;
+
+  /** The text numbers of each class block's instance and class names. */
+  final int[] instanceNames;
+  final int[] classNames;
+
+  final int activationBlockCount;
+
+  /** The virtual indices each lifeline connects, and which lifelines are active. */
+  final int[] lifelineFrom;
+  final int[] lifelineTo;
+  final BitSet lifelineActive;
+
+  /** The virtual indices each method connects, and the text number of its text. */
+  final int[] methodFrom;
+  final int[] methodTo;
+  final int[] methodTexts;
+
+  /** The text numbers of each constraint's, loop's and alternative's texts. */
+  final int[] constraintTexts;
+  final int[] loopTexts;
+  final int[] alternativeTexts;
+  final int[] alternativeTextsElse;
+
+  /**
+   * Builds the string table of a model while it is read: each distinct text is added once.
+   *
+   * @author Jesse Primiani
+   */
+  private static final class TextTable {
+
+    /** The text number of each text added so far. */
+    private final Map<String, Integer> numbers = new HashMap<String, Integer>();
+
+    private byte[] bytes = new byte[1024];
+    private int byteCount;
+    private int[] starts = new int[64];
+
+    /**
+     * Gets the text number of a text, adding it to the table if it is new.
+     *
+     * @author Jesse Primiani
+     * @param text The text, which may be null.
+     * @return The text's number, or NO_TEXT for null.
+     */
+    int add(final String text) {
+      if (text == null) return NO_TEXT;
+      Integer number = numbers.get(text);
+      if (number != null) return number;
+
+      int count = numbers.size();
+      byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+      if (byteCount + encoded.length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + encoded.length));
+      }
+      if (count + 1 == starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+      System.arraycopy(encoded, 0, bytes, byteCount, encoded.length);
+      starts[count] = byteCount;
+      byteCount += encoded.length;
+      starts[count + 1] = byteCount;
+
+      numbers.put(text, count);
+      return count;
+    }
+
+  }
+
+  /**
+   * Reads a model from an InputAdapter, one element kind at a time.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null.
+   * <br>
+   * <b>Postconditions:</b> The model holds every value the diagram's getters return.
+   *
+   * @author Jesse Primiani
+   * @param diagram The diagram to read.
+   * @throws Exception on an input adapter error.
+   */
+  private SequenceDiagramModel(final InputAdapter diagram) throws Exception {
+    TextTable table = new TextTable();
+
+    int count = diagram.getActorCount();
+    actorNames = new int[count];
+    for (int index = 0; index < count; index++) {
+      actorNames[index] = table.add(diagram.getActorName(index));
+    }
+
+    count = diagram.getClassBlockCount();
+    instanceNames = new int[count];
+    classNames = new int[count];
+    for (int index = 0; index < count; index++) {
+      instanceNames[index] = table.add(diagram.getClassBlockInstanceName(index));
+      classNames[index] = table.add(diagram.getClassBlockClassName(index));
+    }
+
+    activationBlockCount = diagram.getActivationBlockCount();
+
+    count = diagram.getLifelineCount();
+    lifelineFrom = new int[count];
+    lifelineTo = new int[count];
+    lifelineActive = new BitSet(count);
+    for (int index = 0; index < count; index++) {
+      lifelineFrom[index] = diagram.getLifelineFromIndex(index);
+      lifelineTo[index] = diagram.getLifelineToIndex(index);
+      if (diagram.getLifelineActive(index)) lifelineActive.set(index);
+    }
+
+    count = diagram.getMethodCount();
+    methodFrom = new int[count];
+    methodTo = new int[count];
+    methodTexts = new int[count];
+    for (int index = 0; index < count; index++) {
+      methodFrom[index] = diagram.getMethodFromIndex(index);
+      methodTo[index] = diagram.getMethodToIndex(index);
+      methodTexts[index] = table.add(diagram.getMethodText(index));
+    }
+
+    count = diagram.getConstraintCount();
+    constraintTexts = new int[count];
+    for (int index = 0; index < count; index++) {
+      constraintTexts[index] = table.add(diagram.getConstraintText(index));
+    }
+
+    count = diagram.getLoopCount();
+    loopTexts = new int[count];
+    for (int index = 0; index < count; index++) {
+      loopTexts[index] = table.add(diagram.getLoopText(index));
+    }
+
+    count = diagram.getAlternativeCount();
+    alternativeTexts = new int[count];
+    alternativeTextsElse = new int[count];
+    for (int index = 0; index < count; index++) {
+      alternativeTexts[index] = table.add(diagram.getAlternativeText(index));
+      alternativeTextsElse[index] = table.add(diagram.getAlternativeTextElse(index));
+    }
+
+    textBytes = Arrays.copyOf(table.bytes, table.byteCount);
+    textStarts = Arrays.copyOf(table.starts, table.numbers.size() + 1);
+  }
+
+  /**
+   * Gets a model of the sequence diagram in an InputAdapter object.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> The diagram parameter must not be null, and must be a concrete object.
+   * <br>
+   * <b>Postconditions:</b> Returns the diagram itself if it is already a model, or otherwise a new
+   * model holding every value its getters return, read once.
+   *
+   * @author Jesse Primiani
+   * @param diagram The concrete object containing the diagram to read.
+   * @return The diagram's model.
+   * @throws SDMException If the diagram parameter is null.
+   * @throws Exception on an input adapter error.
+   */
+  public static SequenceDiagramModel of(final InputAdapter diagram) throws Exception {
+    if (diagram == null) throw new SDMException("Null 'diagram' parameter in: SequenceDiagramModel 'of' method");
+    if (diagram instanceof SequenceDiagramModel) return (SequenceDiagramModel) diagram;
+    return new SequenceDiagramModel(diagram);
+  }
+
+  /**
+   * Gets the number of distinct texts in the model's string table.
+   *
+   * @author Jesse Primiani
+   * @return The number of distinct non-null texts.
+   */
+  public int getTextCount() {
+    return textStarts.length - 1;
+  }
+
+  /**
+   * Gets the number of bytes the model's string table takes, as UTF-8.
+   *
+   * @author Jesse Primiani
+   * @return The total size of the distinct texts.
+   */
+  public int getTextByteCount() {
+    return textBytes.length;
+  }
+
+  /**
+   * Gets the number of actors.
+   *
+   * @author Jesse Primiani
+   * @return The number of actors.
+   */
+  public int getActorCount() {
+    return actorNames.length;
+  }
+
+  /**
+   * Gets the name of the actor at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested actor.
+   * @return The actor's name, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getActorName(final int index) throws SDMException {
+    checkIndex(index, actorNames.length, "getActorName");
+    return textOf(actorNames[index]);
+  }
+
+  /**
+   * Gets the number of class blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of class blocks.
+   */
+  public int getClassBlockCount() {
+    return instanceNames.length;
+  }
+
+  /**
+   * Gets the instance name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The instance name, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockInstanceName(final int index) throws SDMException {
+    checkIndex(index, instanceNames.length, "getClassBlockInstanceName");
+    return textOf(instanceNames[index]);
+  }
+
+  /**
+   * Gets the class name of the class block at the given index.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The class name, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockClassName(final int index) throws SDMException {
+    checkIndex(index, classNames.length, "getClassBlockClassName");
+    return textOf(classNames[index]);
+  }
+
+  /**
+   * Gets the number of activation blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of activation blocks.
+   */
+  public int getActivationBlockCount() {
+    return activationBlockCount;
+  }
+
+  /**
+   * Gets the number of lifelines.
+   *
+   * @author Jesse Primiani
+   * @return The number of lifelines.
+   */
+  public int getLifelineCount() {
+    return lifelineFrom.length;
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline starts at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineFromIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineFrom.length, "getLifelineFromIndex");
+    return lifelineFrom[index];
+  }
+
+  /**
+   * Gets the virtual index of the element a lifeline ends at.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getLifelineToIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineTo.length, "getLifelineToIndex");
+    return lifelineTo[index];
+  }
+
+  /**
+   * Gets whether a lifeline is active.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return Whether the lifeline is active.
+   * @throws SDMException If the index is out of range.
+   */
+  public boolean getLifelineActive(final int index) throws SDMException {
+    checkIndex(index, lifelineFrom.length, "getLifelineActive");
+    return lifelineActive.get(index);
+  }
+
+  /**
+   * Gets the number of methods.
+   *
+   * @author Jesse Primiani
+   * @return The number of methods.
+   */
+  public int getMethodCount() {
+    return methodFrom.length;
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent from.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodFromIndex(final int index) throws SDMException {
+    checkIndex(index, methodFrom.length, "getMethodFromIndex");
+    return methodFrom[index];
+  }
+
+  /**
+   * Gets the virtual index of the element a method is sent to.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public int getMethodToIndex(final int index) throws SDMException {
+    checkIndex(index, methodTo.length, "getMethodToIndex");
+    return methodTo[index];
+  }
+
+  /**
+   * Gets the text of a method.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The method's text, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getMethodText(final int index) throws SDMException {
+    checkIndex(index, methodTexts.length, "getMethodText");
+    return textOf(methodTexts[index]);
+  }
+
+  /**
+   * Gets the number of constraints.
+   *
+   * @author Jesse Primiani
+   * @return The number of constraints.
+   */
+  public int getConstraintCount() {
+    return constraintTexts.length;
+  }
+
+  /**
+   * Gets the text of a constraint.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested constraint.
+   * @return The constraint's text, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getConstraintText(final int index) throws SDMException {
+    checkIndex(index, constraintTexts.length, "getConstraintText");
+    return textOf(constraintTexts[index]);
+  }
+
+  /**
+   * Gets the number of loop blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of loop blocks.
+   */
+  public int getLoopCount() {
+    return loopTexts.length;
+  }
+
+  /**
+   * Gets the text of a loop block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested loop block.
+   * @return The loop's text, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getLoopText(final int index) throws SDMException {
+    checkIndex(index, loopTexts.length, "getLoopText");
+    return textOf(loopTexts[index]);
+  }
+
+  /**
+   * Gets the number of alternative blocks.
+   *
+   * @author Jesse Primiani
+   * @return The number of alternative blocks.
+   */
+  public int getAlternativeCount() {
+    return alternativeTexts.length;
+  }
+
+  /**
+   * Gets the text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's text, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeText(final int index) throws SDMException {
+    checkIndex(index, alternativeTexts.length, "getAlternativeText");
+    return textOf(alternativeTexts[index]);
+  }
+
+  /**
+   * Gets the else text of an alternative block.
+   *
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative block.
+   * @return The alternative's else text, as read from the InputAdapter.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeTextElse(final int index) throws SDMException {
+    checkIndex(index, alternativeTextsElse.length, "getAlternativeTextElse");
+    return textOf(alternativeTextsElse[index]);
+  }
+
+  /**
+   * Decodes a text from the string table.
+   *
+   * @author Jesse Primiani
+   * @param number The text's number, or NO_TEXT.
+   * @return The text, or null for NO_TEXT.
+   */
+  private String textOf(final int number) {
+    if (number == NO_TEXT) return null;
+    return new String(textBytes, textStarts[number], textStarts[number + 1] - textStarts[number], StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks an element index against its element count.
+   *
+   * @author Jesse Primiani
+   * @param index The index to check.
+   * @param count The number of elements of its kind.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if the index is out of range.
+   */
+  private static void checkIndex(final int index, final int count, final String method) throws SDMException {
+    if (index < 0) throw new SDMException("'index' parameter must be positive in: SequenceDiagramModel '" + method + "' method");
+    if (index >= count) throw new SDMException("'index' parameter is out of range in: SequenceDiagramModel '" + method + "' method");
+  }
+
+}
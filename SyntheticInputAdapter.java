@@ -0,0 +1,653 @@
+package com.beulahworks.SDMfileGenerator;
+
+/**
+ * A deterministic, seedable InputAdapter that generates sequence diagrams of any size,
+ * for load and scale testing of the export pipeline.
+ * <br>
+ * No element is stored: every name, text and index is computed from the seed and the
+ * element's index when it is read, so a diagram with millions of messages takes no more
+ * memory than an empty one, and reading the same index twice always gives the same value.
+ * Two adapters with the same seed and settings describe the same diagram.
+ * <br>
+ * The virtual indices are laid out as SDMtoFile adds them: actors first, then class blocks,
+ * then activation blocks. Each activation block belongs to a participant (an actor or class
+ * block), and lifeline i connects the owner of activation block (i mod activationBlockCount)
+ * to that block. Methods connect two activation blocks; their sources and destinations follow
+ * a Zipf distribution, so that a few blocks send (fan-out) or receive (fan-in) most messages.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     Every count is zero or more, and every weight and skew is zero or more. <br>
+ *     The message weights are not all zero. <br>
+ *
+ * @author Jesse Primiani
+ */
+public class SyntheticInputAdapter implements InputAdapter {
+
+  /** The stream numbers, keeping the random values of each property independent. */
+  private static final int SOURCE_STREAM = 1;
+  private static final int DESTINATION_STREAM = 2;
+  private static final int KIND_STREAM = 3;
+  private static final int ACTIVE_STREAM = 4;
+  private static final int NAME_STREAM = 5;
+
+  /** The names that generated methods, classes and return values are built from. */
+  private static final String[] VERBS = {"get", "set", "create", "update", "load", "save", "find", "check", "send", "build"};
+  private static final String[] NOUNS = {"Order", "Account", "User", "Item", "Report", "Session", "Payment", "Record", "Queue", "Cache"};
+
+  /** The seed the whole diagram is generated from. */
+  private final long seed;
+
+  private int actorCount = 2;
+  private int classBlockCount = 3;
+  private int activationBlockCount = 5;
+  private int lifelineCount = 5;
+  private int methodCount = 10;
+  private int constraintCount = 0;
+  private int loopCount = 0;
+  private int alternativeCount = 0;
+
+  /** The relative frequency of synchronous, create and return messages. */
+  private int synchronousWeight = 8;
+  private int createWeight = 1;
+  private int returnWeight = 3;
+
+  /** The Zipf exponents of method sources and destinations; 0 is a uniform distribution. */
+  private double fanOutSkew = 0;
+  private double fanInSkew = 0;
+
+  /**
+   * Creates a small generated diagram: two actors, three class blocks, five activation blocks
+   * with a lifeline each, and ten uniformly distributed methods.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> None
+   * <br>
+   * <b>Postconditions:</b> Creates a SyntheticInputAdapter with the default settings and the given seed.
+   *
+   * @author Jesse Primiani
+   * @param seed The seed the diagram is generated from.
+   */
+  public SyntheticInputAdapter(final long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Creates a generated diagram with roughly the given number of symbols, in fixed proportions.
+   * <br>
+   * A tenth of the symbols are participants (half actors, half class blocks), each with one
+   * activation block and one lifeline. A hundredth each are constraints, loops and alternatives,
+   * and the rest are methods, with a Zipf fan-out skew of 1.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> symbols must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> Returns a SyntheticInputAdapter with at least two participants.
+   *
+   * @author Jesse Primiani
+   * @param symbols The approximate number of symbols in the diagram.
+   * @param seed The seed the diagram is generated from.
+   * @return The generated diagram.
+   * @throws SDMException on a negative symbol count.
+   */
+  public static SyntheticInputAdapter ofSize(final int symbols, final long seed) throws SDMException {
+    if (symbols < 0) throw new SDMException("'symbols' parameter must not be negative in: SyntheticInputAdapter 'ofSize' method");
+
+    int participants = Math.max(2, symbols / 10);
+    int blocks = symbols / 100;
+
+    SyntheticInputAdapter diagram = new SyntheticInputAdapter(seed);
+    diagram.setParticipantCounts(participants / 2, participants - participants / 2);
+    diagram.setActivationBlockCount(participants);
+    diagram.setLifelineCount(participants);
+    diagram.setMethodCount(Math.max(0, symbols - 3 * participants - 3 * blocks));
+    diagram.setBlockCounts(blocks, blocks, blocks);
+    diagram.setFanOutSkew(1);
+    return diagram;
+  }
+
+  /**
+   * Sets the number of actors and class blocks.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> Both counts must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> The diagram has the given numbers of actors and class blocks.
+   *
+   * @author Jesse Primiani
+   * @param actors The number of actors.
+   * @param classBlocks The number of class blocks.
+   * @throws SDMException on a negative count.
+   */
+  public void setParticipantCounts(final int actors, final int classBlocks) throws SDMException {
+    if (actors < 0) throw new SDMException("'actors' parameter must not be negative in: setParticipantCounts");
+    if (classBlocks < 0) throw new SDMException("'classBlocks' parameter must not be negative in: setParticipantCounts");
+    if ((long) actors + classBlocks + activationBlockCount > Integer.MAX_VALUE) {
+      throw new SDMException("Too many indexed elements in: setParticipantCounts");
+    }
+    actorCount = actors;
+    classBlockCount = classBlocks;
+  }
+
+  /**
+   * Sets the number of activation blocks.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> count must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> The diagram has the given number of activation blocks.
+   *
+   * @author Jesse Primiani
+   * @param count The number of activation blocks.
+   * @throws SDMException on a negative count.
+   */
+  public void setActivationBlockCount(final int count) throws SDMException {
+    if (count < 0) throw new SDMException("'count' parameter must not be negative in: setActivationBlockCount");
+    if ((long) actorCount + classBlockCount + count > Integer.MAX_VALUE) {
+      throw new SDMException("Too many indexed elements in: setActivationBlockCount");
+    }
+    activationBlockCount = count;
+  }
+
+  /**
+   * Sets the number of lifelines.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> count must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> The diagram has the given number of lifelines.
+   *
+   * @author Jesse Primiani
+   * @param count The number of lifelines.
+   * @throws SDMException on a negative count.
+   */
+  public void setLifelineCount(final int count) throws SDMException {
+    if (count < 0) throw new SDMException("'count' parameter must not be negative in: setLifelineCount");
+    lifelineCount = count;
+  }
+
+  /**
+   * Sets the number of methods (messages).
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> count must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> The diagram has the given number of methods.
+   *
+   * @author Jesse Primiani
+   * @param count The number of methods.
+   * @throws SDMException on a negative count.
+   */
+  public void setMethodCount(final int count) throws SDMException {
+    if (count < 0) throw new SDMException("'count' parameter must not be negative in: setMethodCount");
+    methodCount = count;
+  }
+
+  /**
+   * Sets the number of constraints, loops and alternatives.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> Every count must be zero or more.
+   * <br>
+   * <b>Postconditions:</b> The diagram has the given numbers of each block.
+   *
+   * @author Jesse Primiani
+   * @param constraints The number of constraints.
+   * @param loops The number of loops.
+   * @param alternatives The number of alternatives.
+   * @throws SDMException on a negative count.
+   */
+  public void setBlockCounts(final int constraints, final int loops, final int alternatives) throws SDMException {
+    if (constraints < 0) throw new SDMException("'constraints' parameter must not be negative in: setBlockCounts");
+    if (loops < 0) throw new SDMException("'loops' parameter must not be negative in: setBlockCounts");
+    if (alternatives < 0) throw new SDMException("'alternatives' parameter must not be negative in: setBlockCounts");
+    constraintCount = constraints;
+    loopCount = loops;
+    alternativeCount = alternatives;
+  }
+
+  /**
+   * Sets the relative frequency of each kind of message: synchronous calls, object creations and returns.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> Every weight must be zero or more, and at least one must be positive.
+   * <br>
+   * <b>Postconditions:</b> Each method is of a kind chosen with probability proportional to its weight.
+   *
+   * @author Jesse Primiani
+   * @param synchronous The weight of synchronous messages.
+   * @param create The weight of create messages.
+   * @param returns The weight of return messages.
+   * @throws SDMException on a negative weight, or if every weight is zero.
+   */
+  public void setMessageMix(final int synchronous, final int create, final int returns) throws SDMException {
+    if (synchronous < 0 || create < 0 || returns < 0) {
+      throw new SDMException("Message weights must not be negative in: setMessageMix");
+    }
+    if ((long) synchronous + create + returns == 0) throw new SDMException("Message weights must not all be zero in: setMessageMix");
+    if ((long) synchronous + create + returns > Integer.MAX_VALUE) throw new SDMException("Message weights are too large in: setMessageMix");
+    synchronousWeight = synchronous;
+    createWeight = create;
+    returnWeight = returns;
+  }
+
+  /**
+   * Sets how unevenly the sending of methods is spread over the activation blocks.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> skew must be zero or more, and not NaN or infinite.
+   * <br>
+   * <b>Postconditions:</b> Method sources follow a Zipf distribution with the given exponent;
+   * 0 spreads them evenly, and 1 or more sends most methods from a few blocks.
+   *
+   * @author Jesse Primiani
+   * @param skew The Zipf exponent of method sources.
+   * @throws SDMException on an invalid skew.
+   */
+  public void setFanOutSkew(final double skew) throws SDMException {
+    if (!(skew >= 0) || Double.isInfinite(skew)) throw new SDMException("'skew' parameter must be zero or more in: setFanOutSkew");
+    fanOutSkew = skew;
+  }
+
+  /**
+   * Sets how unevenly the receiving of methods is spread over the activation blocks.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> skew must be zero or more, and not NaN or infinite.
+   * <br>
+   * <b>Postconditions:</b> Method destinations follow a Zipf distribution with the given exponent;
+   * 0 spreads them evenly, and 1 or more sends most methods to a few blocks.
+   *
+   * @author Jesse Primiani
+   * @param skew The Zipf exponent of method destinations.
+   * @throws SDMException on an invalid skew.
+   */
+  public void setFanInSkew(final double skew) throws SDMException {
+    if (!(skew >= 0) || Double.isInfinite(skew)) throw new SDMException("'skew' parameter must be zero or more in: setFanInSkew");
+    fanInSkew = skew;
+  }
+
+  /**
+   * Gets the seed the diagram is generated from.
+   *
+   * @author Jesse Primiani
+   * @return The seed.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Gets the number of actors.
+   * 
+   * @author Jesse Primiani
+   * @return The number of actors.
+   */
+  public int getActorCount() {
+    return actorCount;
+  }
+
+  /**
+   * Gets the generated name of the actor at the given index.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested actor.
+   * @return The actor's name, such as "OrderActor0".
+   * @throws SDMException If the index is out of range.
+   */
+  public String getActorName(final int index) throws SDMException {
+    checkIndex(index, actorCount, "getActorName");
+    return NOUNS[pick(NAME_STREAM, index, NOUNS.length)] + "Actor" + index;
+  }
+
+  /**
+   * Gets the number of class blocks.
+   * 
+   * @author Jesse Primiani
+   * @return The number of class blocks.
+   */
+  public int getClassBlockCount() {
+    return classBlockCount;
+  }
+
+  /**
+   * Gets the generated instance name of the class block at the given index.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The instance name, such as "object0".
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockInstanceName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockInstanceName");
+    return "object" + index;
+  }
+
+  /**
+   * Gets the generated class name of the class block at the given index.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested class block.
+   * @return The class name, such as "Order0".
+   * @throws SDMException If the index is out of range.
+   */
+  public String getClassBlockClassName(final int index) throws SDMException {
+    checkIndex(index, classBlockCount, "getClassBlockClassName");
+    return className(index);
+  }
+
+  /**
+   * Gets the number of activation blocks.
+   * 
+   * @author Jesse Primiani
+   * @return The number of activation blocks.
+   */
+  public int getActivationBlockCount() {
+    return activationBlockCount;
+  }
+
+  /**
+   * Gets the number of lifelines.
+   * 
+   * @author Jesse Primiani
+   * @return The number of lifelines.
+   */
+  public int getLifelineCount() {
+    return lifelineCount;
+  }
+
+  /**
+   * Gets the virtual index of the participant a lifeline starts at.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index of the owner of the lifeline's activation block.
+   * @throws SDMException If the index is out of range.
+   * @throws SDMException If there are no participants or activation blocks to connect.
+   */
+  public int getLifelineFromIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineFromIndex");
+    checkConnectable("getLifelineFromIndex");
+    return (index % activationBlockCount) % (actorCount + classBlockCount);
+  }
+
+  /**
+   * Gets the virtual index of the activation block a lifeline ends at.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return The virtual index of the lifeline's activation block.
+   * @throws SDMException If the index is out of range.
+   * @throws SDMException If there are no participants or activation blocks to connect.
+   */
+  public int getLifelineToIndex(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineToIndex");
+    checkConnectable("getLifelineToIndex");
+    return actorCount + classBlockCount + index % activationBlockCount;
+  }
+
+  /**
+   * Gets whether a lifeline is active, which is chosen at random.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested lifeline.
+   * @return Whether the lifeline is active.
+   * @throws SDMException If the index is out of range.
+   */
+  public boolean getLifelineActive(final int index) throws SDMException {
+    checkIndex(index, lifelineCount, "getLifelineActive");
+    return (random(ACTIVE_STREAM, index) & 1) == 0;
+  }
+
+  /**
+   * Gets the number of methods.
+   * 
+   * @author Jesse Primiani
+   * @return The number of methods.
+   */
+  public int getMethodCount() {
+    return methodCount;
+  }
+
+  /**
+   * Gets the virtual index of the activation block a method is sent from, following the fan-out skew.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index of the source activation block.
+   * @throws SDMException If the index is out of range.
+   * @throws SDMException If there are no participants or activation blocks to connect.
+   */
+  public int getMethodFromIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodFromIndex");
+    checkConnectable("getMethodFromIndex");
+    return actorCount + classBlockCount + skewedBlock(SOURCE_STREAM, index, fanOutSkew);
+  }
+
+  /**
+   * Gets the virtual index of the activation block a method is sent to, following the fan-in skew.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The virtual index of the destination activation block.
+   * @throws SDMException If the index is out of range.
+   * @throws SDMException If there are no participants or activation blocks to connect.
+   */
+  public int getMethodToIndex(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodToIndex");
+    checkConnectable("getMethodToIndex");
+    return actorCount + classBlockCount + skewedBlock(DESTINATION_STREAM, index, fanInSkew);
+  }
+
+  /**
+   * Gets the generated text of a method, according to its kind: synchronous, create or return.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested method.
+   * @return The method's text.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getMethodText(final int index) throws SDMException {
+    checkIndex(index, methodCount, "getMethodText");
+
+    int kind = pick(KIND_STREAM, index, synchronousWeight + createWeight + returnWeight);
+    if (kind < synchronousWeight) {
+      // A synchronous call, such as "getOrder(id: int): Order".
+      String noun = NOUNS[pick(NAME_STREAM, index, NOUNS.length)];
+      return VERBS[pick(SOURCE_STREAM + NAME_STREAM, index, VERBS.length)] + noun + "(id: int): " + noun;
+    }
+    if (kind < synchronousWeight + createWeight) {
+      // An object creation, such as "<<create>> Order3()".
+      return "<<create>> " + className(pick(NAME_STREAM, index, Math.max(1, classBlockCount))) + "()";
+    }
+    // A return, such as "return result7".
+    return "return result" + index;
+  }
+
+  /**
+   * Gets the number of constraints.
+   * 
+   * @author Jesse Primiani
+   * @return The number of constraints.
+   */
+  public int getConstraintCount() {
+    return constraintCount;
+  }
+
+  /**
+   * Gets the generated text of a constraint.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested constraint.
+   * @return The constraint's text.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getConstraintText(final int index) throws SDMException {
+    checkIndex(index, constraintCount, "getConstraintText");
+    return "{" + NOUNS[pick(NAME_STREAM, index, NOUNS.length)].toLowerCase() + "Count <= " + (index + 1) + "}";
+  }
+
+  /**
+   * Gets the number of loops.
+   * 
+   * @author Jesse Primiani
+   * @return The number of loops.
+   */
+  public int getLoopCount() {
+    return loopCount;
+  }
+
+  /**
+   * Gets the generated condition of a loop.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested loop.
+   * @return The loop's text.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getLoopText(final int index) throws SDMException {
+    checkIndex(index, loopCount, "getLoopText");
+    return "[for each " + NOUNS[pick(NAME_STREAM, index, NOUNS.length)].toLowerCase() + "]";
+  }
+
+  /**
+   * Gets the number of alternatives.
+   * 
+   * @author Jesse Primiani
+   * @return The number of alternatives.
+   */
+  public int getAlternativeCount() {
+    return alternativeCount;
+  }
+
+  /**
+   * Gets the generated condition of an alternative.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative.
+   * @return The alternative's text.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeText(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeText");
+    return "[" + NOUNS[pick(NAME_STREAM, index, NOUNS.length)].toLowerCase() + " found]";
+  }
+
+  /**
+   * Gets the else text of an alternative.
+   * 
+   * @author Jesse Primiani
+   * @param index The index of the requested alternative.
+   * @return The alternative's else text.
+   * @throws SDMException If the index is out of range.
+   */
+  public String getAlternativeTextElse(final int index) throws SDMException {
+    checkIndex(index, alternativeCount, "getAlternativeTextElse");
+    return "[else]";
+  }
+
+  /**
+   * Gets the generated class name of a class block.
+   *
+   * @author Jesse Primiani
+   * @param index The class block's index.
+   * @return The class name, such as "Order3".
+   */
+  private String className(final int index) {
+    return NOUNS[pick(NAME_STREAM + KIND_STREAM, index, NOUNS.length)] + index;
+  }
+
+  /**
+   * Chooses an activation block for a method, following a Zipf distribution with the given exponent,
+   * using the inverse of its continuous approximation so that no table of weights is needed.
+   *
+   * @author Jesse Primiani
+   * @param stream The random stream of the property being chosen.
+   * @param index The method's index.
+   * @param skew The Zipf exponent; 0 chooses uniformly.
+   * @return The activation block's position, from 0 to activationBlockCount - 1.
+   */
+  private int skewedBlock(final int stream, final int index, final double skew) {
+    if (skew == 0) return pick(stream, index, activationBlockCount);
+
+    double u = uniform(stream, index);
+    double limit = activationBlockCount + 1.0;
+    double rank;
+    if (Math.abs(skew - 1) < 1e-9) {
+      rank = Math.pow(limit, u);
+    } else {
+      double exponent = 1 - skew;
+      rank = Math.pow((Math.pow(limit, exponent) - 1) * u + 1, 1 / exponent);
+    }
+    return Math.min(activationBlockCount - 1, Math.max(0, (int) rank - 1));
+  }
+
+  /**
+   * Gets a uniformly chosen number from 0 to bound - 1, for an element of a random stream.
+   *
+   * @author Jesse Primiani
+   * @param stream The random stream of the property being chosen.
+   * @param index The element's index.
+   * @param bound The number of choices, which must be positive.
+   * @return The choice.
+   */
+  private int pick(final int stream, final int index, final int bound) {
+    return (int) ((random(stream, index) >>> 33) * bound >>> 31);
+  }
+
+  /**
+   * Gets a uniform number in [0, 1) for an element of a random stream.
+   *
+   * @author Jesse Primiani
+   * @param stream The random stream of the property being chosen.
+   * @param index The element's index.
+   * @return The number.
+   */
+  private double uniform(final int stream, final int index) {
+    return (random(stream, index) >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Gets the random bits for an element of a random stream, using the SplitMix64 finalizer,
+   * so that each value depends only on the seed, the stream and the index.
+   *
+   * @author Jesse Primiani
+   * @param stream The random stream of the property being chosen.
+   * @param index The element's index.
+   * @return 64 random bits.
+   */
+  private long random(final int stream, final int index) {
+    long bits = seed + ((long) stream << 32 | (index & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+    bits = (bits ^ (bits >>> 30)) * 0xBF58476D1CE4E5B9L;
+    bits = (bits ^ (bits >>> 27)) * 0x94D049BB133111EBL;
+    return bits ^ (bits >>> 31);
+  }
+
+  /**
+   * Checks an element index against its element count.
+   *
+   * @author Jesse Primiani
+   * @param index The index to check.
+   * @param count The number of elements of its kind.
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if the index is out of range.
+   */
+  private static void checkIndex(final int index, final int count, final String method) throws SDMException {
+    if (index < 0) throw new SDMException("'index' parameter must be positive in: SyntheticInputAdapter '" + method + "' method");
+    if (index >= count) throw new SDMException("'index' parameter is out of range in: SyntheticInputAdapter '" + method + "' method");
+  }
+
+  /**
+   * Checks that there are participants and activation blocks for lifelines and methods to connect.
+   *
+   * @author Jesse Primiani
+   * @param method The name of the calling method, for error messages.
+   * @throws SDMException if there are no participants or no activation blocks.
+   */
+  private void checkConnectable(final String method) throws SDMException {
+    if (activationBlockCount == 0 || actorCount + classBlockCount == 0) {
+      throw new SDMException("No participants or activation blocks to connect in: SyntheticInputAdapter '" + method + "' method");
+    }
+  }
+
+}
@@ -0,0 +1,213 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * The parts of a Visio stencil (.vssx) package, read once and shared by every OutputVSDX
+ * instance, so that the masters written into each streamed diagram are those of the stencil.
+ * <br>
+ * Like MasterCache, stencils are cached by absolute path and read again only when the file
+ * changes on disk. A stencil's size does not depend on the diagrams written with it.
+ * <br>
+ * <br>
+ * <b>Class Invariants:</b> <br>
+ *     The parts map holds every part of the stencil, keyed by its name within the package. <br>
+ *     Every master in the masters map refers to a part in the parts map. <br>
+ *     All access to the cache map is synchronized on the VsdxStencil class. <br>
+ *
+ * @author Jesse Primiani
+ */
+final class VsdxStencil {
+
+  /** The namespace of the Visio 2012 XML schema. */
+  static final String VISIO_NAMESPACE = "http://schemas.microsoft.com/office/visio/2012/main";
+
+  /** The namespace of Open Packaging relationship IDs. */
+  static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+  /** The namespace of Open Packaging relationship parts. */
+  private static final String PACKAGE_RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+  /** A master of the stencil: its ID, and the name of its part within the package. */
+  static final class Master {
+    final int id;
+    final String partName;
+
+    Master(int id, String partName) {
+      this.id = id;
+      this.partName = partName;
+    }
+  }
+
+  /** The cached stencils, keyed by the stencil file's absolute path. */
+  private static final HashMap<String, VsdxStencil> cache = new HashMap<String, VsdxStencil>();
+
+  /** The modification time of the file the stencil was read from. */
+  private final long lastModified;
+
+  /** Every part of the stencil package, in package order, keyed by part name. */
+  private final Map<String, byte[]> parts;
+
+  /** The stencil's masters, keyed by universal name (NameU). */
+  private final Map<String, Master> masters;
+
+  /**
+   * Reads a stencil package.
+   *
+   * @author Jesse Primiani
+   * @param file The stencil file.
+   * @throws Exception If the file can not be read, or is not a Visio stencil package.
+   */
+  private VsdxStencil(final File file) throws Exception {
+    lastModified = file.lastModified();
+
+    LinkedHashMap<String, byte[]> readParts = new LinkedHashMap<String, byte[]>();
+    try (ZipInputStream zip = new ZipInputStream(new FileInputStream(file))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        if (!entry.isDirectory()) readParts.put(entry.getName(), readAll(zip));
+      }
+    }
+    parts = Collections.unmodifiableMap(readParts);
+
+    byte[] mastersPart = parts.get("visio/masters/masters.xml");
+    byte[] mastersRels = parts.get("visio/masters/_rels/masters.xml.rels");
+    if (mastersPart == null || mastersRels == null) {
+      throw new SDMException("Stencil has no masters in: VsdxStencil '" + file.getPath() + "'");
+    }
+
+    // Relate each relationship ID to its master part.
+    HashMap<String, String> targets = new HashMap<String, String>();
+    NodeList relationships = parse(mastersRels).getElementsByTagNameNS(PACKAGE_RELATIONSHIPS_NAMESPACE, "Relationship");
+    for (int index = 0; index < relationships.getLength(); index++) {
+      Element relationship = (Element) relationships.item(index);
+      targets.put(relationship.getAttribute("Id"), "visio/masters/" + relationship.getAttribute("Target"));
+    }
+
+    // Relate each master's universal name to its ID and part.
+    HashMap<String, Master> readMasters = new HashMap<String, Master>();
+    NodeList masterElements = parse(mastersPart).getElementsByTagNameNS(VISIO_NAMESPACE, "Master");
+    for (int index = 0; index < masterElements.getLength(); index++) {
+      Element master = (Element) masterElements.item(index);
+      NodeList rels = master.getElementsByTagNameNS(VISIO_NAMESPACE, "Rel");
+      if (rels.getLength() == 0) continue;
+
+      String partName = targets.get(((Element) rels.item(0)).getAttributeNS(RELATIONSHIPS_NAMESPACE, "id"));
+      if (partName == null || !parts.containsKey(partName)) continue;
+
+      String name = master.getAttribute("NameU");
+      if (name.isEmpty()) name = master.getAttribute("Name");
+      readMasters.put(name, new Master(Integer.parseInt(master.getAttribute("ID")), partName));
+    }
+    masters = Collections.unmodifiableMap(readMasters);
+  }
+
+  /**
+   * Gets a stencil, reading it only if it is not cached, or if the file was modified since it was cached.
+   * <br>
+   * <br>
+   * <b>Preconditions:</b> fileName must refer to a readable Visio stencil (.vssx) file.
+   * <br>
+   * <b>Postconditions:</b> Returns the stencil, which is cached for later calls.
+   *
+   * @author Jesse Primiani
+   * @param fileName The path to the stencil file.
+   * @return The stencil.
+   * @throws SDMException If fileName is null, or the file has no masters.
+   * @throws Exception If the file can not be read.
+   */
+  static synchronized VsdxStencil getStencil(final String fileName) throws Exception {
+    if (fileName == null) throw new SDMException("Null 'fileName' parameter in: VsdxStencil 'getStencil' method");
+
+    File file = new File(fileName);
+    String key = file.getAbsolutePath();
+
+    // Reuse the cached stencil if the file is unchanged.
+    VsdxStencil stencil = cache.get(key);
+    if (stencil != null && stencil.lastModified == file.lastModified()) {
+      return stencil;
+    }
+
+    // Read the file and replace any stale entry.
+    stencil = new VsdxStencil(file);
+    cache.put(key, stencil);
+    return stencil;
+  }
+
+  /**
+   * Gets every part of the stencil package.
+   *
+   * @author Jesse Primiani
+   * @return The parts, keyed by part name, which must not be modified.
+   */
+  Map<String, byte[]> getParts() {
+    return parts;
+  }
+
+  /**
+   * Gets a master of the stencil.
+   *
+   * @author Jesse Primiani
+   * @param name The master's universal name, such as "Dynamic connector".
+   * @return The master.
+   * @throws SDMException If the stencil has no master with that name.
+   */
+  Master getMaster(final String name) throws SDMException {
+    Master master = masters.get(name);
+    if (master == null) throw new SDMException("Stencil has no master named '" + name + "'");
+    return master;
+  }
+
+  /**
+   * Parses a small XML part of the stencil, with document type declarations disabled.
+   *
+   * @author Jesse Primiani
+   * @param part The part's content.
+   * @return The parsed part.
+   * @throws Exception If the part is not well-formed XML.
+   */
+  private static Document parse(final byte[] part) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    DocumentBuilder builder = factory.newDocumentBuilder();
+    return builder.parse(new ByteArrayInputStream(part));
+  }
+
+  /**
+   * Reads the rest of a stream.
+   *
+   * @author Jesse Primiani
+   * @param in The stream to read.
+   * @return The bytes read.
+   * @throws IOException On a read error.
+   */
+  private static byte[] readAll(final InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures a whole SDMtoFile.exportFile call, from reading the input adapter to saving the 
+ * Visio file, for diagrams from 10 to 100,000 symbols. Run with "-prof gc" to report the 
+ * allocation rate as well. The returned ExportStats gives the split between phases.
+ * 
+ * @author Jesse Primiani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+  
+  /** The approximate number of symbols in the diagram. */
+  @Param({"10", "100", "1000", "10000", "100000"})
+  public int symbols;
+  
+  private InputAdapter diagram;
+  private SDMtoFile exporter;
+  private File outputDirectory;
+  
+  @Setup(Level.Trial)
+  public void createExporter() throws Exception {
+    diagram = SyntheticInputAdapter.ofSize(symbols, 42);
+    outputDirectory = Files.createTempDirectory("sdm-benchmark").toFile();
+    exporter = new SDMtoFile(outputDirectory.getPath(), "benchmark");
+    exporter.setOverwrite(true);
+  }
+  
+  @TearDown(Level.Trial)
+  public void deleteOutput() {
+    File[] files = outputDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+    outputDirectory.delete();
+  }
+  
+  @Benchmark
+  public ExportStats exportFile() throws Exception {
+    return exporter.exportFile(diagram);
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of reading every value of a diagram through the InputAdapter getters, 
+ * in the order SDMtoFile reads them. Run with "-prof gc" to report the allocation rate as well.
+ * <br>
+ * The diagram read here is a SyntheticInputAdapter; InputBeulahWorksBenchmark reads an 
+ * InputBeulahWorks with readDiagram.
+ * 
+ * @author Jesse Primiani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputAdapterBenchmark {
+  
+  /** The approximate number of symbols in the diagram. */
+  @Param({"10", "1000", "100000"})
+  public int symbols;
+  
+  private InputAdapter diagram;
+  
+  /** The same diagram, read into the model that cached, incremental and fan-out exports read from. */
+  private SequenceDiagramModel model;
+  
+  @Setup
+  public void createDiagram() throws Exception {
+    diagram = SyntheticInputAdapter.ofSize(symbols, 42);
+    model = SequenceDiagramModel.of(diagram);
+  }
+  
+  @Benchmark
+  public void readGetters(final Blackhole sink) throws Exception {
+    readDiagram(diagram, sink);
+  }
+  
+  @Benchmark
+  public SequenceDiagramModel buildModel() throws Exception {
+    return SequenceDiagramModel.of(diagram);
+  }
+  
+  @Benchmark
+  public void readModel(final Blackhole sink) throws Exception {
+    readDiagram(model, sink);
+  }
+  
+  /**
+   * Reads every value of a diagram, in the order SDMtoFile reads them.
+   * 
+   * @author Jesse Primiani
+   * @param diagram The diagram to read.
+   * @param sink Consumes each value, so that no read is optimized away.
+   * @throws Exception on an input adapter error.
+   */
+  static void readDiagram(final InputAdapter diagram, final Blackhole sink) throws Exception {
+    for (int index = 0, count = diagram.getActorCount(); index < count; index++) {
+      sink.consume(diagram.getActorName(index));
+    }
+    for (int index = 0, count = diagram.getClassBlockCount(); index < count; index++) {
+      sink.consume(diagram.getClassBlockInstanceName(index));
+      sink.consume(diagram.getClassBlockClassName(index));
+    }
+    sink.consume(diagram.getActivationBlockCount());
+    for (int index = 0, count = diagram.getLifelineCount(); index < count; index++) {
+      sink.consume(diagram.getLifelineFromIndex(index));
+      sink.consume(diagram.getLifelineToIndex(index));
+      sink.consume(diagram.getLifelineActive(index));
+    }
+    for (int index = 0, count = diagram.getMethodCount(); index < count; index++) {
+      sink.consume(diagram.getMethodFromIndex(index));
+      sink.consume(diagram.getMethodToIndex(index));
+      sink.consume(diagram.getMethodText(index));
+    }
+    for (int index = 0, count = diagram.getConstraintCount(); index < count; index++) {
+      sink.consume(diagram.getConstraintText(index));
+    }
+    for (int index = 0, count = diagram.getLoopCount(); index < count; index++) {
+      sink.consume(diagram.getLoopText(index));
+    }
+    for (int index = 0, count = diagram.getAlternativeCount(); index < count; index++) {
+      sink.consume(diagram.getAlternativeText(index));
+      sink.consume(diagram.getAlternativeTextElse(index));
+    }
+  }
+
+}
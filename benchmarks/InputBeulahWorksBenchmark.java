@@ -0,0 +1,247 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import edu.purdue.cs59000.umltranslator.*;
+import edu.purdue.cs59000.umltranslator.message.*;
+import edu.purdue.cs59000.umltranslator.umlcontainer.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures InputBeulahWorks: building it from a UMLSequenceDiagram, which sorts the symbols and
+ * resolves every endpoint, and reading every value through its getters, in the order SDMtoFile
+ * reads them. Run with "-prof gc" to report the allocation rate as well.
+ * <br>
+ * The UMLSequenceDiagram is built with the shape of SyntheticInputAdapter.ofSize: each lifeline
+ * starts at a participant and ends at its own activation box, and each message connects two
+ * activation boxes, with two arguments. The UML translator library's symbols are subclassed,
+ * overriding only the getters InputBeulahWorks calls, so no translator run is needed.
+ *
+ * @author Jesse Primiani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputBeulahWorksBenchmark {
+
+  /** The approximate number of symbols in the diagram. */
+  @Param({"10", "100", "1000", "10000", "100000"})
+  public int symbols;
+
+  private UMLSequenceDiagram umlDiagram;
+  private InputBeulahWorks diagram;
+
+  @Setup(Level.Trial)
+  public void createDiagram() throws Exception {
+    umlDiagram = createUMLDiagram(SyntheticInputAdapter.ofSize(symbols, 42));
+    diagram = new InputBeulahWorks(umlDiagram);
+  }
+
+  @Benchmark
+  public InputBeulahWorks construct() throws Exception {
+    return new InputBeulahWorks(umlDiagram);
+  }
+
+  @Benchmark
+  public void readGetters(final Blackhole sink) throws Exception {
+    InputAdapterBenchmark.readDiagram(diagram, sink);
+  }
+
+  /**
+   * Builds a UMLSequenceDiagram with the elements of a diagram, as the UML translator would.
+   *
+   * @author Jesse Primiani
+   * @param shape The diagram whose counts and endpoints are copied.
+   * @return The UML translator diagram.
+   * @throws Exception on an input adapter error.
+   */
+  static UMLSequenceDiagram createUMLDiagram(final InputAdapter shape) throws Exception {
+    final List<UMLSymbol> symbols = new ArrayList<UMLSymbol>();
+    int participantCount = shape.getActorCount() + shape.getClassBlockCount();
+    UMLSymbol[] participants = new UMLSymbol[participantCount];
+
+    for (int index = 0; index < shape.getActorCount(); index++) {
+      participants[index] = new Actor(symbols.size(), shape.getActorName(index));
+      symbols.add(participants[index]);
+    }
+    for (int index = 0; index < shape.getClassBlockCount(); index++) {
+      participants[shape.getActorCount() + index] = new ClassBlock(symbols.size(),
+          shape.getClassBlockInstanceName(index), shape.getClassBlockClassName(index));
+      symbols.add(participants[shape.getActorCount() + index]);
+    }
+
+    // Each lifeline is the source of the activation box it ends at.
+    ActivationBox[] boxes = new ActivationBox[shape.getActivationBlockCount()];
+    for (int index = 0; index < boxes.length; index++) {
+      boxes[index] = new ActivationBox(symbols.size());
+      symbols.add(boxes[index]);
+    }
+    for (int index = 0; index < shape.getLifelineCount(); index++) {
+      Lifeline lifeline = new Lifeline(symbols.size(), participants[shape.getLifelineFromIndex(index)]);
+      symbols.add(lifeline);
+      int box = shape.getLifelineToIndex(index) - participantCount;
+      if (boxes[box].source == null) boxes[box].source = lifeline;
+    }
+
+    for (int index = 0; index < shape.getMethodCount(); index++) {
+      symbols.add(new Message(symbols.size(), boxes[shape.getMethodFromIndex(index) - participantCount],
+          boxes[shape.getMethodToIndex(index) - participantCount], "call" + index));
+    }
+    for (int index = 0; index < shape.getConstraintCount(); index++) {
+      symbols.add(new Condition(symbols.size(), shape.getConstraintText(index)));
+    }
+    for (int index = 0; index < shape.getLoopCount(); index++) {
+      symbols.add(new Loop(symbols.size(), new Condition(-1, shape.getLoopText(index))));
+    }
+    for (int index = 0; index < shape.getAlternativeCount(); index++) {
+      symbols.add(new Alternatives(symbols.size(), new Condition(-1, shape.getAlternativeText(index))));
+    }
+
+    return new UMLSequenceDiagram() {
+      public List<UMLSymbol> getUMLSymbols() {
+        return symbols;
+      }
+    };
+  }
+
+  private static final class Actor extends UMLActor {
+    private final int id;
+    private final String name;
+
+    Actor(final int id, final String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+  }
+
+  private static final class ClassBlock extends UMLClass {
+    private final int id;
+    private final String instanceName;
+    private final String className;
+
+    ClassBlock(final int id, final String instanceName, final String className) {
+      this.id = id;
+      this.instanceName = instanceName;
+      this.className = className;
+    }
+
+    public int getId() { return id; }
+    public String getInstanceName() { return instanceName; }
+    public String getClassName() { return className; }
+  }
+
+  private static final class ActivationBox extends UMLActivationBox {
+    private final int id;
+    UMLSymbol source;
+
+    ActivationBox(final int id) {
+      this.id = id;
+    }
+
+    public int getId() { return id; }
+    public UMLSymbol getSource() { return source; }
+  }
+
+  private static final class Lifeline extends UMLLifeline {
+    private final int id;
+    private final UMLSymbol source;
+
+    Lifeline(final int id, final UMLSymbol source) {
+      this.id = id;
+      this.source = source;
+    }
+
+    public int getId() { return id; }
+    public UMLSymbol getSource() { return source; }
+  }
+
+  private static final class Argument extends UMLMessageArgument {
+    private final String name;
+    private final String dataType;
+
+    Argument(final String name, final String dataType) {
+      this.name = name;
+      this.dataType = dataType;
+    }
+
+    public String getName() { return name; }
+    public String getDataType() { return dataType; }
+    public String getInitializedTo() { return null; }
+    public boolean isHasVarArgs() { return false; }
+  }
+
+  private static final List<UMLMessageArgument> ARGUMENTS =
+      Arrays.<UMLMessageArgument>asList(new Argument("id", "int"), new Argument("name", "String"));
+
+  private static final class Message extends UMLSynchronousMessage {
+    private final int id;
+    private final UMLSymbol source;
+    private final UMLSymbol destination;
+    private final String name;
+
+    Message(final int id, final UMLSymbol source, final UMLSymbol destination, final String name) {
+      this.id = id;
+      this.source = source;
+      this.destination = destination;
+      this.name = name;
+    }
+
+    public int getId() { return id; }
+    public UMLSymbol getSource() { return source; }
+    public UMLSymbol getDestination() { return destination; }
+    public String getName() { return name; }
+    public String getReturnType() { return "void"; }
+    public List<UMLMessageArgument> getArguments() { return ARGUMENTS; }
+  }
+
+  private static final class Condition extends UMLCondition {
+    private final int id;
+    private final String condition;
+
+    Condition(final int id, final String condition) {
+      this.id = id;
+      this.condition = condition;
+    }
+
+    public int getId() { return id; }
+    public String getCondition() { return condition; }
+  }
+
+  private static final class Loop extends UMLLoop {
+    private final int id;
+    private final UMLCondition condition;
+
+    Loop(final int id, final UMLCondition condition) {
+      this.id = id;
+      this.condition = condition;
+    }
+
+    public int getId() { return id; }
+    public UMLCondition getCondition() { return condition; }
+  }
+
+  private static final class Alternatives extends UMLAlternatives {
+    private final int id;
+    private final UMLCondition condition;
+
+    Alternatives(final int id, final UMLCondition condition) {
+      this.id = id;
+      this.condition = condition;
+    }
+
+    public int getId() { return id; }
+    public UMLCondition getCondition() { return condition; }
+  }
+
+}
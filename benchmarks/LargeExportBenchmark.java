@@ -0,0 +1,72 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Checks that SDMtoFile.exportFile exports a diagram far larger than the heap with the streaming
+ * output adapters, OutputVSDX, OutputSVG, OutputPlantUML and OutputMermaid. The forked JVM has a
+ * 256 MB heap, and the 8,000,000 symbol diagram (over 5,000,000 methods) is a SyntheticInputAdapter,
+ * which stores nothing, so an export that holds a whole element kind, or a copy of the diagram,
+ * fails with an OutOfMemoryError instead of reporting a time.
+ * <br>
+ * Each export runs once per iteration; the time reported is that of one whole export.
+ * OutputVSDX reads VisioMasters/MasterSDM.vssx relative to the working directory.
+ *
+ * @author Jesse Primiani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx256m"})
+public class LargeExportBenchmark {
+
+  /** The output format, which selects the output adapter and type. */
+  @Param({"vsdx", "svg", "plantuml", "mermaid"})
+  public String format;
+
+  /** The approximate number of symbols in the diagram. */
+  @Param({"8000000"})
+  public int symbols;
+
+  private InputAdapter diagram;
+  private SDMtoFile exporter;
+  private File outputDirectory;
+
+  @Setup(Level.Trial)
+  public void createExporter() throws Exception {
+    diagram = SyntheticInputAdapter.ofSize(symbols, 42);
+    outputDirectory = Files.createTempDirectory("sdm-benchmark").toFile();
+
+    if (format.equals("vsdx")) {
+      exporter = new SDMtoFile(outputDirectory.getPath(), "benchmark", new OutputTypeAsposeVSDX(), new OutputVSDX());
+    } else if (format.equals("svg")) {
+      exporter = new SDMtoFile(outputDirectory.getPath(), "benchmark", new OutputTypeSVG(), new OutputSVG());
+    } else if (format.equals("plantuml")) {
+      exporter = new SDMtoFile(outputDirectory.getPath(), "benchmark", new OutputTypePlantUML(), new OutputPlantUML());
+    } else {
+      exporter = new SDMtoFile(outputDirectory.getPath(), "benchmark", new OutputTypeMermaid(), new OutputMermaid());
+    }
+    exporter.setOverwrite(true);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteOutput() {
+    File[] files = outputDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+    outputDirectory.delete();
+  }
+
+  @Benchmark
+  public ExportStats exportFile() throws Exception {
+    return exporter.exportFile(diagram);
+  }
+
+}
@@ -0,0 +1,219 @@
+package com.beulahworks.SDMfileGenerator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures each bulk add method of OutputAspose, along with finalizeDiagram and saveToFile. 
+ * Run with "-prof gc" to report the allocation rate as well.
+ * <br>
+ * Each benchmark invocation adds every element of one kind from a SyntheticInputAdapter to a fresh 
+ * OutputAspose object, so throughput is reported in whole diagrams (operations) per second. 
+ * The adapter is prepared outside the measured region, with the participants and activation 
+ * blocks the lifelines and methods connect to already added.
+ * 
+ * @author Jesse Primiani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputAsposeBenchmark {
+  
+  /** The approximate number of symbols in the diagram. */
+  @Param({"10", "1000", "100000"})
+  public int symbols;
+  
+  private String[] actorNames;
+  private String[] instanceNames;
+  private String[] classNames;
+  private int activationBlocks;
+  private int[] lifelineFrom;
+  private int[] lifelineTo;
+  private boolean[] lifelineActive;
+  private int[] methodFrom;
+  private int[] methodTo;
+  private String[] methodTexts;
+  private String[] constraintTexts;
+  private String[] loopTexts;
+  private String[] alternativeTexts;
+  private String[] alternativeTextsElse;
+  
+  /** An initialized adapter holding the diagram's participants and activation blocks. */
+  private OutputAspose adapter;
+  
+  /** An adapter holding the whole diagram, before finalizeDiagram. */
+  private OutputAspose filledAdapter;
+  
+  /** An adapter holding the whole diagram, after finalizeDiagram. */
+  private OutputAspose finalizedAdapter;
+  
+  /** The directory saveToFile writes to. */
+  private File outputDirectory;
+  
+  @Setup(Level.Trial)
+  public void readDiagram() throws Exception {
+    InputAdapter diagram = SyntheticInputAdapter.ofSize(symbols, 42);
+    
+    actorNames = new String[diagram.getActorCount()];
+    for (int index = 0; index < actorNames.length; index++) actorNames[index] = diagram.getActorName(index);
+    
+    instanceNames = new String[diagram.getClassBlockCount()];
+    classNames = new String[instanceNames.length];
+    for (int index = 0; index < instanceNames.length; index++) {
+      instanceNames[index] = diagram.getClassBlockInstanceName(index);
+      classNames[index] = diagram.getClassBlockClassName(index);
+    }
+    
+    activationBlocks = diagram.getActivationBlockCount();
+    
+    lifelineFrom = new int[diagram.getLifelineCount()];
+    lifelineTo = new int[lifelineFrom.length];
+    lifelineActive = new boolean[lifelineFrom.length];
+    for (int index = 0; index < lifelineFrom.length; index++) {
+      lifelineFrom[index] = diagram.getLifelineFromIndex(index);
+      lifelineTo[index] = diagram.getLifelineToIndex(index);
+      lifelineActive[index] = diagram.getLifelineActive(index);
+    }
+    
+    methodFrom = new int[diagram.getMethodCount()];
+    methodTo = new int[methodFrom.length];
+    methodTexts = new String[methodFrom.length];
+    for (int index = 0; index < methodFrom.length; index++) {
+      methodFrom[index] = diagram.getMethodFromIndex(index);
+      methodTo[index] = diagram.getMethodToIndex(index);
+      methodTexts[index] = diagram.getMethodText(index);
+    }
+    
+    constraintTexts = new String[diagram.getConstraintCount()];
+    for (int index = 0; index < constraintTexts.length; index++) constraintTexts[index] = diagram.getConstraintText(index);
+    
+    loopTexts = new String[diagram.getLoopCount()];
+    for (int index = 0; index < loopTexts.length; index++) loopTexts[index] = diagram.getLoopText(index);
+    
+    alternativeTexts = new String[diagram.getAlternativeCount()];
+    alternativeTextsElse = new String[alternativeTexts.length];
+    for (int index = 0; index < alternativeTexts.length; index++) {
+      alternativeTexts[index] = diagram.getAlternativeText(index);
+      alternativeTextsElse[index] = diagram.getAlternativeTextElse(index);
+    }
+    
+    outputDirectory = Files.createTempDirectory("sdm-benchmark").toFile();
+  }
+  
+  @Setup(Level.Invocation)
+  public void prepareAdapters() throws Exception {
+    adapter = new OutputAspose();
+    adapter.initializeDiagram();
+    addParticipants(adapter);
+    
+    filledAdapter = new OutputAspose();
+    filledAdapter.initializeDiagram();
+    addParticipants(filledAdapter);
+    addConnectionsAndBlocks(filledAdapter);
+    
+    finalizedAdapter = new OutputAspose();
+    finalizedAdapter.initializeDiagram();
+    addParticipants(finalizedAdapter);
+    addConnectionsAndBlocks(finalizedAdapter);
+    finalizedAdapter.finalizeDiagram();
+  }
+  
+  @TearDown(Level.Trial)
+  public void deleteOutput() {
+    File[] files = outputDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+    outputDirectory.delete();
+  }
+  
+  @Benchmark
+  public void initializeDiagram() throws Exception {
+    new OutputAspose().initializeDiagram();
+  }
+  
+  @Benchmark
+  public void addActors() throws Exception {
+    adapter.addActors(actorNames);
+  }
+  
+  @Benchmark
+  public void addClassBlocks() throws Exception {
+    adapter.addClassBlocks(instanceNames, classNames);
+  }
+  
+  @Benchmark
+  public void addActivationBlocks() throws Exception {
+    adapter.addActivationBlocks(activationBlocks);
+  }
+  
+  @Benchmark
+  public void addLifelines() throws Exception {
+    adapter.addLifelines(lifelineFrom, lifelineTo, lifelineActive);
+  }
+  
+  @Benchmark
+  public void addMethods() throws Exception {
+    adapter.addMethods(methodFrom, methodTo, methodTexts);
+  }
+  
+  @Benchmark
+  public void addConstraints() throws Exception {
+    adapter.addConstraints(constraintTexts);
+  }
+  
+  @Benchmark
+  public void addLoops() throws Exception {
+    adapter.addLoops(loopTexts);
+  }
+  
+  @Benchmark
+  public void addAlternatives() throws Exception {
+    adapter.addAlternatives(alternativeTexts, alternativeTextsElse);
+  }
+  
+  @Benchmark
+  public void finalizeDiagram() throws Exception {
+    filledAdapter.finalizeDiagram();
+  }
+  
+  @Benchmark
+  public String saveToFile() throws Exception {
+    return finalizedAdapter.saveToFile(outputDirectory.getPath(), "benchmark", new OutputTypeAsposeVSDX(), true);
+  }
+  
+  /**
+   * Adds the actors, class blocks and activation blocks, in the order SDMtoFile adds them.
+   * 
+   * @author Jesse Primiani
+   * @param target The adapter to add to.
+   * @throws Exception on an output library error.
+   */
+  private void addParticipants(final OutputAspose target) throws Exception {
+    target.addActors(actorNames);
+    target.addClassBlocks(instanceNames, classNames);
+    target.addActivationBlocks(activationBlocks);
+  }
+  
+  /**
+   * Adds the lifelines, methods, constraints, loops and alternatives, in the order SDMtoFile adds them.
+   * 
+   * @author Jesse Primiani
+   * @param target The adapter to add to, which already holds the participants.
+   * @throws Exception on an output library error.
+   */
+  private void addConnectionsAndBlocks(final OutputAspose target) throws Exception {
+    target.addLifelines(lifelineFrom, lifelineTo, lifelineActive);
+    target.addMethods(methodFrom, methodTo, methodTexts);
+    target.addConstraints(constraintTexts);
+    target.addLoops(loopTexts);
+    target.addAlternatives(alternativeTexts, alternativeTextsElse);
+  }
+
+}
@@ -0,0 +1,182 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that BinaryDiagramWriter and InputBinaryDiagram round-trip every value of a diagram, and
+ * that a truncated or foreign file is rejected rather than read.
+ *
+ * @author Jesse Primiani
+ */
+class BinaryDiagramTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void roundTripKeepsEveryValue() throws Exception {
+    SyntheticInputAdapter source = SyntheticInputAdapter.ofSize(5000, 11);
+    String fileName = write(source, "synthetic");
+
+    assertSameDiagram(source, new InputBinaryDiagram(fileName));
+  }
+
+  @Test
+  void roundTripKeepsNullEmptyAndNonAsciiTexts() throws Exception {
+    Path json = directory.resolve("texts.json");
+    Files.writeString(json, "{\"actors\": [\"\u00fcber\", null, \"\"],"
+        + " \"classBlocks\": [{\"instanceName\": \"i\"}, {\"instanceName\": \"\u2192\", \"className\": \"\ud83d\ude00\"}],"
+        + " \"activationBlockCount\": 2,"
+        + " \"lifelines\": [{\"from\": 0, \"to\": 5, \"active\": true}, {\"from\": 1, \"to\": 6}],"
+        + " \"methods\": [{\"from\": 5, \"to\": 6, \"text\": \"call()\"}, {\"from\": 6, \"to\": 5, \"text\": \"call()\"}, {\"from\": 7, \"to\": 8}],"
+        + " \"constraints\": [null], \"loops\": [\"\"],"
+        + " \"alternatives\": [{\"text\": \"x > 0\"}, {\"text\": \"x > 0\", \"textElse\": \"\u00e9lse\"}]}",
+        StandardCharsets.UTF_8);
+
+    try (InputJsonDiagram source = new InputJsonDiagram(json.toString())) {
+      String fileName = write(source, "texts");
+      assertSameDiagram(source, new InputBinaryDiagram(fileName));
+    }
+  }
+
+  @Test
+  void roundTripKeepsAnEmptyDiagram() throws Exception {
+    SyntheticInputAdapter source = new SyntheticInputAdapter(3);
+    source.setParticipantCounts(0, 0);
+    source.setActivationBlockCount(0);
+    source.setLifelineCount(0);
+    source.setMethodCount(0);
+    source.setBlockCounts(0, 0, 0);
+    String fileName = write(source, "empty");
+
+    assertSameDiagram(source, new InputBinaryDiagram(fileName));
+  }
+
+  @Test
+  void truncatedFileIsRejected() throws Exception {
+    String fileName = write(SyntheticInputAdapter.ofSize(1000, 5), "truncated");
+    truncate(fileName, Files.size(Path.of(fileName)) - 1);
+
+    SDMException ex = assertThrows(SDMException.class, () -> new InputBinaryDiagram(fileName));
+    assertEquals("File length does not match its header in: InputBinaryDiagram constructor", ex.getMessage());
+  }
+
+  @Test
+  void fileShorterThanItsHeaderIsRejected() throws Exception {
+    String fileName = write(SyntheticInputAdapter.ofSize(1000, 5), "short");
+    truncate(fileName, BinaryDiagramWriter.HEADER_SIZE - 1);
+
+    SDMException ex = assertThrows(SDMException.class, () -> new InputBinaryDiagram(fileName));
+    assertEquals("File is too short in: InputBinaryDiagram constructor", ex.getMessage());
+  }
+
+  @Test
+  void fileWithTrailingBytesIsRejected() throws Exception {
+    String fileName = write(SyntheticInputAdapter.ofSize(1000, 5), "long");
+    truncate(fileName, Files.size(Path.of(fileName)) + 8);
+
+    SDMException ex = assertThrows(SDMException.class, () -> new InputBinaryDiagram(fileName));
+    assertEquals("File length does not match its header in: InputBinaryDiagram constructor", ex.getMessage());
+  }
+
+  @Test
+  void otherFileIsRejected() throws Exception {
+    Path file = directory.resolve("other" + BinaryDiagramWriter.EXTENSION);
+    Files.write(file, new byte[BinaryDiagramWriter.HEADER_SIZE]);
+
+    SDMException ex = assertThrows(SDMException.class, () -> new InputBinaryDiagram(file.toString()));
+    assertEquals("File is not a binary diagram file in: InputBinaryDiagram constructor", ex.getMessage());
+  }
+
+  /**
+   * Writes a diagram to a binary diagram file in the test's directory.
+   *
+   * @author Jesse Primiani
+   * @param diagram The diagram to write.
+   * @param name The file's name, without its extension.
+   * @return The full name of the file.
+   * @throws Exception on a write error.
+   */
+  private String write(final InputAdapter diagram, final String name) throws Exception {
+    String fileName = directory.resolve(name + BinaryDiagramWriter.EXTENSION).toString();
+    BinaryDiagramWriter.write(diagram, fileName);
+    return fileName;
+  }
+
+  /**
+   * Cuts a file to a length, or extends it with zeros.
+   *
+   * @author Jesse Primiani
+   * @param fileName The file's full name.
+   * @param length The new length, in bytes.
+   * @throws Exception on a file error.
+   */
+  private static void truncate(final String fileName, final long length) throws Exception {
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+      file.setLength(length);
+    }
+  }
+
+  /**
+   * Checks that two diagrams return the same value from every getter.
+   *
+   * @author Jesse Primiani
+   * @param expected The diagram that was written.
+   * @param actual The diagram that was read back.
+   * @throws Exception on an input adapter error.
+   */
+  static void assertSameDiagram(final InputAdapter expected, final InputAdapter actual) throws Exception {
+    assertEquals(expected.getActorCount(), actual.getActorCount(), "actor count");
+    for (int index = 0; index < expected.getActorCount(); index++) {
+      assertEquals(expected.getActorName(index), actual.getActorName(index), "actor " + index);
+    }
+
+    assertEquals(expected.getClassBlockCount(), actual.getClassBlockCount(), "class block count");
+    for (int index = 0; index < expected.getClassBlockCount(); index++) {
+      assertEquals(expected.getClassBlockInstanceName(index), actual.getClassBlockInstanceName(index), "instance name " + index);
+      assertEquals(expected.getClassBlockClassName(index), actual.getClassBlockClassName(index), "class name " + index);
+    }
+
+    assertEquals(expected.getActivationBlockCount(), actual.getActivationBlockCount(), "activation block count");
+
+    assertEquals(expected.getLifelineCount(), actual.getLifelineCount(), "lifeline count");
+    for (int index = 0; index < expected.getLifelineCount(); index++) {
+      assertEquals(expected.getLifelineFromIndex(index), actual.getLifelineFromIndex(index), "lifeline from " + index);
+      assertEquals(expected.getLifelineToIndex(index), actual.getLifelineToIndex(index), "lifeline to " + index);
+      assertEquals(expected.getLifelineActive(index), actual.getLifelineActive(index), "lifeline active " + index);
+    }
+
+    assertEquals(expected.getMethodCount(), actual.getMethodCount(), "method count");
+    for (int index = 0; index < expected.getMethodCount(); index++) {
+      assertEquals(expected.getMethodFromIndex(index), actual.getMethodFromIndex(index), "method from " + index);
+      assertEquals(expected.getMethodToIndex(index), actual.getMethodToIndex(index), "method to " + index);
+      assertEquals(expected.getMethodText(index), actual.getMethodText(index), "method text " + index);
+    }
+
+    assertEquals(expected.getConstraintCount(), actual.getConstraintCount(), "constraint count");
+    for (int index = 0; index < expected.getConstraintCount(); index++) {
+      assertEquals(expected.getConstraintText(index), actual.getConstraintText(index), "constraint " + index);
+    }
+
+    assertEquals(expected.getLoopCount(), actual.getLoopCount(), "loop count");
+    for (int index = 0; index < expected.getLoopCount(); index++) {
+      assertEquals(expected.getLoopText(index), actual.getLoopText(index), "loop " + index);
+    }
+
+    assertEquals(expected.getAlternativeCount(), actual.getAlternativeCount(), "alternative count");
+    for (int index = 0; index < expected.getAlternativeCount(); index++) {
+      assertEquals(expected.getAlternativeText(index), actual.getAlternativeText(index), "alternative " + index);
+      assertEquals(expected.getAlternativeTextElse(index), actual.getAlternativeTextElse(index), "alternative else " + index);
+    }
+  }
+
+}
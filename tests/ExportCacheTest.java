@@ -0,0 +1,160 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that ExportCache keeps its entries under its bound by evicting the least recently used
+ * ones, and publishes only the entries it still has.
+ *
+ * @author Jesse Primiani
+ */
+class ExportCacheTest {
+
+  /** The size of each saved file. */
+  private static final int FILE_SIZE = 100;
+
+  @TempDir
+  Path directory;
+
+  private Path cacheDirectory;
+  private Path outputDirectory;
+  private final OutputType<?> type = new OutputTypePlantUML();
+
+  @BeforeEach
+  void createDirectories() throws Exception {
+    cacheDirectory = Files.createDirectory(directory.resolve("cache"));
+    outputDirectory = Files.createDirectory(directory.resolve("output"));
+  }
+
+  @Test
+  void evictsTheLeastRecentlyAddedEntry() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 2 * FILE_SIZE + FILE_SIZE / 2);
+    put(cache, "a");
+    put(cache, "b");
+    put(cache, "c");
+
+    assertEquals(2, cache.getEntryCount());
+    assertEquals(2 * FILE_SIZE, cache.getTotalBytes());
+    assertNull(publish(cache, "a"));
+    assertNotNull(publish(cache, "b"));
+    assertNotNull(publish(cache, "c"));
+  }
+
+  @Test
+  void publishingAnEntryKeepsItFromEviction() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 2 * FILE_SIZE + FILE_SIZE / 2);
+    put(cache, "a");
+    put(cache, "b");
+    assertNotNull(publish(cache, "a"));
+    put(cache, "c");
+
+    assertNotNull(publish(cache, "a"));
+    assertNull(publish(cache, "b"));
+    assertNotNull(publish(cache, "c"));
+  }
+
+  @Test
+  void publishedFileHoldsTheSavedContent() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE);
+    byte[] content = put(cache, "a");
+
+    String published = publish(cache, "a");
+    assertArrayEquals(content, Files.readAllBytes(Path.of(published)));
+  }
+
+  @Test
+  void fileOverTheBoundIsNotKept() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), FILE_SIZE - 1);
+    put(cache, "a");
+
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getTotalBytes());
+    assertNull(publish(cache, "a"));
+  }
+
+  @Test
+  void newCacheTakesInEntriesWithinItsBound() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE);
+    put(cache, "a");
+    put(cache, "b");
+    put(cache, "c");
+
+    ExportCache reopened = new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE);
+    assertEquals(3, reopened.getEntryCount());
+    assertEquals(3 * FILE_SIZE, reopened.getTotalBytes());
+
+    ExportCache smaller = new ExportCache(cacheDirectory.toString(), 2 * FILE_SIZE);
+    assertEquals(2, smaller.getEntryCount());
+    assertEquals(2 * FILE_SIZE, smaller.getTotalBytes());
+  }
+
+  @Test
+  void clearRemovesEveryEntry() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE);
+    put(cache, "a");
+    put(cache, "b");
+    cache.clear();
+
+    assertEquals(0, cache.getEntryCount());
+    assertNull(publish(cache, "a"));
+    assertEquals(0, new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE).getEntryCount());
+  }
+
+  @Test
+  void cacheThatCanNotTakeTheFileDoesNotFailTheExport() throws Exception {
+    ExportCache cache = new ExportCache(cacheDirectory.toString(), 10 * FILE_SIZE);
+    Files.delete(cacheDirectory);
+    Files.write(cacheDirectory, new byte[0]); // Entries can no longer be staged in the cache's directory
+
+    SDMtoFile exporter = new SDMtoFile(outputDirectory.toString(), "x", type, new OutputPlantUML());
+    exporter.setOverwrite(false);
+    exporter.setExportCache(cache);
+    ExportStats stats = exporter.exportFile(new SyntheticInputAdapter(1));
+
+    assertNotNull(stats.getCacheFailure());
+    assertEquals(outputDirectory.resolve("x.puml").toString(), stats.getFileName());
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  /**
+   * Saves a file of FILE_SIZE bytes, and adds it to a cache.
+   *
+   * @author Jesse Primiani
+   * @param cache The cache.
+   * @param key The entry's key.
+   * @return The file's content.
+   * @throws Exception on a file error.
+   */
+  private byte[] put(final ExportCache cache, final String key) throws Exception {
+    byte[] content = new byte[FILE_SIZE];
+    content[0] = (byte) key.charAt(0);
+    Path saved = directory.resolve(key + ".saved");
+    Files.write(saved, content);
+    cache.put(key, saved.toString(), type);
+    return content;
+  }
+
+  /**
+   * Publishes a cache's entry as a new output file.
+   *
+   * @author Jesse Primiani
+   * @param cache The cache.
+   * @param key The entry's key.
+   * @return The full name of the published file, or null if the cache does not have the key.
+   * @throws Exception on a file error.
+   */
+  private String publish(final ExportCache cache, final String key) throws Exception {
+    return cache.publish(key, outputDirectory.toString(), key, type, true);
+  }
+
+}
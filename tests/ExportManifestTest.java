@@ -0,0 +1,118 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that ExportManifest finds the runs of elements that changed between two diagrams, round-trips
+ * through its file, and ignores a damaged file.
+ *
+ * @author Jesse Primiani
+ */
+class ExportManifestTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void findsTheChangedRunOfMethods() throws Exception {
+    SyntheticInputAdapter previous = SyntheticInputAdapter.ofSize(1000, 9);
+    SyntheticInputAdapter current = SyntheticInputAdapter.ofSize(1000, 9);
+    current.setMethodCount(current.getMethodCount() + 1);
+    ExportManifest before = ExportManifest.fingerprint(previous);
+    ExportManifest after = ExportManifest.fingerprint(current);
+
+    assertTrue(before.hasSameParticipants(after));
+    int prefix = ExportManifest.commonPrefix(before.methods, after.methods);
+    assertEquals(before.methods.length, prefix);
+    assertEquals(0, ExportManifest.commonSuffix(before.methods, after.methods, prefix));
+  }
+
+  @Test
+  void commonSuffixDoesNotOverlapThePrefix() {
+    long[] previous = {1, 2, 3, 2, 3};
+    long[] current = {1, 2, 3};
+
+    int prefix = ExportManifest.commonPrefix(previous, current);
+    assertEquals(3, prefix);
+    assertEquals(0, ExportManifest.commonSuffix(previous, current, prefix));
+    assertEquals(1, ExportManifest.commonPrefix(new long[] {1, 9, 3}, new long[] {1, 8, 8, 3}));
+    assertEquals(1, ExportManifest.commonSuffix(new long[] {1, 9, 3}, new long[] {1, 8, 8, 3}, 1));
+  }
+
+  @Test
+  void changedParticipantsAreDetected() throws Exception {
+    SyntheticInputAdapter previous = SyntheticInputAdapter.ofSize(1000, 9);
+    SyntheticInputAdapter current = SyntheticInputAdapter.ofSize(1000, 9);
+    current.setActivationBlockCount(current.getActivationBlockCount() + 1);
+
+    assertFalse(ExportManifest.fingerprint(previous).hasSameParticipants(ExportManifest.fingerprint(current)));
+  }
+
+  @Test
+  void roundTripsThroughItsFile() throws Exception {
+    File output = directory.resolve("diagram.out").toFile();
+    Files.write(output.toPath(), new byte[] {1, 2, 3});
+    File manifestFile = directory.resolve("diagram.manifest").toFile();
+    ExportManifest manifest = ExportManifest.fingerprint(SyntheticInputAdapter.ofSize(2000, 4));
+    byte[] state = {9, 8, 7};
+    manifest.setOutput(output, state);
+    manifest.write(manifestFile);
+
+    ExportManifest read = ExportManifest.read(manifestFile);
+    assertNotNull(read);
+    assertArrayEquals(manifest.actors, read.actors);
+    assertArrayEquals(manifest.classBlocks, read.classBlocks);
+    assertEquals(manifest.activationBlockCount, read.activationBlockCount);
+    assertArrayEquals(manifest.lifelines, read.lifelines);
+    assertArrayEquals(manifest.methods, read.methods);
+    assertArrayEquals(manifest.constraints, read.constraints);
+    assertArrayEquals(manifest.loops, read.loops);
+    assertArrayEquals(manifest.alternatives, read.alternatives);
+    assertArrayEquals(state, read.getAdapterState());
+    assertTrue(read.describes(output));
+
+    Files.write(output.toPath(), new byte[] {1, 2, 3, 4});
+    assertFalse(read.describes(output));
+  }
+
+  @Test
+  void damagedLengthIsIgnored() throws Exception {
+    File manifestFile = directory.resolve("damaged.manifest").toFile();
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(manifestFile))) {
+      out.writeInt(0x53444D4D);
+      out.writeInt(1);
+      out.writeLong(0);
+      out.writeLong(0);
+      out.writeInt(Integer.MAX_VALUE);
+    }
+
+    assertNull(ExportManifest.read(manifestFile));
+  }
+
+  @Test
+  void truncatedFileIsIgnored() throws Exception {
+    File manifestFile = directory.resolve("truncated.manifest").toFile();
+    ExportManifest manifest = ExportManifest.fingerprint(SyntheticInputAdapter.ofSize(1000, 4));
+    manifest.setOutput(manifestFile, new byte[16]);
+    manifest.write(manifestFile);
+    byte[] bytes = Files.readAllBytes(manifestFile.toPath());
+    Files.write(manifestFile.toPath(), java.util.Arrays.copyOf(bytes, bytes.length - 1));
+
+    assertNull(ExportManifest.read(manifestFile));
+  }
+
+}
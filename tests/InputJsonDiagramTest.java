@@ -0,0 +1,130 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that InputJsonDiagram reads a document's elements, and reports each kind of error in a
+ * document at the line and column where it is.
+ *
+ * @author Jesse Primiani
+ */
+class InputJsonDiagramTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void readsElementsListedAfterTheirReferences() throws Exception {
+    try (InputJsonDiagram diagram = read("{\"methods\": [{\"from\": 2, \"to\": 1, \"text\": \"go\\u0021\"}],"
+        + " \"lifelines\": [{\"from\": 0, \"to\": 1, \"active\": true}],"
+        + " \"ignored\": {\"nested\": [1, -2.5e+3, true, null]},"
+        + " \"actors\": [\"a\", \"b\"]}")) {
+      assertEquals(2, diagram.getActorCount());
+      assertEquals("b", diagram.getActorName(1));
+      assertEquals(1, diagram.getLifelineCount());
+      assertTrue(diagram.getLifelineActive(0));
+      assertEquals(1, diagram.getMethodCount());
+      assertEquals(2, diagram.getMethodFromIndex(0));
+      assertEquals("go!", diagram.getMethodText(0));
+    }
+  }
+
+  @Test
+  void readsMissingTextsAsNull() throws Exception {
+    try (InputJsonDiagram diagram = read("{\"actors\": [null], \"alternatives\": [{\"text\": \"x\"}]}")) {
+      assertNull(diagram.getActorName(0));
+      assertEquals("x", diagram.getAlternativeText(0));
+      assertNull(diagram.getAlternativeTextElse(0));
+    }
+  }
+
+  @Test
+  void reportsSyntaxErrorAtTheUnexpectedToken() {
+    assertError("{\"actors\": [\"a\",]}", "Expected a string at line 1, column 17");
+  }
+
+  @Test
+  void reportsDuplicateKeyAtTheSecondKey() {
+    assertError("{\n  \"actors\": [\"a\"],\n  \"actors\": []\n}", "Duplicate key 'actors' at line 3, column 3");
+  }
+
+  @Test
+  void reportsReferenceListedBeforeElementsAtTheReference() {
+    assertError("{\"actors\": [\"a\"], \"methods\": [\n  {\"from\": 0, \"to\": 5, \"text\": \"m\"}\n]}",
+        "Reference 5 in method 'to' is out of range (1 virtual indices) at line 2, column 21");
+  }
+
+  @Test
+  void reportsLifelineReferringToALaterLifeline() {
+    assertError("{\"actors\": [\"a\", \"b\"], \"lifelines\": [{\"from\": 0, \"to\": 1}, {\"from\": 2, \"to\": 3}]}",
+        "Reference 3 in lifeline 'to' is out of range (3 virtual indices before lifeline 1) at line 1, column 78");
+  }
+
+  @Test
+  void reportsMissingReferenceAtItsObject() {
+    assertError("{\"methods\": [{\"to\": 0}]}", "Missing 'from' or 'to' in method at line 1, column 14");
+  }
+
+  @Test
+  void reportsNumberWithoutFractionDigits() {
+    assertError("{\"x\": 1.}", "Expected a digit in number at line 1, column 9");
+  }
+
+  @Test
+  void reportsNumberWithoutExponentDigits() {
+    assertError("{\"x\": 1e+}", "Expected a digit in number at line 1, column 10");
+  }
+
+  @Test
+  void reportsLeadingZeroInIndex() {
+    assertError("{\"actors\": [\"a\", \"b\"], \"lifelines\": [{\"from\": 01, \"to\": 1}]}",
+        "Leading zero in integer at line 1, column 48");
+  }
+
+  @Test
+  void reportsControlCharacterInString() {
+    assertError("{\"actors\": [\"a\tb\"]}", "Control character in string at line 1, column 15");
+  }
+
+  @Test
+  void reportsContentAfterTheDocument() {
+    assertError("{\"actors\": [\"a\"]} x", "Unexpected content after the document at line 1, column 19");
+  }
+
+  /**
+   * Writes a document to a file in the test's directory, and reads it.
+   *
+   * @author Jesse Primiani
+   * @param document The JSON document.
+   * @return The diagram read from it.
+   * @throws Exception on an error in the document.
+   */
+  private InputJsonDiagram read(final String document) throws Exception {
+    Path file = Files.createTempFile(directory, "diagram", ".json");
+    Files.writeString(file, document, StandardCharsets.UTF_8);
+    return new InputJsonDiagram(file.toString());
+  }
+
+  /**
+   * Checks that reading a document fails with an error at a position.
+   *
+   * @author Jesse Primiani
+   * @param document The JSON document.
+   * @param message The error's message, without the constructor's name.
+   */
+  private void assertError(final String document, final String message) {
+    SDMException ex = assertThrows(SDMException.class, () -> read(document).close());
+    assertEquals(message + " in: InputJsonDiagram constructor", ex.getMessage());
+  }
+
+}
@@ -0,0 +1,190 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.aspose.diagram.Diagram;
+
+/**
+ * Tests that a replace method of OutputAspose which fails part way through leaves the diagram as it
+ * was: the same element state, and the same shapes once saved.
+ * <br>
+ * Failures are injected by a subclass, after some of the new elements have been added. The tests
+ * need the stencil file, and are skipped if it is not in the working directory.
+ *
+ * @author Jesse Primiani
+ */
+class OutputAsposeReplaceTest {
+
+  @TempDir
+  Path directory;
+
+  @BeforeAll
+  static void requireStencil() {
+    assumeTrue(new File("VisioMasters" + File.separator + "MasterSDM.vssx").isFile(), "The stencil file is missing");
+  }
+
+  /**
+   * An OutputAspose whose bulk methods fail, once armed, after adding failAfter elements.
+   *
+   * @author Jesse Primiani
+   */
+  private static final class FailingOutputAspose extends OutputAspose {
+
+    /** The number of elements to add before failing, or -1 to never fail. */
+    int failAfter = -1;
+
+    /** The number of fragments added since the failure was armed. */
+    private int fragmentsAdded;
+
+    FailingOutputAspose() throws Exception {
+      super();
+    }
+
+    void failAfter(final int count) {
+      failAfter = count;
+      fragmentsAdded = 0;
+    }
+
+    @Override
+    public void addMethods(int[] fromIndices, int[] toIndices, String[] texts) throws Exception {
+      if (failAfter < 0) {
+        super.addMethods(fromIndices, toIndices, texts);
+        return;
+      }
+      super.addMethods(Arrays.copyOf(fromIndices, failAfter), Arrays.copyOf(toIndices, failAfter), Arrays.copyOf(texts, failAfter));
+      throw new Exception("Injected failure");
+    }
+
+    @Override
+    public void addConstraint(String text) throws Exception {
+      failFragment();
+      super.addConstraint(text);
+    }
+
+    @Override
+    public void addLoop(String text) throws Exception {
+      failFragment();
+      super.addLoop(text);
+    }
+
+    @Override
+    public void addAlternative(String text, String textElse) throws Exception {
+      failFragment();
+      super.addAlternative(text, textElse);
+    }
+
+    private void failFragment() throws Exception {
+      if (failAfter >= 0 && fragmentsAdded++ == failAfter) throw new Exception("Injected failure");
+    }
+
+  }
+
+  @Test
+  void failedMethodReplaceLeavesTheDiagramUnchanged() throws Exception {
+    FailingOutputAspose output = build();
+    byte[] state = output.saveState();
+
+    output.failAfter(2);
+    assertThrows(Exception.class, () -> output.replaceMethods(1, 2, new int[] {0, 1, 2}, new int[] {1, 2, 0},
+        new String[] {"x()", "y()", "z()"}));
+
+    assertArrayEquals(state, output.saveState());
+    assertEquals(shapeCount(build(), "expected"), shapeCount(output, "actual"));
+  }
+
+  @Test
+  void failedConstraintReplaceLeavesTheDiagramUnchanged() throws Exception {
+    FailingOutputAspose output = build();
+    byte[] state = output.saveState();
+
+    output.failAfter(1);
+    assertThrows(Exception.class, () -> output.replaceConstraints(0, 1, new String[] {"x", "y"}));
+
+    assertArrayEquals(state, output.saveState());
+    assertEquals(shapeCount(build(), "expected"), shapeCount(output, "actual"));
+  }
+
+  @Test
+  void failedLoopReplaceLeavesTheDiagramUnchanged() throws Exception {
+    FailingOutputAspose output = build();
+    byte[] state = output.saveState();
+
+    output.failAfter(2);
+    assertThrows(Exception.class, () -> output.replaceLoops(1, 1, new String[] {"x", "y", "z"}));
+
+    assertArrayEquals(state, output.saveState());
+    assertEquals(shapeCount(build(), "expected"), shapeCount(output, "actual"));
+  }
+
+  @Test
+  void invalidReplaceLeavesTheDiagramUnchanged() throws Exception {
+    FailingOutputAspose output = build();
+    byte[] state = output.saveState();
+
+    assertThrows(SDMException.class, () -> output.replaceMethods(0, 1, new int[] {0, 99}, new int[] {1, 0},
+        new String[] {"x()", "y()"}));
+    assertThrows(SDMException.class, () -> output.replaceLoops(1, 5, new String[] {"x"}));
+
+    assertArrayEquals(state, output.saveState());
+  }
+
+  @Test
+  void replaceAfterAFailedReplaceSucceeds() throws Exception {
+    FailingOutputAspose output = build();
+    output.failAfter(1);
+    assertThrows(Exception.class, () -> output.replaceMethods(0, 1, new int[] {0, 1}, new int[] {1, 2},
+        new String[] {"x()", "y()"}));
+
+    output.failAfter = -1;
+    output.replaceMethods(0, 1, new int[] {0, 1}, new int[] {1, 2}, new String[] {"x()", "y()"});
+
+    // The rolled back shapes used up IDs, so compare the saved shapes rather than the state.
+    FailingOutputAspose expected = build();
+    expected.replaceMethods(0, 1, new int[] {0, 1}, new int[] {1, 2}, new String[] {"x()", "y()"});
+    assertEquals(shapeCount(expected, "expected"), shapeCount(output, "actual"));
+  }
+
+  /**
+   * Builds a small diagram: three participants, three methods, a constraint and two loops.
+   *
+   * @author Jesse Primiani
+   * @return The diagram, before finalizeDiagram() is called.
+   * @throws Exception on an output library error.
+   */
+  private static FailingOutputAspose build() throws Exception {
+    FailingOutputAspose output = new FailingOutputAspose();
+    output.addActors(new String[] {"user"});
+    output.addClassBlocks(new String[] {"a", "b"}, new String[] {"A", "B"});
+    output.addMethods(new int[] {0, 1, 2}, new int[] {1, 2, 1}, new String[] {"f()", "g()", "h()"});
+    output.addConstraints(new String[] {"c"});
+    output.addLoops(new String[] {"l1", "l2"});
+    return output;
+  }
+
+  /**
+   * Finalizes and saves a diagram, then counts the shapes on its page in the saved file.
+   *
+   * @author Jesse Primiani
+   * @param output The diagram.
+   * @param name The saved file's name.
+   * @return The number of shapes.
+   * @throws Exception on an output library error.
+   */
+  private int shapeCount(final OutputAspose output, final String name) throws Exception {
+    output.finalizeDiagram();
+    String fileName = output.saveToFile(directory.toString(), name, new OutputTypeAsposeVSDX(), true);
+    return new Diagram(fileName).getPages().getPage(0).getShapes().getCount();
+  }
+
+}
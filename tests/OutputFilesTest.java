@@ -0,0 +1,176 @@
+package com.beulahworks.SDMfileGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that OutputFiles publishes each file under the first name that is free on disk, never
+ * under a name another export has, and leaves no staging files behind.
+ *
+ * @author Jesse Primiani
+ */
+class OutputFilesTest {
+
+  @TempDir
+  Path directory;
+
+  private final OutputType<?> type = new OutputTypePlantUML();
+
+  @Test
+  void takenNamesGetTheFirstFreeInteger() throws Exception {
+    assertEquals("x.puml", publishName("x", false));
+    assertEquals("x1.puml", publishName("x", false));
+    assertEquals("x2.puml", publishName("x", false));
+  }
+
+  @Test
+  void namesFreedOnDiskAreUsedAgain() throws Exception {
+    publishName("x", false);
+    publishName("x", false);
+    Files.delete(directory.resolve("x.puml"));
+    Files.delete(directory.resolve("x1.puml"));
+
+    assertEquals("x.puml", publishName("x", false));
+  }
+
+  @Test
+  void gapInTheTakenNamesIsFilledFirst() throws Exception {
+    publishName("x", false);
+    publishName("x", false);
+    publishName("x", false);
+    Files.delete(directory.resolve("x1.puml"));
+
+    assertEquals("x1.puml", publishName("x", false));
+    assertEquals("x3.puml", publishName("x", false));
+  }
+
+  @Test
+  void exportNamesDependOnlyOnTheDirectory() throws Exception {
+    String path = directory.toString();
+    SDMtoFile exporter = new SDMtoFile(path, "x", type, new OutputPlantUML());
+    exporter.setOverwrite(false);
+    SyntheticInputAdapter diagram = new SyntheticInputAdapter(1);
+
+    assertEquals(path + File.separator + "x.puml", exporter.exportFile(diagram).getFileName());
+    assertEquals(path + File.separator + "x1.puml", exporter.exportFile(diagram).getFileName());
+    Files.delete(directory.resolve("x.puml"));
+    Files.delete(directory.resolve("x1.puml"));
+
+    assertEquals(path + File.separator + "x.puml", exporter.exportFile(diagram).getFileName());
+  }
+
+  @Test
+  void overwriteReplacesTheFile() throws Exception {
+    publish("x", false, new byte[] {1});
+    String fileName = publish("x", true, new byte[] {2});
+
+    assertEquals(directory.resolve("x.puml").toString(), fileName);
+    assertArrayEquals(new byte[] {2}, Files.readAllBytes(directory.resolve("x.puml")));
+    assertEquals(1, fileCount());
+  }
+
+  @Test
+  void fileOutsideTheDirectoryIsMovedIn() throws Exception {
+    Path outside = Files.createTempFile(Files.createDirectory(directory.resolve("elsewhere")), "saved", ".tmp");
+    Files.write(outside, new byte[] {7});
+
+    String fileName = OutputFiles.publishFile(outside, directory.toString(), "x", type, false);
+    assertArrayEquals(new byte[] {7}, Files.readAllBytes(Path.of(fileName)));
+    assertFalse(Files.exists(outside));
+  }
+
+  @Test
+  void concurrentPublishesOfOneNameGetDistinctNames() throws Exception {
+    int threads = 8;
+    int filesPerThread = 25;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+      for (int thread = 0; thread < threads; thread++) {
+        final byte mark = (byte) thread;
+        results.add(executor.submit(() -> {
+          List<String> names = new ArrayList<String>();
+          for (int file = 0; file < filesPerThread; file++) {
+            String fileName = publish("x", false, new byte[] {mark, (byte) file});
+            assertArrayEquals(new byte[] {mark, (byte) file}, Files.readAllBytes(Path.of(fileName)));
+            names.add(fileName);
+          }
+          return names;
+        }));
+      }
+
+      Set<String> names = new HashSet<String>();
+      for (Future<List<String>> result : results) {
+        names.addAll(result.get());
+      }
+      assertEquals(threads * filesPerThread, names.size());
+      assertEquals(threads * filesPerThread, fileCount());
+      for (int number = 1; number < threads * filesPerThread; number++) {
+        assertTrue(Files.isRegularFile(directory.resolve("x" + number + ".puml")), "x" + number);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Stages a file with some content, and publishes it.
+   *
+   * @author Jesse Primiani
+   * @param name The output file's name.
+   * @param overwrite Whether an existing file may be overwritten.
+   * @param content The file's content.
+   * @return The full name of the published file.
+   * @throws Exception on a file error.
+   */
+  private String publish(final String name, final boolean overwrite, final byte[] content) throws Exception {
+    Path staged = OutputFiles.createStagingFile(directory.toString(), name, type);
+    Files.write(staged, content);
+    return OutputFiles.publishFile(staged, directory.toString(), name, type, overwrite);
+  }
+
+  /**
+   * Publishes an empty file, and gets the name it was published under.
+   *
+   * @author Jesse Primiani
+   * @param name The output file's name.
+   * @param overwrite Whether an existing file may be overwritten.
+   * @return The published file's name, without its path.
+   * @throws Exception on a file error.
+   */
+  private String publishName(final String name, final boolean overwrite) throws Exception {
+    return Path.of(publish(name, overwrite, new byte[0])).getFileName().toString();
+  }
+
+  /**
+   * Counts the files in the test's directory, including any staging files left behind.
+   *
+   * @author Jesse Primiani
+   * @return The number of regular files.
+   * @throws Exception on a file error.
+   */
+  private long fileCount() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(Files::isRegularFile).count();
+    }
+  }
+
+}